@@ -0,0 +1,26 @@
+local sep = ":"
+local collectionsPrefix = ARGV[1]
+local collectionMarkersPrefix = ARGV[2]
+local collectionsPrefixLength = string.len(collectionsPrefix)
+
+-- Every key is the redis key of a collection. The names of all sub-collections are written to the marker set of the
+-- collection, followed by the empty name which marks the collection as complete. From then on a listing of the
+-- collection does not need a type lookup per member anymore.
+local migrated = 0
+for _,collectionKey in ipairs(KEYS) do
+    if redis.call('type',collectionKey)["ok"] == "zset" then
+        local path = string.sub(collectionKey, collectionsPrefixLength + 1)
+        local markersKey = collectionMarkersPrefix..path
+        if redis.call('sismember',markersKey,'') == 0 then
+            local members = redis.call('zrange',collectionKey,0,-1)
+            for _,value in ipairs(members) do
+                if redis.call('type',collectionKey..sep..value)["ok"] == "zset" then
+                    redis.call('sadd',markersKey,value)
+                end
+            end
+            redis.call('sadd',markersKey,'')
+            migrated = migrated + 1
+        end
+    end
+end
+return migrated
@@ -0,0 +1,79 @@
+#!/usr/bin/ruby
+
+############################################################################################
+# Writes the collection markers for all collections stored before collection markers were
+# introduced. Collections without markers are still listed correctly, but need a type lookup
+# for every member. The migration can run against a running database, every batch of
+# collections is migrated atomically by a single LUA script.
+#
+# usage: ruby redis-rest-storage-migrate-collection-markers.rb -b 100
+# b is the number of collections migrated in one LUA script call
+############################################################################################
+require 'optparse'
+
+options = {:host => 'localhost', :port => 6379, :collections => 'rest-storage:collections', :markers => 'rest-storage:collection-markers', :batch => 100}
+
+parser = OptionParser.new do|opts|
+    opts.banner = "Usage: redis-rest-storage-migrate-collection-markers.rb [options]"
+    opts.separator  ""
+    opts.on('-s', '--redis-host REDIS-HOST', 'The redis server host. Default is localhost') do |host|
+        options[:host] = host;
+    end
+
+    opts.on('-p', '--redis-port REDIS-PORT', 'The redis server port. Default is 6379') do |port|
+        options[:port] = port;
+    end
+
+    opts.on('-c', '--collections-prefix COLLECTIONS-PREFIX', 'The key prefix for collections. Default is rest-storage:collections') do |collections|
+        options[:collections] = collections;
+    end
+
+    opts.on('-m', '--collection-markers-prefix COLLECTION-MARKERS-PREFIX', 'The key prefix for collection markers. Default is rest-storage:collection-markers') do |markers|
+        options[:markers] = markers;
+    end
+
+    opts.on('-b', '--batch-size BATCH-SIZE', 'The number of collections migrated in one script call. Default is 100') do |batch|
+        options[:batch] = Integer(batch);
+    end
+
+    opts.on('-h', '--help', 'Displays Help') do
+        puts opts
+        exit
+    end
+end
+
+parser.parse!
+
+redis_cli = "redis-cli -h #{options[:host]} -p #{options[:port]}"
+start = Time.now
+
+puts '###################################################################'
+puts ''
+puts 'Starting migration of collection markers:'
+puts '------------------------------------------'
+puts 'redis host: ' + options[:host]
+puts 'redis port: ' + String(Integer(options[:port]))
+puts 'redis collections prefix: ' + options[:collections]
+puts 'redis collection markers prefix: ' + options[:markers]
+puts ''
+
+sha = `#{redis_cli} SCRIPT LOAD "$(cat migrate-collection-markers.lua)"`.strip
+collections = 0
+migrated = 0
+keys = `#{redis_cli} --scan --pattern '#{options[:collections]}:*'`.split("\n")
+# the key of the root collection is the prefix itself, which the pattern does not match
+if Integer(`#{redis_cli} EXISTS '#{options[:collections]}'`.strip) == 1
+    keys.unshift(options[:collections])
+end
+keys.each_slice(options[:batch]) do |batch|
+    quoted = batch.map { |key| "'" + key.gsub("'", "'\\\\''") + "'" }.join(' ')
+    migrated += Integer(`#{redis_cli} EVALSHA #{sha} #{batch.length} #{quoted} #{options[:collections]} #{options[:markers]}`.strip)
+    collections += batch.length
+end
+
+puts 'collections found: ' + String(collections)
+puts 'collections migrated: ' + String(migrated)
+puts ''
+puts 'script execution time: ' + String(Float(Time.now - start)) + ' seconds'
+puts ''
+puts '###################################################################'
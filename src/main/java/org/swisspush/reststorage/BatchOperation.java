@@ -0,0 +1,42 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.buffer.Buffer;
+import org.swisspush.reststorage.util.LockMode;
+
+/**
+ * A put or delete of a resource executed together with other operations by {@link Storage#batch}. The fields
+ * correspond to the arguments of {@link Storage#put} and {@link Storage#delete}.
+ */
+public class BatchOperation {
+
+    public enum Method {
+        PUT, DELETE
+    }
+
+    public Method method;
+    public String path;
+    public Buffer content; // The content of a put
+    public String etag; // The etag of a put, the put is not modified when the resource has this etag already
+    public long expire = -1; // Seconds until a put resource expires, -1 for never
+    public String lockOwner = "";
+    public LockMode lockMode = LockMode.SILENT;
+    public long lockExpire = 300;
+    public boolean storeCompressed = false;
+    public boolean confirmCollectionDelete = false;
+    public boolean deleteRecursive = false;
+
+    public static BatchOperation put(String path, Buffer content) {
+        BatchOperation operation = new BatchOperation();
+        operation.method = Method.PUT;
+        operation.path = path;
+        operation.content = content;
+        return operation;
+    }
+
+    public static BatchOperation delete(String path) {
+        BatchOperation operation = new BatchOperation();
+        operation.method = Method.DELETE;
+        operation.path = path;
+        return operation;
+    }
+}
@@ -0,0 +1,122 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * A {@link ReadStream} backed by a single {@link Buffer}. The emitted chunks are slices of this buffer, no bytes are
+ * copied.
+ * <p>
+ * Slices are emitted in one go until the stream is paused, which a {@link io.vertx.core.streams.Pump} does as soon as
+ * the write queue of its target is full. Emitting is resumed on the next drain. Small content should not be streamed
+ * at all but written with a single call, see {@link #isSmall()} and {@link #getBuffer()}.
+ */
+public class BufferReadStream implements ReadStream<Buffer> {
+
+    public static final int SLICE_SIZE = 64 * 1024;
+    public static final int SMALL_CONTENT_THRESHOLD = 64 * 1024;
+
+    private final Vertx vertx;
+    private final Buffer content;
+    private final int size;
+    private int position;
+    private boolean paused;
+    private boolean scheduled;
+    private boolean ended;
+    private Handler<Buffer> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+
+    public BufferReadStream(Vertx vertx, Buffer content) {
+        this.vertx = vertx;
+        this.content = content;
+        this.size = content.length();
+    }
+
+    /**
+     * @return the whole content of this stream
+     */
+    public Buffer getBuffer() {
+        return content;
+    }
+
+    /**
+     * @return true if the content is small enough to be written in one go instead of being streamed
+     */
+    public boolean isSmall() {
+        return size <= SMALL_CONTENT_THRESHOLD;
+    }
+
+    @Override
+    public BufferReadStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public BufferReadStream handler(Handler<Buffer> handler) {
+        this.handler = handler;
+        if (handler != null) {
+            scheduleEmit();
+        }
+        return this;
+    }
+
+    @Override
+    public BufferReadStream pause() {
+        paused = true;
+        return this;
+    }
+
+    @Override
+    public BufferReadStream resume() {
+        if (paused) {
+            paused = false;
+            scheduleEmit();
+        }
+        return this;
+    }
+
+    @Override
+    public BufferReadStream endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        return this;
+    }
+
+    private void scheduleEmit() {
+        if (scheduled || ended) {
+            return;
+        }
+        scheduled = true;
+        vertx.runOnContext(v -> {
+            scheduled = false;
+            emit();
+        });
+    }
+
+    private void emit() {
+        try {
+            while (!paused && handler != null && position < size) {
+                int end = Math.min(position + SLICE_SIZE, size);
+                Buffer slice = content.slice(position, end);
+                position = end;
+                handler.handle(slice);
+            }
+            if (!paused && !ended && position >= size) {
+                ended = true;
+                if (endHandler != null) {
+                    endHandler.handle(null);
+                }
+            }
+        } catch (Exception ex) {
+            ended = true;
+            if (exceptionHandler != null) {
+                exceptionHandler.handle(ex);
+            } else {
+                throw ex;
+            }
+        }
+    }
+}
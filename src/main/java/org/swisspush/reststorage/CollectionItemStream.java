@@ -0,0 +1,115 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link ReadStream} over the members of a collection. The members are fetched chunk by chunk from the storage, so
+ * only one chunk is held in memory at a time. The next chunk is fetched as soon as the current one is consumed.
+ */
+public class CollectionItemStream implements ReadStream<Resource> {
+
+    /**
+     * Fetches the next chunk of members. An empty chunk marks the end of the collection.
+     */
+    public interface ChunkFetcher {
+        void fetchNextChunk(Handler<AsyncResult<List<Resource>>> handler);
+    }
+
+    private final ChunkFetcher chunkFetcher;
+    private List<Resource> chunk = Collections.emptyList();
+    private int index;
+    private boolean paused;
+    private boolean fetching;
+    private boolean emitting;
+    private boolean ended;
+    private Handler<Resource> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+
+    public CollectionItemStream(ChunkFetcher chunkFetcher) {
+        this.chunkFetcher = chunkFetcher;
+    }
+
+    @Override
+    public CollectionItemStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public CollectionItemStream handler(Handler<Resource> handler) {
+        this.handler = handler;
+        if (handler != null) {
+            emit();
+        }
+        return this;
+    }
+
+    @Override
+    public CollectionItemStream pause() {
+        paused = true;
+        return this;
+    }
+
+    @Override
+    public CollectionItemStream resume() {
+        if (paused) {
+            paused = false;
+            emit();
+        }
+        return this;
+    }
+
+    @Override
+    public CollectionItemStream endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        return this;
+    }
+
+    private void emit() {
+        if (emitting || ended) {
+            return;
+        }
+        emitting = true;
+        try {
+            // a loop instead of recursion, chunks may be delivered synchronously
+            while (!paused && handler != null && !fetching && !ended) {
+                if (index < chunk.size()) {
+                    handler.handle(chunk.get(index++));
+                } else {
+                    fetchNextChunk();
+                }
+            }
+        } finally {
+            emitting = false;
+        }
+    }
+
+    private void fetchNextChunk() {
+        fetching = true;
+        chunkFetcher.fetchNextChunk(event -> {
+            fetching = false;
+            if (event.failed()) {
+                ended = true;
+                if (exceptionHandler != null) {
+                    exceptionHandler.handle(event.cause());
+                }
+            } else if (event.result() == null || event.result().isEmpty()) {
+                ended = true;
+                chunk = Collections.emptyList();
+                if (endHandler != null) {
+                    endHandler.handle(null);
+                }
+            } else {
+                chunk = event.result();
+                index = 0;
+                emit();
+            }
+        });
+    }
+}
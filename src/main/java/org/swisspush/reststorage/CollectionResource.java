@@ -1,8 +1,14 @@
 package org.swisspush.reststorage;
+import io.vertx.core.streams.ReadStream;
+
 import java.util.List;
 
 
 
 public class CollectionResource extends Resource {
     public List<Resource> items;
+    /** the members of the collection when it is streamed, see {@link Storage#streamCollection} */
+    public ReadStream<Resource> itemStream;
+    /** the continuation token of the next page when the collection is listed page by page, see {@link Storage#list} */
+    public String next;
 }
@@ -8,6 +8,7 @@ public class DocumentResource extends Resource {
     public long length;
     public String etag;
     public ReadStream readStream;
+    public String contentEncoding; // The encoding of the content of the read stream (e.g. gzip), null when not encoded
     public WriteStream writeStream;    
     public Handler<Void> closeHandler; // Called by client to close the storage
     public Handler<Void> endHandler; // Called by storage to notify
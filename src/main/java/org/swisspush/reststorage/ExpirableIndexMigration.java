@@ -0,0 +1,43 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+/**
+ * Migrates the single expirable set of a redis storage to the buckets of the expirable index.
+ * Used once after the configuration property <code>expirableBuckets</code> was raised above 1.
+ * <p>
+ * Takes the path of the module configuration (json) as argument, uses the default configuration without.
+ * The migration can run while the storage instances are running.
+ */
+public class ExpirableIndexMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpirableIndexMigration.class);
+
+    public static void main(String[] args) {
+        Vertx vertx = Vertx.vertx();
+        JsonObject json = args.length > 0 ? new JsonObject(vertx.fileSystem().readFileBlocking(args[0])) : new JsonObject();
+        ModuleConfiguration config = ModuleConfiguration.fromJsonObject(json)
+                .backgroundExpiryEnabled(false)
+                .cleanupLeaseEnabled(false)
+                .nearCacheEnabled(false)
+                .rejectStorageWriteOnLowMemory(false);
+        if (config.getExpirableBuckets() <= 1) {
+            log.warn("The expirable index has a single bucket, nothing to migrate");
+            vertx.close();
+            return;
+        }
+        new RedisStorage(vertx, config).migrateExpirableIndex(result -> {
+            if (result.succeeded()) {
+                log.info("Migrated " + result.result() + " entries of " + config.getExpirablePrefix() + " to "
+                        + config.getExpirableBuckets() + " buckets");
+            } else {
+                log.error("Migration of " + config.getExpirablePrefix() + " failed", result.cause());
+            }
+            vertx.close();
+        });
+    }
+}
@@ -13,6 +13,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.stream.Stream;
 
 
@@ -64,6 +67,88 @@ public class FileSystemDirLister {
         log.trace("Work delegated.");
     }
 
+    /**
+     * Lists at most count entries of a directory having a name greater than after, ordered by name. Only the
+     * entries of the page are examined, the others are just compared by name. The result provides the
+     * {@link CollectionResource#next} position (the last name of the page) when there are more entries.
+     *
+     * @param after the name to list after or null to start at the first entry
+     * @param count the max number of entries or -1 for all entries
+     */
+    public void handleListingAfterRequest(String path, final String after, final int count, final Handler<Resource> handler) {
+        vertx.executeBlocking(future -> listDirAfterBlocking(path, after, count, (Future<CollectionResource>) (Future<?>) future), event -> {
+            if (event.failed()) {
+                log.error("Directory listing failed.", event.cause());
+                final Resource erroneousResource = new Resource() {{
+                    name = Paths.get(path).getFileName().toString();
+                    exists = false;
+                    error = rejected = invalid = true;
+                    errorMessage = invalidMessage = event.cause().getMessage();
+                }};
+                handler.handle(erroneousResource);
+            } else {
+                handler.handle((Resource) event.result());
+            }
+        });
+    }
+
+    private void listDirAfterBlocking(String path, String after, int count, Future<CollectionResource> future) {
+        //
+        // HINT: This method gets executed on a worker thread!
+        //
+        final Path searchPath = Paths.get(canonicalizeVirtualPath(path));
+        final String fullPath = canonicalizeVirtualPath(path);
+        // holds the smallest names after the 'after' name, the greatest of them on top
+        final PriorityQueue<String> page = new PriorityQueue<>(Comparator.reverseOrder());
+        final boolean[] more = {false};
+        try (Stream<Path> source = Files.list(searchPath)) {
+            source.forEach(entry -> {
+                final String entryName = entry.getFileName().toString();
+                if (".tmp".equals(entryName) && fullPath.length() == root.length()) {
+                    // Ignore hidden '/.tmp/' directory.
+                    return;
+                }
+                if (after != null && entryName.compareTo(after) <= 0) {
+                    return;
+                }
+                if (count < 0 || page.size() < count) {
+                    page.add(entryName);
+                } else {
+                    more[0] = true;
+                    if (count > 0 && entryName.compareTo(page.peek()) < 0) {
+                        page.poll();
+                        page.add(entryName);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            future.fail(e);
+            return;
+        }
+        final List<String> names = new ArrayList<>(page);
+        Collections.sort(names);
+        final CollectionResource collection = new CollectionResource();
+        collection.items = new ArrayList<>(names.size());
+        for (String name : names) {
+            final Path entry = searchPath.resolve(name);
+            final Resource resource;
+            if (Files.isDirectory(entry)) {
+                resource = new CollectionResource();
+            } else if (Files.isRegularFile(entry)) {
+                resource = new DocumentResource();
+            } else {
+                resource = new Resource();
+                resource.exists = false;
+            }
+            resource.name = name;
+            collection.items.add(resource);
+        }
+        if (more[0] && !names.isEmpty()) {
+            collection.next = names.get(names.size() - 1);
+        }
+        future.complete(collection);
+    }
+
     private void listDirBlocking(String path, int offset, int count, Future<CollectionResource> future) {
         //
         // HINT: This method gets executed on a worker thread!
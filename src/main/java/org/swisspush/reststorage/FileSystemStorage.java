@@ -1,36 +1,58 @@
 package org.swisspush.reststorage;
 
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.file.FileProps;
 import io.vertx.core.file.FileSystem;
 import io.vertx.core.file.FileSystemException;
 import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.streams.ReadStream;
+import org.swisspush.reststorage.util.ContinuationToken;
 import org.swisspush.reststorage.util.LockMode;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 
 public class FileSystemStorage implements Storage {
 
     private static final OpenOptions OPEN_OPTIONS_READ_ONLY = new OpenOptions().setWrite(false).setCreate(false);
+    private static final String TRASH_DIR = "/.tmp/trash";
 
     private final String root;
     private final Vertx vertx;
     private final int rootLen;
     private final FileSystemDirLister fileSystemDirLister;
+    private final boolean asyncDelete;
+    private int purging = 0;
+    private long purgedDirectories = 0;
 
     private Logger log = LoggerFactory.getLogger(FileSystemStorage.class);
 
     public FileSystemStorage(Vertx vertx, String root) {
+        this(vertx, root, false);
+    }
+
+    /**
+     * @param asyncDelete when <code>true</code>, deleted directories are moved to a hidden trash directory and
+     *                    removed afterwards, so the delete request does not wait for the removal of the whole tree
+     */
+    public FileSystemStorage(Vertx vertx, String root, boolean asyncDelete) {
         this.vertx = vertx;
+        this.asyncDelete = asyncDelete;
         this.fileSystemDirLister = new FileSystemDirLister(vertx, root);
         // Unify format for simpler work.
         String tmpRoot;
@@ -93,6 +115,83 @@ public class FileSystemStorage implements Storage {
         });
     }
 
+    /**
+     * Gets the resources in parallel, the content of every file is read into memory. The filesystem storage does not
+     * support etags.
+     */
+    @Override
+    public void multiGet(List<String> paths, List<String> etags, Handler<List<Resource>> handler) {
+        final Resource[] results = new Resource[paths.size()];
+        final int[] pending = {paths.size()};
+        if (paths.isEmpty()) {
+            handler.handle(Collections.emptyList());
+            return;
+        }
+        for (int i = 0; i < paths.size(); i++) {
+            final int index = i;
+            Handler<Resource> resultHandler = resource -> {
+                results[index] = resource;
+                if (--pending[0] == 0) {
+                    handler.handle(Arrays.asList(results));
+                }
+            };
+            get(paths.get(i), null, 0, -1, resource -> {
+                if (resource instanceof DocumentResource && ((DocumentResource) resource).readStream != null) {
+                    readContent((DocumentResource) resource, resultHandler);
+                } else {
+                    resultHandler.handle(resource);
+                }
+            });
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readContent(DocumentResource resource, Handler<Resource> handler) {
+        final Buffer content = Buffer.buffer((int) resource.length);
+        final ReadStream<Buffer> readStream = resource.readStream;
+        readStream.exceptionHandler(exception -> {
+            resource.closeHandler.handle(null);
+            Resource r = new Resource();
+            r.error = true;
+            r.errorMessage = exception.getMessage();
+            handler.handle(r);
+        });
+        readStream.handler(content::appendBuffer);
+        readStream.endHandler(nothing -> {
+            resource.closeHandler.handle(null);
+            resource.readStream = new BufferReadStream(vertx, content);
+            resource.closeHandler = v -> {
+                // nothing to close
+            };
+            handler.handle(resource);
+        });
+    }
+
+    /**
+     * Answers with the size of the file from a single stat, the file is not opened. The filesystem storage does not
+     * support etags.
+     */
+    @Override
+    public void head(String path, String etag, Handler<Resource> handler) {
+        final String fullPath = canonicalize(path);
+        fileSystem().props(fullPath, propsResult -> {
+            if (propsResult.succeeded() && propsResult.result().isDirectory()) {
+                handler.handle(new CollectionResource());
+            } else if (propsResult.succeeded() && propsResult.result().isRegularFile()) {
+                DocumentResource d = new DocumentResource();
+                d.length = propsResult.result().size();
+                d.closeHandler = v -> {
+                    // nothing to close
+                };
+                handler.handle(d);
+            } else {
+                Resource r = new Resource();
+                r.exists = false;
+                handler.handle(r);
+            }
+        });
+    }
+
     @Override
     public void put(String path, String etag, boolean merge, long expire, final Handler<Resource> handler) {
         put(path, etag, merge, expire, "", LockMode.SILENT, 0, handler);
@@ -137,6 +236,54 @@ public class FileSystemStorage implements Storage {
         put(path, etag, merge, expire, "", LockMode.SILENT, 0, handler);
     }
 
+    /**
+     * Executes the operations in parallel, the file system offers no atomicity over several files anyway.
+     */
+    @Override
+    public void batch(List<BatchOperation> operations, Handler<List<Resource>> handler) {
+        final Resource[] results = new Resource[operations.size()];
+        final int[] pending = {operations.size()};
+        if (operations.isEmpty()) {
+            handler.handle(Collections.emptyList());
+            return;
+        }
+        for (int i = 0; i < operations.size(); i++) {
+            final int index = i;
+            final BatchOperation operation = operations.get(i);
+            Handler<Resource> resultHandler = resource -> {
+                results[index] = resource;
+                if (--pending[0] == 0) {
+                    handler.handle(Arrays.asList(results));
+                }
+            };
+            if (operation.method == BatchOperation.Method.PUT) {
+                put(operation.path, operation.etag, false, operation.expire, operation.lockOwner, operation.lockMode,
+                        operation.lockExpire, operation.storeCompressed, resource -> {
+                    if (resource instanceof DocumentResource && resource.exists) {
+                        writeBatchContent((DocumentResource) resource, operation.content, resultHandler);
+                    } else {
+                        resultHandler.handle(resource);
+                    }
+                });
+            } else {
+                delete(operation.path, operation.lockOwner, operation.lockMode, operation.lockExpire,
+                        operation.confirmCollectionDelete, operation.deleteRecursive, resultHandler);
+            }
+        }
+    }
+
+    private void writeBatchContent(DocumentResource resource, Buffer content, Handler<Resource> handler) {
+        resource.addErrorHandler(error -> {
+            Resource r = new Resource();
+            r.error = true;
+            r.errorMessage = error.getMessage();
+            handler.handle(r);
+        });
+        resource.endHandler = nothing -> handler.handle(resource);
+        resource.writeStream.write(content);
+        resource.closeHandler.handle(null);
+    }
+
     private void putFile(final Handler<Resource> handler, final String fullPath) {
         // Delegate work to a dedicated file putter.
         final FilePutter filePutter;
@@ -157,20 +304,17 @@ public class FileSystemStorage implements Storage {
 
         fileSystem().exists(fullPath, event -> {
             if (event.result()) {
-                fileSystem().deleteRecursive(fullPath, finalDeleteRecursiveInFileSystem, event1 -> {
-                    Resource resource = new Resource();
-                    if (event1.failed()) {
-                        if(event1.cause().getCause() != null && event1.cause().getCause() instanceof DirectoryNotEmptyException){
-                            resource.error = true;
-                            resource.errorMessage = "directory not empty. Use recursive=true parameter to delete";
+                if (asyncDelete && finalDeleteRecursiveInFileSystem) {
+                    fileSystem().props(fullPath, propsResult -> {
+                        if (propsResult.succeeded() && propsResult.result().isDirectory()) {
+                            moveToTrash(path, fullPath, handler);
                         } else {
-                            resource.exists = false;
+                            deleteNow(path, fullPath, true, handler);
                         }
-                    }else{
-                        deleteEmptyParentDirs(new File(path).getParent());
-                    }
-                    handler.handle(resource);
-                });
+                    });
+                } else {
+                    deleteNow(path, fullPath, finalDeleteRecursiveInFileSystem, handler);
+                }
             } else {
                 Resource r = new Resource();
                 r.exists = false;
@@ -179,6 +323,61 @@ public class FileSystemStorage implements Storage {
         });
     }
 
+    private void deleteNow(String path, String fullPath, boolean recursive, Handler<Resource> handler) {
+        fileSystem().deleteRecursive(fullPath, recursive, event1 -> {
+            Resource resource = new Resource();
+            if (event1.failed()) {
+                if(event1.cause().getCause() != null && event1.cause().getCause() instanceof DirectoryNotEmptyException){
+                    resource.error = true;
+                    resource.errorMessage = "directory not empty. Use recursive=true parameter to delete";
+                } else {
+                    resource.exists = false;
+                }
+            }else{
+                deleteEmptyParentDirs(new File(path).getParent());
+            }
+            handler.handle(resource);
+        });
+    }
+
+    /**
+     * Renames the directory into the (hidden) trash directory, which detaches the whole tree at once. The tree is
+     * removed from the trash on the blocking pool of vertx afterwards, the request does not wait for it.
+     */
+    private void moveToTrash(String path, String fullPath, Handler<Resource> handler) {
+        final String trashPath = canonicalize(TRASH_DIR + "/" + UUID.randomUUID().toString());
+        fileSystem().mkdirs(canonicalize(TRASH_DIR), mkdirsResult -> {
+            if (mkdirsResult.failed()) {
+                log.warn("Failed to create the trash directory, delete '{}' directly", fullPath, mkdirsResult.cause());
+                deleteNow(path, fullPath, true, handler);
+                return;
+            }
+            fileSystem().move(fullPath, trashPath, moveResult -> {
+                if (moveResult.failed()) {
+                    log.warn("Failed to move '{}' to the trash, delete it directly", fullPath, moveResult.cause());
+                    deleteNow(path, fullPath, true, handler);
+                    return;
+                }
+                purgeTrash(trashPath);
+                deleteEmptyParentDirs(new File(path).getParent());
+                handler.handle(new Resource());
+            });
+        });
+    }
+
+    private void purgeTrash(String trashPath) {
+        purging++;
+        fileSystem().deleteRecursive(trashPath, true, result -> {
+            purging--;
+            if (result.succeeded()) {
+                purgedDirectories++;
+                log.debug("Purged '{}' from the trash", trashPath);
+            } else {
+                log.error("Failed to purge '{}' from the trash", trashPath, result.cause());
+            }
+        });
+    }
+
     /**
      * Deletes all empty parent directories starting at specified directory.
      *
@@ -251,6 +450,85 @@ public class FileSystemStorage implements Storage {
         // nothing to do here
     }
 
+    /**
+     * The directory is listed at once on a worker thread, the stream is a view on the complete listing.
+     */
+    @Override
+    public void streamCollection(String path, Handler<Resource> handler) {
+        final String fullPath = canonicalize(path);
+        fileSystem().props(fullPath, propsResult -> {
+            if (propsResult.failed() || !propsResult.result().isDirectory()) {
+                Resource r = new Resource();
+                r.exists = false;
+                handler.handle(r);
+                return;
+            }
+            fileSystemDirLister.handleListingRequest(path, 0, -1, resource -> {
+                if (!(resource instanceof CollectionResource) || !resource.exists) {
+                    handler.handle(resource);
+                    return;
+                }
+                final List<Resource> items = ((CollectionResource) resource).items;
+                final CollectionResource c = new CollectionResource();
+                c.itemStream = new CollectionItemStream(new CollectionItemStream.ChunkFetcher() {
+                    private boolean fetched = false;
+
+                    @Override
+                    public void fetchNextChunk(Handler<AsyncResult<List<Resource>>> chunkHandler) {
+                        List<Resource> chunk = fetched ? Collections.emptyList() : items;
+                        fetched = true;
+                        chunkHandler.handle(Future.succeededFuture(chunk));
+                    }
+                });
+                handler.handle(c);
+            });
+        });
+    }
+
+    /**
+     * The continuation token holds the name of the last entry of the previous page.
+     */
+    @Override
+    public void list(String path, String after, int count, Handler<Resource> handler) {
+        final String afterName;
+        try {
+            afterName = ContinuationToken.decode(after);
+        } catch (IllegalArgumentException ex) {
+            Resource r = new Resource();
+            r.invalid = true;
+            r.invalidMessage = "Invalid continuation token '" + after + "'";
+            handler.handle(r);
+            return;
+        }
+        final String fullPath = canonicalize(path);
+        fileSystem().props(fullPath, propsResult -> {
+            if (propsResult.failed() || !propsResult.result().isDirectory()) {
+                Resource r = new Resource();
+                r.exists = false;
+                handler.handle(r);
+                return;
+            }
+            fileSystemDirLister.handleListingAfterRequest(path, afterName, count, resource -> {
+                if (resource instanceof CollectionResource) {
+                    CollectionResource c = (CollectionResource) resource;
+                    c.next = ContinuationToken.encode(c.next);
+                }
+                handler.handle(resource);
+            });
+        });
+    }
+
+    @Override
+    public void statistics(Handler<JsonObject> handler) {
+        JsonObject stats = new JsonObject();
+        if (asyncDelete) {
+            stats.put("asyncDelete", new JsonObject()
+                    .put("purging", purging)
+                    .put("purgedDirectories", purgedDirectories));
+        }
+        handler.handle(stats);
+    }
+
     @Override
     public void storageExpand(String path, String etag, List<String> subResources, Handler<Resource> handler) {
         throw new UnsupportedOperationException("Method 'storageExpand' is not yet implemented for the FileSystemStorage");
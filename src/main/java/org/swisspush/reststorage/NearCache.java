@@ -0,0 +1,176 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-process cache of resource contents in front of the {@link RedisStorage}. Entries are keyed by the
+ * encoded resource path and hold the (decompressed) content and the etag. The least recently used entries are
+ * evicted when the summed content size exceeds the configured maximum.
+ * <p>
+ * The cache only serves entries while it is {@link #isActive() active}, i.e. while the invalidation messages of
+ * redis are received. Every invalidation increments a version counter. A value read from redis is only cached
+ * when no invalidation happened since the read was started, so a value changed concurrently is never cached.
+ * <p>
+ * Not thread safe, to be used from the event-loop of the storage only.
+ */
+public class NearCache {
+
+    private final long maxSize;
+    private final int maxResourceSize;
+    private final long maxAgeMs;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+    private long version = 0;
+    private boolean active = false;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    static class Entry {
+        final byte[] content;
+        final String etag;
+        final long expireAt;
+
+        Entry(byte[] content, String etag, long expireAt) {
+            this.content = content;
+            this.etag = etag;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * @param maxSize the maximum summed content size of all entries in bytes
+     * @param maxResourceSize the maximum content size of a single entry in bytes. Larger resources are not cached
+     * @param maxAgeMs the maximum time in milliseconds an entry is served, independent of invalidations
+     */
+    public NearCache(long maxSize, int maxResourceSize, long maxAgeMs) {
+        this.maxSize = maxSize;
+        this.maxResourceSize = maxResourceSize;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Activates or deactivates the cache. A deactivated cache is emptied, since invalidations may have been missed.
+     */
+    public void setActive(boolean active) {
+        if (!active) {
+            invalidateAll();
+        }
+        this.active = active;
+    }
+
+    /**
+     * @return the current version. To be passed to {@link #put(String, byte[], String, long, long, long)} with the
+     * value read from redis
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @return the cached entry or <code>null</code> when the cache is inactive or holds no valid entry for the key
+     */
+    public Entry get(String key, long now) {
+        if (!active) {
+            return null;
+        }
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expireAt <= now) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Caches the content of a resource read from redis.
+     *
+     * @param key the encoded resource path
+     * @param content the decompressed content
+     * @param etag the etag of the resource
+     * @param resourceExpireAt the time the resource expires in redis, or {@link Long#MAX_VALUE}
+     * @param readVersion the {@link #version()} at the time the read was started
+     * @param now the current time in milliseconds
+     */
+    public void put(String key, byte[] content, String etag, long resourceExpireAt, long readVersion, long now) {
+        if (!active || readVersion != version || content.length > maxResourceSize || content.length > maxSize) {
+            return;
+        }
+        remove(key);
+        entries.put(key, new Entry(content, etag, Math.min(resourceExpireAt, now + maxAgeMs)));
+        size += content.length;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().getValue().content.length;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes the entry of the key.
+     */
+    public void invalidate(String key) {
+        version++;
+        invalidations++;
+        remove(key);
+    }
+
+    /**
+     * Removes the entry of the key and the entries of all resources below the key (the key is a collection).
+     */
+    public void invalidateTree(String key) {
+        invalidate(key);
+        String collectionPrefix = key + ":";
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (entry.getKey().startsWith(collectionPrefix)) {
+                size -= entry.getValue().content.length;
+                iterator.remove();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        version++;
+        invalidations++;
+        entries.clear();
+        size = 0;
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            size -= removed.content.length;
+        }
+    }
+
+    public JsonObject statistics() {
+        JsonObject stats = new JsonObject();
+        stats.put("active", active);
+        stats.put("entries", entries.size());
+        stats.put("size", size);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        stats.put("invalidations", invalidations);
+        return stats;
+    }
+}
@@ -1,27 +1,37 @@
 package org.swisspush.reststorage;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
-import io.vertx.core.streams.ReadStream;
 import io.vertx.core.streams.WriteStream;
 import io.vertx.redis.RedisClient;
 import io.vertx.redis.RedisOptions;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.text.StrSubstitutor;
+import org.swisspush.reststorage.util.CompressionAdvisor;
+import org.swisspush.reststorage.util.CompressionExecutor;
+import org.swisspush.reststorage.util.ContinuationToken;
 import org.swisspush.reststorage.util.GZIPUtil;
 import org.swisspush.reststorage.util.LockMode;
 import org.swisspush.reststorage.util.ModuleConfiguration;
 import org.swisspush.reststorage.util.ResourceNameUtil;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.*;
 
@@ -35,65 +45,140 @@ public class RedisStorage implements Storage {
     private static final float MAX_PERCENTAGE = 100.0f;
     private static final float MIN_PERCENTAGE = 0.0f;
     private static final int CLEANUP_BULK_SIZE = 200;
+    private static final int MIN_EXPIRY_BULK_SIZE = 10;
+    private static final int MAX_EXPIRY_BULK_SIZE = 5000;
+    private static final int MAX_EXPIRY_BACKOFF = 16;
+    private static final int EXPIRABLE_MIGRATION_BULK_SIZE = 1000;
+    private static final long EXPIRY_REPAIR_SUBSCRIBE_INTERVAL_MS = 10_000;
+    private static final long PURGE_PAUSE_MS = 10;
+    private static final long PURGE_IDLE_INTERVAL_MS = 1000;
+    private static final String NOTIFICATION_ADDRESS_PREFIX = "rest-storage-notifications-";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final byte[] EXPAND_START = {'{'};
+    private static final byte[] EXPAND_SEPARATOR = {','};
+    private static final byte[] EXPAND_END = {'}'};
 
     private String redisResourcesPrefix;
     private String redisCollectionsPrefix;
+    private String redisCollectionMarkersPrefix;
     private String redisDeltaResourcesPrefix;
     private String redisDeltaEtagsPrefix;
     private String expirableSet;
+    private int expirableBuckets;
+    private boolean nativeExpiry;
+    private boolean expiryRepairActive = false;
+    private long expiryRepairs = 0;
+    private long expiryRepairedMembers = 0;
+    private String purgingKey;
+    private int asyncDeleteThreshold;
+    private int batchChunkSize;
+    private boolean workerMergeEnabled;
+    private int workerMergeMaxRetries;
     private long cleanupResourcesAmount;
+    private int collectionStreamChunkSize;
+    private int storageExpandMaxMembers;
+    private long storageExpandMaxSize;
+    private int compressionWorkerPoolSize;
+    private int compressionQueueSize;
+    private CompressionExecutor compressionExecutor;
+    private boolean adaptiveCompression;
+    private CompressionAdvisor compressionAdvisor;
+    private MimeTypeResolver mimeTypeResolver = new MimeTypeResolver("application/json; charset=utf-8");
     private String redisLockPrefix;
     private Vertx vertx;
-    private RedisClient redisClient;
+    private List<RedisClient> redisClients;
+    private ModuleConfiguration.RedisPoolStrategy redisPoolStrategy;
+    private int roundRobinIndex = 0;
     private Map<LuaScript,LuaScriptState> luaScripts = new HashMap<>();
     private DecimalFormat decimalFormat;
+    private GetCoalescer getCoalescer;
+    private NearCache nearCache;
+    private BackgroundExpiry backgroundExpiry;
+    private CleanupLease cleanupLease;
+    private Purger purger;
 
     private Optional<Float> currentMemoryUsageOptional = Optional.empty();
 
     public RedisStorage(Vertx vertx, ModuleConfiguration config) {
-        this(vertx, config, RedisClient.create(vertx, new RedisOptions()
-                        .setHost(config.getRedisHost())
-                        .setPort(config.getRedisPort())
-                        .setAuth(config.getRedisAuth())
-                )
-        );
+        this(vertx, config, createRedisClients(vertx, config));
     }
 
     public RedisStorage(Vertx vertx, ModuleConfiguration config, RedisClient redisClient) {
+        this(vertx, config, Collections.singletonList(redisClient));
+    }
+
+    /**
+     * Creates a RedisStorage using a pool of redis clients. Every client holds its own connection to redis. The
+     * commands are spread over the clients according to the configured {@link ModuleConfiguration.RedisPoolStrategy}.
+     *
+     * @param vertx vertx
+     * @param config the module configuration
+     * @param redisClients the pool of redis clients. Must contain at least one client
+     */
+    public RedisStorage(Vertx vertx, ModuleConfiguration config, List<RedisClient> redisClients) {
+        this(vertx, config, redisClients, NOTIFICATION_ADDRESS_PREFIX + UUID.randomUUID().toString());
+    }
+
+    private RedisStorage(Vertx vertx, ModuleConfiguration config, List<RedisClient> redisClients, String notificationAddress) {
+        this(vertx, config, redisClients,
+                config.isNearCacheEnabled() || config.isNativeExpiryEnabled()
+                        ? createNotificationSubscriber(vertx, config, notificationAddress) : null,
+                notificationAddress);
+    }
+
+    /**
+     * @param notificationSubscriber the redis client receiving the keyspace notifications for the near cache and the
+     *                               native expiry. Only used when one of them is enabled
+     * @param notificationAddress the event bus address the subscriber publishes the received messages to
+     */
+    RedisStorage(Vertx vertx, ModuleConfiguration config, List<RedisClient> redisClients,
+                 RedisClient notificationSubscriber, String notificationAddress) {
+        if (redisClients == null || redisClients.isEmpty()) {
+            throw new IllegalArgumentException("At least one redis client is required");
+        }
         this.expirableSet = config.getExpirablePrefix();
+        this.expirableBuckets = Math.max(1, config.getExpirableBuckets());
+        this.nativeExpiry = config.isNativeExpiryEnabled();
         this.redisResourcesPrefix = config.getResourcesPrefix();
         this.redisCollectionsPrefix = config.getCollectionsPrefix();
+        this.redisCollectionMarkersPrefix = config.getCollectionMarkersPrefix();
         this.redisDeltaResourcesPrefix = config.getDeltaResourcesPrefix();
         this.redisDeltaEtagsPrefix = config.getDeltaEtagsPrefix();
         this.cleanupResourcesAmount = config.getResourceCleanupAmount();
+        this.collectionStreamChunkSize = Math.max(1, config.getCollectionStreamChunkSize());
+        this.storageExpandMaxMembers = config.getStorageExpandMaxMembers();
+        this.storageExpandMaxSize = config.getStorageExpandMaxSize();
+        this.compressionWorkerPoolSize = Math.max(1, config.getCompressionWorkerPoolSize());
+        this.compressionQueueSize = Math.max(0, config.getCompressionQueueSize());
+        this.adaptiveCompression = config.getCompressionPolicy() == ModuleConfiguration.CompressionPolicy.adaptive;
+        this.compressionAdvisor = CompressionAdvisor.of(config);
         this.redisLockPrefix = config.getLockPrefix();
+        this.asyncDeleteThreshold = Math.max(0, config.getAsyncDeleteThreshold());
+        this.purgingKey = asyncDeleteThreshold > 0 ? config.getAsyncDeleteKey() : EMPTY;
+        this.batchChunkSize = Math.max(1, config.getBatchChunkSize());
+        this.workerMergeEnabled = config.isWorkerMergeEnabled();
+        this.workerMergeMaxRetries = Math.max(0, config.getWorkerMergeMaxRetries());
 
         this.vertx = vertx;
-        this.redisClient = redisClient;
+        this.redisClients = new ArrayList<>(redisClients);
+        this.redisPoolStrategy = config.getRedisPoolStrategy();
 
         this.decimalFormat = new DecimalFormat();
         this.decimalFormat.setMaximumFractionDigits(1);
 
-        // load all the lua scripts
-        LuaScriptState luaGetScriptState = new LuaScriptState(LuaScript.GET, false);
-        luaGetScriptState.loadLuaScript(new RedisCommandDoNothing(), 0);
-        luaScripts.put(LuaScript.GET, luaGetScriptState);
-
-        LuaScriptState luaStorageExpandScriptState = new LuaScriptState(LuaScript.STORAGE_EXPAND, false);
-        luaStorageExpandScriptState.loadLuaScript(new RedisCommandDoNothing(), 0);
-        luaScripts.put(LuaScript.STORAGE_EXPAND, luaStorageExpandScriptState);
-
-        LuaScriptState luaPutScriptState = new LuaScriptState(LuaScript.PUT, false);
-        luaPutScriptState.loadLuaScript(new RedisCommandDoNothing(), 0);
-        luaScripts.put(LuaScript.PUT, luaPutScriptState);
-
-        LuaScriptState luaDeleteScriptState = new LuaScriptState(LuaScript.DELETE, false);
-        luaDeleteScriptState.loadLuaScript(new RedisCommandDoNothing(), 0);
-        luaScripts.put(LuaScript.DELETE, luaDeleteScriptState);
+        // load all the lua scripts. Every pooled connection checks (and if needed loads) the scripts,
+        // so each connection is established and ready before the first request arrives
+        for (LuaScript luaScript : LuaScript.values()) {
+            LuaScriptState luaScriptState = new LuaScriptState(luaScript, false);
+            for (RedisClient client : this.redisClients) {
+                luaScriptState.loadLuaScript(client, new RedisCommandDoNothing(), 0);
+            }
+            luaScripts.put(luaScript, luaScriptState);
+        }
 
-        LuaScriptState luaCleanupScriptState = new LuaScriptState(LuaScript.CLEANUP, false);
-        luaCleanupScriptState.loadLuaScript(new RedisCommandDoNothing(), 0);
-        luaScripts.put(LuaScript.CLEANUP, luaCleanupScriptState);
+        if(config.isRedisBatchingEnabled()){
+            this.getCoalescer = new GetCoalescer(config.getRedisBatchWindowMs(), config.getRedisBatchMaxSize());
+        }
 
         if(config.isRejectStorageWriteOnLowMemory()){
             calculateCurrentMemoryUsage().setHandler(optionalAsyncResult -> {
@@ -101,6 +186,234 @@ public class RedisStorage implements Storage {
             });
             startPeriodicMemoryUsageUpdate(config.getFreeMemoryCheckIntervalMs());
         }
+
+        if(config.isNearCacheEnabled()){
+            this.nearCache = new NearCache(config.getNearCacheMaxSize(), config.getNearCacheMaxResourceSize(),
+                    config.getNearCacheMaxAgeMs());
+            startNearCacheInvalidation(notificationSubscriber, notificationAddress, config.getNearCacheMaxAgeMs());
+        }
+
+        if(config.isCleanupLeaseEnabled()){
+            this.cleanupLease = new CleanupLease(config.getCleanupLeaseKey(), config.getCleanupLeaseMs());
+            this.cleanupLease.start();
+        }
+
+        if(nativeExpiry){
+            startExpiryRepair(notificationSubscriber, notificationAddress);
+        }
+
+        if(config.isBackgroundExpiryEnabled()){
+            this.backgroundExpiry = new BackgroundExpiry(config.getBackgroundExpiryIntervalMs(),
+                    config.getBackgroundExpiryTimeBudgetMs(), config.getBackgroundExpiryBatchMs(),
+                    config.getBackgroundExpiryMaxLatencyMs());
+            this.backgroundExpiry.schedule();
+        }
+
+        if(asyncDeleteThreshold > 0){
+            this.purger = new Purger(Math.max(1, config.getAsyncDeleteBatchSize()));
+            this.purger.schedule(PURGE_IDLE_INTERVAL_MS);
+        }
+    }
+
+    private static List<RedisClient> createRedisClients(Vertx vertx, ModuleConfiguration config) {
+        int poolSize = Math.max(1, config.getRedisPoolSize());
+        List<RedisClient> clients = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            clients.add(RedisClient.create(vertx, new RedisOptions()
+                    .setHost(config.getRedisHost())
+                    .setPort(config.getRedisPort())
+                    .setAuth(config.getRedisAuth())
+            ));
+        }
+        return clients;
+    }
+
+    /**
+     * Creates the dedicated redis client for the subscription to the keyspace notifications. A subscribed connection
+     * cannot execute other commands, so the pooled clients cannot be used.
+     */
+    private static RedisClient createNotificationSubscriber(Vertx vertx, ModuleConfiguration config, String address) {
+        return RedisClient.create(vertx, new RedisOptions()
+                .setHost(config.getRedisHost())
+                .setPort(config.getRedisPort())
+                .setAuth(config.getRedisAuth())
+                .setAddress(address)
+        );
+    }
+
+    /**
+     * Invalidates the near cache on every change of a resource hash, reported by the keyspace notifications of redis.
+     * The subscription is renewed periodically. As long as the subscription (or the check of the redis configuration)
+     * fails, the near cache is inactive and every request goes to redis.
+     */
+    private void startNearCacheInvalidation(RedisClient subscriber, String address, long maxAgeMs) {
+        String pattern = "__keyspace@*__:" + redisResourcesPrefix + "*";
+        vertx.eventBus().<JsonObject>consumer(address + "." + pattern, message -> {
+            JsonObject value = message.body().getJsonObject("value");
+            String channel = value == null ? null : value.getString("channel");
+            if (channel == null) {
+                return;
+            }
+            String redisKey = channel.substring(channel.indexOf("__:") + 3);
+            if (redisKey.startsWith(redisResourcesPrefix)) {
+                nearCache.invalidate(redisKey.substring(redisResourcesPrefix.length()));
+            }
+        });
+        subscribeNearCacheInvalidation(subscriber, pattern);
+        vertx.setPeriodic(Math.max(1000, maxAgeMs), id -> subscribeNearCacheInvalidation(subscriber, pattern));
+    }
+
+    private void subscribeNearCacheInvalidation(RedisClient subscriber, String pattern) {
+        redisClient().configGet("notify-keyspace-events", configResult -> {
+            if (configResult.succeeded()) {
+                String flags = configResult.result().size() > 1 ? configResult.result().getString(1) : "";
+                if (!flags.contains("K") || !(flags.contains("A") || (flags.contains("g") && flags.contains("h")))) {
+                    log.warn("Near cache is inactive. Redis is configured with notify-keyspace-events '" + flags
+                            + "', at least 'Khg' is required");
+                    nearCache.setActive(false);
+                    return;
+                }
+            } else {
+                log.warn("Unable to check the notify-keyspace-events configuration of redis: "
+                        + configResult.cause().getMessage());
+            }
+            subscriber.psubscribe(pattern, subscribeResult -> {
+                if (subscribeResult.succeeded()) {
+                    if (!nearCache.isActive()) {
+                        log.info("Near cache is active, listening to " + pattern);
+                    }
+                    nearCache.setActive(true);
+                } else {
+                    log.warn("Near cache is inactive. Unable to subscribe to " + pattern + ": "
+                            + subscribeResult.cause().getMessage());
+                    nearCache.setActive(false);
+                }
+            });
+        });
+    }
+
+    /**
+     * Removes the resources expired by redis (see {@link ModuleConfiguration#isNativeExpiryEnabled()}) from their parent
+     * collections, on every expired event reported by the keyspace notifications. With the cleanup lease enabled, only
+     * the leader repairs. Events missed while the subscription is down leave the names of the expired resources in
+     * their collections, where they are not listed since their score is expired.
+     */
+    private void startExpiryRepair(RedisClient subscriber, String address) {
+        String pattern = "__keyevent@*__:expired";
+        vertx.eventBus().<JsonObject>consumer(address + "." + pattern, message -> {
+            JsonObject value = message.body().getJsonObject("value");
+            String redisKey = value == null ? null : value.getString("message");
+            if (redisKey == null || !redisKey.startsWith(redisResourcesPrefix)) {
+                return;
+            }
+            if (cleanupLease != null && !cleanupLease.isLeading()) {
+                return;
+            }
+            List<String> keys = Collections.singletonList(redisKey.substring(redisResourcesPrefix.length()));
+            List<String> arguments = Arrays.asList(
+                    redisResourcesPrefix,
+                    redisCollectionsPrefix,
+                    redisDeltaResourcesPrefix,
+                    redisDeltaEtagsPrefix,
+                    expirableSet,
+                    String.valueOf(expirableBuckets),
+                    redisCollectionMarkersPrefix
+            );
+            reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.EXPIRED, new ExpiryRepair(keys, arguments), 0);
+        });
+        subscribeExpiryRepair(subscriber, pattern);
+        vertx.setPeriodic(EXPIRY_REPAIR_SUBSCRIBE_INTERVAL_MS, id -> subscribeExpiryRepair(subscriber, pattern));
+    }
+
+    private void subscribeExpiryRepair(RedisClient subscriber, String pattern) {
+        redisClient().configGet("notify-keyspace-events", configResult -> {
+            if (configResult.succeeded()) {
+                String flags = configResult.result().size() > 1 ? configResult.result().getString(1) : "";
+                if (!flags.contains("E") || !(flags.contains("A") || flags.contains("x"))) {
+                    if (expiryRepairActive) {
+                        log.warn("Expired resources are not removed from their collections. Redis is configured with "
+                                + "notify-keyspace-events '" + flags + "', at least 'Ex' is required");
+                    }
+                    expiryRepairActive = false;
+                    return;
+                }
+            }
+            subscriber.psubscribe(pattern, subscribeResult -> {
+                if (subscribeResult.succeeded()) {
+                    if (!expiryRepairActive) {
+                        log.info("Expired resources are removed from their collections, listening to " + pattern);
+                    }
+                    expiryRepairActive = true;
+                } else {
+                    log.warn("Unable to subscribe to " + pattern + ": " + subscribeResult.cause().getMessage());
+                    expiryRepairActive = false;
+                }
+            });
+        });
+    }
+
+    /**
+     * The ExpiryRepair Command Execution.
+     * If the expired script cannot be found under the sha in luaScriptState, reload the script.
+     * To avoid infinite recursion, we limit the recursion.
+     */
+    private class ExpiryRepair implements RedisCommand {
+
+        private List<String> keys;
+        private List<String> arguments;
+
+        public ExpiryRepair(List<String> keys, List<String> arguments) {
+            this.keys = keys;
+            this.arguments = arguments;
+        }
+
+        public void exec(final int executionCounter) {
+            redisClient(keys.get(0)).evalsha(luaScripts.get(LuaScript.EXPIRED).getSha(), keys, arguments, event -> {
+                if (event.succeeded()) {
+                    expiryRepairs++;
+                    // the number of removed collection members, 0 when the resource was written again
+                    Object removed = event.result().getValue(0);
+                    if (removed instanceof Number) {
+                        expiryRepairedMembers += ((Number) removed).longValue();
+                    }
+                } else {
+                    String message = event.cause().getMessage();
+                    if (message != null && message.startsWith("NOSCRIPT") && executionCounter <= 10) {
+                        luaScripts.get(LuaScript.EXPIRED).loadLuaScript(new ExpiryRepair(keys, arguments), executionCounter);
+                    } else {
+                        log.warn("Removal of the expired resource " + keys.get(0) + " from its collections failed: " + message);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets the next redis client of the pool in round-robin order. Used for commands without path affinity.
+     *
+     * @return a redis client of the pool
+     */
+    private RedisClient redisClient() {
+        if (redisClients.size() == 1) {
+            return redisClients.get(0);
+        }
+        roundRobinIndex = (roundRobinIndex + 1) % redisClients.size();
+        return redisClients.get(roundRobinIndex);
+    }
+
+    /**
+     * Gets the redis client of the pool to execute a command on the provided key. With the
+     * {@link ModuleConfiguration.RedisPoolStrategy#pathHash} strategy, all commands on the same key use the same
+     * connection and therefore keep their order.
+     *
+     * @param key the (encoded) key of the command
+     * @return a redis client of the pool
+     */
+    private RedisClient redisClient(String key) {
+        if (redisPoolStrategy == ModuleConfiguration.RedisPoolStrategy.pathHash && redisClients.size() > 1) {
+            return redisClients.get(Math.floorMod(key.hashCode(), redisClients.size()));
+        }
+        return redisClient();
     }
 
     private void startPeriodicMemoryUsageUpdate(long intervalMs){
@@ -113,7 +426,7 @@ public class RedisStorage implements Storage {
 
     public Future<Optional<Float>> calculateCurrentMemoryUsage(){
         Future<Optional<Float>> future = Future.future();
-        redisClient.infoSection("memory", memoryInfo -> {
+        redisClient().infoSection("memory", memoryInfo -> {
             if (memoryInfo.failed()) {
                 log.error("Unable to get memory information from redis", memoryInfo.cause());
                 future.complete(Optional.empty());
@@ -166,8 +479,13 @@ public class RedisStorage implements Storage {
         log.warn("No or invalid '"+property+"' value received from redis. Unable to calculate the current memory usage. Exception: " + ex.toString());
     }
 
+    private static final String COMMON_LUA_FILE = "common.lua";
+
     private enum LuaScript {
-        GET("get.lua"), STORAGE_EXPAND("storageExpand.lua"), PUT("put.lua"), DELETE("del.lua"), CLEANUP("cleanup.lua");
+        GET("get.lua"), STORAGE_EXPAND("storageExpand.lua"), PUT("put.lua"), DELETE("del.lua"), CLEANUP("cleanup.lua"),
+        LIST("list.lua"), HEAD("head.lua"), LEASE("lease.lua"), MIGRATE_EXPIRABLE("migrateExpirable.lua"),
+        EXPIRED("expired.lua"), PURGE("purge.lua"), BATCH("batch.lua"),
+        MULTI_GET("multiget.lua");
 
         private String file;
 
@@ -197,7 +515,6 @@ public class RedisStorage implements Storage {
             this.luaScriptType = luaScriptType;
             this.logoutput = logoutput;
             this.composeLuaScript(luaScriptType);
-            this.loadLuaScript(new RedisCommandDoNothing(), 0);
         }
 
         /**
@@ -213,17 +530,48 @@ public class RedisStorage implements Storage {
             // we have to comment the return, so that the cleanup script doesn't terminate
             if(LuaScript.CLEANUP.equals(luaScriptType)) {
                 Map<String, String> values = new HashMap<>();
-                values.put("delscript", readLuaScriptFromClasspath(LuaScript.DELETE).replaceAll("return", "--return"));
+                // the shared functions are included afterwards, they keep their returns
+                values.put("delscript", includeCommon(readLuaFileFromClasspath(LuaScript.DELETE.getFile())
+                        .replaceAll("return", "--return")));
                 StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
                 this.script = sub.replace(readLuaScriptFromClasspath(LuaScript.CLEANUP));
+            } else if(LuaScript.BATCH.equals(luaScriptType)) {
+                // the batch script calls the put and delete scripts as functions, their returns are kept
+                Map<String, String> values = new HashMap<>();
+                values.put("putscript", readLuaScriptFromClasspath(LuaScript.PUT));
+                values.put("delscript", readLuaScriptFromClasspath(LuaScript.DELETE));
+                StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
+                this.script = sub.replace(readLuaScriptFromClasspath(LuaScript.BATCH));
+            } else if(LuaScript.MULTI_GET.equals(luaScriptType)) {
+                Map<String, String> values = new HashMap<>();
+                values.put("getscript", readLuaScriptFromClasspath(LuaScript.GET));
+                StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
+                this.script = sub.replace(readLuaScriptFromClasspath(LuaScript.MULTI_GET));
             } else {
                 this.script = readLuaScriptFromClasspath(luaScriptType);
             }
             this.sha = DigestUtils.sha1Hex(this.script);
         }
 
+        /**
+         * Reads the script from the classpath with the functions shared by the scripts included.
+         */
         private String readLuaScriptFromClasspath(LuaScript luaScriptType) {
-            BufferedReader in = new BufferedReader(new InputStreamReader(this.getClass().getClassLoader().getResourceAsStream(luaScriptType.getFile())));
+            return includeCommon(readLuaFileFromClasspath(luaScriptType.getFile()));
+        }
+
+        /**
+         * Includes the functions shared by the scripts (common.lua) at the --%(common) placeholder of the script.
+         */
+        private String includeCommon(String script) {
+            Map<String, String> values = new HashMap<>();
+            values.put("common", readLuaFileFromClasspath(COMMON_LUA_FILE));
+            StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
+            return sub.replace(script);
+        }
+
+        private String readLuaFileFromClasspath(String file) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(this.getClass().getClassLoader().getResourceAsStream(file)));
             StringBuilder sb;
             try {
                 sb = new StringBuilder();
@@ -260,10 +608,20 @@ public class RedisStorage implements Storage {
          * @param executionCounter a counter to control recursion depth
          */
         public void loadLuaScript(final RedisCommand redisCommand, int executionCounter) {
+            loadLuaScript(redisClient(), redisCommand, executionCounter);
+        }
+
+        /**
+         * Load the get script into redis over the provided redis client and store the sha in the class member sha.
+         * @param client the redis client (connection) to load the script with
+         * @param redisCommand the redis command that should be executed, after the script is loaded.
+         * @param executionCounter a counter to control recursion depth
+         */
+        public void loadLuaScript(RedisClient client, final RedisCommand redisCommand, int executionCounter) {
             final int executionCounterIncr = ++executionCounter;
 
             // check first if the lua script already exists in the store
-            redisClient.scriptExists(this.sha, resultArray -> {
+            client.scriptExists(this.sha, resultArray -> {
                 if(resultArray.failed()){
                     log.error("Error checking whether lua script exists", resultArray.cause());
                     return;
@@ -275,7 +633,7 @@ public class RedisStorage implements Storage {
                     redisCommand.exec(executionCounterIncr);
                 } else {
                     log.info("load lua script for script type: " + luaScriptType + " logutput: " + logoutput);
-                    redisClient.scriptLoad(script, stringAsyncResult -> {
+                    client.scriptLoad(script, stringAsyncResult -> {
                         String newSha = stringAsyncResult.result();
                         log.info("got sha from redis for lua script: " + luaScriptType + ": " + newSha);
                         if(!newSha.equals(sha)) {
@@ -331,6 +689,125 @@ public class RedisStorage implements Storage {
         }
     }
 
+    /**
+     * Coalesces the gets issued within one event-loop tick (or within a configurable time window) into a single call
+     * of the multi-get script, so a burst of gets costs one round trip to redis instead of one per get. Every get
+     * keeps its own arguments and receives its own result. A batch is flushed early when it reaches the configured
+     * maximum size. When the multi-get fails, the gets of the batch are executed one by one, which is safe as they
+     * do not modify anything.
+     */
+    private class GetCoalescer {
+
+        private final long windowMs;
+        private final int maxSize;
+        private List<Get> pending = new ArrayList<>();
+        private boolean flushScheduled = false;
+        private long timerId = -1;
+
+        private long batchCount = 0;
+        private long batchedCommandsCount = 0;
+        private int maxBatchSize = 0;
+        // batchSizeHistogram[i] counts the batches with a size up to 2^i
+        private final long[] batchSizeHistogram = new long[32];
+
+        private GetCoalescer(long windowMs, int maxSize) {
+            this.windowMs = windowMs;
+            this.maxSize = maxSize < 1 ? 1 : maxSize;
+        }
+
+        void enqueue(Get get) {
+            pending.add(get);
+            if (pending.size() >= maxSize) {
+                flush();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                if (windowMs > 0) {
+                    timerId = vertx.setTimer(windowMs, id -> {
+                        timerId = -1;
+                        flush();
+                    });
+                } else {
+                    vertx.runOnContext(v -> flush());
+                }
+            }
+        }
+
+        private void flush() {
+            if (timerId != -1) {
+                vertx.cancelTimer(timerId);
+                timerId = -1;
+            }
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            final List<Get> gets = pending;
+            pending = new ArrayList<>();
+            record(gets.size());
+            if (log.isTraceEnabled()) {
+                log.trace("RedisStorage flush batch of " + gets.size() + " gets");
+            }
+            if (gets.size() == 1) {
+                reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.GET, gets.get(0), 0);
+                return;
+            }
+
+            final List<String> keys = new ArrayList<>();
+            final List<String> arguments = new ArrayList<>(gets.get(0).arguments);
+            arguments.set(3, String.valueOf(System.currentTimeMillis()));
+            arguments.set(7, EMPTY);
+            for (Get get : gets) {
+                keys.add(get.keys.get(0));
+                arguments.add(get.arguments.get(5));
+                arguments.add(get.arguments.get(6));
+                String etag = get.arguments.get(7);
+                arguments.add(etag == null ? EMPTY : etag);
+            }
+            reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.MULTI_GET, new MultiGet(keys, arguments, values -> {
+                for (int i = 0; i < gets.size(); i++) {
+                    Get get = gets.get(i);
+                    Object value = values == null ? null : values.getValue(i);
+                    if (value instanceof JsonArray) {
+                        get.handleValues((JsonArray) value);
+                    } else if (value != null) {
+                        get.handleValues(new JsonArray().add(value));
+                    } else {
+                        get.exec(0);
+                    }
+                }
+            }), 0);
+        }
+
+        private void record(int batchSize) {
+            batchCount++;
+            batchedCommandsCount += batchSize;
+            if (batchSize > maxBatchSize) {
+                maxBatchSize = batchSize;
+            }
+            int bucket = 0;
+            while ((1 << bucket) < batchSize) {
+                bucket++;
+            }
+            batchSizeHistogram[bucket]++;
+        }
+
+        JsonObject statistics() {
+            JsonObject histogram = new JsonObject();
+            for (int i = 0; i < batchSizeHistogram.length; i++) {
+                if (batchSizeHistogram[i] > 0) {
+                    histogram.put(String.valueOf(1 << i), batchSizeHistogram[i]);
+                }
+            }
+            JsonObject stats = new JsonObject();
+            stats.put("batches", batchCount);
+            stats.put("batchedCommands", batchedCommandsCount);
+            stats.put("averageBatchSize", batchCount == 0 ? 0.0 : (double) batchedCommandsCount / batchCount);
+            stats.put("maxBatchSize", maxBatchSize);
+            stats.put("batchSizes", histogram);
+            return stats;
+        }
+    }
+
     /**
      * If the loglevel is trace and the logoutput in luaScriptState is false, then reload the script with logoutput and execute the RedisCommand.
      * If the loglevel is not trace and the logoutput in luaScriptState is true, then reload the script without logoutput and execute the RedisCommand.
@@ -358,71 +835,6 @@ public class RedisStorage implements Storage {
         luaScriptState.loadLuaScript(redisCommand, executionCounter);
     }
 
-    public class ByteArrayReadStream implements ReadStream<Buffer> {
-
-        ByteArrayInputStream content;
-        int size;
-        boolean paused;
-        int position;
-        Handler<Void> endHandler;
-        Handler<Buffer> handler;
-
-        public ByteArrayReadStream(byte[] byteArray) {
-            size = byteArray.length;
-            content = new ByteArrayInputStream(byteArray);
-        }
-
-        private void doRead() {
-            vertx.runOnContext(v -> {
-                if (!paused) {
-                    if (position < size) {
-                        int toRead = 8192;
-                        if (position + toRead > size) {
-                            toRead = size - position;
-                        }
-                        byte[] bytes = new byte[toRead];
-                        content.read(bytes, 0, toRead);
-                        handler.handle(Buffer.buffer(bytes));
-                        position += toRead;
-                        doRead();
-                    } else {
-                        endHandler.handle(null);
-                    }
-                }
-            });
-        }
-
-        public ByteArrayReadStream resume() {
-            paused = false;
-            doRead();
-            return this;
-        }
-
-        @Override
-        public ByteArrayReadStream pause() {
-            paused = true;
-            return this;
-        }
-
-        @Override
-        public ByteArrayReadStream exceptionHandler(Handler<Throwable> handler) {
-            return this;
-        }
-
-        @Override
-        public ReadStream<Buffer> handler(Handler<Buffer> handler) {
-            this.handler = handler;
-            doRead();
-            return this;
-        }
-
-        @Override
-        public ByteArrayReadStream endHandler(Handler<Void> endHandler) {
-            this.endHandler = endHandler;
-            return this;
-        }
-    }
-
     @Override
     public Optional<Float> getCurrentMemoryUsage() {
         return currentMemoryUsageOptional;
@@ -430,7 +842,27 @@ public class RedisStorage implements Storage {
 
     @Override
     public void get(String path, String etag, int offset, int limit, final Handler<Resource> handler) {
+        get(path, etag, offset, limit, false, handler);
+    }
+
+    /**
+     * With acceptGzip, resources stored compressed are returned without decompressing them. They are not added to the
+     * near cache then, which holds decompressed content only.
+     */
+    @Override
+    public void get(String path, String etag, int offset, int limit, boolean acceptGzip, final Handler<Resource> handler) {
         final String key = encodePath(path);
+        if (nearCache != null) {
+            NearCache.Entry cached = nearCache.get(key, System.currentTimeMillis());
+            if (cached != null) {
+                if (!isEmpty(etag) && etag.equals(cached.etag)) {
+                    notModified(handler);
+                } else {
+                    handler.handle(documentResource(cached.content, cached.etag));
+                }
+                return;
+            }
+        }
         List<String> keys = Collections.singletonList(key);
         List<String> arguments = Arrays.asList(
                 redisResourcesPrefix,
@@ -440,9 +872,19 @@ public class RedisStorage implements Storage {
                 MAX_EXPIRE_IN_MILLIS,
                 String.valueOf(offset),
                 String.valueOf(limit),
-                etag
+                etag,
+                redisCollectionMarkersPrefix,
+                String.valueOf(expirableBuckets),
+                String.valueOf(nativeExpiry),
+                purgingKey
         );
-        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.GET, new Get(keys, arguments, handler), 0);
+        long nearCacheVersion = nearCache != null ? nearCache.version() : -1;
+        Get getCommand = new Get(keys, arguments, nearCacheVersion, acceptGzip, handler);
+        if(getCoalescer != null) {
+            getCoalescer.enqueue(getCommand);
+        } else {
+            reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.GET, getCommand, 0);
+        }
     }
 
     /**
@@ -454,28 +896,22 @@ public class RedisStorage implements Storage {
 
         private List<String> keys;
         private List<String> arguments;
+        private long nearCacheVersion;
+        private boolean acceptGzip;
         private Handler<Resource> handler;
 
-        public Get(List<String> keys, List<String> arguments, final Handler<Resource> handler) {
+        public Get(List<String> keys, List<String> arguments, long nearCacheVersion, boolean acceptGzip, final Handler<Resource> handler) {
             this.keys = keys;
             this.arguments = arguments;
+            this.nearCacheVersion = nearCacheVersion;
+            this.acceptGzip = acceptGzip;
             this.handler = handler;
         }
 
         public void exec(final int executionCounter) {
-            redisClient.evalsha(luaScripts.get(LuaScript.GET).getSha(), keys, arguments, event -> {
+            redisClient(keys.get(0)).evalsha(luaScripts.get(LuaScript.GET).getSha(), keys, arguments, event -> {
                 if(event.succeeded()){
-                    JsonArray values = event.result();
-                    if (log.isTraceEnabled()) {
-                        log.trace("RedisStorage get result: " + values);
-                    }
-                    if("notModified".equals(values.getString(0))){
-                        notModified(handler);
-                    } else if ("notFound".equals(values.getString(0))) {
-                        notFound(handler);
-                    } else {
-                        handleJsonArrayValues(values, handler, "0".equals(arguments.get(5)) && "-1".equals(arguments.get(6)));
-                    }
+                    handleValues(event.result());
                 } else {
                     String message = event.cause().getMessage();
                     if(message != null && message.startsWith("NOSCRIPT")) {
@@ -484,7 +920,7 @@ public class RedisStorage implements Storage {
                         if(executionCounter > 10) {
                             log.error("amount the script got loaded is higher than 10, we abort");
                         } else {
-                            luaScripts.get(LuaScript.GET).loadLuaScript(new Get(keys, arguments, handler), executionCounter);
+                            luaScripts.get(LuaScript.GET).loadLuaScript(new Get(keys, arguments, nearCacheVersion, acceptGzip, handler), executionCounter);
                         }
                     } else {
                         log.error("GET request failed with message: " + message);
@@ -492,93 +928,513 @@ public class RedisStorage implements Storage {
                 }
             });
         }
+
+        /**
+         * Handles the result of the get script, also when the get was executed as part of a coalesced multi-get.
+         */
+        void handleValues(JsonArray values) {
+            if (log.isTraceEnabled()) {
+                log.trace("RedisStorage get result: " + values);
+            }
+            if("notModified".equals(values.getString(0))){
+                notModified(handler);
+            } else if ("notFound".equals(values.getString(0))) {
+                notFound(handler);
+            } else if (acceptGzip && "TYPE_RESOURCE".equals(values.getString(0)) && !values.hasNull(3)) {
+                DocumentResource r = documentResource(decodeBinary(values.getString(1)), values.getString(2));
+                r.contentEncoding = "gzip";
+                handler.handle(r);
+            } else {
+                handleJsonArrayValues(values, keys.get(0), nearCacheVersion, handler,
+                        "0".equals(arguments.get(5)) && "-1".equals(arguments.get(6)));
+            }
+        }
     }
 
+    /**
+     * Gets the resources held by the near cache from the cache and all others in chunks of
+     * {@link ModuleConfiguration#getBatchChunkSize()} resources, every chunk with a single call of the multi-get script.
+     * The content of resources matching the provided etag is not transferred.
+     */
     @Override
-    public void storageExpand(String path, String etag, List<String> subResources, Handler<Resource> handler) {
-        final String key = encodePath(path);
-        List<String> keys = Collections.singletonList(key);
-        List<String> arguments = Arrays.asList(
+    public void multiGet(List<String> paths, List<String> etags, Handler<List<Resource>> handler) {
+        final Resource[] results = new Resource[paths.size()];
+        final List<Integer> uncached = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            String etag = etags.get(i);
+            NearCache.Entry cached = nearCache != null ? nearCache.get(encodePath(paths.get(i)), System.currentTimeMillis()) : null;
+            if (cached == null) {
+                uncached.add(i);
+            } else if (!isEmpty(etag) && etag.equals(cached.etag)) {
+                final int index = i;
+                notModified(resource -> results[index] = resource);
+            } else {
+                results[i] = documentResource(cached.content, cached.etag);
+            }
+        }
+        executeMultiGetChunk(paths, etags, uncached, 0, results, handler);
+    }
+
+    private void executeMultiGetChunk(List<String> paths, List<String> etags, List<Integer> indexes, int from,
+                                      Resource[] results, Handler<List<Resource>> handler) {
+        if (from >= indexes.size()) {
+            handler.handle(Arrays.asList(results));
+            return;
+        }
+        final int to = Math.min(indexes.size(), from + batchChunkSize);
+        final List<Integer> chunk = indexes.subList(from, to);
+        final List<String> keys = new ArrayList<>();
+        final List<String> arguments = new ArrayList<>(Arrays.asList(
                 redisResourcesPrefix,
                 redisCollectionsPrefix,
                 expirableSet,
                 String.valueOf(System.currentTimeMillis()),
                 MAX_EXPIRE_IN_MILLIS,
-                StringUtils.join(subResources, ";"),
-                String.valueOf(subResources.size())
-        );
-        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.STORAGE_EXPAND, new StorageExpand(keys, arguments, handler, etag), 0);
+                "-1",
+                "-1",
+                EMPTY,
+                redisCollectionMarkersPrefix,
+                String.valueOf(expirableBuckets),
+                String.valueOf(nativeExpiry),
+                purgingKey
+        ));
+        for (int index : chunk) {
+            keys.add(encodePath(paths.get(index)));
+            String etag = etags.get(index);
+            arguments.add("-1");
+            arguments.add("-1");
+            arguments.add(etag == null ? EMPTY : etag);
+        }
+        final long nearCacheVersion = nearCache != null ? nearCache.version() : -1;
+        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.MULTI_GET, new MultiGet(keys, arguments, values -> {
+            final int[] pending = {chunk.size()};
+            for (int i = 0; i < chunk.size(); i++) {
+                final int index = chunk.get(i);
+                Handler<Resource> resultHandler = resource -> {
+                    results[index] = resource;
+                    if (--pending[0] == 0) {
+                        executeMultiGetChunk(paths, etags, indexes, to, results, handler);
+                    }
+                };
+                Object value = values == null ? null : values.getValue(i);
+                if (value instanceof JsonArray) {
+                    handleJsonArrayValues((JsonArray) value, keys.get(i), nearCacheVersion, resultHandler, false);
+                } else if ("notModified".equals(value)) {
+                    notModified(resultHandler);
+                } else if (value != null) {
+                    notFound(resultHandler);
+                } else {
+                    error(resultHandler, "Multi-get failed");
+                }
+            }
+        }), 0);
     }
 
     /**
-     * The StorageExpand Command Execution.
-     * If the get script cannot be found under the sha in luaScriptState, reload the script.
+     * The MultiGet Command Execution.
+     * If the multi-get script cannot be found under the sha in luaScriptState, reload the script.
      * To avoid infinite recursion, we limit the recursion.
      */
-    private class StorageExpand implements RedisCommand {
+    private class MultiGet implements RedisCommand {
 
         private List<String> keys;
         private List<String> arguments;
-        private Handler<Resource> handler;
-        private String etag;
+        private Handler<JsonArray> handler;
 
-        public StorageExpand(List<String> keys, List<String> arguments, final Handler<Resource> handler, String etag) {
+        /**
+         * @param handler called with the results of the get script for every key or null when the script failed
+         */
+        MultiGet(List<String> keys, List<String> arguments, Handler<JsonArray> handler) {
             this.keys = keys;
             this.arguments = arguments;
             this.handler = handler;
-            this.etag = etag;
         }
 
         public void exec(final int executionCounter) {
-            redisClient.evalsha(luaScripts.get(LuaScript.STORAGE_EXPAND).getSha(), keys, arguments, event -> {
-                if(event.succeeded()){
-                    Object value = event.result().getValue(0);
-                    if (log.isTraceEnabled()) {
-                        log.trace("RedisStorage get result: " + value);
-                    }
-                    if("compressionNotSupported".equalsIgnoreCase((String) value)){
-                        error(handler, "Collections having compressed resources are not supported in storage expand");
-                        return;
-                    }
-                    if("notFound".equalsIgnoreCase((String) value)){
-                        notFound(handler);
-                        return;
+            redisClient(keys.get(0)).evalsha(luaScripts.get(LuaScript.MULTI_GET).getSha(), keys, arguments, event -> {
+                if (event.succeeded()) {
+                    handler.handle(event.result());
+                    return;
+                }
+                String message = event.cause().getMessage();
+                if (message != null && message.startsWith("NOSCRIPT")) {
+                    log.warn("multi-get script couldn't be found, reload it");
+                    log.warn("amount the script got loaded: " + String.valueOf(executionCounter));
+                    if (executionCounter > 10) {
+                        log.error("amount the script got loaded is higher than 10, we abort");
+                        handler.handle(null);
+                    } else {
+                        luaScripts.get(LuaScript.MULTI_GET).loadLuaScript(new MultiGet(keys, arguments, handler), executionCounter);
                     }
-                    JsonObject expandResult = new JsonObject();
+                } else {
+                    log.error("Multi-get of " + keys.size() + " resources failed with message: " + message);
+                    handler.handle(null);
+                }
+            });
+        }
+    }
 
-                    JsonArray resultArr = new JsonArray((String) value);
+    @Override
+    public void head(String path, String etag, Handler<Resource> handler) {
+        head(path, etag, false, handler);
+    }
 
-                    for (Object resultEntry : resultArr) {
-                        JsonArray entries = (JsonArray) resultEntry;
-                        String subResourceName = ResourceNameUtil.resetReplacedColonsAndSemiColons(entries.getString(0));
-                        String subResourceValue = entries.getString(1);
-                        if(subResourceValue.startsWith("[") && subResourceValue.endsWith("]")){
-                            expandResult.put(subResourceName, extractSortedJsonArray(subResourceValue));
-                        } else {
-                            try {
-                                expandResult.put(subResourceName, new JsonObject(subResourceValue));
-                            }catch (DecodeException ex){
-                                invalid(handler, "Error decoding invalid json resource '" + subResourceName + "'");
-                                return;
+    /**
+     * Reads the etag and length of a resource without transferring its content. Only resources stored compressed
+     * without a length (written by an earlier version) have to be read and decompressed to determine the length.
+     * With acceptGzip, resources stored compressed are described with their stored length, like they are returned by
+     * {@link #get(String, String, int, int, boolean, Handler)}.
+     */
+    @Override
+    public void head(String path, String etag, boolean acceptGzip, Handler<Resource> handler) {
+        final String key = encodePath(path);
+        if (nearCache != null) {
+            NearCache.Entry cached = nearCache.get(key, System.currentTimeMillis());
+            if (cached != null) {
+                if (!isEmpty(etag) && etag.equals(cached.etag)) {
+                    notModified(handler);
+                } else {
+                    handler.handle(documentMetadata(cached.content.length, cached.etag));
+                }
+                return;
+            }
+        }
+        List<String> keys = Collections.singletonList(key);
+        List<String> arguments = Arrays.asList(
+                redisResourcesPrefix,
+                redisCollectionsPrefix,
+                expirableSet,
+                String.valueOf(System.currentTimeMillis()),
+                etag == null ? EMPTY : etag,
+                String.valueOf(expirableBuckets),
+                String.valueOf(nativeExpiry),
+                purgingKey,
+                String.valueOf(acceptGzip)
+        );
+        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.HEAD, new Head(path, keys, arguments, acceptGzip, handler), 0);
+    }
+
+    /**
+     * The Head Command Execution.
+     * If the head script cannot be found under the sha in luaScriptState, reload the script.
+     * To avoid infinite recursion, we limit the recursion.
+     */
+    private class Head implements RedisCommand {
+
+        private String path;
+        private List<String> keys;
+        private List<String> arguments;
+        private boolean acceptGzip;
+        private Handler<Resource> handler;
+
+        public Head(String path, List<String> keys, List<String> arguments, boolean acceptGzip, final Handler<Resource> handler) {
+            this.path = path;
+            this.keys = keys;
+            this.arguments = arguments;
+            this.acceptGzip = acceptGzip;
+            this.handler = handler;
+        }
+
+        public void exec(final int executionCounter) {
+            redisClient(keys.get(0)).evalsha(luaScripts.get(LuaScript.HEAD).getSha(), keys, arguments, event -> {
+                if(event.succeeded()){
+                    JsonArray values = event.result();
+                    if (log.isTraceEnabled()) {
+                        log.trace("RedisStorage head result: " + values);
+                    }
+                    String type = values.getString(0);
+                    if("notModified".equals(type)){
+                        notModified(handler);
+                    } else if ("TYPE_COLLECTION".equals(type)) {
+                        handler.handle(new CollectionResource());
+                    } else if (!"TYPE_RESOURCE".equals(type)) {
+                        notFound(handler);
+                    } else if (acceptGzip && !values.hasNull(2)) {
+                        // the script returns the stored length of compressed resources
+                        DocumentResource r = documentMetadata(Long.parseLong(values.getString(3)), values.getString(1));
+                        r.contentEncoding = "gzip";
+                        handler.handle(r);
+                    } else if (values.size() > 3 && !values.hasNull(3)) {
+                        handler.handle(documentMetadata(Long.parseLong(values.getString(3)), values.getString(1)));
+                    } else {
+                        get(path, null, 0, -1, resource -> {
+                            if (resource instanceof DocumentResource && resource.exists && !resource.error) {
+                                DocumentResource d = (DocumentResource) resource;
+                                handler.handle(documentMetadata(d.length, d.etag));
+                            } else {
+                                handler.handle(resource);
                             }
+                        });
+                    }
+                } else {
+                    String message = event.cause().getMessage();
+                    if(message != null && message.startsWith("NOSCRIPT")) {
+                        log.warn("head script couldn't be found, reload it");
+                        log.warn("amount the script got loaded: " + String.valueOf(executionCounter));
+                        if(executionCounter > 10) {
+                            log.error("amount the script got loaded is higher than 10, we abort");
+                            error(handler, "HEAD request failed, the head script could not be loaded");
+                        } else {
+                            luaScripts.get(LuaScript.HEAD).loadLuaScript(new Head(path, keys, arguments, acceptGzip, handler), executionCounter);
                         }
+                    } else {
+                        log.error("HEAD request failed with message: " + message);
+                        error(handler, message);
                     }
+                }
+            });
+        }
+    }
 
-                    byte[] finalExpandedContent = decodeBinary(expandResult.encode());
-                    String calcDigest = DigestUtils.sha1Hex(finalExpandedContent);
+    @Override
+    public void streamCollection(String path, Handler<Resource> handler) {
+        final CollectionChunkFetcher chunkFetcher = new CollectionChunkFetcher(encodePath(path));
+        chunkFetcher.fetchNextChunk(event -> {
+            if (event.failed()) {
+                error(handler, "Error while listing collection: " + event.cause().getMessage());
+            } else if (event.result() == null) {
+                notFound(handler);
+            } else {
+                chunkFetcher.preloaded = event.result();
+                CollectionResource r = new CollectionResource();
+                r.itemStream = new CollectionItemStream(chunkFetcher);
+                handler.handle(r);
+            }
+        });
+    }
 
-                    if(calcDigest.equals(etag)){
-                        notModified(handler);
+    @Override
+    public void list(String path, String after, int count, Handler<Resource> handler) {
+        String afterMember = EMPTY;
+        String afterScore = EMPTY;
+        try {
+            String position = ContinuationToken.decode(after);
+            if (position != null) {
+                int separator = position.indexOf(':');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("missing separator");
+                }
+                afterScore = position.substring(0, separator);
+                Double.parseDouble(afterScore); // the score of the cursor member, must be a number
+                afterMember = position.substring(separator + 1);
+            }
+        } catch (IllegalArgumentException ex) {
+            invalid(handler, "Invalid continuation token '" + after + "'");
+            return;
+        }
+        listChunk(encodePath(path), afterMember, afterScore, count, event -> {
+            if (event.failed()) {
+                error(handler, "Error while listing collection: " + event.cause().getMessage());
+                return;
+            }
+            JsonArray values = event.result();
+            if ("notFound".equals(values.getString(0))) {
+                notFound(handler);
+                return;
+            }
+            CollectionResource r = new CollectionResource();
+            r.items = new ArrayList<>(values.size() - 2);
+            for (int i = 2; i < values.size(); i++) {
+                r.items.add(collectionMember(values.getString(i)));
+            }
+            if (!values.getString(1).isEmpty()) {
+                r.next = ContinuationToken.encode(values.getString(0) + ":" + values.getString(1));
+            }
+            handler.handle(r);
+        });
+    }
+
+    /**
+     * Lists at most count members of a collection, starting after the cursor member (or at the beginning when no
+     * cursor member is provided). The result starts with the score and the name of the cursor member for the next
+     * chunk, both empty when there are no more members. Results in "notFound" when the collection does not exist.
+     */
+    private void listChunk(String key, String afterMember, String afterScore, int count, Handler<AsyncResult<JsonArray>> handler) {
+        List<String> keys = Collections.singletonList(key);
+        List<String> arguments = Arrays.asList(
+                redisCollectionsPrefix,
+                String.valueOf(System.currentTimeMillis()),
+                afterMember,
+                afterScore,
+                String.valueOf(count),
+                redisCollectionMarkersPrefix,
+                purgingKey
+        );
+        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.LIST, new ListChunk(keys, arguments, handler), 0);
+    }
+
+    /**
+     * Pages through the sorted set of a collection using the cursor member of the previous chunk. Every chunk holds
+     * at most collectionStreamChunkSize members. Chunks containing only expired members are skipped.
+     */
+    private class CollectionChunkFetcher implements CollectionItemStream.ChunkFetcher {
+
+        private final String key;
+        private String afterMember = EMPTY;
+        private String afterScore = EMPTY;
+        private boolean last = false;
+        private List<Resource> preloaded;
+
+        CollectionChunkFetcher(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Delivers <code>null</code> when the collection does not exist.
+         */
+        @Override
+        public void fetchNextChunk(Handler<AsyncResult<List<Resource>>> handler) {
+            if (preloaded != null) {
+                List<Resource> chunk = preloaded;
+                preloaded = null;
+                handler.handle(Future.succeededFuture(chunk));
+                return;
+            }
+            if (last) {
+                handler.handle(Future.succeededFuture(Collections.emptyList()));
+                return;
+            }
+            listChunk(key, afterMember, afterScore, collectionStreamChunkSize, event -> {
+                if (event.failed()) {
+                    handler.handle(Future.failedFuture(event.cause()));
+                    return;
+                }
+                JsonArray values = event.result();
+                if ("notFound".equals(values.getString(0))) {
+                    handler.handle(Future.succeededFuture(null));
+                    return;
+                }
+                afterScore = values.getString(0);
+                afterMember = values.getString(1);
+                last = afterMember.isEmpty();
+                List<Resource> chunk = new ArrayList<>(values.size() - 2);
+                for (int i = 2; i < values.size(); i++) {
+                    chunk.add(collectionMember(values.getString(i)));
+                }
+                if (chunk.isEmpty() && !last) {
+                    // only expired members in this chunk, continue with the next one
+                    fetchNextChunk(handler);
+                } else {
+                    handler.handle(Future.succeededFuture(chunk));
+                }
+            });
+        }
+    }
+
+    /**
+     * The ListChunk Command Execution.
+     * If the list script cannot be found under the sha in luaScriptState, reload the script.
+     * To avoid infinite recursion, we limit the recursion.
+     */
+    private class ListChunk implements RedisCommand {
+
+        private List<String> keys;
+        private List<String> arguments;
+        private Handler<AsyncResult<JsonArray>> handler;
+
+        public ListChunk(List<String> keys, List<String> arguments, final Handler<AsyncResult<JsonArray>> handler) {
+            this.keys = keys;
+            this.arguments = arguments;
+            this.handler = handler;
+        }
+
+        public void exec(final int executionCounter) {
+            redisClient(keys.get(0)).evalsha(luaScripts.get(LuaScript.LIST).getSha(), keys, arguments, event -> {
+                if(event.succeeded()){
+                    if (log.isTraceEnabled()) {
+                        log.trace("RedisStorage list result: " + event.result());
+                    }
+                    handler.handle(event);
+                } else {
+                    String message = event.cause().getMessage();
+                    if(message != null && message.startsWith("NOSCRIPT")) {
+                        log.warn("list script couldn't be found, reload it");
+                        log.warn("amount the script got loaded: " + String.valueOf(executionCounter));
+                        if(executionCounter > 10) {
+                            log.error("amount the script got loaded is higher than 10, we abort");
+                            handler.handle(event);
+                        } else {
+                            luaScripts.get(LuaScript.LIST).loadLuaScript(new ListChunk(keys, arguments, handler), executionCounter);
+                        }
                     } else {
-                        DocumentResource r = new DocumentResource();
-                        r.readStream = new ByteArrayReadStream(finalExpandedContent);
-                        r.length = finalExpandedContent.length;
-                        r.etag = calcDigest;
-                        r.closeHandler = event1 -> {
-                            // nothing to close
-                        };
-                        handler.handle(r);
+                        log.error("List request failed with message: " + message);
+                        handler.handle(event);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void storageExpand(String path, String etag, List<String> subResources, Handler<Resource> handler) {
+        storageExpand(path, etag, subResources, 1, handler);
+    }
+
+    @Override
+    public void storageExpand(String path, String etag, List<String> subResources, int depth, Handler<Resource> handler) {
+        final String key = encodePath(path);
+        List<String> keys = Collections.singletonList(key);
+        List<String> arguments = Arrays.asList(
+                redisResourcesPrefix,
+                redisCollectionsPrefix,
+                expirableSet,
+                String.valueOf(System.currentTimeMillis()),
+                MAX_EXPIRE_IN_MILLIS,
+                StringUtils.join(subResources, ";"),
+                String.valueOf(subResources.size()),
+                etag == null ? EMPTY : etag,
+                String.valueOf(depth),
+                String.valueOf(storageExpandMaxMembers),
+                String.valueOf(storageExpandMaxSize),
+                String.valueOf(expirableBuckets),
+                String.valueOf(nativeExpiry),
+                purgingKey
+        );
+        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.STORAGE_EXPAND, new StorageExpand(keys, arguments, handler), 0);
+    }
+
+    /**
+     * The StorageExpand Command Execution.
+     * If the get script cannot be found under the sha in luaScriptState, reload the script.
+     * To avoid infinite recursion, we limit the recursion.
+     */
+    private class StorageExpand implements RedisCommand {
+
+        private List<String> keys;
+        private List<String> arguments;
+        private Handler<Resource> handler;
+
+        public StorageExpand(List<String> keys, List<String> arguments, final Handler<Resource> handler) {
+            this.keys = keys;
+            this.arguments = arguments;
+            this.handler = handler;
+        }
+
+        public void exec(final int executionCounter) {
+            redisClient(keys.get(0)).evalsha(luaScripts.get(LuaScript.STORAGE_EXPAND).getSha(), keys, arguments, event -> {
+                if(event.succeeded()){
+                    JsonArray values = event.result();
+                    String value = values.getString(0);
+                    if (log.isTraceEnabled()) {
+                        log.trace("RedisStorage storageExpand result: " + value);
+                    }
+                    if("membersLimitExceeded".equalsIgnoreCase(value)){
+                        error(handler, "Storage expand exceeds the limit of " + storageExpandMaxMembers + " resources and collection members");
+                        return;
+                    }
+                    if("sizeLimitExceeded".equalsIgnoreCase(value)){
+                        error(handler, "Storage expand exceeds the limit of " + storageExpandMaxSize + " bytes");
+                        return;
                     }
+                    if("notFound".equalsIgnoreCase(value)){
+                        notFound(handler);
+                        return;
+                    }
+                    if("notModified".equalsIgnoreCase(value)){
+                        notModified(handler);
+                        return;
+                    }
+                    decompressStorageExpandValues(values, handler);
                 } else {
                     String message = event.cause().getMessage();
                     if(message != null && message.startsWith("NOSCRIPT")) {
@@ -587,7 +1443,7 @@ public class RedisStorage implements Storage {
                         if(executionCounter > 10) {
                             log.error("amount the script got loaded is higher than 10, we abort");
                         } else {
-                            luaScripts.get(LuaScript.STORAGE_EXPAND).loadLuaScript(new StorageExpand(keys, arguments, handler, etag), executionCounter);
+                            luaScripts.get(LuaScript.STORAGE_EXPAND).loadLuaScript(new StorageExpand(keys, arguments, handler), executionCounter);
                         }
                     } else {
                         log.error("StorageExpand request failed with message: " + message);
@@ -597,52 +1453,162 @@ public class RedisStorage implements Storage {
         }
     }
 
-    private JsonArray extractSortedJsonArray(String arrayString){
-        String arrayContent = arrayString.replaceAll("\\[", EMPTY).replaceAll("\\]", EMPTY).replaceAll("\"", EMPTY).replaceAll("\\\\", EMPTY);
-        String[] splitted = StringUtils.split(arrayContent, ",");
-        List<String> resources = new ArrayList<>();
-        List<String> collections = new ArrayList<>();
-        for (String split : splitted) {
-            if (split.endsWith("/")) {
-                collections.add(split);
+    /**
+     * The storageExpand script returns the content of compressed sub resources wrapped into an array. These contents
+     * are decompressed in parallel on the compression worker pool before the expanded json is assembled.
+     */
+    private void decompressStorageExpandValues(JsonArray values, Handler<Resource> handler) {
+        byte[][] contents = new byte[values.size()][];
+        List<Integer> compressedIndexes = new ArrayList<>();
+        for (int i = 2; i < values.size(); i += 2) {
+            if (values.getValue(i) instanceof JsonArray) {
+                compressedIndexes.add(i);
+            }
+        }
+        if (compressedIndexes.isEmpty()) {
+            handleStorageExpandValues(values, contents, handler);
+            return;
+        }
+
+        CompressionExecutor executor = getCompressionExecutor();
+        int[] pending = {compressedIndexes.size()};
+        boolean[] failed = {false};
+        for (int index : compressedIndexes) {
+            byte[] compressed = decodeBinary(values.getJsonArray(index).getString(0));
+            GZIPUtil.decompressResource(executor, log, compressed, decompressedResult -> {
+                if (failed[0]) {
+                    return;
+                }
+                if (decompressedResult.failed()) {
+                    failed[0] = true;
+                    error(handler, "Error during decompression of resource '"
+                            + ResourceNameUtil.resetReplacedColonsAndSemiColons(values.getString(index - 1)) + "': "
+                            + decompressedResult.cause().getMessage());
+                    return;
+                }
+                contents[index] = decompressedResult.result();
+                if (--pending[0] == 0) {
+                    handleStorageExpandValues(values, contents, handler);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the executor of all compressions and decompressions of resources, created on first use. The handler
+     * compresses its responses with it too, so they are part of the statistics of the storage
+     */
+    public CompressionExecutor getCompressionExecutor() {
+        if (compressionExecutor == null) {
+            compressionExecutor = new CompressionExecutor(vertx, CompressionExecutor.POOL_NAME, compressionWorkerPoolSize,
+                    compressionQueueSize);
+        }
+        return compressionExecutor;
+    }
+
+    /**
+     * Assembles the expanded json from the fragments returned by the storageExpand script without parsing and
+     * re-encoding them. The values are the etag of the expand result followed by pairs of sub resource name and json
+     * content. Collection names end with a slash, their content is the json array of the members or, for expanded
+     * collections, the number of the pairs of their sub resources following. The content of resources is only checked
+     * to be a json object. The fragments are wrapped into a composite buffer, the response is written in slices of it.
+     *
+     * @param contents the decompressed contents of compressed resources at the index of their value
+     */
+    private void handleStorageExpandValues(JsonArray values, byte[][] contents, Handler<Resource> handler) {
+        List<ByteBuf> fragments = new ArrayList<>(values.size() * 2);
+        if (appendStorageExpandMembers(values, contents, 1, Integer.MAX_VALUE, fragments, handler) < 0) {
+            return;
+        }
+
+        Buffer content = Buffer.buffer(Unpooled.wrappedBuffer(fragments.toArray(new ByteBuf[fragments.size()])));
+        DocumentResource r = new DocumentResource();
+        r.readStream = new BufferReadStream(vertx, content);
+        r.length = content.length();
+        r.etag = values.getString(0);
+        r.closeHandler = event -> {
+            // nothing to close
+        };
+        handler.handle(r);
+    }
+
+    /**
+     * Appends the json object of (at most) count sub resources starting at the index of the values.
+     *
+     * @return the index following the appended sub resources or -1 when the handler was called with an invalid resource
+     */
+    private int appendStorageExpandMembers(JsonArray values, byte[][] contents, int index, int count,
+                                           List<ByteBuf> fragments, Handler<Resource> handler) {
+        fragments.add(Unpooled.wrappedBuffer(EXPAND_START));
+        for (int member = 0; member < count && index + 1 < values.size(); member++) {
+            String subResourceName = values.getString(index);
+            Object subResourceValue = values.getValue(index + 1);
+            byte[] decompressed = contents[index + 1];
+            index += 2;
+            boolean collection = subResourceName.endsWith("/");
+            if (collection) {
+                subResourceName = subResourceName.substring(0, subResourceName.length() - 1);
+            }
+            subResourceName = ResourceNameUtil.resetReplacedColonsAndSemiColons(subResourceName);
+            if (member > 0) {
+                fragments.add(Unpooled.wrappedBuffer(EXPAND_SEPARATOR));
+            }
+            fragments.add(Unpooled.wrappedBuffer((Json.encode(subResourceName) + ":").getBytes(StandardCharsets.UTF_8)));
+            if (collection && !((String) subResourceValue).startsWith("[")) {
+                int memberCount = Integer.parseInt((String) subResourceValue);
+                index = appendStorageExpandMembers(values, contents, index, memberCount, fragments, handler);
+                if (index < 0) {
+                    return index;
+                }
+            } else if (collection) {
+                fragments.add(Unpooled.wrappedBuffer(((String) subResourceValue).getBytes(StandardCharsets.UTF_8)));
             } else {
-                resources.add(split);
+                byte[] content = decompressed != null ? decompressed : decodeBinary((String) subResourceValue);
+                if (!isJsonObject(content)) {
+                    invalid(handler, "Error decoding invalid json resource '" + subResourceName + "'");
+                    return -1;
+                }
+                fragments.add(Unpooled.wrappedBuffer(content));
             }
         }
-        Collections.sort(collections);
-        collections.addAll(resources);
-        return new JsonArray(new ArrayList<Object>(collections));
+        fragments.add(Unpooled.wrappedBuffer(EXPAND_END));
+        return index;
+    }
+
+    /**
+     * Checks the syntax of a json object by skipping through its tokens, no values are materialized.
+     */
+    static boolean isJsonObject(byte[] content) {
+        try (JsonParser parser = JSON_FACTORY.createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            parser.skipChildren();
+            return parser.nextToken() == null;
+        } catch (IOException ex) {
+            return false;
+        }
     }
 
-    private void handleJsonArrayValues(JsonArray values, Handler<Resource> handler, boolean allowEmptyReturn){
+    private void handleJsonArrayValues(JsonArray values, String key, long nearCacheVersion, Handler<Resource> handler,
+                                       boolean allowEmptyReturn){
         String type = values.getString(0);
         if("TYPE_RESOURCE".equals(type)){
             String valueStr = values.getString(1);
-            DocumentResource r = new DocumentResource();
             byte[] content = decodeBinary(valueStr);
             if(!values.hasNull(3)){
                 // data is compressed
-                GZIPUtil.decompressResource(vertx, log, content, decompressedResult -> {
+                GZIPUtil.decompressResource(getCompressionExecutor(), log, content, decompressedResult -> {
                     if(decompressedResult.succeeded()) {
-                        r.readStream = new ByteArrayReadStream(decompressedResult.result());
-                        r.length = decompressedResult.result().length;
-                        r.etag = values.getString(2);
-                        r.closeHandler = event -> {
-                            // nothing to close
-                        };
-                        handler.handle(r);
+                        cacheResource(key, decompressedResult.result(), values, nearCacheVersion);
+                        handler.handle(documentResource(decompressedResult.result(), values.getString(2)));
                     } else {
                         error(handler, "Error during decompression of resource: " + decompressedResult.cause().getMessage());
                     }
                 });
             } else {
-                r.readStream = new ByteArrayReadStream(content);
-                r.length = content.length;
-                r.etag = values.getString(2);
-                r.closeHandler = event -> {
-                    // nothing to close
-                };
-                handler.handle(r);
+                cacheResource(key, content, values, nearCacheVersion);
+                handler.handle(documentResource(content, values.getString(2)));
             }
         } else if("TYPE_COLLECTION".equals(type)) {
             CollectionResource r = new CollectionResource();
@@ -650,16 +1616,7 @@ public class RedisStorage implements Storage {
             for (Object value : values) {
                 String member = (String) value;
                 if (!"TYPE_COLLECTION".equals(member)) {
-                    if (member.endsWith(":")) {
-                        member = member.replaceAll(":$", "");
-                        CollectionResource c = new CollectionResource();
-                        c.name = member;
-                        items.add(c);
-                    } else {
-                        DocumentResource d = new DocumentResource();
-                        d.name = member;
-                        items.add(d);
-                    }
+                    items.add(collectionMember(member));
                 }
             }
             if(allowEmptyReturn && items.size()==0) {
@@ -674,16 +1631,79 @@ public class RedisStorage implements Storage {
         }
     }
 
-    class ByteArrayWriteStream implements WriteStream<Buffer> {
+    private DocumentResource documentResource(byte[] content, String etag) {
+        DocumentResource r = new DocumentResource();
+        r.readStream = new BufferReadStream(vertx, wrapBinary(content));
+        r.length = content.length;
+        r.etag = etag;
+        r.closeHandler = event -> {
+            // nothing to close
+        };
+        return r;
+    }
+
+    private DocumentResource documentMetadata(long length, String etag) {
+        DocumentResource r = new DocumentResource();
+        r.length = length;
+        r.etag = etag;
+        r.closeHandler = event -> {
+            // nothing to close
+        };
+        return r;
+    }
+
+    /**
+     * Puts the resource read by the get script into the near cache. The optional fifth value of the script result is
+     * the expiration of the resource.
+     */
+    private void cacheResource(String key, byte[] content, JsonArray values, long nearCacheVersion) {
+        if (nearCache == null) {
+            return;
+        }
+        long expireAt = Long.MAX_VALUE;
+        if (values.size() > 4 && !values.hasNull(4)) {
+            try {
+                expireAt = (long) Double.parseDouble(values.getValue(4).toString());
+            } catch (NumberFormatException ex) {
+                return;
+            }
+        }
+        nearCache.put(key, content, values.getString(2), expireAt, nearCacheVersion, System.currentTimeMillis());
+    }
+
+    /**
+     * Members ending with a colon are sub collections, all others are documents.
+     */
+    private Resource collectionMember(String member) {
+        Resource resource;
+        if (member.endsWith(":")) {
+            member = member.replaceAll(":$", "");
+            resource = new CollectionResource();
+        } else {
+            resource = new DocumentResource();
+        }
+        resource.name = member;
+        return resource;
+    }
 
-        private ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    /**
+     * Collects the written buffers without copying them. The collected content is exposed as a single composite
+     * {@link Buffer} backed by the written buffers.
+     */
+    class BufferWriteStream implements WriteStream<Buffer> {
+
+        private List<ByteBuf> chunks = new ArrayList<>();
+
+        public Buffer getBuffer() {
+            return Buffer.buffer(Unpooled.wrappedBuffer(chunks.toArray(new ByteBuf[chunks.size()])));
+        }
 
         public byte[] getBytes() {
-            return bos.toByteArray();
+            return getBuffer().getBytes();
         }
 
         @Override
-        public ByteArrayWriteStream setWriteQueueMaxSize(int maxSize) {
+        public BufferWriteStream setWriteQueueMaxSize(int maxSize) {
             return this;
         }
 
@@ -693,32 +1713,24 @@ public class RedisStorage implements Storage {
         }
 
         @Override
-        public ByteArrayWriteStream drainHandler(Handler<Void> handler) {
+        public BufferWriteStream drainHandler(Handler<Void> handler) {
             return this;
         }
 
         @Override
-        public ByteArrayWriteStream exceptionHandler(Handler<Throwable> handler) {
+        public BufferWriteStream exceptionHandler(Handler<Throwable> handler) {
             return this;
         }
 
         @Override
         public WriteStream<Buffer> write(Buffer data) {
-            try {
-                bos.write(data.getBytes());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            chunks.add(data.getByteBuf());
             return this;
         }
 
         @Override
         public void end() {
-            try {
-                bos.close();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            // nothing to close
         }
     }
 
@@ -744,71 +1756,218 @@ public class RedisStorage implements Storage {
     public void put(String path, String etag, boolean merge, long expire, String lockOwner, LockMode lockMode, long lockExpire, boolean storeCompressed, Handler<Resource> handler) {
         final String key = encodePath(path);
         final DocumentResource d = new DocumentResource();
-        final ByteArrayWriteStream stream = new ByteArrayWriteStream();
+        final BufferWriteStream stream = new BufferWriteStream();
 
         final String etagValue = initEtagValue(etag);
         d.writeStream = stream;
         d.closeHandler = event -> {
-            String expireInMillis = MAX_EXPIRE_IN_MILLIS;
-            if (expire > -1) {
-                expireInMillis = String.valueOf(System.currentTimeMillis() + (expire * 1000));
-            }
-
-            if(Long.valueOf(expireInMillis) > Long.valueOf(MAX_EXPIRE_IN_MILLIS)){
-                // #76 reset to the defined max value
-                expireInMillis = MAX_EXPIRE_IN_MILLIS;
-            }
-
-            String lockExpireInMillis = String.valueOf(System.currentTimeMillis() + (lockExpire * 1000));
-
             List<String> keys = Collections.singletonList(key);
-
-            if (storeCompressed) {
-                String finalExpireInMillis = expireInMillis;
-                GZIPUtil.compressResource(vertx, log, stream.getBytes(), compressResourceResult -> {
-                    if(compressResourceResult.succeeded()) {
-                        List<String> arg = Arrays.asList(
-                                redisResourcesPrefix,
-                                redisCollectionsPrefix,
-                                expirableSet,
-                                merge ? "true" : "false",
-                                finalExpireInMillis,
-                                MAX_EXPIRE_IN_MILLIS,
-                                encodeBinary(compressResourceResult.result()),
-                                etagValue,
-                                redisLockPrefix,
-                                lockOwner,
-                                lockMode.text(),
-                                lockExpireInMillis,
-                                storeCompressed ? "1" : "0"
-                        );
-                        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.PUT, new Put(d, keys, arg, handler), 0);
+            Runnable putUncompressed = () -> {
+                List<String> arguments = putArguments(merge, expire, encodeBinary(stream.getBuffer()), etagValue,
+                        lockOwner, lockMode, lockExpire, false, stream.getBuffer().length());
+                reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.PUT, new Put(d, keys, arguments, handler), 0);
+            };
+
+            Handler<byte[]> putCompressed = compressed -> {
+                List<String> arg = putArguments(merge, expire, encodeBinary(compressed),
+                        etagValue, lockOwner, lockMode, lockExpire, true, stream.getBuffer().length());
+                reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.PUT, new Put(d, keys, arg, handler), 0);
+            };
+
+            // the put script cannot merge into compressed resources, which the adaptive policy may have stored
+            if (merge && (workerMergeEnabled || adaptiveCompression)) {
+                mergeOnWorker(d, path, key, stream.getBuffer(), etagValue, expire, lockOwner, lockMode, lockExpire, 0, handler);
+            } else if (adaptiveCompression) {
+                compressAdaptive(path, stream.getBytes(), compressed -> {
+                    if (compressed == null) {
+                        putUncompressed.run();
+                    } else {
+                        putCompressed.handle(compressed);
+                    }
+                });
+            } else if (storeCompressed) {
+                GZIPUtil.compressResource(getCompressionExecutor(), log, stream.getBytes(), compressResourceResult -> {
+                    if (compressResourceResult.succeeded()) {
+                        compressionAdvisor.record(path, stream.getBuffer().length(), compressResourceResult.result().length, true);
+                        putCompressed.handle(compressResourceResult.result());
                     } else {
                         error(handler, "Error during compression of resource");
                     }
                 });
             } else {
-                List<String> arguments = Arrays.asList(
-                        redisResourcesPrefix,
-                        redisCollectionsPrefix,
-                        expirableSet,
-                        merge ? "true" : "false",
-                        expireInMillis,
-                        MAX_EXPIRE_IN_MILLIS,
-                        encodeBinary(stream.getBytes()),
-                        etagValue,
-                        redisLockPrefix,
-                        lockOwner,
-                        lockMode.text(),
-                        lockExpireInMillis,
-                        storeCompressed ? "1" : "0"
-                );
-                reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.PUT, new Put(d, keys, arguments, handler), 0);
+                putUncompressed.run();
             }
         };
         handler.handle(d);
     }
 
+    /**
+     * Compresses the content according to the adaptive compression policy and counts it in the statistics of the
+     * policy. The handler is called with the compressed content, or with null when the content is to be stored
+     * uncompressed. As the compression is optional, this is also the case when it failed or the compression pool
+     * rejected it.
+     */
+    private void compressAdaptive(String path, byte[] content, Handler<byte[]> handler) {
+        if (!compressionAdvisor.isCandidate(content.length, mimeTypeResolver.resolveMimeType(path))) {
+            compressionAdvisor.record(path, content.length, content.length, false);
+            handler.handle(null);
+            return;
+        }
+        compressionAdvisor.compressResource(getCompressionExecutor(), log, content, result -> {
+            byte[] compressed = result.succeeded() ? result.result() : null;
+            compressionAdvisor.record(path, content.length, compressed == null ? content.length : compressed.length,
+                    compressed != null);
+            handler.handle(compressed);
+        });
+    }
+
+    /**
+     * Merges the json object of a put into the stored resource on a worker thread instead of in the put script, so
+     * redis only reads and writes the resource. The merged resource is written only when the stored resource did not
+     * change in the meantime (same etag), otherwise the merge is repeated with the new stored resource, up to
+     * {@link ModuleConfiguration#getWorkerMergeMaxRetries()} times. The merge runs on the workers of the
+     * {@link CompressionExecutor}, like the decompression of the stored resource. With the adaptive compression policy,
+     * the merged resource is compressed according to the policy.
+     */
+    private void mergeOnWorker(DocumentResource d, String path, String key, Buffer patch, String etagValue, long expire,
+                               String lockOwner, LockMode lockMode, long lockExpire, int attempt, Handler<Resource> handler) {
+        redisClient(key).hmget(redisResourcesPrefix + key, Arrays.asList("resource", "etag", "compressed"), event -> {
+            if (event.failed()) {
+                log.error("PUT request failed with message: " + event.cause().getMessage());
+                mergeFailed(d, event.cause(), handler);
+                return;
+            }
+            JsonArray values = event.result();
+            String storedEtag = values.hasNull(1) ? EMPTY : values.getString(1);
+            Handler<AsyncResult<Buffer>> mergedHandler = merged -> {
+                if (merged.failed()) {
+                    log.error("Unable to merge resource " + key + ": " + merged.cause().getMessage());
+                    mergeFailed(d, merged.cause(), handler);
+                    return;
+                }
+                Buffer mergedResource = merged.result();
+                Handler<byte[]> write = compressed -> {
+                    List<String> keys = Collections.singletonList(key);
+                    List<String> arguments = putArguments(false, expire,
+                            encodeBinary(compressed != null ? compressed : mergedResource.getBytes()), etagValue,
+                            lockOwner, lockMode, lockExpire, compressed != null, mergedResource.length(), storedEtag);
+                    reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.PUT, new Put(d, keys, arguments, handler, conflict -> {
+                        if (attempt < workerMergeMaxRetries) {
+                            mergeOnWorker(d, path, key, patch, etagValue, expire, lockOwner, lockMode, lockExpire, attempt + 1, handler);
+                        } else {
+                            log.warn("Rejected merge of " + key + ", the resource changed concurrently " + (attempt + 1) + " times");
+                            rejected(handler);
+                        }
+                    }), 0);
+                };
+                if (adaptiveCompression) {
+                    compressAdaptive(path, mergedResource.getBytes(), write);
+                } else {
+                    write.handle(null);
+                }
+            };
+            if (values.hasNull(0)) {
+                // nothing to merge with, the patch is stored as it is
+                mergedHandler.handle(Future.succeededFuture(patch));
+            } else if (!values.hasNull(2)) {
+                GZIPUtil.decompressResource(getCompressionExecutor(), log, decodeBinary(values.getString(0)), decompressed -> {
+                    if (decompressed.succeeded()) {
+                        getCompressionExecutor().execute(future -> future.complete(mergeJson(decompressed.result(), patch)), mergedHandler);
+                    } else {
+                        mergedHandler.handle(Future.failedFuture(decompressed.cause()));
+                    }
+                });
+            } else {
+                byte[] stored = decodeBinary(values.getString(0));
+                getCompressionExecutor().execute(future -> future.complete(mergeJson(stored, patch)), mergedHandler);
+            }
+        });
+    }
+
+    /**
+     * Reports a failed merge to the error handler of the put or, when the put has no error handler, as error resource.
+     */
+    private void mergeFailed(DocumentResource d, Throwable cause, Handler<Resource> handler) {
+        if (d.errorHandler != null) {
+            d.errorHandler.handle(cause);
+        } else {
+            error(handler, "Unable to merge resource: " + cause.getMessage());
+        }
+    }
+
+    /**
+     * Merges the fields of the patch into the resource, a field with the value null removes the field from the
+     * resource. Both have to be json objects.
+     *
+     * @return the merged resource
+     */
+    static Buffer mergeJson(byte[] resource, Buffer patch) {
+        JsonObject merged = new JsonObject(new String(resource, StandardCharsets.UTF_8));
+        JsonObject patchObject = new JsonObject(patch.toString(StandardCharsets.UTF_8.name()));
+        for (String field : patchObject.fieldNames()) {
+            Object value = patchObject.getValue(field);
+            if (value == null) {
+                merged.remove(field);
+            } else {
+                merged.put(field, value);
+            }
+        }
+        return Buffer.buffer(merged.encode());
+    }
+
+    /**
+     * @return the arguments of the put script
+     */
+    private List<String> putArguments(boolean merge, long expire, String value, String etagValue, String lockOwner,
+                                      LockMode lockMode, long lockExpire, boolean storeCompressed, int contentLength) {
+        return putArguments(merge, expire, value, etagValue, lockOwner, lockMode, lockExpire, storeCompressed,
+                contentLength, null);
+    }
+
+    /**
+     * @param expectedEtag when not null, the resource is only written when it still has this etag (empty for a not
+     *                     existing resource)
+     * @return the arguments of the put script
+     */
+    private List<String> putArguments(boolean merge, long expire, String value, String etagValue, String lockOwner,
+                                      LockMode lockMode, long lockExpire, boolean storeCompressed, int contentLength,
+                                      String expectedEtag) {
+        String expireInMillis = MAX_EXPIRE_IN_MILLIS;
+        if (expire > -1) {
+            expireInMillis = String.valueOf(System.currentTimeMillis() + (expire * 1000));
+        }
+
+        if(Long.valueOf(expireInMillis) > Long.valueOf(MAX_EXPIRE_IN_MILLIS)){
+            // #76 reset to the defined max value
+            expireInMillis = MAX_EXPIRE_IN_MILLIS;
+        }
+
+        String lockExpireInMillis = String.valueOf(System.currentTimeMillis() + (lockExpire * 1000));
+
+        return Arrays.asList(
+                redisResourcesPrefix,
+                redisCollectionsPrefix,
+                expirableSet,
+                merge ? "true" : "false",
+                expireInMillis,
+                MAX_EXPIRE_IN_MILLIS,
+                value,
+                etagValue,
+                redisLockPrefix,
+                lockOwner,
+                lockMode.text(),
+                lockExpireInMillis,
+                storeCompressed ? "1" : "0",
+                redisCollectionMarkersPrefix,
+                String.valueOf(contentLength),
+                String.valueOf(expirableBuckets),
+                String.valueOf(nativeExpiry),
+                purgingKey,
+                expectedEtag != null ? "true" : "false",
+                expectedEtag != null ? expectedEtag : EMPTY
+        );
+    }
+
     /**
      * The Put Command Execution.
      * If the get script cannot be found under the sha in luaScriptState, reload the script.
@@ -820,16 +1979,29 @@ public class RedisStorage implements Storage {
         private List<String> keys;
         private List<String> arguments;
         private Handler<Resource> handler;
+        private Handler<Void> conflictHandler;
 
         public Put(DocumentResource d, List<String> keys, List<String> arguments, Handler<Resource> handler) {
+            this(d, keys, arguments, handler, null);
+        }
+
+        /**
+         * @param conflictHandler called when a put with an expected etag finds the resource changed
+         */
+        public Put(DocumentResource d, List<String> keys, List<String> arguments, Handler<Resource> handler,
+                   Handler<Void> conflictHandler) {
             this.d = d;
             this.keys = keys;
             this.arguments = arguments;
             this.handler = handler;
+            this.conflictHandler = conflictHandler;
         }
 
         public void exec(final int executionCounter) {
-            redisClient.evalsha(luaScripts.get(LuaScript.PUT).getSha(), keys, arguments, event -> {
+            redisClient(keys.get(0)).evalsha(luaScripts.get(LuaScript.PUT).getSha(), keys, arguments, event -> {
+                if(nearCache != null){
+                    nearCache.invalidate(keys.get(0));
+                }
                 if(event.succeeded()){
                     String result = event.result().getString(0);
                     if (log.isTraceEnabled()) {
@@ -846,6 +2018,11 @@ public class RedisStorage implements Storage {
                         notModified(handler);
                     } else if(LockMode.REJECT.text().equals(result)) {
                         rejected(handler);
+                    } else if("purging".equals(result)) {
+                        log.info("Rejected put of " + keys.get(0) + ", a parent collection is being deleted");
+                        rejected(handler);
+                    } else if("conflict".equals(result) && conflictHandler != null) {
+                        conflictHandler.handle(null);
                     }
                     else {
                         d.endHandler.handle(null);
@@ -858,7 +2035,7 @@ public class RedisStorage implements Storage {
                         if(executionCounter > 10) {
                             log.error("amount the script got loaded is higher than 10, we abort");
                         } else {
-                            luaScripts.get(LuaScript.PUT).loadLuaScript(new Put(d, keys, arguments, handler), executionCounter);
+                            luaScripts.get(LuaScript.PUT).loadLuaScript(new Put(d, keys, arguments, handler, conflictHandler), executionCounter);
                         }
                     } else if (message != null && d.errorHandler != null){
                         log.error("PUT request failed with message: " + message);
@@ -874,10 +2051,18 @@ public class RedisStorage implements Storage {
                        boolean deleteRecursive, final Handler<Resource> handler ) {
         final String key = encodePath(path);
         List<String> keys = Collections.singletonList(key);
+        List<String> arguments = deleteArguments(lockOwner, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive);
+        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.DELETE, new Delete(keys, arguments, handler), 0);
+    }
 
+    /**
+     * @return the arguments of the delete script
+     */
+    private List<String> deleteArguments(String lockOwner, LockMode lockMode, long lockExpire,
+                                         boolean confirmCollectionDelete, boolean deleteRecursive) {
         String lockExpireInMillis = String.valueOf(System.currentTimeMillis() + (lockExpire * 1000));
 
-        List<String> arguments = Arrays.asList(
+        return Arrays.asList(
                 redisResourcesPrefix,
                 redisCollectionsPrefix,
                 redisDeltaResourcesPrefix,
@@ -890,9 +2075,12 @@ public class RedisStorage implements Storage {
                 redisLockPrefix,
                 lockOwner,
                 lockMode.text(),
-                lockExpireInMillis
+                lockExpireInMillis,
+                redisCollectionMarkersPrefix,
+                String.valueOf(expirableBuckets),
+                purgingKey,
+                String.valueOf(asyncDeleteThreshold)
         );
-        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.DELETE, new Delete(keys, arguments, handler), 0);
     }
 
     /**
@@ -913,7 +2101,7 @@ public class RedisStorage implements Storage {
         }
 
         public void exec(final int executionCounter) {
-            redisClient.evalsha(luaScripts.get(LuaScript.DELETE).getSha(), keys, arguments, event -> {
+            redisClient(keys.get(0)).evalsha(luaScripts.get(LuaScript.DELETE).getSha(), keys, arguments, event -> {
                 if(event.cause() != null && event.cause().getMessage().startsWith("NOSCRIPT")) {
                     log.warn("delete script couldn't be found, reload it");
                     log.warn("amount the script got loaded: " + String.valueOf(executionCounter));
@@ -924,34 +2112,246 @@ public class RedisStorage implements Storage {
                     }
                     return;
                 }
+                if(event.failed()) {
+                    String message = event.cause() != null ? event.cause().getMessage() : null;
+                    log.error("DELETE request failed with message: " + message);
+                    error(handler, "Error during delete of resource: " + message);
+                    return;
+                }
+                if(nearCache != null){
+                    nearCache.invalidateTree(keys.get(0));
+                }
+
+                String result = null;
+                if(event.result() != null){
+                    result = event.result().getString(0);
+                }
+                if (log.isTraceEnabled()) {
+                    log.trace("RedisStorage delete result: " + result);
+                }
+                if ("notEmpty".equals(result)) {
+                    notEmpty(handler);
+                    return;
+                }
+                if ("notFound".equals(result)) {
+                    notFound(handler);
+                    return;
+                }
+                else if(LockMode.REJECT.text().equals(result)) {
+                    rejected(handler);
+                    return;
+                }
+                if ("purging".equals(result)) {
+                    // detached from its parent, the children are removed by the purger
+                    log.info("Collection " + keys.get(0) + " detached, its children are purged in the background");
+                    if (purger != null) {
+                        purger.trigger();
+                    }
+                }
+                Resource r = new Resource();
+                handler.handle(r);
+            });
+        }
+    }
+
+    /**
+     * Executes the operations in chunks of {@link ModuleConfiguration#getBatchChunkSize()} operations. Every chunk is
+     * executed by a single call of the batch script and therefore atomically, the chunks are executed one after the
+     * other.
+     */
+    @Override
+    public void batch(List<BatchOperation> operations, Handler<List<Resource>> handler) {
+        final Resource[] results = new Resource[operations.size()];
+        encodeBatchContents(operations, results, contents -> executeBatchChunk(operations, contents, 0, results, handler));
+    }
+
+    /**
+     * Encodes the contents of the puts, the contents to store compressed are compressed on the worker pool first. A
+     * put which cannot be compressed gets its error result and no content. With the adaptive compression policy, the
+     * decision of the policy replaces the storeCompressed flag of the operation.
+     */
+    private void encodeBatchContents(List<BatchOperation> operations, Resource[] results, Handler<String[]> handler) {
+        final String[] contents = new String[operations.size()];
+        final int[] pending = {1};
+        for (int i = 0; i < operations.size(); i++) {
+            final BatchOperation operation = operations.get(i);
+            if (operation.method != BatchOperation.Method.PUT) {
+                continue;
+            }
+            final int index = i;
+            if (adaptiveCompression) {
+                pending[0]++;
+                compressAdaptive(operation.path, operation.content.getBytes(), compressed -> {
+                    operation.storeCompressed = compressed != null;
+                    contents[index] = compressed != null ? encodeBinary(compressed) : encodeBinary(operation.content);
+                    if (--pending[0] == 0) {
+                        handler.handle(contents);
+                    }
+                });
+                continue;
+            }
+            if (!operation.storeCompressed) {
+                contents[i] = encodeBinary(operation.content);
+                continue;
+            }
+            pending[0]++;
+            GZIPUtil.compressResource(getCompressionExecutor(), log, operation.content.getBytes(), compressResourceResult -> {
+                if (compressResourceResult.succeeded()) {
+                    compressionAdvisor.record(operation.path, operation.content.length(), compressResourceResult.result().length, true);
+                    contents[index] = encodeBinary(compressResourceResult.result());
+                } else {
+                    error(resource -> results[index] = resource, "Error during compression of resource");
+                }
+                if (--pending[0] == 0) {
+                    handler.handle(contents);
+                }
+            });
+        }
+        if (--pending[0] == 0) {
+            handler.handle(contents);
+        }
+    }
+
+    private void executeBatchChunk(List<BatchOperation> operations, String[] contents, int from, Resource[] results,
+                                   Handler<List<Resource>> handler) {
+        if (from >= operations.size()) {
+            handler.handle(Arrays.asList(results));
+            return;
+        }
+        int to = Math.min(operations.size(), from + batchChunkSize);
+        List<String> keys = new ArrayList<>();
+        List<String> arguments = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            BatchOperation operation = operations.get(i);
+            List<String> operationArguments;
+            if (operation.method == BatchOperation.Method.PUT) {
+                if (contents[i] == null) {
+                    continue;
+                }
+                operationArguments = putArguments(false, operation.expire, contents[i], initEtagValue(operation.etag),
+                        operation.lockOwner, operation.lockMode, operation.lockExpire, operation.storeCompressed,
+                        operation.content.length());
+            } else {
+                operationArguments = deleteArguments(operation.lockOwner, operation.lockMode, operation.lockExpire,
+                        operation.confirmCollectionDelete, operation.deleteRecursive);
+            }
+            String key = encodePath(operation.path);
+            keys.add(key);
+            arguments.add(operation.method.name());
+            arguments.add(key);
+            arguments.add(String.valueOf(operationArguments.size()));
+            arguments.addAll(operationArguments);
+            indexes.add(i);
+        }
+        if (indexes.isEmpty()) {
+            executeBatchChunk(operations, contents, to, results, handler);
+            return;
+        }
+        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.BATCH, new Batch(keys, arguments, scriptResults -> {
+            for (int i = 0; i < indexes.size(); i++) {
+                int index = indexes.get(i);
+                if (scriptResults == null) {
+                    error(resource -> results[index] = resource, "Batch failed");
+                } else {
+                    batchResult(operations.get(index), keys.get(i), scriptResults.getString(i),
+                            resource -> results[index] = resource);
+                }
+            }
+            executeBatchChunk(operations, contents, to, results, handler);
+        }), 0);
+    }
+
+    /**
+     * Maps the result of the put or delete script of an operation as {@link Put} and {@link Delete} do.
+     */
+    private void batchResult(BatchOperation operation, String key, String result, Handler<Resource> handler) {
+        if (operation.method == BatchOperation.Method.PUT) {
+            if (nearCache != null) {
+                nearCache.invalidate(key);
+            }
+            if (result != null && result.startsWith("existingCollection")) {
+                handler.handle(new CollectionResource());
+            } else if (result != null && result.startsWith("existingResource")) {
+                DocumentResource d = new DocumentResource();
+                d.exists = false;
+                handler.handle(d);
+            } else if ("notModified".equals(result)) {
+                notModified(handler);
+            } else if (LockMode.REJECT.text().equals(result) || "purging".equals(result)) {
+                rejected(handler);
+            } else {
+                handler.handle(new Resource());
+            }
+            return;
+        }
+        if (nearCache != null) {
+            nearCache.invalidateTree(key);
+        }
+        if ("notEmpty".equals(result)) {
+            notEmpty(handler);
+        } else if ("notFound".equals(result)) {
+            notFound(handler);
+        } else if (LockMode.REJECT.text().equals(result)) {
+            rejected(handler);
+        } else {
+            if ("purging".equals(result) && purger != null) {
+                purger.trigger();
+            }
+            handler.handle(new Resource());
+        }
+    }
+
+    /**
+     * The Batch Command Execution.
+     * If the batch script cannot be found under the sha in luaScriptState, reload the script.
+     * To avoid infinite recursion, we limit the recursion.
+     */
+    private class Batch implements RedisCommand {
+
+        private List<String> keys;
+        private List<String> arguments;
+        private Handler<JsonArray> handler;
+
+        /**
+         * @param keys the keys of the operations, only used to choose the connection. The script gets its keys
+         *             through the arguments
+         * @param handler called with the results of the operations or null when the script failed
+         */
+        Batch(List<String> keys, List<String> arguments, Handler<JsonArray> handler) {
+            this.keys = keys;
+            this.arguments = arguments;
+            this.handler = handler;
+        }
 
-                String result = null;
-                if(event.result() != null){
-                    result = event.result().getString(0);
-                }
-                if (log.isTraceEnabled()) {
-                    log.trace("RedisStorage delete result: " + result);
-                }
-                if ("notEmpty".equals(result)) {
-                    notEmpty(handler);
-                    return;
-                }
-                if ("notFound".equals(result)) {
-                    notFound(handler);
+        public void exec(final int executionCounter) {
+            redisClient(keys.get(0)).evalsha(luaScripts.get(LuaScript.BATCH).getSha(), Collections.emptyList(),
+                    arguments, event -> {
+                if (event.succeeded()) {
+                    handler.handle(event.result());
                     return;
                 }
-                else if(LockMode.REJECT.text().equals(result)) {
-                    rejected(handler);
-                    return;
+                String message = event.cause().getMessage();
+                if (message != null && message.startsWith("NOSCRIPT")) {
+                    log.warn("batch script couldn't be found, reload it");
+                    log.warn("amount the script got loaded: " + String.valueOf(executionCounter));
+                    if (executionCounter > 10) {
+                        log.error("amount the script got loaded is higher than 10, we abort");
+                        handler.handle(null);
+                    } else {
+                        luaScripts.get(LuaScript.BATCH).loadLuaScript(new Batch(keys, arguments, handler), executionCounter);
+                    }
+                } else {
+                    log.error("Batch of " + keys.size() + " operations failed with message: " + message);
+                    handler.handle(null);
                 }
-                Resource r = new Resource();
-                handler.handle(r);
             });
         }
     }
 
     /**
-     * Cleans up the outdated resources recursive.
+     * Cleans up the outdated resources recursive. The buckets of the expirable index are cleaned in parallel, each
+     * over its own connection of the pool, and share the maximum of resources to clean.
      * If the script which is refered over the luaScriptState.sha, the execution is aborted and the script is reloaded.
      *
      * @param handler the handler to execute
@@ -960,28 +2360,36 @@ public class RedisStorage implements Storage {
      * @param bulkSize how many resources should be cleaned in one run
      */
     public void cleanupRecursive(final Handler<DocumentResource> handler, final long cleanedLastRun, final long maxdel, final int bulkSize) {
-        List<String> arguments = Arrays.asList(
-                redisResourcesPrefix,
-                redisCollectionsPrefix,
-                redisDeltaResourcesPrefix,
-                redisDeltaEtagsPrefix,
-                expirableSet,
-                "0",
-                MAX_EXPIRE_IN_MILLIS,
-                "false",
-                "true",
-                String.valueOf(System.currentTimeMillis()),
-                String.valueOf(bulkSize)
-        );
+        final long cleanupStart = System.nanoTime();
+        final long maxdelPerBucket = (maxdel + expirableBuckets - 1) / expirableBuckets;
+        final long[] cleaned = {cleanedLastRun};
+        final int[] pending = {expirableBuckets};
+        for (int bucket = 0; bucket < expirableBuckets; bucket++) {
+            cleanupBucketRecursive(bucket, 0, maxdelPerBucket, bulkSize, cleanedInBucket -> {
+                cleaned[0] += cleanedInBucket;
+                if (--pending[0] == 0) {
+                    if (cleanupLease != null) {
+                        cleanupLease.reportThroughput(cleaned[0] * 1000.0 / Math.max(1, millisSince(cleanupStart)));
+                    }
+                    cleanupFinished(handler, cleaned[0]);
+                }
+            });
+        }
+    }
 
-        redisClient.evalsha(luaScripts.get(LuaScript.CLEANUP).getSha(), Collections.emptyList(), arguments, event -> {
+    private void cleanupBucketRecursive(final int bucket, final long cleanedLastRun, final long maxdel, final int bulkSize,
+                                        final Handler<Long> handler) {
+        List<String> arguments = cleanupArguments(bulkSize, bucket);
+
+        expirableClient(bucket).evalsha(luaScripts.get(LuaScript.CLEANUP).getSha(), Collections.emptyList(), arguments, event -> {
             if (log.isTraceEnabled()) {
                 log.trace("RedisStorage cleanup resources succeeded: " + event.succeeded());
             }
 
             if(event.failed() && event.cause() != null && event.cause().getMessage().startsWith("NOSCRIPT")) {
                 log.warn("the cleanup script is not loaded. Load it and exit. The Cleanup will success the next time");
-                luaScripts.get(LuaScript.CLEANUP).loadLuaScript(new RedisCommandDoNothing(), 0);
+                luaScripts.get(LuaScript.CLEANUP).loadLuaScript(expirableClient(bucket), new RedisCommandDoNothing(), 0);
+                handler.handle(cleanedLastRun);
                 return;
             }
 
@@ -997,31 +2405,499 @@ public class RedisStorage implements Storage {
                 if (log.isTraceEnabled()) {
                     log.trace("RedisStorage cleanup resources call recursive next bulk");
                 }
-                cleanupRecursive(handler, cleaned, maxdel, bulkSize);
+                cleanupBucketRecursive(bucket, cleaned, maxdel, bulkSize, handler);
             } else {
-                redisClient.zcount(expirableSet, 0, System.currentTimeMillis(), longAsyncResult -> {
-                    Long result = longAsyncResult.result();
+                handler.handle(cleaned);
+            }
+        });
+    }
+
+    /**
+     * @return the key of the bucket of the expirable index. A single bucket is the expirable set itself
+     */
+    private String expirableBucket(int bucket) {
+        return expirableBuckets > 1 ? expirableSet + ":" + bucket : expirableSet;
+    }
+
+    /**
+     * @return the connection of the pool a bucket of the expirable index is cleaned with, so the buckets are spread
+     * over the pool
+     */
+    private RedisClient expirableClient(int bucket) {
+        return redisClients.get(bucket % redisClients.size());
+    }
+
+    /**
+     * Counts the expired resources over all buckets of the expirable index, including the entries of the former single
+     * expirable set not yet migrated to the buckets.
+     *
+     * @param handler receives the count, or <code>null</code> when it could not be determined
+     */
+    private void countExpired(long now, Handler<Long> handler) {
+        List<String> sets = new ArrayList<>();
+        for (int bucket = 0; bucket < expirableBuckets; bucket++) {
+            sets.add(expirableBucket(bucket));
+        }
+        if (expirableBuckets > 1) {
+            sets.add(expirableSet);
+        }
+        final long[] count = {0};
+        final int[] pending = {sets.size()};
+        final boolean[] failed = {false};
+        for (int i = 0; i < sets.size(); i++) {
+            expirableClient(i).zcount(sets.get(i), 0, now, zcount -> {
+                if (zcount.succeeded() && zcount.result() != null) {
+                    count[0] += zcount.result();
+                } else {
+                    failed[0] = true;
+                }
+                if (--pending[0] == 0) {
+                    handler.handle(failed[0] ? null : count[0]);
+                }
+            });
+        }
+    }
+
+    /**
+     * Answers the cleanup request with the amount of cleaned and still expired resources. With the cleanup lease
+     * enabled, the current leader and its throughput are added.
+     */
+    private void cleanupFinished(final Handler<DocumentResource> handler, final long cleaned) {
+        countExpired(System.currentTimeMillis(), result -> {
+            if (log.isTraceEnabled()) {
+                log.trace("RedisStorage cleanup resources zcount on expirable set: " + result);
+            }
+            int resToCleanLeft = 0;
+            if (result != null && result.intValue() >= 0) {
+                resToCleanLeft = result.intValue();
+            }
+            JsonObject retObj = new JsonObject();
+            retObj.put("cleanedResources", cleaned);
+            retObj.put("expiredResourcesLeft", resToCleanLeft);
+            if (cleanupLease != null) {
+                retObj.put("leader", cleanupLease.leader());
+            }
+            DocumentResource r = new DocumentResource();
+            byte[] content = decodeBinary(retObj.toString());
+            r.readStream = new BufferReadStream(vertx, wrapBinary(content));
+            r.length = content.length;
+            r.closeHandler = event1 -> {
+                // nothing to close
+            };
+            handler.handle(r);
+        });
+    }
+
+    private List<String> cleanupArguments(int bulkSize, int bucket) {
+        return Arrays.asList(
+                redisResourcesPrefix,
+                redisCollectionsPrefix,
+                redisDeltaResourcesPrefix,
+                redisDeltaEtagsPrefix,
+                expirableSet,
+                "0",
+                MAX_EXPIRE_IN_MILLIS,
+                "false",
+                "true",
+                String.valueOf(System.currentTimeMillis()),
+                String.valueOf(bulkSize),
+                redisCollectionMarkersPrefix,
+                String.valueOf(expirableBuckets),
+                String.valueOf(bucket)
+        );
+    }
+
+    /**
+     * Removes expired resources periodically without an explicit cleanup request. Every tick runs cleanup batches
+     * until the time budget of the tick is used up or no expired resources are left. The bulk size of the batches is
+     * adapted to the measured durations, so a single batch blocks redis for about the configured batch duration.
+     * <p>
+     * The round trip time of a PING before every tick is taken as foreground latency. When it (or the duration of a
+     * batch) exceeds the configured maximum, the bulk size is halved and the interval to the next tick is doubled, up to
+     * {@link #MAX_EXPIRY_BACKOFF} times the configured interval.
+     */
+    private class BackgroundExpiry {
+        private final long intervalMs;
+        private final long timeBudgetMs;
+        private final long batchMs;
+        private final long maxLatencyMs;
+
+        private int bulkSize = CLEANUP_BULK_SIZE;
+        private int backoff = 1;
+
+        private long ticks = 0;
+        private long backoffs = 0;
+        private long expired = 0;
+        private long backlog = -1;
+        private long latencyMs = 0;
+        private long lastTickDurationMs = 0;
+        private double expiredPerSecond = 0.0;
+        private long rateTimestamp = System.currentTimeMillis();
+        private long rateExpired = 0;
+
+        BackgroundExpiry(long intervalMs, long timeBudgetMs, long batchMs, long maxLatencyMs) {
+            this.intervalMs = Math.max(1, intervalMs);
+            this.timeBudgetMs = timeBudgetMs;
+            this.batchMs = Math.max(1, batchMs);
+            this.maxLatencyMs = maxLatencyMs;
+        }
+
+        void schedule() {
+            vertx.setTimer(intervalMs * backoff, timerId -> tick());
+        }
+
+        private void tick() {
+            if (cleanupLease != null && !cleanupLease.isLeading()) {
+                schedule();
+                return;
+            }
+            ticks++;
+            long pingStart = System.nanoTime();
+            redisClient().ping(ping -> {
+                latencyMs = millisSince(pingStart);
+                if (ping.failed() || latencyMs > maxLatencyMs) {
                     if (log.isTraceEnabled()) {
-                        log.trace("RedisStorage cleanup resources zcount on expirable set: " + result);
+                        log.trace("RedisStorage background expiry backs off, latency: " + latencyMs + "ms");
+                    }
+                    backOff();
+                    schedule();
+                    return;
+                }
+                backoff = 1;
+                runBatch(System.nanoTime());
+            });
+        }
+
+        /**
+         * Runs a batch on all buckets of the expirable index in parallel, the bulk size is shared by the buckets.
+         */
+        private void runBatch(long tickStart) {
+            final int bucketBulkSize = (bulkSize + expirableBuckets - 1) / expirableBuckets;
+            final int requested = bucketBulkSize * expirableBuckets;
+            final long batchStart = System.nanoTime();
+            final long[] cleaned = {0};
+            final int[] pending = {expirableBuckets};
+            final boolean[] failed = {false};
+            for (int bucket = 0; bucket < expirableBuckets; bucket++) {
+                final RedisClient client = expirableClient(bucket);
+                client.evalsha(luaScripts.get(LuaScript.CLEANUP).getSha(), Collections.emptyList(),
+                        cleanupArguments(bucketBulkSize, bucket), event -> {
+                    if (event.failed()) {
+                        failed[0] = true;
+                        String message = event.cause() != null ? event.cause().getMessage() : null;
+                        if (message != null && message.startsWith("NOSCRIPT")) {
+                            luaScripts.get(LuaScript.CLEANUP).loadLuaScript(client, new RedisCommandDoNothing(), 0);
+                        } else {
+                            log.warn("RedisStorage background expiry failed: " + message);
+                        }
+                    } else {
+                        Long cleanedResult = event.result().getLong(0);
+                        cleaned[0] += cleanedResult == null ? 0 : cleanedResult;
                     }
-                    int resToCleanLeft = 0;
-                    if (result != null && result.intValue() >= 0) {
-                        resToCleanLeft = result.intValue();
+                    if (--pending[0] == 0) {
+                        batchFinished(tickStart, requested, cleaned[0], millisSince(batchStart), failed[0]);
                     }
-                    JsonObject retObj = new JsonObject();
-                    retObj.put("cleanedResources", cleaned);
-                    retObj.put("expiredResourcesLeft", resToCleanLeft);
-                    DocumentResource r = new DocumentResource();
-                    byte[] content = decodeBinary(retObj.toString());
-                    r.readStream = new ByteArrayReadStream(content);
-                    r.length = content.length;
-                    r.closeHandler = event1 -> {
-                        // nothing to close
-                    };
-                    handler.handle(r);
                 });
             }
-        });
+        }
+
+        private void batchFinished(long tickStart, int requested, long cleaned, long durationMs, boolean failed) {
+            expired += cleaned;
+            if (failed) {
+                finishTick(tickStart);
+                return;
+            }
+            bulkSize = nextExpiryBulkSize(requested, cleaned, durationMs, batchMs);
+            if (durationMs > maxLatencyMs) {
+                backOff();
+                finishTick(tickStart);
+            } else if (cleaned >= requested && millisSince(tickStart) < timeBudgetMs) {
+                runBatch(tickStart);
+            } else {
+                finishTick(tickStart);
+            }
+        }
+
+        private void backOff() {
+            backoffs++;
+            backoff = Math.min(MAX_EXPIRY_BACKOFF, backoff * 2);
+            bulkSize = Math.max(MIN_EXPIRY_BULK_SIZE, bulkSize / 2);
+        }
+
+        private void finishTick(long tickStart) {
+            lastTickDurationMs = millisSince(tickStart);
+            long now = System.currentTimeMillis();
+            if (now > rateTimestamp) {
+                expiredPerSecond = (expired - rateExpired) * 1000.0 / (now - rateTimestamp);
+            }
+            rateTimestamp = now;
+            rateExpired = expired;
+            if (cleanupLease != null) {
+                cleanupLease.reportThroughput(expiredPerSecond);
+            }
+            countExpired(now, count -> {
+                if (count != null) {
+                    backlog = count;
+                }
+                schedule();
+            });
+        }
+
+        JsonObject statistics() {
+            JsonObject stats = new JsonObject();
+            stats.put("ticks", ticks);
+            stats.put("expired", expired);
+            stats.put("expiredPerSecond", expiredPerSecond);
+            stats.put("backlog", backlog);
+            stats.put("bulkSize", bulkSize);
+            stats.put("backoffs", backoffs);
+            stats.put("intervalMs", intervalMs * backoff);
+            stats.put("latencyMs", latencyMs);
+            stats.put("lastTickDurationMs", lastTickDurationMs);
+            return stats;
+        }
+    }
+
+    /**
+     * Removes the descendants of the collections detached by an asynchronous delete. Each batch removes a bounded
+     * amount of resources, so redis is never blocked for long. While there is work left, the batches follow each other
+     * with a short pause, otherwise the purging hash is polled once a second. With the cleanup lease enabled, only the
+     * leader purges.
+     */
+    private class Purger {
+        private final int batchSize;
+
+        private long timerId = -1;
+        private long batches = 0;
+        private long purged = 0;
+        private long purgedCollections = 0;
+
+        Purger(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        void schedule(long delayMs) {
+            timerId = vertx.setTimer(delayMs, id -> tick());
+        }
+
+        /**
+         * Starts the next batch right away when the purger is idle, used after a collection got detached.
+         */
+        void trigger() {
+            if (timerId >= 0 && vertx.cancelTimer(timerId)) {
+                schedule(1);
+            }
+        }
+
+        private void tick() {
+            timerId = -1;
+            if (cleanupLease != null && !cleanupLease.isLeading()) {
+                schedule(PURGE_IDLE_INTERVAL_MS);
+                return;
+            }
+            redisClient().hkeys(purgingKey, event -> {
+                if (event.failed()) {
+                    log.warn("RedisStorage could not read the collections to purge: " + event.cause().getMessage());
+                    schedule(PURGE_IDLE_INTERVAL_MS);
+                } else if (event.result().isEmpty()) {
+                    schedule(PURGE_IDLE_INTERVAL_MS);
+                } else {
+                    List<String> keys = Collections.singletonList(event.result().getString(0));
+                    List<String> arguments = Arrays.asList(
+                            redisResourcesPrefix,
+                            redisCollectionsPrefix,
+                            redisDeltaResourcesPrefix,
+                            redisDeltaEtagsPrefix,
+                            expirableSet,
+                            String.valueOf(expirableBuckets),
+                            redisCollectionMarkersPrefix,
+                            redisLockPrefix,
+                            purgingKey,
+                            String.valueOf(batchSize)
+                    );
+                    reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.PURGE, new Purge(keys, arguments), 0);
+                }
+            });
+        }
+
+        private void batchFinished(String key, boolean done, long purgedInBatch) {
+            batches++;
+            purged += purgedInBatch;
+            if (done) {
+                purgedCollections++;
+                log.info("Collection " + key + " purged");
+            }
+            schedule(PURGE_PAUSE_MS);
+        }
+
+        /**
+         * Reports the collections still being purged (with the amount of resources purged so far) along with the
+         * batches run by this instance.
+         */
+        void statistics(Handler<JsonObject> handler) {
+            JsonObject stats = new JsonObject();
+            stats.put("batchSize", batchSize);
+            stats.put("batches", batches);
+            stats.put("purged", purged);
+            stats.put("purgedCollections", purgedCollections);
+            redisClient().hgetall(purgingKey, event -> {
+                if (event.succeeded()) {
+                    JsonObject pending = new JsonObject();
+                    for (String key : event.result().fieldNames()) {
+                        pending.put(key.replace(':', '/'), Long.valueOf(event.result().getString(key)));
+                    }
+                    stats.put("pending", pending);
+                }
+                handler.handle(stats);
+            });
+        }
+
+        /**
+         * The Purge Command Execution.
+         * If the purge script cannot be found under the sha in luaScriptState, reload the script.
+         * To avoid infinite recursion, we limit the recursion.
+         */
+        private class Purge implements RedisCommand {
+
+            private List<String> keys;
+            private List<String> arguments;
+
+            Purge(List<String> keys, List<String> arguments) {
+                this.keys = keys;
+                this.arguments = arguments;
+            }
+
+            public void exec(final int executionCounter) {
+                redisClient(keys.get(0)).evalsha(luaScripts.get(LuaScript.PURGE).getSha(), keys, arguments, event -> {
+                    if (event.succeeded()) {
+                        Long purgedInBatch = event.result().getLong(1);
+                        batchFinished(keys.get(0), event.result().getLong(0) == 1L,
+                                purgedInBatch == null ? 0 : purgedInBatch);
+                        return;
+                    }
+                    String message = event.cause().getMessage();
+                    if (message != null && message.startsWith("NOSCRIPT") && executionCounter <= 10) {
+                        luaScripts.get(LuaScript.PURGE).loadLuaScript(new Purge(keys, arguments), executionCounter);
+                    } else {
+                        log.warn("Purging the collection " + keys.get(0) + " failed: " + message);
+                        schedule(PURGE_IDLE_INTERVAL_MS);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Elects a single instance as cleanup leader when several instances run against the same redis. The leader holds
+     * a lease key in redis and renews it every third of the lease duration. Only the leader runs the background expiry
+     * and the requested cleanups. When the leader stops renewing, another instance takes over after the lease expired.
+     * <p>
+     * The leader stores its cleanup throughput along with the lease, so every instance can report it.
+     */
+    private class CleanupLease {
+        private final String key;
+        private final long leaseMs;
+        private final String instance;
+
+        private String leader = null;
+        private double leaderThroughput = 0.0;
+        private double throughput = 0.0;
+        private long validUntil = 0;
+        private long acquisitions = 0;
+
+        CleanupLease(String key, long leaseMs) {
+            this.key = key;
+            this.leaseMs = Math.max(3, leaseMs);
+            this.instance = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString();
+        }
+
+        void start() {
+            renew();
+            vertx.setPeriodic(leaseMs / 3, timerId -> renew());
+        }
+
+        /**
+         * @return true when this instance holds the lease. A lease which could not be renewed in time is considered
+         * lost, so two instances never lead at the same time
+         */
+        boolean isLeading() {
+            return instance.equals(leader) && System.currentTimeMillis() < validUntil;
+        }
+
+        void reportThroughput(double cleanedPerSecond) {
+            this.throughput = cleanedPerSecond;
+        }
+
+        private void renew() {
+            final long requested = System.currentTimeMillis();
+            List<String> arguments = Arrays.asList(instance, String.valueOf(leaseMs), String.valueOf(throughput));
+            redisClient(key).evalsha(luaScripts.get(LuaScript.LEASE).getSha(), Collections.singletonList(key), arguments, event -> {
+                if (event.failed()) {
+                    String message = event.cause() != null ? event.cause().getMessage() : null;
+                    if (message != null && message.startsWith("NOSCRIPT")) {
+                        luaScripts.get(LuaScript.LEASE).loadLuaScript(new RedisCommandDoNothing(), 0);
+                    } else {
+                        log.warn("RedisStorage cleanup lease could not be renewed: " + message);
+                    }
+                    return;
+                }
+                boolean wasLeading = isLeading();
+                leader = event.result().getString(0);
+                leaderThroughput = parseThroughput(event.result().getString(1));
+                if (instance.equals(leader)) {
+                    validUntil = requested + leaseMs;
+                }
+                if (!wasLeading && isLeading()) {
+                    acquisitions++;
+                    log.info("RedisStorage instance " + instance + " acquired the cleanup lease");
+                } else if (wasLeading && !isLeading()) {
+                    log.info("RedisStorage instance " + instance + " lost the cleanup lease to " + leader);
+                }
+            });
+        }
+
+        private double parseThroughput(String value) {
+            try {
+                return value == null ? 0.0 : Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return 0.0;
+            }
+        }
+
+        /**
+         * @return the current leader and its throughput of the last renewal, or the own throughput when leading
+         */
+        JsonObject leader() {
+            boolean leading = isLeading();
+            return new JsonObject()
+                    .put("instance", leader)
+                    .put("self", leading)
+                    .put("cleanedPerSecond", leading ? throughput : leaderThroughput);
+        }
+
+        JsonObject statistics() {
+            return leader()
+                    .put("ownInstance", instance)
+                    .put("acquisitions", acquisitions);
+        }
+    }
+
+    /**
+     * Adapts the bulk size of the background expiry to the duration of the last batch. A batch taking longer than the
+     * target shrinks the bulk size proportionally. A full batch taking less than half of the target doubles it.
+     */
+    static int nextExpiryBulkSize(int bulkSize, long cleaned, long durationMs, long targetMs) {
+        if (durationMs > targetMs) {
+            return (int) Math.max(MIN_EXPIRY_BULK_SIZE, bulkSize * targetMs / durationMs);
+        }
+        if (cleaned >= bulkSize && durationMs * 2 < targetMs) {
+            return Math.min(MAX_EXPIRY_BULK_SIZE, bulkSize * 2);
+        }
+        return bulkSize;
+    }
+
+    private static long millisSince(long nanoTime) {
+        return (System.nanoTime() - nanoTime) / 1_000_000;
     }
 
     private String encodePath(String path) {
@@ -1031,20 +2907,35 @@ public class RedisStorage implements Storage {
         return ResourceNameUtil.replaceColonsAndSemiColons(path).replaceAll("/", ":");
     }
 
-    private String encodeBinary(byte[] bytes) {
-        try {
-            return new String(bytes, "ISO-8859-1");
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
+    /**
+     * Maps every byte to exactly one char. The bytes of a buffer backed by a single array are decoded in place,
+     * composite buffers are flattened once.
+     */
+    static String encodeBinary(Buffer buffer) {
+        ByteBuf byteBuf = buffer.getByteBuf();
+        if (byteBuf.hasArray()) {
+            return new String(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), byteBuf.readableBytes(),
+                    StandardCharsets.ISO_8859_1);
         }
+        return encodeBinary(buffer.getBytes());
     }
 
-    private byte[] decodeBinary(String s) {
-        try {
-            return s.getBytes("ISO-8859-1");
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
-        }
+    static String encodeBinary(byte[] bytes) {
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Maps every char back to exactly one byte.
+     */
+    static byte[] decodeBinary(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Wraps the bytes into a {@link Buffer} without copying them.
+     */
+    static Buffer wrapBinary(byte[] bytes) {
+        return Buffer.buffer(Unpooled.wrappedBuffer(bytes));
     }
 
     private void notFound(Handler<Resource> handler) {
@@ -1097,9 +2988,93 @@ public class RedisStorage implements Storage {
         } catch (Exception e) {
             // do nothing
         }
+        if (cleanupLease != null && !cleanupLease.isLeading()) {
+            // another instance is the leader and cleans up, only report its state
+            cleanupFinished(handler, 0);
+            return;
+        }
         cleanupRecursive(handler, 0, cleanupResourcesAmountUsed, CLEANUP_BULK_SIZE);
     }
 
+    /**
+     * Moves the entries of the former single expirable set to the buckets of the expirable index, in bulks of
+     * {@link #EXPIRABLE_MIGRATION_BULK_SIZE}. Until they are migrated, the entries are respected by reads but not
+     * cleaned up. Does nothing when the index has a single bucket.
+     *
+     * @param handler receives the amount of migrated entries
+     */
+    public void migrateExpirableIndex(Handler<AsyncResult<Long>> handler) {
+        if (expirableBuckets <= 1) {
+            handler.handle(Future.succeededFuture(0L));
+            return;
+        }
+        migrateExpirableIndex(0, 0, handler);
+    }
+
+    private void migrateExpirableIndex(final long migratedLastRun, final int executionCounter, final Handler<AsyncResult<Long>> handler) {
+        List<String> arguments = Arrays.asList(expirableSet, String.valueOf(expirableBuckets),
+                String.valueOf(EXPIRABLE_MIGRATION_BULK_SIZE));
+        final RedisClient client = redisClient();
+        client.evalsha(luaScripts.get(LuaScript.MIGRATE_EXPIRABLE).getSha(), Collections.emptyList(), arguments, event -> {
+            if (event.failed()) {
+                String message = event.cause() != null ? event.cause().getMessage() : null;
+                if (message != null && message.startsWith("NOSCRIPT") && executionCounter <= 10) {
+                    luaScripts.get(LuaScript.MIGRATE_EXPIRABLE).loadLuaScript(client,
+                            counter -> migrateExpirableIndex(migratedLastRun, counter, handler), executionCounter);
+                } else {
+                    log.error("Migration of the expirable index failed with message: " + message);
+                    handler.handle(Future.failedFuture(event.cause()));
+                }
+                return;
+            }
+            long migrated = migratedLastRun + event.result().getLong(0);
+            long remaining = event.result().getLong(1);
+            log.info("Migrated " + migrated + " entries of the expirable set " + expirableSet + ", " + remaining + " remaining");
+            if (remaining > 0) {
+                migrateExpirableIndex(migrated, executionCounter, handler);
+            } else {
+                handler.handle(Future.succeededFuture(migrated));
+            }
+        });
+    }
+
+    @Override
+    public void statistics(Handler<JsonObject> handler) {
+        JsonObject stats = new JsonObject();
+        stats.put("pool", new JsonObject()
+                .put("size", redisClients.size())
+                .put("strategy", redisPoolStrategy.name()));
+        if(getCoalescer != null) {
+            stats.put("batching", getCoalescer.statistics());
+        }
+        if(nearCache != null) {
+            stats.put("nearCache", nearCache.statistics());
+        }
+        if(backgroundExpiry != null) {
+            stats.put("backgroundExpiry", backgroundExpiry.statistics());
+        }
+        if(cleanupLease != null) {
+            stats.put("cleanupLease", cleanupLease.statistics());
+        }
+        if(compressionExecutor != null) {
+            stats.put("compression", compressionExecutor.statistics().mergeIn(compressionAdvisor.statistics()));
+        }
+        if(nativeExpiry) {
+            stats.put("nativeExpiry", new JsonObject()
+                    .put("active", expiryRepairActive)
+                    .put("repairs", expiryRepairs)
+                    .put("removedMembers", expiryRepairedMembers));
+        }
+        if(purger != null) {
+            purger.statistics(purgerStats -> {
+                stats.put("asyncDelete", purgerStats);
+                handler.handle(stats);
+            });
+            return;
+        }
+        handler.handle(stats);
+    }
+
     private boolean isEmpty(CharSequence cs) {
         return cs == null || cs.length() == 0;
     }
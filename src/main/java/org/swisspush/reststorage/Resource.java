@@ -15,6 +15,7 @@ public class Resource implements Comparable<Resource>{
     public boolean invalid = false;
     public boolean rejected = false;
     public boolean error = false;
+    public boolean notSupported = false; // The operation is not supported by the storage implementation
     public String invalidMessage;
     public String errorMessage;
 
@@ -4,14 +4,21 @@ import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.CaseInsensitiveHeaders;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.streams.Pump;
+import io.vertx.core.streams.ReadStream;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
+import org.swisspush.reststorage.util.CompressionExecutor;
+import org.swisspush.reststorage.util.GZIPUtil;
+import org.swisspush.reststorage.util.HttpRequestHeader;
 import org.swisspush.reststorage.util.LockMode;
 import org.swisspush.reststorage.util.ModuleConfiguration;
 import org.swisspush.reststorage.util.ResourceNameUtil;
@@ -26,6 +33,8 @@ import static org.swisspush.reststorage.util.HttpRequestParam.getString;
 
 public class RestStorageHandler implements Handler<HttpServerRequest> {
 
+    private static final int STREAM_WRITE_CHUNK_SIZE = 8192;
+
     private final Logger log;
     private final Router router;
     private final Storage storage;
@@ -41,8 +50,20 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
     private final boolean rejectStorageWriteOnLowMemory;
     private final boolean return200onDeleteNonExisting;
     private final DecimalFormat decimalFormat;
+    private final CompressionExecutor responseCompressionExecutor;
+    private final int responseCompressionThreshold;
 
     public RestStorageHandler(Vertx vertx, final Logger log, final Storage storage, final ModuleConfiguration config) {
+        this(vertx, log, storage, config, null);
+    }
+
+    /**
+     * @param compressionExecutor the executor compressing the responses, shared with the storage so the compressions
+     *                            of both are bounded together and counted in its statistics. When null, the handler
+     *                            creates its own executor on the same worker pool
+     */
+    public RestStorageHandler(Vertx vertx, final Logger log, final Storage storage, final ModuleConfiguration config,
+                              CompressionExecutor compressionExecutor) {
         this.router = Router.router(vertx);
         this.log = log;
         this.storage = storage;
@@ -54,6 +75,16 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
         this.decimalFormat = new DecimalFormat();
         this.decimalFormat.setMaximumFractionDigits(1);
 
+        if (config.isResponseCompressionEnabled() && compressionExecutor != null) {
+            this.responseCompressionExecutor = compressionExecutor;
+        } else if (config.isResponseCompressionEnabled()) {
+            this.responseCompressionExecutor = new CompressionExecutor(vertx, CompressionExecutor.POOL_NAME,
+                    config.getCompressionWorkerPoolSize(), config.getCompressionQueueSize());
+        } else {
+            this.responseCompressionExecutor = null;
+        }
+        this.responseCompressionThreshold = config.getResponseCompressionThreshold();
+
         prefixFixed = prefix.equals("/") ? "" : prefix;
 
         if (config.getEditorConfig() != null) {
@@ -62,16 +93,22 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
 
         router.postWithRegex(".*_cleanup").handler(this::cleanup);
 
-        router.postWithRegex(prefixFixed + ".*").handler(this::storageExpand);
+        router.getWithRegex(".*_statistics").handler(this::statistics);
+
+        router.postWithRegex(prefixFixed + ".*").handler(this::postResource);
 
         router.getWithRegex(prefixFixed + ".*").handler(this::getResource);
 
+        router.headWithRegex(prefixFixed + ".*").handler(this::headResource);
+
         router.putWithRegex(prefixFixed + ".*").handler(this::putResource);
 
         router.deleteWithRegex(prefixFixed + ".*").handler(this::deleteResource);
 
         router.getWithRegex(".*").handler(this::getResourceNotFound);
 
+        router.headWithRegex(".*").handler(this::getResourceNotFound);
+
         router.routeWithRegex(".*").handler(this::respondMethodNotAllowed);
     }
 
@@ -99,15 +136,78 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
             ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + documentResource.length);
             ctx.response().headers().add(CONTENT_TYPE.getName(), "application/json; charset=utf-8");
             ctx.response().setStatusCode(StatusCode.OK.getStatusCode());
-            final Pump pump = Pump.pump(documentResource.readStream, ctx.response());
-            documentResource.readStream.endHandler(nothing -> {
-                documentResource.closeHandler.handle(null);
-                ctx.response().end();
-            });
-            pump.start();
+            pipeDocument(documentResource, ctx.response());
         }, ctx.request().params().get("cleanupResourcesAmount"));
     }
 
+    /**
+     * Writes the content of the document to the response. Content held in memory below
+     * {@link BufferReadStream#SMALL_CONTENT_THRESHOLD} is written with a single call, everything else is pumped.
+     */
+    private void pipeDocument(DocumentResource documentResource, HttpServerResponse response) {
+        if (documentResource.readStream instanceof BufferReadStream
+                && ((BufferReadStream) documentResource.readStream).isSmall()) {
+            documentResource.closeHandler.handle(null);
+            response.end(((BufferReadStream) documentResource.readStream).getBuffer());
+            return;
+        }
+        final Pump pump = Pump.pump(documentResource.readStream, response);
+        documentResource.readStream.endHandler(nothing -> {
+            documentResource.closeHandler.handle(null);
+            response.end();
+        });
+        Handler<Throwable> exceptionHandler = exception -> {
+            log.error("Error while streaming document: " + exception.getMessage());
+            documentResource.closeHandler.handle(null);
+            response.close();
+        };
+        documentResource.readStream.exceptionHandler(exceptionHandler);
+        pump.start();
+    }
+
+    /**
+     * Ends the response with the body, setting its Content-Length. When response compression is enabled, the body is
+     * at least as large as the threshold and the client accepts gzip, the body is compressed on the compression pool
+     * and sent with <code>Content-Encoding: gzip</code>. When the compression fails or the pool is saturated, the body
+     * is sent uncompressed.
+     */
+    private void endWithCompressible(RoutingContext ctx, Buffer body) {
+        if (responseCompressionExecutor == null || body.length() < responseCompressionThreshold) {
+            ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + body.length());
+            ctx.response().end(body);
+            return;
+        }
+        ctx.response().headers().add("Vary", ACCEPT_ENCODING.getName());
+        if (!acceptsGzip(ctx.request().headers().get(ACCEPT_ENCODING.getName()))) {
+            ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + body.length());
+            ctx.response().end(body);
+            return;
+        }
+        GZIPUtil.compressResource(responseCompressionExecutor, log, body.getBytes(), compressed -> {
+            if (compressed.failed()) {
+                ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + body.length());
+                ctx.response().end(body);
+                return;
+            }
+            ctx.response().headers().add(CONTENT_ENCODING.getName(), "gzip");
+            ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + compressed.result().length);
+            ctx.response().end(Buffer.buffer(compressed.result()));
+        });
+    }
+
+    private void statistics(RoutingContext ctx) {
+        if (log.isTraceEnabled()) {
+            log.trace("RestStorageHandler statistics");
+        }
+        storage.statistics(statistics -> {
+            String body = statistics.encode();
+            ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + body.length());
+            ctx.response().headers().add(CONTENT_TYPE.getName(), "application/json; charset=utf-8");
+            ctx.response().setStatusCode(StatusCode.OK.getStatusCode());
+            ctx.response().end(body);
+        });
+    }
+
     private void getResourceNotFound(RoutingContext ctx) {
         if (log.isTraceEnabled()) {
             log.trace("RestStorageHandler resource not found: " + ctx.request().uri());
@@ -127,20 +227,62 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
         String offsetFromUrl = getString(params, OFFSET_PARAMETER);
         String limitFromUrl = getString(params, LIMIT_PARAMETER);
         OffsetLimit offsetLimit = UrlParser.offsetLimit(offsetFromUrl, limitFromUrl);
-        storage.get(path, etag, offsetLimit.offset, offsetLimit.limit, new Handler<Resource>() {
+        String accept = ctx.request().headers().get("Accept");
+        boolean html = accept != null && accept.contains("text/html");
+        if (containsParam(params, AFTER_PARAMETER) && !html) {
+            storage.list(path, getString(params, AFTER_PARAMETER), offsetLimit.limit, resource -> {
+                if (resource.notSupported) {
+                    respondWith(ctx.response(), StatusCode.NOT_IMPLEMENTED, resource.errorMessage);
+                } else if (resource.error) {
+                    respondWithError(ctx, resource.errorMessage);
+                } else if (resource.invalid) {
+                    ctx.response().setStatusCode(StatusCode.BAD_REQUEST.getStatusCode());
+                    ctx.response().setStatusMessage(StatusCode.BAD_REQUEST.getStatusMessage());
+                    ctx.response().end(resource.invalidMessage);
+                } else if (resource instanceof CollectionResource && resource.exists) {
+                    respondWithCollectionPage(ctx, collectionName(path), (CollectionResource) resource);
+                } else {
+                    // not a collection, handle as a regular GET
+                    getResource(ctx, path, etag, offsetLimit);
+                }
+            });
+        } else if (getBoolean(params, STREAM_PARAMETER) && !html) {
+            if (offsetFromUrl != null || limitFromUrl != null) {
+                // a stream always lists the whole collection, paging is done with the after parameter
+                ctx.response().setStatusCode(StatusCode.BAD_REQUEST.getStatusCode());
+                ctx.response().setStatusMessage(StatusCode.BAD_REQUEST.getStatusMessage());
+                ctx.response().end("Bad Request: The " + OFFSET_PARAMETER.getName() + " and " + LIMIT_PARAMETER.getName()
+                        + " parameters are not supported with " + STREAM_PARAMETER.getName() + "=true");
+                return;
+            }
+            storage.streamCollection(path, resource -> {
+                if (resource.notSupported) {
+                    respondWith(ctx.response(), StatusCode.NOT_IMPLEMENTED, resource.errorMessage);
+                } else if (resource.error) {
+                    respondWithError(ctx, resource.errorMessage);
+                } else if (resource instanceof CollectionResource && resource.exists
+                        && ((CollectionResource) resource).itemStream != null) {
+                    streamCollection(ctx, collectionName(path), ((CollectionResource) resource).itemStream);
+                } else {
+                    // not a collection, handle as a regular GET
+                    getResource(ctx, path, etag, offsetLimit);
+                }
+            });
+        } else {
+            getResource(ctx, path, etag, offsetLimit);
+        }
+    }
+
+    private void getResource(RoutingContext ctx, String path, String etag, OffsetLimit offsetLimit) {
+        boolean acceptGzip = acceptsGzip(ctx.request().headers().get(ACCEPT_ENCODING.getName()));
+        storage.get(path, etag, offsetLimit.offset, offsetLimit.limit, acceptGzip, new Handler<Resource>() {
             public void handle(Resource resource) {
                 if (log.isTraceEnabled()) {
                     log.trace("RestStorageHandler resource exists: " + resource.exists);
                 }
 
                 if (resource.error) {
-                    ctx.response().setStatusCode(StatusCode.INTERNAL_SERVER_ERROR.getStatusCode());
-                    ctx.response().setStatusMessage(StatusCode.INTERNAL_SERVER_ERROR.getStatusMessage());
-                    String message = StatusCode.INTERNAL_SERVER_ERROR.getStatusMessage();
-                    if (resource.errorMessage != null) {
-                        message = resource.errorMessage;
-                    }
-                    ctx.response().end(message);
+                    respondWithError(ctx, resource.errorMessage);
                     return;
                 }
 
@@ -221,10 +363,9 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
                             if (log.isTraceEnabled()) {
                                 log.trace("RestStorageHandler return collection: " + sortedNames);
                             }
-                            String body = new JsonObject().put(collectionName, array).encode();
-                            ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + body.length());
+                            Buffer body = Buffer.buffer(new JsonObject().put(collectionName, array).encode());
                             ctx.response().headers().add(CONTENT_TYPE.getName(), "application/json; charset=utf-8");
-                            ctx.response().end(body);
+                            endWithCompressible(ctx, body);
                         }
                     }
                     if (resource instanceof DocumentResource) {
@@ -260,15 +401,14 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
                             if (documentResource.etag != null && !documentResource.etag.isEmpty()) {
                                 ctx.response().headers().add(ETAG_HEADER.getName(), documentResource.etag);
                             }
+                            if (documentResource.contentEncoding != null) {
+                                // the content is sent as stored
+                                ctx.response().headers().add(CONTENT_ENCODING.getName(), documentResource.contentEncoding);
+                                ctx.response().headers().add("Vary", ACCEPT_ENCODING.getName());
+                            }
                             ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + documentResource.length);
                             ctx.response().headers().add(CONTENT_TYPE.getName(), mimeType);
-                            final Pump pump = Pump.pump(documentResource.readStream, ctx.response());
-                            documentResource.readStream.endHandler(nothing -> {
-                                documentResource.closeHandler.handle(null);
-                                ctx.response().end();
-                            });
-                            pump.start();
-                            // TODO: exception handlers
+                            pipeDocument(documentResource, ctx.response());
                         }
                     }
                 } else {
@@ -280,30 +420,203 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
                     ctx.response().end(StatusCode.NOT_FOUND.toString());
                 }
             }
+        });
+    }
 
-            private List<String> sortedNames(CollectionResource collection) {
-                List<String> collections = new ArrayList<>();
-                List<String> documents = new ArrayList<>();
-                for (Resource r : collection.items) {
-                    String name = r.name;
-                    if (r instanceof CollectionResource) {
-                        collections.add(name + "/");
-                    } else {
-                        documents.add(name);
+    /**
+     * @return true when the Accept-Encoding header contains gzip (or *) without a quality of 0
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!"gzip".equalsIgnoreCase(name) && !"*".equals(name)) {
+                continue;
+            }
+            boolean rejected = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        rejected = Double.parseDouble(parameter.substring(2)) == 0;
+                    } catch (NumberFormatException ex) {
+                        rejected = true;
                     }
                 }
-                collections.addAll(documents);
-                return collections;
             }
-        });
+            if (!rejected) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private void putResource(RoutingContext ctx) {
-        ctx.request().pause();
+    /**
+     * Answers a HEAD request with the headers of the corresponding GET request. The content of documents is not
+     * read. The length of a collection is only known after listing it, so collections are listed like on a GET
+     * request. The body is omitted by the http server for HEAD requests.
+     */
+    private void headResource(RoutingContext ctx) {
         final String path = cleanPath(ctx.request().path().substring(prefixFixed.length()));
+        final String etag = ctx.request().headers().get(IF_NONE_MATCH_HEADER.getName());
+        if (log.isTraceEnabled()) {
+            log.trace("RestStorageHandler got HEAD Request path: " + path + " etag: " + etag);
+        }
+        boolean acceptGzip = acceptsGzip(ctx.request().headers().get(ACCEPT_ENCODING.getName()));
+        storage.head(path, etag, acceptGzip, resource -> {
+            if (resource.error) {
+                respondWithError(ctx, resource.errorMessage);
+            } else if (!resource.modified) {
+                ctx.response().setStatusCode(StatusCode.NOT_MODIFIED.getStatusCode());
+                ctx.response().setStatusMessage(StatusCode.NOT_MODIFIED.getStatusMessage());
+                ctx.response().headers().set(ETAG_HEADER.getName(), etag);
+                ctx.response().headers().add(CONTENT_LENGTH.getName(), "0");
+                ctx.response().end();
+            } else if (!resource.exists) {
+                ctx.response().setStatusCode(StatusCode.NOT_FOUND.getStatusCode());
+                ctx.response().setStatusMessage(StatusCode.NOT_FOUND.getStatusMessage());
+                ctx.response().end();
+            } else if (resource instanceof CollectionResource) {
+                // answered from the existence of the collection, the length of the listing is unknown without listing it
+                String accept = ctx.request().headers().get("Accept");
+                boolean html = accept != null && accept.contains("text/html");
+                if (html && !ctx.request().uri().endsWith("/")) {
+                    ctx.response().setStatusCode(StatusCode.FOUND.getStatusCode());
+                    ctx.response().setStatusMessage(StatusCode.FOUND.getStatusMessage());
+                    ctx.response().headers().add("Location", ctx.request().uri() + "/");
+                } else {
+                    ctx.response().headers().add(CONTENT_TYPE.getName(), html ? "text/html; charset=utf-8" : "application/json; charset=utf-8");
+                }
+                ctx.response().end();
+            } else if (ctx.request().uri().endsWith("/")) {
+                ctx.response().setStatusCode(StatusCode.FOUND.getStatusCode());
+                ctx.response().setStatusMessage(StatusCode.FOUND.getStatusMessage());
+                ctx.response().headers().add("Location", ctx.request().uri().substring(0, ctx.request().uri().length() - 1));
+                ctx.response().end();
+            } else {
+                DocumentResource documentResource = (DocumentResource) resource;
+                if (documentResource.etag != null && !documentResource.etag.isEmpty()) {
+                    ctx.response().headers().add(ETAG_HEADER.getName(), documentResource.etag);
+                }
+                if (documentResource.contentEncoding != null) {
+                    // the same headers as a GET sending the content as stored
+                    ctx.response().headers().add(CONTENT_ENCODING.getName(), documentResource.contentEncoding);
+                    ctx.response().headers().add("Vary", ACCEPT_ENCODING.getName());
+                }
+                ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + documentResource.length);
+                ctx.response().headers().add(CONTENT_TYPE.getName(), mimeTypeResolver.resolveMimeType(path));
+                ctx.response().end();
+            }
+        });
+    }
 
-        MultiMap headers = ctx.request().headers();
+    private List<String> sortedNames(CollectionResource collection) {
+        List<String> collections = new ArrayList<>();
+        List<String> documents = new ArrayList<>();
+        for (Resource r : collection.items) {
+            String name = r.name;
+            if (r instanceof CollectionResource) {
+                collections.add(name + "/");
+            } else {
+                documents.add(name);
+            }
+        }
+        collections.addAll(documents);
+        return collections;
+    }
 
+    /**
+     * Responds with a page of a collection. The continuation token of the next page is provided in the
+     * <code>next</code> field, which is missing on the last page. The members are not sorted by name like an unpaged
+     * listing but kept in the order the storage traverses the pages, see {@link Storage#list}.
+     */
+    private void respondWithCollectionPage(RoutingContext ctx, String collectionName, CollectionResource collection) {
+        JsonArray array = new JsonArray();
+        List<String> sortedNames = sortedNames(collection);
+        ResourceNameUtil.resetReplacedColonsAndSemiColonsInList(sortedNames);
+        sortedNames.forEach(array::add);
+        JsonObject page = new JsonObject().put(collectionName, array);
+        if (collection.next != null) {
+            page.put("next", collection.next);
+        }
+        ctx.response().headers().add(CONTENT_TYPE.getName(), "application/json; charset=utf-8");
+        endWithCompressible(ctx, Buffer.buffer(page.encode()));
+    }
+
+    private void respondWithError(RoutingContext ctx, String errorMessage) {
+        ctx.response().setStatusCode(StatusCode.INTERNAL_SERVER_ERROR.getStatusCode());
+        ctx.response().setStatusMessage(StatusCode.INTERNAL_SERVER_ERROR.getStatusMessage());
+        String message = StatusCode.INTERNAL_SERVER_ERROR.getStatusMessage();
+        if (errorMessage != null) {
+            message = errorMessage;
+        }
+        ctx.response().end(message);
+    }
+
+    /**
+     * Writes the members of a collection as json with chunked transfer encoding, in the order of the item stream. The
+     * members are collected into chunks of {@link #STREAM_WRITE_CHUNK_SIZE} bytes. The item stream is paused while the
+     * write queue of the response is full and stopped when the client closes the connection.
+     */
+    private void streamCollection(RoutingContext ctx, String collectionName, ReadStream<Resource> itemStream) {
+        final HttpServerResponse response = ctx.response();
+        response.setChunked(true);
+        response.headers().add(CONTENT_TYPE.getName(), "application/json; charset=utf-8");
+        final Buffer[] pending = {Buffer.buffer(STREAM_WRITE_CHUNK_SIZE).appendString("{" + Json.encode(collectionName) + ":[")};
+        final boolean[] first = {true};
+        final boolean[] closed = {false};
+        response.closeHandler(v -> {
+            // no more chunks are fetched once paused
+            closed[0] = true;
+            itemStream.pause();
+        });
+        itemStream.exceptionHandler(exception -> {
+            log.error("Error while streaming collection '" + collectionName + "': " + exception.getMessage());
+            if (!closed[0]) {
+                response.close();
+            }
+        });
+        itemStream.endHandler(v -> {
+            if (!closed[0]) {
+                response.end(pending[0].appendString("]}"));
+            }
+        });
+        itemStream.handler(item -> {
+            if (closed[0]) {
+                return;
+            }
+            String name = ResourceNameUtil.resetReplacedColonsAndSemiColons(item.name);
+            if (item instanceof CollectionResource) {
+                name = name + "/";
+            }
+            if (!first[0]) {
+                pending[0].appendString(",");
+            }
+            first[0] = false;
+            pending[0].appendString(Json.encode(name));
+            if (pending[0].length() >= STREAM_WRITE_CHUNK_SIZE) {
+                response.write(pending[0]);
+                pending[0] = Buffer.buffer(STREAM_WRITE_CHUNK_SIZE);
+                if (response.writeQueueFull()) {
+                    itemStream.pause();
+                    response.drainHandler(v -> itemStream.resume());
+                }
+            }
+        });
+    }
+
+    /**
+     * Rejects a write request with {@link StatusCode#INSUFFICIENT_STORAGE} when the current memory usage is higher
+     * than the importance level provided with the {@link HttpRequestHeader#IMPORTANCE_LEVEL_HEADER} header, or with
+     * {@link StatusCode#BAD_REQUEST} when the header is invalid.
+     *
+     * @return true when the request was rejected and the response is ended
+     */
+    private boolean isRejectedOnLowMemory(RoutingContext ctx, String method) {
+        MultiMap headers = ctx.request().headers();
         Integer importanceLevel;
         if (containsHeader(headers, IMPORTANCE_LEVEL_HEADER)) {
             importanceLevel = getInteger(headers, IMPORTANCE_LEVEL_HEADER);
@@ -312,8 +625,8 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
                 ctx.response().setStatusCode(StatusCode.BAD_REQUEST.getStatusCode());
                 ctx.response().setStatusMessage(StatusCode.BAD_REQUEST.getStatusMessage());
                 ctx.response().end("Invalid " + IMPORTANCE_LEVEL_HEADER.getName() + " header: " + headers.get(IMPORTANCE_LEVEL_HEADER.getName()));
-                log.error("Rejecting PUT request to " + ctx.request().uri() + " because " + IMPORTANCE_LEVEL_HEADER.getName() + " header, has an invalid value: " + headers.get(IMPORTANCE_LEVEL_HEADER.getName()));
-                return;
+                log.error("Rejecting " + method + " request to " + ctx.request().uri() + " because " + IMPORTANCE_LEVEL_HEADER.getName() + " header, has an invalid value: " + headers.get(IMPORTANCE_LEVEL_HEADER.getName()));
+                return true;
             }
 
             if (rejectStorageWriteOnLowMemory) {
@@ -324,9 +637,9 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
                         ctx.response().setStatusCode(StatusCode.INSUFFICIENT_STORAGE.getStatusCode());
                         ctx.response().setStatusMessage(StatusCode.INSUFFICIENT_STORAGE.getStatusMessage());
                         ctx.response().end(StatusCode.INSUFFICIENT_STORAGE.getStatusMessage());
-                        log.info("Rejecting PUT request to " + ctx.request().uri() + " because current memory usage of "
+                        log.info("Rejecting " + method + " request to " + ctx.request().uri() + " because current memory usage of "
                                 + decimalFormat.format(currentMemoryUsage.get()) + "% is higher than provided importance level of " + importanceLevel + "%");
-                        return;
+                        return true;
                     }
                 } else {
                     log.warn("Rejecting storage writes on low memory feature disabled, because current memory usage not available");
@@ -335,9 +648,21 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
                 log.warn("Received request with " + IMPORTANCE_LEVEL_HEADER.getName() + " header, but rejecting storage writes on low memory feature is disabled");
             }
         } else if (rejectStorageWriteOnLowMemory) {
-            log.info("Received PUT request to " + ctx.request().uri() + " without " + IMPORTANCE_LEVEL_HEADER.getName()
+            log.info("Received " + method + " request to " + ctx.request().uri() + " without " + IMPORTANCE_LEVEL_HEADER.getName()
                     + " header. Going to handle this request with highest importance");
         }
+        return false;
+    }
+
+    private void putResource(RoutingContext ctx) {
+        ctx.request().pause();
+        final String path = cleanPath(ctx.request().path().substring(prefixFixed.length()));
+
+        MultiMap headers = ctx.request().headers();
+
+        if (isRejectedOnLowMemory(ctx, "PUT")) {
+            return;
+        }
 
         Long expire = -1L; // default infinit
         if (containsHeader(headers, EXPIRE_AFTER_HEADER)) {
@@ -563,10 +888,335 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
                 });
     }
 
+    private void postResource(RoutingContext ctx) {
+        if (containsParam(ctx.request().params(), BATCH_PARAMETER)) {
+            batch(ctx);
+        } else if (containsParam(ctx.request().params(), MULTI_GET_PARAMETER)) {
+            multiGet(ctx);
+        } else {
+            storageExpand(ctx);
+        }
+    }
+
+    /**
+     * Executes the puts and deletes listed in the body at once. The paths of the operations are relative to the path
+     * of the request. Responds with the status of every operation, as a single PUT or DELETE would respond. The
+     * importance level of the request applies to the whole batch.
+     */
+    private void batch(RoutingContext ctx) {
+        if (isRejectedOnLowMemory(ctx, "batch")) {
+            return;
+        }
+        final String basePath = cleanPath(ctx.request().path().substring(prefixFixed.length()));
+        ctx.request().bodyHandler(body -> {
+            final List<BatchOperation> operations = new ArrayList<>();
+            final List<String> paths = new ArrayList<>();
+            try {
+                JsonArray operationsArray = new JsonObject(body.toString()).getJsonArray("operations");
+                if (operationsArray == null) {
+                    respondWithBadRequest(ctx.request(), "Bad Request: Expected array field 'operations' with the operations of the batch");
+                    return;
+                }
+                for (int i = 0; i < operationsArray.size(); i++) {
+                    operations.add(parseBatchOperation(basePath, operationsArray.getJsonObject(i)));
+                    paths.add(operationsArray.getJsonObject(i).getString("path", ""));
+                }
+            } catch (IllegalArgumentException ex) {
+                respondWithBadRequest(ctx.request(), "Bad Request: " + ex.getMessage());
+                return;
+            } catch (RuntimeException ex) {
+                respondWithBadRequest(ctx.request(), "Bad Request: Unable to parse body of batch POST request");
+                return;
+            }
+
+            if (log.isTraceEnabled()) {
+                log.trace("RestStorageHandler batch of " + operations.size() + " operations: " + ctx.request().uri());
+            }
+
+            storage.batch(operations, resources -> {
+                if (respondedNotSupported(ctx, resources)) {
+                    return;
+                }
+                JsonArray results = new JsonArray();
+                for (int i = 0; i < operations.size(); i++) {
+                    results.add(batchResult(paths.get(i), operations.get(i), resources.get(i)));
+                }
+                ctx.response().headers().add(CONTENT_TYPE.getName(), "application/json; charset=utf-8");
+                ctx.response().end(new JsonObject().put("results", results).encode());
+            });
+        });
+    }
+
+    /**
+     * Parses an operation of a batch. Its headers are the ones of a single PUT or DELETE, the content of a PUT is
+     * either a json object or array ('content') or base64 encoded ('base64').
+     *
+     * @throws IllegalArgumentException when the operation is not valid
+     */
+    private BatchOperation parseBatchOperation(String basePath, JsonObject json) {
+        if (json == null) {
+            throw new IllegalArgumentException("Expected an object for every operation");
+        }
+        String method = json.getString("method", "");
+        String path = cleanPath(basePath + "/" + json.getString("path", ""));
+        BatchOperation operation;
+        if ("PUT".equalsIgnoreCase(method)) {
+            Object content = json.getValue("content");
+            if (content instanceof JsonObject || content instanceof JsonArray) {
+                operation = BatchOperation.put(path, Buffer.buffer(Json.encode(content)));
+            } else if (json.getString("base64") != null) {
+                operation = BatchOperation.put(path, Buffer.buffer(json.getBinary("base64")));
+            } else {
+                throw new IllegalArgumentException("Expected field 'content' or 'base64' with the content to put to " + path);
+            }
+        } else if ("DELETE".equalsIgnoreCase(method)) {
+            operation = BatchOperation.delete(path);
+            operation.confirmCollectionDelete = confirmCollectionDelete;
+            operation.deleteRecursive = json.getBoolean(RECURSIVE_PARAMETER.getName(), false);
+        } else {
+            throw new IllegalArgumentException("Unsupported method '" + method + "', expected PUT or DELETE");
+        }
+
+        MultiMap headers = new CaseInsensitiveHeaders();
+        JsonObject headersObject = json.getJsonObject("headers");
+        if (headersObject != null) {
+            for (Map.Entry<String, Object> header : headersObject) {
+                headers.add(header.getKey(), String.valueOf(header.getValue()));
+            }
+        }
+        if (containsHeader(headers, EXPIRE_AFTER_HEADER)) {
+            operation.expire = requireLong(headers, EXPIRE_AFTER_HEADER);
+        }
+        if (containsHeader(headers, LOCK_HEADER)) {
+            operation.lockOwner = headers.get(LOCK_HEADER.getName());
+            if (containsHeader(headers, LOCK_MODE_HEADER)) {
+                try {
+                    operation.lockMode = LockMode.valueOf(headers.get(LOCK_MODE_HEADER.getName()).toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid " + LOCK_MODE_HEADER.getName() + " header: " + headers.get(LOCK_MODE_HEADER.getName()));
+                }
+            }
+            if (containsHeader(headers, LOCK_EXPIRE_AFTER_HEADER)) {
+                operation.lockExpire = requireLong(headers, LOCK_EXPIRE_AFTER_HEADER);
+            }
+        }
+        operation.etag = headers.get(IF_NONE_MATCH_HEADER.getName());
+        operation.storeCompressed = Boolean.parseBoolean(headers.get(COMPRESS_HEADER.getName()));
+        return operation;
+    }
+
+    private long requireLong(MultiMap headers, HttpRequestHeader header) {
+        Long value = getLong(headers, header);
+        if (value == null) {
+            throw new IllegalArgumentException("Invalid " + header.getName() + " header: " + headers.get(header.getName()));
+        }
+        return value;
+    }
+
+    /**
+     * @return the status of an operation of a batch, as the PUT or DELETE handler would respond
+     */
+    private JsonObject batchResult(String path, BatchOperation operation, Resource resource) {
+        StatusCode statusCode = StatusCode.OK;
+        String message = null;
+        if (resource.rejected) {
+            statusCode = StatusCode.CONFLICT;
+        } else if (resource.error) {
+            statusCode = operation.method == BatchOperation.Method.PUT ? StatusCode.INTERNAL_SERVER_ERROR : StatusCode.BAD_REQUEST;
+            message = resource.errorMessage;
+        } else if (operation.method == BatchOperation.Method.PUT) {
+            if (!resource.modified) {
+                statusCode = StatusCode.NOT_MODIFIED;
+            } else if (resource instanceof CollectionResource || !resource.exists) {
+                statusCode = StatusCode.METHOD_NOT_ALLOWED;
+            }
+        } else if (!resource.exists && !return200onDeleteNonExisting) {
+            statusCode = StatusCode.NOT_FOUND;
+        }
+        JsonObject result = new JsonObject()
+                .put("method", operation.method.name())
+                .put("path", path)
+                .put("status", statusCode.getStatusCode());
+        if (message != null) {
+            result.put("message", message);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the resources listed in the body at once. The paths of the resources are relative to the path of the
+     * request, every path can be given with the etag known by the client. Responds with the status, etag and content
+     * of every resource as json or, when multipart/mixed is accepted, with a part per resource.
+     */
+    private void multiGet(RoutingContext ctx) {
+        final String basePath = cleanPath(ctx.request().path().substring(prefixFixed.length()));
+        final String accept = ctx.request().headers().get(ACCEPT.getName());
+        final boolean multipart = accept != null && accept.contains("multipart/mixed");
+        ctx.request().bodyHandler(body -> {
+            final List<String> names = new ArrayList<>();
+            final List<String> paths = new ArrayList<>();
+            final List<String> etags = new ArrayList<>();
+            try {
+                JsonArray resourcesArray = new JsonObject(body.toString()).getJsonArray("resources");
+                if (resourcesArray == null) {
+                    respondWithBadRequest(ctx.request(), "Bad Request: Expected array field 'resources' with the paths of the resources");
+                    return;
+                }
+                for (Object entry : resourcesArray) {
+                    JsonObject resource = entry instanceof JsonObject ? (JsonObject) entry : new JsonObject().put("path", (String) entry);
+                    String name = resource.getString("path");
+                    if (name == null) {
+                        respondWithBadRequest(ctx.request(), "Bad Request: Expected field 'path' for every resource");
+                        return;
+                    }
+                    names.add(name);
+                    paths.add(cleanPath(basePath + "/" + name));
+                    etags.add(resource.getString("etag"));
+                }
+            } catch (RuntimeException ex) {
+                respondWithBadRequest(ctx.request(), "Bad Request: Unable to parse body of multiGet POST request");
+                return;
+            }
+
+            storage.multiGet(paths, etags, resources -> {
+                if (respondedNotSupported(ctx, resources)) {
+                    return;
+                }
+                if (multipart) {
+                    respondWithMultipart(ctx, names, paths, etags, resources);
+                    return;
+                }
+                JsonArray results = new JsonArray();
+                for (int i = 0; i < resources.size(); i++) {
+                    results.add(multiGetResult(names.get(i), paths.get(i), etags.get(i), resources.get(i)));
+                }
+                ctx.response().headers().add(CONTENT_TYPE.getName(), "application/json; charset=utf-8");
+                ctx.response().end(new JsonObject().put("resources", results).encode());
+            });
+        });
+    }
+
+    /**
+     * @return the status, etag and content of a resource of a multi-get. The content of json documents and of
+     * collections is embedded as json, other content base64 encoded
+     */
+    private JsonObject multiGetResult(String name, String path, String etag, Resource resource) {
+        JsonObject result = new JsonObject().put("path", name);
+        StatusCode statusCode = multiGetStatus(resource);
+        result.put("status", statusCode.getStatusCode());
+        if (statusCode == StatusCode.NOT_MODIFIED) {
+            result.put("etag", etag);
+        } else if (statusCode == StatusCode.INTERNAL_SERVER_ERROR) {
+            result.put("message", resource.errorMessage);
+        } else if (resource instanceof CollectionResource) {
+            result.put("content", new JsonObject().put(collectionName(path), collectionNames((CollectionResource) resource)));
+        } else if (statusCode == StatusCode.OK) {
+            DocumentResource document = (DocumentResource) resource;
+            if (document.etag != null && !document.etag.isEmpty()) {
+                result.put("etag", document.etag);
+            }
+            Buffer content = ((BufferReadStream) document.readStream).getBuffer();
+            Object json = mimeTypeResolver.resolveMimeType(path).contains("application/json") ? parseJson(content) : null;
+            if (json != null) {
+                result.put("content", json);
+            } else {
+                result.put("base64", content.getBytes());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Responds with a multipart/mixed body holding a part per resource of a multi-get. Every part has the path and
+     * status of its resource in the headers Content-Location and X-Status.
+     */
+    private void respondWithMultipart(RoutingContext ctx, List<String> names, List<String> paths, List<String> etags,
+                                      List<Resource> resources) {
+        String boundary = UUID.randomUUID().toString();
+        Buffer body = Buffer.buffer();
+        for (int i = 0; i < resources.size(); i++) {
+            Resource resource = resources.get(i);
+            StatusCode statusCode = multiGetStatus(resource);
+            Buffer content = Buffer.buffer();
+            String contentType = null;
+            String etag = null;
+            if (statusCode == StatusCode.NOT_MODIFIED) {
+                etag = etags.get(i);
+            } else if (statusCode == StatusCode.INTERNAL_SERVER_ERROR && resource.errorMessage != null) {
+                content = Buffer.buffer(resource.errorMessage);
+            } else if (resource instanceof CollectionResource) {
+                content = Buffer.buffer(new JsonObject().put(collectionName(paths.get(i)),
+                        collectionNames((CollectionResource) resource)).encode());
+                contentType = "application/json; charset=utf-8";
+            } else if (statusCode == StatusCode.OK) {
+                DocumentResource document = (DocumentResource) resource;
+                content = ((BufferReadStream) document.readStream).getBuffer();
+                contentType = mimeTypeResolver.resolveMimeType(paths.get(i));
+                etag = document.etag;
+            }
+            body.appendString("--" + boundary + "\r\n");
+            body.appendString("Content-Location: " + names.get(i) + "\r\n");
+            body.appendString("X-Status: " + statusCode.getStatusCode() + "\r\n");
+            if (etag != null && !etag.isEmpty()) {
+                body.appendString(ETAG_HEADER.getName() + ": " + etag + "\r\n");
+            }
+            if (contentType != null) {
+                body.appendString(CONTENT_TYPE.getName() + ": " + contentType + "\r\n");
+            }
+            body.appendString(CONTENT_LENGTH.getName() + ": " + content.length() + "\r\n\r\n");
+            body.appendBuffer(content).appendString("\r\n");
+        }
+        body.appendString("--" + boundary + "--\r\n");
+        ctx.response().headers().add(CONTENT_TYPE.getName(), "multipart/mixed; boundary=" + boundary);
+        ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + body.length());
+        ctx.response().end(body);
+    }
+
+    private StatusCode multiGetStatus(Resource resource) {
+        if (resource.error) {
+            return StatusCode.INTERNAL_SERVER_ERROR;
+        } else if (!resource.modified) {
+            return StatusCode.NOT_MODIFIED;
+        } else if (!resource.exists) {
+            return StatusCode.NOT_FOUND;
+        }
+        return StatusCode.OK;
+    }
+
+    private JsonArray collectionNames(CollectionResource collection) {
+        JsonArray array = new JsonArray();
+        List<String> sortedNames = sortedNames(collection);
+        ResourceNameUtil.resetReplacedColonsAndSemiColonsInList(sortedNames);
+        sortedNames.forEach(array::add);
+        return array;
+    }
+
+    /**
+     * @return the json object or array of the content or null when the content is no json object or array
+     */
+    private Object parseJson(Buffer content) {
+        try {
+            Object json = Json.decodeValue(content.toString(), Object.class);
+            if (json instanceof Map) {
+                return new JsonObject((Map<String, Object>) json);
+            } else if (json instanceof List) {
+                return new JsonArray((List) json);
+            }
+        } catch (DecodeException ex) {
+            // not json, embedded base64 encoded
+        }
+        return null;
+    }
+
     private void storageExpand(RoutingContext ctx) {
         if (!containsParam(ctx.request().params(), STORAGE_EXPAND_PARAMETER)) {
             respondWithNotAllowed(ctx.request());
         } else {
+            final int depth = parseStorageExpandDepth(getString(ctx.request().params(), STORAGE_EXPAND_DEPTH_PARAMETER));
+            if (depth < 1) {
+                respondWithBadRequest(ctx.request(), "Bad Request: Parameter 'depth' must be a positive number");
+                return;
+            }
             ctx.request().bodyHandler(new Handler<Buffer>() {
                 @Override
                 public void handle(Buffer event) {
@@ -590,7 +1240,12 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
 
                     final String path = cleanPath(ctx.request().path().substring(prefixFixed.length()));
                     final String etag = ctx.request().headers().get(IF_NONE_MATCH_HEADER.getName());
-                    storage.storageExpand(path, etag, subResourceNames, resource -> {
+                    storage.storageExpand(path, etag, subResourceNames, depth, resource -> {
+
+                        if (resource.notSupported) {
+                            respondWith(ctx.response(), StatusCode.NOT_IMPLEMENTED, resource.errorMessage);
+                            return;
+                        }
 
                         if (resource.error) {
                             ctx.response().setStatusCode(StatusCode.CONFLICT.getStatusCode());
@@ -634,15 +1289,14 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
                             if (documentResource.etag != null && !documentResource.etag.isEmpty()) {
                                 ctx.response().headers().add(ETAG_HEADER.getName(), documentResource.etag);
                             }
-                            ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + documentResource.length);
                             ctx.response().headers().add(CONTENT_TYPE.getName(), mimeType);
-                            final Pump pump = Pump.pump(documentResource.readStream, ctx.response());
-                            documentResource.readStream.endHandler(nothing -> {
+                            if (documentResource.readStream instanceof BufferReadStream) {
                                 documentResource.closeHandler.handle(null);
-                                ctx.response().end();
-                            });
-                            pump.start();
-                            // TODO: exception handlers
+                                endWithCompressible(ctx, ((BufferReadStream) documentResource.readStream).getBuffer());
+                            } else {
+                                ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + documentResource.length);
+                                pipeDocument(documentResource, ctx.response());
+                            }
 
                         } else {
                             if (log.isTraceEnabled()) {
@@ -687,6 +1341,35 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
         respondWith(request.response(), StatusCode.METHOD_NOT_ALLOWED, null);
     }
 
+    /**
+     * @return the depth of a storageExpand request, 1 when not provided or -1 when not a number
+     */
+    private int parseStorageExpandDepth(String depth) {
+        if (depth == null) {
+            return 1;
+        }
+        try {
+            return Integer.parseInt(depth);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Responds with 501 Not Implemented when the storage does not support the operation of the resources.
+     *
+     * @return true when responded
+     */
+    private boolean respondedNotSupported(RoutingContext ctx, List<Resource> resources) {
+        for (Resource resource : resources) {
+            if (resource.notSupported) {
+                respondWith(ctx.response(), StatusCode.NOT_IMPLEMENTED, resource.errorMessage);
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void respondWithBadRequest(HttpServerRequest request, String responseMessage) {
         respondWith(request.response(), StatusCode.BAD_REQUEST, responseMessage);
     }
@@ -7,6 +7,7 @@ import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import org.swisspush.reststorage.util.CompressionExecutor;
 import org.swisspush.reststorage.util.ModuleConfiguration;
 
 public class RestStorageMod extends AbstractVerticle {
@@ -18,18 +19,24 @@ public class RestStorageMod extends AbstractVerticle {
         ModuleConfiguration modConfig = ModuleConfiguration.fromJsonObject(config());
         log.info("Starting RestStorageMod with configuration: " + modConfig);
         Storage storage;
+        CompressionExecutor compressionExecutor = null;
         switch (modConfig.getStorageType()) {
             case filesystem:
-                storage = new FileSystemStorage(vertx, modConfig.getRoot());
+                storage = new FileSystemStorage(vertx, modConfig.getRoot(), modConfig.getAsyncDeleteThreshold() > 0);
                 break;
             case redis:
-                storage = new RedisStorage(vertx, modConfig);
+                RedisStorage redisStorage = new RedisStorage(vertx, modConfig);
+                if (modConfig.isResponseCompressionEnabled()) {
+                    // the responses are compressed on the executor of the storage to count them in its statistics
+                    compressionExecutor = redisStorage.getCompressionExecutor();
+                }
+                storage = redisStorage;
                 break;
             default:
                 throw new RuntimeException("Storage not supported: " + modConfig.getStorageType());
         }
 
-        Handler<HttpServerRequest> handler = new RestStorageHandler(vertx, log, storage, modConfig);
+        Handler<HttpServerRequest> handler = new RestStorageHandler(vertx, log, storage, modConfig, compressionExecutor);
 
         // in Vert.x 2x 100-continues was activated per default, in vert.x 3x it is off per default.
         HttpServerOptions options = new HttpServerOptions().setHandle100ContinueAutomatically(true);
@@ -1,11 +1,18 @@
 package org.swisspush.reststorage;
 
 import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
 import org.swisspush.reststorage.util.LockMode;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * A storage of resources. The methods added after the basic get, put, delete and storageExpand methods have default
+ * implementations, so existing implementations keep compiling: they either fall back to the basic methods or answer
+ * with a resource flagged {@link Resource#notSupported}, which is responded with 501 Not Implemented.
+ */
 public interface Storage {
 
     /**
@@ -17,8 +24,84 @@ public interface Storage {
 
     void get(String path, String etag, int offset, int count, Handler<Resource> handler);
 
+    /**
+     * Gets a resource like {@link #get(String, String, int, int, Handler)}, but allows the storage to return the
+     * content of a resource stored gzip compressed as it is.
+     *
+     * @param acceptGzip true when the client accepts gzip encoded content. A document returned with compressed content
+     *                   has the {@link DocumentResource#contentEncoding} gzip and the compressed length. Ignored by
+     *                   default, the resource is returned uncompressed
+     */
+    default void get(String path, String etag, int offset, int count, boolean acceptGzip, Handler<Resource> handler) {
+        get(path, etag, offset, count, handler);
+    }
+
+    /**
+     * Gets the metadata of a resource without reading its content, e.g. to answer a HEAD request.
+     *
+     * @param path the path of the resource
+     * @param etag the etag provided by the client. When it matches the etag of the resource, the handler is called
+     *             with a not modified resource
+     * @param handler called with a {@link DocumentResource} holding the length and etag but no read stream, with a
+     *                {@link CollectionResource} without items when the path is a collection or with a not existing
+     *                resource. By default, the resource is got and the read stream of a document closed unread
+     */
+    default void head(String path, String etag, Handler<Resource> handler) {
+        get(path, etag, 0, -1, resource -> {
+            if (resource instanceof DocumentResource) {
+                DocumentResource document = (DocumentResource) resource;
+                if (document.readStream != null && document.closeHandler != null) {
+                    document.closeHandler.handle(null);
+                }
+                document.readStream = null;
+            }
+            handler.handle(resource);
+        });
+    }
+
+    /**
+     * Gets the metadata of a resource like {@link #head(String, String, Handler)}, but describes the content as
+     * {@link #get(String, String, int, int, boolean, Handler)} would return it for the same acceptGzip.
+     *
+     * @param acceptGzip true when the client accepts gzip encoded content. A document stored compressed has the
+     *                   {@link DocumentResource#contentEncoding} gzip and the compressed length then. Ignored by
+     *                   default
+     */
+    default void head(String path, String etag, boolean acceptGzip, Handler<Resource> handler) {
+        head(path, etag, handler);
+    }
+
+    /**
+     * Gets several resources at once, e.g. unrelated documents of different collections.
+     *
+     * @param paths the paths of the resources
+     * @param etags the etags provided by the client, one per path. Null when not provided. A resource matching its
+     *              etag is returned as not modified without content
+     * @param handler called with the resources in the order of the paths. Documents hold their content in a
+     *                {@link BufferReadStream}, collections their members. Not supported by default
+     */
+    default void multiGet(List<String> paths, List<String> etags, Handler<List<Resource>> handler) {
+        handler.handle(notSupported("multiGet", paths.size()));
+    }
+
     void storageExpand(String path, String etag, List<String> subResources, Handler<Resource> handler);
 
+    /**
+     * Expands the sub resources of a collection into a single json resource.
+     *
+     * @param subResources the names of the sub resources to expand. Names of sub collections end with a slash
+     * @param depth the number of collection levels to expand. With a depth of 1, sub collections are represented by
+     *              the names of their members, with a higher depth by their expanded members. Only a depth of 1
+     *              is supported by default
+     */
+    default void storageExpand(String path, String etag, List<String> subResources, int depth, Handler<Resource> handler) {
+        if (depth <= 1) {
+            storageExpand(path, etag, subResources, handler);
+        } else {
+            handler.handle(notSupported("storageExpand with a depth of " + depth));
+        }
+    }
+
     void put(String path, String etag, boolean merge, long expire, Handler<Resource> handler);
 
     void put(String path, String etag, boolean merge, long expire, String lockOwner, LockMode lockMode, long lockExpire, Handler<Resource> handler);
@@ -27,6 +110,85 @@ public interface Storage {
 
     void delete(String path, String lockOwner, LockMode lockMode, long lockExpire, boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler);
 
+    /**
+     * Executes several puts and deletes at once. The redis storage executes them atomically (or in atomic chunks of
+     * the configured size), the file system storage executes them in parallel.
+     *
+     * @param operations the operations to execute, their content held in memory
+     * @param handler called with the result of every operation in the order of the operations. The result of a put
+     *                is a {@link CollectionResource} when the path is a collection and a not existing
+     *                {@link DocumentResource} when a parent is a resource, the result of a delete is not existing
+     *                when there was nothing to delete. Other failures are flagged as on a single put or delete.
+     *                Not supported by default
+     */
+    default void batch(List<BatchOperation> operations, Handler<List<Resource>> handler) {
+        handler.handle(notSupported("batch", operations.size()));
+    }
+
     void cleanup(Handler<DocumentResource> handler, String cleanupResourcesAmount);
 
+    /**
+     * Lists a collection as a stream of its members, so that huge collections can be listed without holding all
+     * members in memory. The members are streamed in the order of the pages of {@link #list(String, String, int, Handler)},
+     * sub-collections are not listed before the documents. Pausing the stream stops fetching further members.
+     *
+     * @param path the path of the collection
+     * @param handler called with a {@link CollectionResource} providing the {@link CollectionResource#itemStream}.
+     *                Called with a not existing resource when the path is not a collection. Not supported by default
+     */
+    default void streamCollection(String path, Handler<Resource> handler) {
+        handler.handle(notSupported("streamCollection"));
+    }
+
+    /**
+     * Lists a page of a collection using keyset pagination. The page starts right after the position of the
+     * continuation token, so the members before it are not scanned again and members added or removed meanwhile do
+     * not shift the following pages.
+     * <p>
+     * The order in which the pages traverse the collection is storage specific and can differ from the order of an
+     * unpaged listing. The members of a page are returned in the order of the traversal. The redis storage traverses
+     * the members by expiration and name: a member written again with another expiration moves to another position,
+     * so a paging in progress can list it twice or miss it.
+     *
+     * @param path the path of the collection
+     * @param after the continuation token of the previous page ({@link CollectionResource#next}). Null or empty to
+     *              start at the beginning of the collection
+     * @param count the max number of members of the page or -1 for all remaining members
+     * @param handler called with a {@link CollectionResource} holding the members of the page and the token of the
+     *                next page. Called with a not existing resource when the path is not a collection and with an
+     *                invalid resource when the token is not valid. Not supported by default
+     */
+    default void list(String path, String after, int count, Handler<Resource> handler) {
+        handler.handle(notSupported("list"));
+    }
+
+    /**
+     * Gets runtime statistics of the storage implementation (e.g. counters of optional optimizations).
+     *
+     * @param handler called with the statistics as json. Empty when the storage does not provide statistics
+     */
+    default void statistics(Handler<JsonObject> handler) {
+        handler.handle(new JsonObject());
+    }
+
+    /**
+     * @return an error resource flagged {@link Resource#notSupported}, the result of an operation the storage does
+     * not implement
+     */
+    static Resource notSupported(String operation) {
+        Resource resource = new Resource();
+        resource.error = true;
+        resource.notSupported = true;
+        resource.errorMessage = "The operation '" + operation + "' is not supported by this storage";
+        return resource;
+    }
+
+    static List<Resource> notSupported(String operation, int count) {
+        List<Resource> resources = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            resources.add(notSupported(operation));
+        }
+        return resources;
+    }
+
 }
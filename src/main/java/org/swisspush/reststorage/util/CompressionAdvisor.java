@@ -0,0 +1,202 @@
+package org.swisspush.reststorage.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides per resource whether it is worth to be stored compressed, see {@link ModuleConfiguration.CompressionPolicy}.
+ * Resources smaller than the minimum size and resources of types which are compressed already (images, audio, video
+ * and archives) are stored as they are. For the other resources a sample of the content is compressed first, only
+ * when the sample reaches the minimum ratio the whole content is compressed. The compressed content is kept only when
+ * it reaches the minimum ratio as well.
+ * <p>
+ * The achieved ratio is counted per prefix of the resource paths, the prefix being the first segments of the path.
+ */
+public class CompressionAdvisor {
+
+    static final String OTHER_PREFIXES = "*";
+    private static final int MAX_PREFIXES = 1000;
+    private static final int GZIP_OVERHEAD = 18;
+
+    private final int minSize;
+    private final int sampleSize;
+    private final double minRatio;
+    private final int statisticsDepth;
+    private final Map<String, PrefixStatistics> prefixes = new ConcurrentHashMap<>();
+    private final AtomicLong sampled = new AtomicLong();
+    private final AtomicLong skippedBySample = new AtomicLong();
+
+    /**
+     * @param minSize the minimum size in bytes of a resource to be compressed
+     * @param sampleSize the size in bytes of the sample compressed to estimate the ratio of larger resources
+     * @param minRatio the minimum ratio of the uncompressed to the compressed size
+     * @param statisticsDepth the number of path segments of the prefixes the statistics are counted for
+     */
+    public CompressionAdvisor(int minSize, int sampleSize, double minRatio, int statisticsDepth) {
+        this.minSize = minSize;
+        this.sampleSize = Math.max(64, sampleSize);
+        this.minRatio = minRatio;
+        this.statisticsDepth = Math.max(0, statisticsDepth);
+    }
+
+    public static CompressionAdvisor of(ModuleConfiguration config) {
+        return new CompressionAdvisor(config.getCompressionMinSize(), config.getCompressionSampleSize(),
+                config.getCompressionMinRatio(), config.getCompressionStatisticsDepth());
+    }
+
+    /**
+     * A cheap check before any compression work is done.
+     *
+     * @return true if a resource of this length and mime type might be worth to be compressed
+     */
+    public boolean isCandidate(int length, String mimeType) {
+        return length >= minSize && !isCompressedType(mimeType);
+    }
+
+    /**
+     * @return true for the mime types of content which is compressed already
+     */
+    static boolean isCompressedType(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        String type = mimeType.toLowerCase(Locale.ROOT);
+        int parameters = type.indexOf(';');
+        if (parameters >= 0) {
+            type = type.substring(0, parameters).trim();
+        }
+        if (type.startsWith("image/")) {
+            return !type.endsWith("+xml") && !type.equals("image/bmp");
+        }
+        return type.startsWith("audio/") || type.startsWith("video/") || type.contains("zip")
+                || type.contains("compressed") || type.contains("x-rar") || type.equals("application/x-xz");
+    }
+
+    /**
+     * Compresses the data on a worker of the executor when it reaches the minimum ratio. The resultHandler is called
+     * with the compressed data, or with null when the data is to be stored uncompressed.
+     *
+     * @param executor the compression executor to run the sampling and compression on
+     * @param log the logger
+     * @param uncompressedData the data to compress
+     * @param resultHandler the resultHandler is called when the compression is done or was abandoned
+     */
+    public void compressResource(CompressionExecutor executor, Logger log, byte[] uncompressedData, Handler<AsyncResult<byte[]>> resultHandler) {
+        executor.<byte[]>execute(future -> future.complete(compressIfWorthwhile(uncompressedData)), result -> {
+            if (result.failed()) {
+                log.error("Unable to compress resource: " + result.cause().getMessage());
+            }
+            resultHandler.handle(result);
+        });
+    }
+
+    /**
+     * @return the compressed data or null when the data does not reach the minimum ratio
+     */
+    byte[] compressIfWorthwhile(byte[] data) {
+        if (data.length > sampleSize) {
+            sampled.incrementAndGet();
+            byte[] sample = sample(data);
+            if (ratio(sample.length, GZIPUtil.compress(sample).length - GZIP_OVERHEAD) < minRatio) {
+                skippedBySample.incrementAndGet();
+                return null;
+            }
+        }
+        byte[] compressed = GZIPUtil.compress(data);
+        return ratio(data.length, compressed.length) < minRatio ? null : compressed;
+    }
+
+    /**
+     * @return slices from the start, the middle and the end of the data, together of the sample size
+     */
+    private byte[] sample(byte[] data) {
+        int slice = sampleSize / 3;
+        byte[] sample = new byte[slice * 3];
+        System.arraycopy(data, 0, sample, 0, slice);
+        System.arraycopy(data, (data.length - slice) / 2, sample, slice, slice);
+        System.arraycopy(data, data.length - slice, sample, 2 * slice, slice);
+        return sample;
+    }
+
+    private static double ratio(int length, int compressedLength) {
+        return compressedLength <= 0 ? Double.MAX_VALUE : (double) length / compressedLength;
+    }
+
+    /**
+     * Counts a stored resource in the statistics of its prefix.
+     *
+     * @param path the path of the resource
+     * @param length the uncompressed length
+     * @param storedLength the stored length, the same as the uncompressed length when stored uncompressed
+     * @param compressed true if the resource was stored compressed
+     */
+    public void record(String path, int length, int storedLength, boolean compressed) {
+        String prefix = prefix(path);
+        PrefixStatistics statistics = prefixes.get(prefix);
+        if (statistics == null) {
+            if (prefixes.size() >= MAX_PREFIXES) {
+                prefix = OTHER_PREFIXES;
+            }
+            statistics = prefixes.computeIfAbsent(prefix, p -> new PrefixStatistics());
+        }
+        statistics.resources.increment();
+        if (compressed) {
+            statistics.compressed.increment();
+        }
+        statistics.originalBytes.add(length);
+        statistics.storedBytes.add(storedLength);
+    }
+
+    /**
+     * @return the path of the collection up to the configured number of segments containing the resource
+     */
+    String prefix(String path) {
+        int end = 0;
+        for (int segment = 0; segment < statisticsDepth; segment++) {
+            int next = path.indexOf('/', end + 1);
+            if (next < 0) {
+                break;
+            }
+            end = next;
+        }
+        return end == 0 ? "/" : path.substring(0, end);
+    }
+
+    /**
+     * @return the number of sampled resources, of resources stored uncompressed because of their sample and the
+     * achieved ratio per prefix
+     */
+    public JsonObject statistics() {
+        JsonObject perPrefix = new JsonObject();
+        new TreeMap<>(prefixes).forEach((prefix, statistics) -> {
+            long originalBytes = statistics.originalBytes.sum();
+            long storedBytes = statistics.storedBytes.sum();
+            perPrefix.put(prefix, new JsonObject()
+                    .put("resources", statistics.resources.sum())
+                    .put("compressed", statistics.compressed.sum())
+                    .put("originalBytes", originalBytes)
+                    .put("storedBytes", storedBytes)
+                    .put("ratio", storedBytes == 0 ? 1d : Math.round(100d * originalBytes / storedBytes) / 100d));
+        });
+        return new JsonObject()
+                .put("sampled", sampled.get())
+                .put("skippedBySample", skippedBySample.get())
+                .put("prefixes", perPrefix);
+    }
+
+    private static class PrefixStatistics {
+        private final LongAdder resources = new LongAdder();
+        private final LongAdder compressed = new LongAdder();
+        private final LongAdder originalBytes = new LongAdder();
+        private final LongAdder storedBytes = new LongAdder();
+    }
+}
@@ -0,0 +1,89 @@
+package org.swisspush.reststorage.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the compressions and decompressions of resources on a dedicated pool of worker threads, so bursts of them do
+ * not starve the other blocking work of the default worker pool. The tasks started from the same context run in
+ * parallel. When more than the queue size of tasks are waiting for a worker already, further tasks are rejected with
+ * a {@link RejectedExecutionException} instead of being queued.
+ */
+public class CompressionExecutor {
+
+    /**
+     * The name of the worker pool shared by the compressions of the storage and of the responses
+     */
+    public static final String POOL_NAME = "rest-storage-compression";
+
+    private final WorkerExecutor executor;
+    private final int poolSize;
+    private final int queueSize;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param name the name of the worker pool, pools with the same name are shared
+     * @param poolSize the number of worker threads
+     * @param queueSize the maximum number of tasks waiting for a worker
+     */
+    public CompressionExecutor(Vertx vertx, String name, int poolSize, int queueSize) {
+        this.poolSize = Math.max(1, poolSize);
+        this.queueSize = Math.max(0, queueSize);
+        this.executor = vertx.createSharedWorkerExecutor(name, this.poolSize);
+    }
+
+    /**
+     * Executes the blocking handler on a worker, the result handler is called on the calling context. When the queue
+     * is full, the result handler is called immediately with a failure.
+     */
+    public <T> void execute(Handler<Future<T>> blockingHandler, Handler<AsyncResult<T>> resultHandler) {
+        if (pending.incrementAndGet() > poolSize + queueSize) {
+            pending.decrementAndGet();
+            rejected.incrementAndGet();
+            resultHandler.handle(Future.failedFuture(new RejectedExecutionException("Compression queue is full ("
+                    + queueSize + " waiting tasks)")));
+            return;
+        }
+        executor.<T>executeBlocking(future -> {
+            try {
+                blockingHandler.handle(future);
+            } finally {
+                pending.decrementAndGet();
+                executed.incrementAndGet();
+            }
+        }, false, resultHandler);
+    }
+
+    /**
+     * @return the number of tasks running or waiting for a worker
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * @return the pool size, the queue size and the number of pending, executed and rejected tasks
+     */
+    public JsonObject statistics() {
+        return new JsonObject()
+                .put("poolSize", poolSize)
+                .put("queueSize", queueSize)
+                .put("pending", pending.get())
+                .put("executed", executed.get())
+                .put("rejected", rejected.get());
+    }
+
+    public void close() {
+        executor.close();
+    }
+}
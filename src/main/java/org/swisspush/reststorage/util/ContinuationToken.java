@@ -0,0 +1,54 @@
+package org.swisspush.reststorage.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * <p>
+ * Utility class to encode and decode the opaque continuation tokens used for keyset pagination of collections.
+ * </p>
+ * <p>
+ * The position a token refers to is defined by the storage implementation (e.g. the name of the last listed member).
+ * Clients must not rely on the content of a token.
+ * </p>
+ */
+public final class ContinuationToken {
+
+    private ContinuationToken() {
+        // prevent instantiation
+    }
+
+    /**
+     * <pre>
+     * ContinuationToken.encode(null)   = null
+     * ContinuationToken.encode("bob")  = "Ym9i"
+     * </pre>
+     *
+     * @param position the storage specific position, may be null
+     * @return the url safe token or null when no position was provided
+     */
+    public static String encode(String position) {
+        if (position == null) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * <pre>
+     * ContinuationToken.decode(null)   = null
+     * ContinuationToken.decode("")     = null
+     * ContinuationToken.decode("Ym9i") = "bob"
+     * </pre>
+     *
+     * @param token the token received from a client, may be null
+     * @return the storage specific position or null when no token (or an empty token) was provided
+     * @throws IllegalArgumentException when the token is not a valid token
+     */
+    public static String decode(String token) throws IllegalArgumentException {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    }
+}
@@ -1,6 +1,7 @@
 package org.swisspush.reststorage.util;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.logging.Logger;
@@ -8,16 +9,38 @@ import io.vertx.core.logging.Logger;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
 /**
- * Util class to compress and decompress resources using the gzip algorithm
+ * Util class to compress and decompress resources using the gzip algorithm.
+ * <p>
+ * Every worker thread keeps its own {@link Deflater} and {@link Inflater}, which are reset and reused for every
+ * resource. The output buffers are sized in advance: for compression from the input length, for decompression from
+ * the uncompressed length recorded at the end of the gzip data.
  *
  * @author https://github.com/mcweba [Marc-Andre Weber]
  */
 public class GZIPUtil {
 
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int HEADER_LENGTH = 10;
+    private static final int TRAILER_LENGTH = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int MAX_DEFLATE_RATIO = 1032;
+    // magic, deflate method, no flags, no modification time, no extra flags, unknown OS, as written by GZIPOutputStream
+    private static final byte[] HEADER = {(byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
     /**
      * Compress the uncompressed data with the gzip algorithm. When the compression is done, the resultHandler is called
      * with the compressed data as result.
@@ -28,20 +51,25 @@ public class GZIPUtil {
      * @param resultHandler the resultHandler is called when the compression is done
      */
     public static void compressResource(Vertx vertx, Logger log, byte[] uncompressedData, Handler<AsyncResult<byte[]>> resultHandler) {
-        vertx.executeBlocking(future -> {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-            try (GZIPOutputStream os = new GZIPOutputStream(baos)) {
-                os.write(uncompressedData);
-            } catch (IOException ioe) {
-                log.error("Unable to compress resource: " + ioe.getMessage());
-                future.fail(ioe);
-                // Error, exit
-                return;
+        vertx.executeBlocking(future -> future.complete(compress(uncompressedData)), resultHandler);
+    }
+
+    /**
+     * Compress the uncompressed data with the gzip algorithm on a worker of the provided executor. When the compression
+     * is done or the executor rejected it, the resultHandler is called with the compressed data as result.
+     *
+     * @param executor the compression executor to run the compression on
+     * @param log the logger
+     * @param uncompressedData the data to compress
+     * @param resultHandler the resultHandler is called when the compression is done
+     */
+    public static void compressResource(CompressionExecutor executor, Logger log, byte[] uncompressedData, Handler<AsyncResult<byte[]>> resultHandler) {
+        executor.<byte[]>execute(future -> future.complete(compress(uncompressedData)), result -> {
+            if (result.failed()) {
+                log.error("Unable to compress resource: " + result.cause().getMessage());
             }
-            // Success
-            future.complete(baos.toByteArray());
-        }, resultHandler);
+            resultHandler.handle(result);
+        });
     }
 
     /**
@@ -53,29 +81,175 @@ public class GZIPUtil {
      * @param resultHandler the resultHandler is called when the compression is done
      */
     public static void decompressResource(Vertx vertx, Logger log, byte[] compressedData, Handler<AsyncResult<byte[]>> resultHandler) {
-        vertx.executeBlocking(future -> {
-            byte[] buffer = new byte[1024];
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try (ByteArrayInputStream bis = new ByteArrayInputStream(compressedData);
-                 GZIPInputStream gzipInputStream = new GZIPInputStream(bis)) {
+        vertx.executeBlocking(future -> decompress(log, compressedData, future), resultHandler);
+    }
+
+    /**
+     * Decompress the compressed (gzip) data on a worker of the provided compression executor. When the decompression
+     * is done or the executor rejected it, the resultHandler is called with the decompressed data as result.
+     *
+     * @param executor the compression executor to run the decompression on
+     * @param log the logger
+     * @param compressedData the data to decompress
+     * @param resultHandler the resultHandler is called when the decompression is done
+     */
+    public static void decompressResource(CompressionExecutor executor, Logger log, byte[] compressedData, Handler<AsyncResult<byte[]>> resultHandler) {
+        executor.execute(future -> decompress(log, compressedData, future), resultHandler);
+    }
 
-                int bytes_read;
+    private static void decompress(Logger log, byte[] compressedData, Future<byte[]> future) {
+        try {
+            future.complete(decompress(compressedData));
+        } catch (IOException ioe) {
+            log.error("Unable to decompress resource: " + ioe.getMessage());
+            future.fail(ioe);
+        }
+    }
+
+    /**
+     * Compresses the data into a single gzip member with the deflater of the current thread.
+     */
+    static byte[] compress(byte[] uncompressedData) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(uncompressedData);
+        deflater.finish();
+
+        // the bound of zlib for incompressible data, so a single deflate call is enough in every case
+        int length = uncompressedData.length;
+        byte[] output = new byte[HEADER_LENGTH + length + (length >> 12) + (length >> 14) + (length >> 25) + 13 + TRAILER_LENGTH];
+        System.arraycopy(HEADER, 0, output, 0, HEADER_LENGTH);
+        int position = HEADER_LENGTH;
+        while (!deflater.finished()) {
+            if (position == output.length - TRAILER_LENGTH) {
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+            position += deflater.deflate(output, position, output.length - TRAILER_LENGTH - position);
+        }
 
-                while ((bytes_read = gzipInputStream.read(buffer)) > 0) {
-                    baos.write(buffer, 0, bytes_read);
+        CRC32 crc = new CRC32();
+        crc.update(uncompressedData);
+        writeInt(output, position, (int) crc.getValue());
+        writeInt(output, position + 4, length);
+        return position + TRAILER_LENGTH == output.length ? output : Arrays.copyOf(output, position + TRAILER_LENGTH);
+    }
+
+    /**
+     * Decompresses gzip data with the inflater of the current thread. Data with more than one gzip member is
+     * decompressed with a {@link GZIPInputStream}.
+     */
+    static byte[] decompress(byte[] compressedData) throws IOException {
+        if (compressedData.length < HEADER_LENGTH + TRAILER_LENGTH || readShort(compressedData, 0) != GZIP_MAGIC) {
+            throw new IOException("Not in GZIP format");
+        }
+        if (compressedData[2] != Deflater.DEFLATED) {
+            throw new IOException("Unsupported compression method");
+        }
+        int offset = headerLength(compressedData);
+
+        // the length of the uncompressed data modulo 2^32, only a hint to size the output. It is limited to the maximum
+        // ratio of deflate, so corrupt data cannot cause a huge allocation
+        long expectedLength = readInt(compressedData, compressedData.length - 4) & 0xffffffffL;
+        long maxLength = Math.min((long) compressedData.length * MAX_DEFLATE_RATIO, Integer.MAX_VALUE - 8);
+        byte[] output = new byte[(int) Math.max(Math.min(expectedLength, maxLength), 64)];
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(compressedData, offset, compressedData.length - offset);
+        int position = 0;
+        try {
+            while (!inflater.finished()) {
+                if (position == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                int inflated = inflater.inflate(output, position, output.length - position);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Unexpected end of ZLIB input stream");
                 }
+                position += inflated;
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+
+        int trailer = compressedData.length - inflater.getRemaining();
+        if (inflater.getRemaining() > TRAILER_LENGTH) {
+            return decompressStream(compressedData);
+        }
+        if (inflater.getRemaining() < TRAILER_LENGTH) {
+            throw new IOException("Unexpected end of ZLIB input stream");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(output, 0, position);
+        if (readInt(compressedData, trailer) != (int) crc.getValue() || readInt(compressedData, trailer + 4) != position) {
+            throw new IOException("Corrupt GZIP trailer");
+        }
+        return position == output.length ? output : Arrays.copyOf(output, position);
+    }
 
-                gzipInputStream.close();
-                baos.close();
+    private static byte[] decompressStream(byte[] compressedData) throws IOException {
+        byte[] buffer = new byte[8192];
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(compressedData.length * 4);
+        try (ByteArrayInputStream bis = new ByteArrayInputStream(compressedData);
+             GZIPInputStream gzipInputStream = new GZIPInputStream(bis, buffer.length)) {
 
-            } catch (IOException ioe) {
-                log.error("Unable to decompress resource: " + ioe.getMessage());
-                future.fail(ioe);
-                // Error, exit
-                return;
+            int bytes_read;
+
+            while ((bytes_read = gzipInputStream.read(buffer)) > 0) {
+                baos.write(buffer, 0, bytes_read);
             }
-            // Success
-            future.complete(baos.toByteArray());
-        }, resultHandler);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * @return the length of the gzip header including the optional fields
+     */
+    private static int headerLength(byte[] data) throws IOException {
+        int flags = data[3] & 0xff;
+        int offset = HEADER_LENGTH;
+        if ((flags & FEXTRA) == FEXTRA) {
+            if (offset + 2 > data.length) {
+                throw new IOException("Corrupt GZIP header");
+            }
+            offset += 2 + readShort(data, offset);
+        }
+        if ((flags & FNAME) == FNAME) {
+            offset = skipZeroTerminated(data, offset);
+        }
+        if ((flags & FCOMMENT) == FCOMMENT) {
+            offset = skipZeroTerminated(data, offset);
+        }
+        if ((flags & FHCRC) == FHCRC) {
+            offset += 2;
+        }
+        if (offset > data.length - TRAILER_LENGTH) {
+            throw new IOException("Corrupt GZIP header");
+        }
+        return offset;
+    }
+
+    private static int skipZeroTerminated(byte[] data, int offset) throws IOException {
+        while (offset < data.length && data[offset] != 0) {
+            offset++;
+        }
+        if (offset == data.length) {
+            throw new IOException("Corrupt GZIP header");
+        }
+        return offset + 1;
+    }
+
+    private static int readShort(byte[] data, int offset) {
+        return (data[offset] & 0xff) | ((data[offset + 1] & 0xff) << 8);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return readShort(data, offset) | (readShort(data, offset + 2) << 16);
+    }
+
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) value;
+        data[offset + 1] = (byte) (value >> 8);
+        data[offset + 2] = (byte) (value >> 16);
+        data[offset + 3] = (byte) (value >> 24);
     }
 }
@@ -18,7 +18,10 @@ public enum HttpRequestHeader {
     IMPORTANCE_LEVEL_HEADER("x-importance-level"),
     COMPRESS_HEADER("x-stored-compressed"),
     CONTENT_TYPE("Content-Type"),
-    CONTENT_LENGTH("Content-Length");
+    CONTENT_LENGTH("Content-Length"),
+    CONTENT_ENCODING("Content-Encoding"),
+    ACCEPT("Accept"),
+    ACCEPT_ENCODING("Accept-Encoding");
 
     private final String name;
 
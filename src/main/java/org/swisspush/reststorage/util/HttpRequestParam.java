@@ -11,8 +11,13 @@ public enum HttpRequestParam {
 
     RECURSIVE_PARAMETER("recursive"),
     STORAGE_EXPAND_PARAMETER("storageExpand"),
+    STORAGE_EXPAND_DEPTH_PARAMETER("depth"),
     LIMIT_PARAMETER("limit"),
-    OFFSET_PARAMETER("offset");
+    OFFSET_PARAMETER("offset"),
+    STREAM_PARAMETER("stream"),
+    AFTER_PARAMETER("after"),
+    BATCH_PARAMETER("batch"),
+    MULTI_GET_PARAMETER("multiGet");
 
     private final String name;
 
@@ -15,6 +15,14 @@ public class ModuleConfiguration {
         filesystem, redis
     }
 
+    public enum RedisPoolStrategy {
+        roundRobin, pathHash
+    }
+
+    public enum CompressionPolicy {
+        header, adaptive
+    }
+
     private String             root                          = "."                       ;
     private StorageType        storageType                   = StorageType.filesystem    ;
     private int                port                          = 8989                      ;
@@ -25,8 +33,11 @@ public class ModuleConfiguration {
     private int                redisPort                     = 6379                      ;
     private String             redisAuth                     = null                      ;
     private String             expirablePrefix               = "rest-storage:expirable"  ;
+    private int                expirableBuckets              = 1                         ;
+    private boolean            nativeExpiryEnabled           = false                     ;
     private String             resourcesPrefix               = "rest-storage:resources"  ;
     private String             collectionsPrefix             = "rest-storage:collections";
+    private String             collectionMarkersPrefix       = "rest-storage:collection-markers";
     private String             deltaResourcesPrefix          = "delta:resources"         ;
     private String             deltaEtagsPrefix              = "delta:etags"             ;
     private long               resourceCleanupAmount         = 100_000L                  ;
@@ -35,6 +46,41 @@ public class ModuleConfiguration {
     private boolean            rejectStorageWriteOnLowMemory = false                     ;
     private long               freeMemoryCheckIntervalMs     = 60_000L                   ;
     private boolean            return200onDeleteNonExisting  = false                     ;
+    private boolean            redisBatchingEnabled          = false                     ;
+    private long               redisBatchWindowMs            = 0L                        ;
+    private int                redisBatchMaxSize             = 128                       ;
+    private int                redisPoolSize                 = 1                         ;
+    private RedisPoolStrategy  redisPoolStrategy             = RedisPoolStrategy.roundRobin;
+    private int                collectionStreamChunkSize     = 1000                      ;
+    private boolean            nearCacheEnabled              = false                     ;
+    private long               nearCacheMaxSize              = 10_485_760L               ;
+    private int                nearCacheMaxResourceSize      = 65_536                    ;
+    private long               nearCacheMaxAgeMs             = 10_000L                   ;
+    private int                storageExpandMaxMembers       = 100_000                   ;
+    private long               storageExpandMaxSize          = 52_428_800L               ;
+    private int                compressionWorkerPoolSize     = 4                         ;
+    private int                compressionQueueSize          = 1000                      ;
+    private CompressionPolicy  compressionPolicy             = CompressionPolicy.header  ;
+    private int                compressionMinSize            = 1024                      ;
+    private int                compressionSampleSize         = 4096                      ;
+    private double             compressionMinRatio           = 1.25                      ;
+    private int                compressionStatisticsDepth    = 2                         ;
+    private boolean            responseCompressionEnabled    = false                     ;
+    private int                responseCompressionThreshold  = 65_536                    ;
+    private boolean            backgroundExpiryEnabled       = false                     ;
+    private long               backgroundExpiryIntervalMs    = 1_000L                    ;
+    private long               backgroundExpiryTimeBudgetMs  = 50L                       ;
+    private long               backgroundExpiryBatchMs       = 5L                        ;
+    private long               backgroundExpiryMaxLatencyMs  = 20L                       ;
+    private boolean            cleanupLeaseEnabled           = false                     ;
+    private String             cleanupLeaseKey               = "rest-storage:leader"     ;
+    private long               cleanupLeaseMs                = 10_000L                   ;
+    private int                asyncDeleteThreshold          = 0                         ;
+    private int                asyncDeleteBatchSize          = 1000                      ;
+    private String             asyncDeleteKey                = "rest-storage:purging"    ;
+    private int                batchChunkSize                = 100                       ;
+    private boolean            workerMergeEnabled            = false                     ;
+    private int                workerMergeMaxRetries         = 5                         ;
 
     public ModuleConfiguration root(String root) {
         this.root = root;
@@ -91,6 +137,16 @@ public class ModuleConfiguration {
         return this;
     }
 
+    public ModuleConfiguration expirableBuckets(int expirableBuckets) {
+        this.expirableBuckets = expirableBuckets;
+        return this;
+    }
+
+    public ModuleConfiguration nativeExpiryEnabled(boolean nativeExpiryEnabled) {
+        this.nativeExpiryEnabled = nativeExpiryEnabled;
+        return this;
+    }
+
     public ModuleConfiguration resourcesPrefix(String resourcesPrefix) {
         this.resourcesPrefix = resourcesPrefix;
         return this;
@@ -101,6 +157,11 @@ public class ModuleConfiguration {
         return this;
     }
 
+    public ModuleConfiguration collectionMarkersPrefix(String collectionMarkersPrefix) {
+        this.collectionMarkersPrefix = collectionMarkersPrefix;
+        return this;
+    }
+
     public ModuleConfiguration deltaResourcesPrefix(String deltaResourcesPrefix) {
         this.deltaResourcesPrefix = deltaResourcesPrefix;
         return this;
@@ -141,6 +202,181 @@ public class ModuleConfiguration {
         return this;
     }
 
+    public ModuleConfiguration redisBatchingEnabled(boolean redisBatchingEnabled) {
+        this.redisBatchingEnabled = redisBatchingEnabled;
+        return this;
+    }
+
+    public ModuleConfiguration redisBatchWindowMs(long redisBatchWindowMs) {
+        this.redisBatchWindowMs = redisBatchWindowMs;
+        return this;
+    }
+
+    public ModuleConfiguration redisBatchMaxSize(int redisBatchMaxSize) {
+        this.redisBatchMaxSize = redisBatchMaxSize;
+        return this;
+    }
+
+    public ModuleConfiguration redisPoolSize(int redisPoolSize) {
+        this.redisPoolSize = redisPoolSize;
+        return this;
+    }
+
+    public ModuleConfiguration redisPoolStrategy(RedisPoolStrategy redisPoolStrategy) {
+        this.redisPoolStrategy = redisPoolStrategy;
+        return this;
+    }
+
+    public ModuleConfiguration collectionStreamChunkSize(int collectionStreamChunkSize) {
+        this.collectionStreamChunkSize = collectionStreamChunkSize;
+        return this;
+    }
+
+    public ModuleConfiguration nearCacheEnabled(boolean nearCacheEnabled) {
+        this.nearCacheEnabled = nearCacheEnabled;
+        return this;
+    }
+
+    public ModuleConfiguration nearCacheMaxSize(long nearCacheMaxSize) {
+        this.nearCacheMaxSize = nearCacheMaxSize;
+        return this;
+    }
+
+    public ModuleConfiguration nearCacheMaxResourceSize(int nearCacheMaxResourceSize) {
+        this.nearCacheMaxResourceSize = nearCacheMaxResourceSize;
+        return this;
+    }
+
+    public ModuleConfiguration nearCacheMaxAgeMs(long nearCacheMaxAgeMs) {
+        this.nearCacheMaxAgeMs = nearCacheMaxAgeMs;
+        return this;
+    }
+
+    public ModuleConfiguration storageExpandMaxMembers(int storageExpandMaxMembers) {
+        this.storageExpandMaxMembers = storageExpandMaxMembers;
+        return this;
+    }
+
+    public ModuleConfiguration storageExpandMaxSize(long storageExpandMaxSize) {
+        this.storageExpandMaxSize = storageExpandMaxSize;
+        return this;
+    }
+
+    public ModuleConfiguration compressionWorkerPoolSize(int compressionWorkerPoolSize) {
+        this.compressionWorkerPoolSize = compressionWorkerPoolSize;
+        return this;
+    }
+
+    public ModuleConfiguration compressionQueueSize(int compressionQueueSize) {
+        this.compressionQueueSize = compressionQueueSize;
+        return this;
+    }
+
+    public ModuleConfiguration compressionPolicy(CompressionPolicy compressionPolicy) {
+        this.compressionPolicy = compressionPolicy;
+        return this;
+    }
+
+    public ModuleConfiguration compressionMinSize(int compressionMinSize) {
+        this.compressionMinSize = compressionMinSize;
+        return this;
+    }
+
+    public ModuleConfiguration compressionSampleSize(int compressionSampleSize) {
+        this.compressionSampleSize = compressionSampleSize;
+        return this;
+    }
+
+    public ModuleConfiguration compressionMinRatio(double compressionMinRatio) {
+        this.compressionMinRatio = compressionMinRatio;
+        return this;
+    }
+
+    public ModuleConfiguration compressionStatisticsDepth(int compressionStatisticsDepth) {
+        this.compressionStatisticsDepth = compressionStatisticsDepth;
+        return this;
+    }
+
+    public ModuleConfiguration responseCompressionEnabled(boolean responseCompressionEnabled) {
+        this.responseCompressionEnabled = responseCompressionEnabled;
+        return this;
+    }
+
+    public ModuleConfiguration responseCompressionThreshold(int responseCompressionThreshold) {
+        this.responseCompressionThreshold = responseCompressionThreshold;
+        return this;
+    }
+
+    public ModuleConfiguration backgroundExpiryEnabled(boolean backgroundExpiryEnabled) {
+        this.backgroundExpiryEnabled = backgroundExpiryEnabled;
+        return this;
+    }
+
+    public ModuleConfiguration backgroundExpiryIntervalMs(long backgroundExpiryIntervalMs) {
+        this.backgroundExpiryIntervalMs = backgroundExpiryIntervalMs;
+        return this;
+    }
+
+    public ModuleConfiguration backgroundExpiryTimeBudgetMs(long backgroundExpiryTimeBudgetMs) {
+        this.backgroundExpiryTimeBudgetMs = backgroundExpiryTimeBudgetMs;
+        return this;
+    }
+
+    public ModuleConfiguration backgroundExpiryBatchMs(long backgroundExpiryBatchMs) {
+        this.backgroundExpiryBatchMs = backgroundExpiryBatchMs;
+        return this;
+    }
+
+    public ModuleConfiguration backgroundExpiryMaxLatencyMs(long backgroundExpiryMaxLatencyMs) {
+        this.backgroundExpiryMaxLatencyMs = backgroundExpiryMaxLatencyMs;
+        return this;
+    }
+
+    public ModuleConfiguration cleanupLeaseEnabled(boolean cleanupLeaseEnabled) {
+        this.cleanupLeaseEnabled = cleanupLeaseEnabled;
+        return this;
+    }
+
+    public ModuleConfiguration cleanupLeaseKey(String cleanupLeaseKey) {
+        this.cleanupLeaseKey = cleanupLeaseKey;
+        return this;
+    }
+
+    public ModuleConfiguration cleanupLeaseMs(long cleanupLeaseMs) {
+        this.cleanupLeaseMs = cleanupLeaseMs;
+        return this;
+    }
+
+    public ModuleConfiguration asyncDeleteThreshold(int asyncDeleteThreshold) {
+        this.asyncDeleteThreshold = asyncDeleteThreshold;
+        return this;
+    }
+
+    public ModuleConfiguration asyncDeleteBatchSize(int asyncDeleteBatchSize) {
+        this.asyncDeleteBatchSize = asyncDeleteBatchSize;
+        return this;
+    }
+
+    public ModuleConfiguration asyncDeleteKey(String asyncDeleteKey) {
+        this.asyncDeleteKey = asyncDeleteKey;
+        return this;
+    }
+
+    public ModuleConfiguration batchChunkSize(int batchChunkSize) {
+        this.batchChunkSize = batchChunkSize;
+        return this;
+    }
+
+    public ModuleConfiguration workerMergeEnabled(boolean workerMergeEnabled) {
+        this.workerMergeEnabled = workerMergeEnabled;
+        return this;
+    }
+
+    public ModuleConfiguration workerMergeMaxRetries(int workerMergeMaxRetries) {
+        this.workerMergeMaxRetries = workerMergeMaxRetries;
+        return this;
+    }
+
 
 
     public String getRoot() {
@@ -179,10 +415,22 @@ public class ModuleConfiguration {
         return redisAuth;
     }
 
+    /**
+     * @return the key of the expirable set. With more than one {@link #getExpirableBuckets() bucket}, the prefix of
+     * the bucket keys <code>&lt;expirablePrefix&gt;:&lt;bucket&gt;</code>
+     */
     public String getExpirablePrefix() {
         return expirablePrefix;
     }
 
+    public int getExpirableBuckets() {
+        return expirableBuckets;
+    }
+
+    public boolean isNativeExpiryEnabled() {
+        return nativeExpiryEnabled;
+    }
+
     public String getResourcesPrefix() {
         return resourcesPrefix;
     }
@@ -191,6 +439,10 @@ public class ModuleConfiguration {
         return collectionsPrefix;
     }
 
+    public String getCollectionMarkersPrefix() {
+        return collectionMarkersPrefix;
+    }
+
     public String getDeltaResourcesPrefix() {
         return deltaResourcesPrefix;
     }
@@ -215,6 +467,146 @@ public class ModuleConfiguration {
         return return200onDeleteNonExisting;
     }
 
+    public boolean isRedisBatchingEnabled() {
+        return redisBatchingEnabled;
+    }
+
+    public long getRedisBatchWindowMs() {
+        return redisBatchWindowMs;
+    }
+
+    public int getRedisBatchMaxSize() {
+        return redisBatchMaxSize;
+    }
+
+    public int getRedisPoolSize() {
+        return redisPoolSize;
+    }
+
+    public RedisPoolStrategy getRedisPoolStrategy() {
+        return redisPoolStrategy;
+    }
+
+    public int getCollectionStreamChunkSize() {
+        return collectionStreamChunkSize;
+    }
+
+    public boolean isNearCacheEnabled() {
+        return nearCacheEnabled;
+    }
+
+    public long getNearCacheMaxSize() {
+        return nearCacheMaxSize;
+    }
+
+    public int getNearCacheMaxResourceSize() {
+        return nearCacheMaxResourceSize;
+    }
+
+    public long getNearCacheMaxAgeMs() {
+        return nearCacheMaxAgeMs;
+    }
+
+    public int getStorageExpandMaxMembers() {
+        return storageExpandMaxMembers;
+    }
+
+    public long getStorageExpandMaxSize() {
+        return storageExpandMaxSize;
+    }
+
+    public int getCompressionWorkerPoolSize() {
+        return compressionWorkerPoolSize;
+    }
+
+    public int getCompressionQueueSize() {
+        return compressionQueueSize;
+    }
+
+    public CompressionPolicy getCompressionPolicy() {
+        return compressionPolicy;
+    }
+
+    public int getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    public int getCompressionSampleSize() {
+        return compressionSampleSize;
+    }
+
+    public double getCompressionMinRatio() {
+        return compressionMinRatio;
+    }
+
+    public int getCompressionStatisticsDepth() {
+        return compressionStatisticsDepth;
+    }
+
+    public boolean isResponseCompressionEnabled() {
+        return responseCompressionEnabled;
+    }
+
+    public int getResponseCompressionThreshold() {
+        return responseCompressionThreshold;
+    }
+
+    public boolean isBackgroundExpiryEnabled() {
+        return backgroundExpiryEnabled;
+    }
+
+    public long getBackgroundExpiryIntervalMs() {
+        return backgroundExpiryIntervalMs;
+    }
+
+    public long getBackgroundExpiryTimeBudgetMs() {
+        return backgroundExpiryTimeBudgetMs;
+    }
+
+    public long getBackgroundExpiryBatchMs() {
+        return backgroundExpiryBatchMs;
+    }
+
+    public long getBackgroundExpiryMaxLatencyMs() {
+        return backgroundExpiryMaxLatencyMs;
+    }
+
+    public boolean isCleanupLeaseEnabled() {
+        return cleanupLeaseEnabled;
+    }
+
+    public String getCleanupLeaseKey() {
+        return cleanupLeaseKey;
+    }
+
+    public long getCleanupLeaseMs() {
+        return cleanupLeaseMs;
+    }
+
+    public int getAsyncDeleteThreshold() {
+        return asyncDeleteThreshold;
+    }
+
+    public int getAsyncDeleteBatchSize() {
+        return asyncDeleteBatchSize;
+    }
+
+    public String getAsyncDeleteKey() {
+        return asyncDeleteKey;
+    }
+
+    public int getBatchChunkSize() {
+        return batchChunkSize;
+    }
+
+    public boolean isWorkerMergeEnabled() {
+        return workerMergeEnabled;
+    }
+
+    public int getWorkerMergeMaxRetries() {
+        return workerMergeMaxRetries;
+    }
+
     public JsonObject asJsonObject(){
         return JsonObject.mapFrom(this);
     }
@@ -0,0 +1,34 @@
+-- Executes the puts and deletes of a batch in a single script call. The put and delete scripts are included
+-- unchanged (see RedisStorage.LuaScriptState) as functions, called with the KEYS and ARGV of every operation.
+-- ARGV holds the operations one after the other: the method (PUT or DELETE), the key of the resource, the amount of
+-- arguments and the arguments of the included script.
+-- Returns the results of the included scripts in the order of the operations.
+
+local putResource = function(KEYS, ARGV)
+--%(putscript)
+end
+
+local deleteResource = function(KEYS, ARGV)
+--%(delscript)
+end
+
+local results = {}
+local i = 1
+while i <= #ARGV do
+    local method = ARGV[i]
+    local keys = {ARGV[i + 1]}
+    local argc = tonumber(ARGV[i + 2])
+    local args = {}
+    for j = 1, argc do
+        args[j] = ARGV[i + 2 + j]
+    end
+    local result
+    if method == "PUT" then
+        result = putResource(keys, args)
+    else
+        result = deleteResource(keys, args)
+    end
+    results[#results + 1] = result or ""
+    i = i + 3 + argc
+end
+return results
@@ -9,6 +9,9 @@ local confirmCollectionDelete = ARGV[8]
 local deleteRecursive = ARGV[9]
 local now = tonumber(ARGV[10])
 local bulksize = tonumber(ARGV[11])
+local collectionMarkersPrefix = ARGV[12]
+local expirableBuckets = tonumber(ARGV[13]) or 1
+local bucket = ARGV[14]
 
 -- Important: The ARGV-Array is used again in the included del.lua script
 -- (see this funny comment with the percent sign below and Java-Method
@@ -19,11 +22,19 @@ ARGV[10] = ''
 ARGV[11] = ''
 ARGV[12] = ''
 ARGV[13] = ''
+ARGV[14] = collectionMarkersPrefix
+ARGV[15] = tostring(expirableBuckets)
+ARGV[16] = ''
+ARGV[17] = ''
 
 local resourcePrefixLength = string.len(resourcesPrefix)
 local counter = 0
 local KEYS = {}
-local resourcesToClean = redis.call('zrangebyscore',expirableSet,minscore,now,'limit',0,bulksize)
+local bucketSet = expirableSet
+if expirableBuckets > 1 then
+  bucketSet = expirableSet..":"..bucket
+end
+local resourcesToClean = redis.call('zrangebyscore',bucketSet,minscore,now,'limit',0,bulksize)
 for key,value in pairs(resourcesToClean) do
   redis.log(redis.LOG_NOTICE, "cleanup resource: "..value)
   KEYS[1] = string.sub(value, resourcePrefixLength+1, string.len(value))
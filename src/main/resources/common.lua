@@ -0,0 +1,55 @@
+-- Functions shared by the scripts, included by RedisStorage.LuaScriptState at the common placeholder of a script.
+-- They use the variables sep, collectionsPrefix, collectionMarkersPrefix, expirableSet, expirableBuckets and purgingKey
+-- of the including script.
+
+-- The expirable index is split into buckets by the hash of the resource key. With a single bucket the index is the
+-- expirable set itself, which also holds the entries not yet migrated to the buckets
+local function expirableBucket(member)
+    if expirableBuckets <= 1 then
+        return expirableSet
+    end
+    return expirableSet..":"..(tonumber(string.sub(redis.sha1hex(member), 1, 8), 16) % expirableBuckets)
+end
+
+local function expirableScore(member)
+    local score = redis.call('zscore', expirableBucket(member), member)
+    if score == false and expirableBuckets > 1 then
+        score = redis.call('zscore', expirableSet, member)
+    end
+    return score
+end
+
+-- Collections deleted asynchronously are detached from their parent and purged in the background (see purge.lua).
+-- Their remains stay invisible until purged.
+local function isPurging(p)
+    if purgingKey == nil or purgingKey == '' or redis.call('exists', purgingKey) == 0 then
+        return false
+    end
+    while p ~= '' do
+        if redis.call('hexists', purgingKey, p) == 1 then
+            return true
+        end
+        p = string.match(p, "^(.*)"..sep.."[^"..sep.."]*$") or ''
+    end
+    return false
+end
+
+-- Resolves whether the members of a collection are collections themselves. A collection written with
+-- collection markers holds the names of its sub-collections (plus the empty name as complete-marker) in a set,
+-- so no lookup per member is needed. Collections without complete markers fall back to a type lookup per member.
+local function collectionMemberResolver(path, memberCount)
+    if collectionMarkersPrefix ~= nil and collectionMarkersPrefix ~= '' then
+        local markersKey = collectionMarkersPrefix..path
+        if redis.call('sismember',markersKey,'') == 1 then
+            if redis.call('scard',markersKey) <= memberCount + 1 then
+                local markers = {}
+                for _,name in ipairs(redis.call('smembers',markersKey)) do
+                    markers[name] = true
+                end
+                return function(value) return markers[value] == true end
+            end
+            return function(value) return redis.call('sismember',markersKey,value) == 1 end
+        end
+    end
+    return function(value) return redis.call('type',collectionsPrefix..path..sep..value)["ok"] == "zset" end
+end
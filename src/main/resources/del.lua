@@ -18,11 +18,28 @@ local lockPrefix = ARGV[10]
 local lockOwner = ARGV[11]
 local lockMode = ARGV[12]
 local lockExpire = ARGV[13]
+local collectionMarkersPrefix = ARGV[14]
+local markersEnabled = collectionMarkersPrefix ~= nil and collectionMarkersPrefix ~= ''
+local expirableBuckets = tonumber(ARGV[15]) or 1
+local purgingKey = ARGV[16]
+local asyncDeleteEnabled = purgingKey ~= nil and purgingKey ~= ''
+local asyncDeleteThreshold = tonumber(ARGV[17]) or 0
+
+-- The shared functions are included after the returns of this script are commented out for cleanup.lua, so they
+-- keep their returns
+--%(common)
+
+local function removeExpirable(member)
+    redis.call('zrem', expirableBucket(member), member)
+    if expirableBuckets > 1 then
+        redis.call('zrem', expirableSet, member)
+    end
+end
 
 local function deleteChildrenAndItself(path)
     if redis.call('exists',resourcesPrefix..path) == 1 then
       redis.log(redis.LOG_NOTICE, "del: "..resourcesPrefix..path)
-      redis.call('zrem', expirableSet, resourcesPrefix..path)
+      removeExpirable(resourcesPrefix..path)
       redis.call('del', resourcesPrefix..path)
       redis.call('del', deltaResourcesPrefix..path)
       redis.call('del', deltaEtagsPrefix..path)
@@ -34,11 +51,39 @@ local function deleteChildrenAndItself(path)
         deleteChildrenAndItself(pathToDelete)
       end
       redis.call('del', collectionsPrefix..path)
+      if markersEnabled then
+        redis.call('del', collectionMarkersPrefix..path)
+      end
     else
       redis.log(redis.LOG_WARNING, "can't delete resource: "..path)
     end
 end
 
+-- Counts the descendants of a collection, but stops counting above the async delete threshold
+-- No return statements here (see above), the count is accumulated into descendants
+local descendants = 0
+local function countDescendants(path)
+    local members = redis.call('zrangebyscore',collectionsPrefix..path,minscore,maxscore,'limit',0,asyncDeleteThreshold - descendants + 1)
+    for key,value in pairs(members) do
+        if descendants <= asyncDeleteThreshold then
+            descendants = descendants + 1
+            if redis.call('exists',collectionsPrefix..path..sep..value) == 1 then
+                countDescendants(path..sep..value)
+            end
+        end
+    end
+end
+
+local removeFromParent = function(parentPath, name)
+    redis.call('zrem', collectionsPrefix..parentPath, name)
+    if markersEnabled then
+        redis.call('srem', collectionMarkersPrefix..parentPath, name)
+        if redis.call('exists', collectionsPrefix..parentPath) == 0 then
+            redis.call('del', collectionMarkersPrefix..parentPath)
+        end
+    end
+end
+
 local setLockIfClaimed = function()
     if lockOwner ~= nil and lockOwner ~= '' then
         redis.call('hmset', lockPrefix..KEYS[1], 'owner', lockOwner, 'mode', lockMode)
@@ -51,6 +96,11 @@ local scriptState = "notFound"
 local isResource = redis.call('exists',resourcesPrefix..toDelete)
 local isCollection = redis.call('exists',collectionsPrefix..toDelete)
 
+-- the remains of collections deleted asynchronously are not found anymore
+if isPurging(toDelete) then
+    return "notFound"
+end
+
 if confirmCollectionDelete == "true" and deleteRecursive == "false" and isCollection == 1 then
     redis.log(redis.LOG_NOTICE, "delete on collection requires recursive=true parameter")
     return "notEmpty"
@@ -65,7 +115,8 @@ if isResource == 1 or isCollection == 1 then
     end
   end
 
-  local score = tonumber(redis.call('zscore',expirableSet,resourcesPrefix..toDelete))  
+  local expireAt = expirableScore(resourcesPrefix..toDelete)
+  local score = tonumber(expireAt)
   local expired = 0
   if score ~= nil and minscore > score then
     redis.log(redis.LOG_NOTICE, "expired: "..resourcesPrefix..toDelete)
@@ -73,11 +124,23 @@ if isResource == 1 or isCollection == 1 then
   end
   
   if expired == 0 then
-  
-    -- REMOVE THE CHILDREN
-    deleteChildrenAndItself(toDelete)
+
+    local detached = false
+    if isCollection == 1 and asyncDeleteEnabled and asyncDeleteThreshold > 0 then
+      countDescendants(toDelete)
+      detached = descendants > asyncDeleteThreshold
+    end
+
+    if detached then
+      -- DETACH THE COLLECTION, the children are purged in bounded batches afterwards
+      redis.log(redis.LOG_NOTICE, "detach: "..collectionsPrefix..toDelete)
+      redis.call('hset', purgingKey, toDelete, 0)
+    else
+      -- REMOVE THE CHILDREN
+      deleteChildrenAndItself(toDelete)
+    end
     
-    if redis.call('zcount', collectionsPrefix..toDelete,minscore,maxscore) == 0 then
+    if detached or redis.call('zcount', collectionsPrefix..toDelete,minscore,maxscore) == 0 then
       
       -- REMOVE THE ORPHAN PARENTS
       local path = toDelete..sep
@@ -119,12 +182,12 @@ if isResource == 1 or isCollection == 1 then
               stopDel = 1
             end
             redis.log(redis.LOG_NOTICE, "zrem: "..collectionsPrefix..pathtable[pathDepthState-2].." "..nodetable[pathDepthState-1])
-            redis.call('zrem', collectionsPrefix..pathtable[pathDepthState-2], nodetable[pathDepthState-1])
+            removeFromParent(pathtable[pathDepthState-2], nodetable[pathDepthState-1])
         end
         if directParent == 1 then
           redis.log(redis.LOG_NOTICE, "remove direct parent")
           redis.log(redis.LOG_NOTICE, "zrem: "..collectionsPrefix..pathtable[pathDepth-2].." "..nodetable[pathDepthState-1])
-          redis.call('zrem', collectionsPrefix..pathtable[pathDepthState-2], nodetable[pathDepthState-1])
+          removeFromParent(pathtable[pathDepthState-2], nodetable[pathDepthState-1])
           directParent = 0
         end
       end
@@ -135,11 +198,14 @@ if isResource == 1 or isCollection == 1 then
     end
 
     scriptState = "deleted"
+    if detached then
+      scriptState = "purging"
+    end
   end
 else
   redis.log(redis.LOG_WARNING, "resource "..toDelete.." not present, will remove possible entry in expirableSet anyway")
   -- remove orphan entry in the expirableSet anyway (if there is actually one)
-  redis.call('zrem', expirableSet, resourcesPrefix..toDelete)
+  removeExpirable(resourcesPrefix..toDelete)
 end
 
 return scriptState
\ No newline at end of file
@@ -0,0 +1,46 @@
+local path = KEYS[1]
+local resourcesPrefix = ARGV[1]
+local collectionsPrefix = ARGV[2]
+local deltaResourcesPrefix = ARGV[3]
+local deltaEtagsPrefix = ARGV[4]
+local expirableSet = ARGV[5]
+local expirableBuckets = tonumber(ARGV[6]) or 1
+local collectionMarkersPrefix = ARGV[7]
+local markersEnabled = collectionMarkersPrefix ~= nil and collectionMarkersPrefix ~= ''
+
+-- Removes a resource expired by redis from its parent collections. Parent collections left empty are removed from
+-- their parents in turn. Called for every expired event of a resource hash.
+
+--%(common)
+
+if redis.call('exists',resourcesPrefix..path) == 1 then
+    -- written again since it expired, nothing to remove
+    return 0
+end
+
+redis.call('zrem',expirableBucket(resourcesPrefix..path),resourcesPrefix..path)
+redis.call('del',deltaResourcesPrefix..path)
+redis.call('del',deltaEtagsPrefix..path)
+
+local current = path
+local removed = 0
+while current ~= '' do
+    if redis.call('exists',resourcesPrefix..current) == 1 or redis.call('exists',collectionsPrefix..current) == 1 then
+        break
+    end
+    local parent, name = string.match(current, "^(.*):([^:]*)$")
+    if parent == nil then
+        break
+    end
+    if redis.call('zrem',collectionsPrefix..parent,name) == 1 then
+        removed = removed + 1
+    end
+    if markersEnabled then
+        redis.call('srem',collectionMarkersPrefix..parent,name)
+        if redis.call('exists',collectionsPrefix..parent) == 0 then
+            redis.call('del',collectionMarkersPrefix..parent)
+        end
+    end
+    current = parent
+end
+return removed
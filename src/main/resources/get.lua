@@ -9,6 +9,12 @@ local maxtime = tonumber(ARGV[5])
 local offset = tonumber(ARGV[6])
 local count = tonumber(ARGV[7])
 local etag = ARGV[8]
+local collectionMarkersPrefix = ARGV[9]
+local expirableBuckets = tonumber(ARGV[10]) or 1
+local nativeExpiry = ARGV[11] == "true"
+local purgingKey = ARGV[12]
+
+--%(common)
 
 local function not_empty(x)
     return (type(x) == "table") and (not x.err) and (#x ~= 0)
@@ -18,8 +24,25 @@ local function string_not_empty(s)
     return s ~= nil and s ~= ''
 end
 
+if isPurging(path) then
+    return "notFound"
+end
+
 if redis.call('exists',resourcesPrefix..path) == 1 then
-    local score = tonumber(redis.call('zscore',expirableSet,resourcesPrefix..path))
+    local expireAt = false
+    if nativeExpiry then
+        -- redis removes expired resources itself, the expiration is only needed for the response
+        local ttl = redis.call('pttl',resourcesPrefix..path)
+        if ttl > 0 then
+            expireAt = tostring(timestamp + ttl)
+        else
+            -- written with logical expiry before native expiry was enabled
+            expireAt = expirableScore(resourcesPrefix..path)
+        end
+    else
+        expireAt = expirableScore(resourcesPrefix..path)
+    end
+    local score = tonumber(expireAt)
     if score ~= nil and score < timestamp then
         return "notFound"
     else
@@ -32,6 +55,9 @@ if redis.call('exists',resourcesPrefix..path) == 1 then
                 end
             end
             table.insert(result, 1, "TYPE_RESOURCE")
+            if score ~= nil then
+                table.insert(result, expireAt)
+            end
             return result
         else
             return "notFound"
@@ -46,9 +72,9 @@ elseif redis.call('exists',collectionsPrefix..path) == 1 then
     end
     local children = {}
     table.insert(children, 1, "TYPE_COLLECTION")
+    local isCollection = collectionMemberResolver(path, #members)
     for key,value in pairs(members) do
-        local childPath = collectionsPrefix..path..sep..value
-        if redis.call('type', childPath)["ok"] == "zset" then
+        if isCollection(value) then
             table.insert(children, value..sep)
         else
             table.insert(children, value)
@@ -0,0 +1,52 @@
+local sep = ":"
+local path = KEYS[1]
+local resourcesPrefix = ARGV[1]
+local collectionsPrefix = ARGV[2]
+local expirableSet = ARGV[3]
+local timestamp = tonumber(ARGV[4])
+local etag = ARGV[5]
+local expirableBuckets = tonumber(ARGV[6]) or 1
+local nativeExpiry = ARGV[7] == "true"
+local purgingKey = ARGV[8]
+local acceptGzip = ARGV[9] == "true"
+
+--%(common)
+
+-- The values are sent as utf-8 encoded latin-1 strings, so every content byte above 127 is stored as two bytes
+local function contentLength(value)
+    local _, continuationBytes = string.gsub(value, "[\128-\191]", "")
+    return #value - continuationBytes
+end
+
+if isPurging(path) then
+    return "notFound"
+end
+
+if redis.call('exists',resourcesPrefix..path) == 1 then
+    local score = nil
+    -- with native expiry, only the resources written with logical expiry before it was enabled have no ttl
+    if not nativeExpiry or redis.call('pttl',resourcesPrefix..path) == -1 then
+        score = tonumber(expirableScore(resourcesPrefix..path))
+    end
+    if score ~= nil and score < timestamp then
+        return "notFound"
+    end
+    local result = redis.call('hmget',resourcesPrefix..path,'etag','compressed','length')
+    if etag ~= nil and etag ~= '' and result[1] == etag then
+        return "notModified"
+    end
+    if acceptGzip and result[2] then
+        -- compressed resources are sent as stored, so their stored length is returned instead of the original one
+        result[3] = tostring(contentLength(redis.call('hget',resourcesPrefix..path,'resource')))
+    elseif not result[3] and not result[2] then
+        -- resources stored without length, the length of compressed ones is only known after decompression
+        result[3] = tostring(contentLength(redis.call('hget',resourcesPrefix..path,'resource')))
+    end
+    table.insert(result, 1, "TYPE_RESOURCE")
+    return result
+elseif redis.call('zcount',collectionsPrefix..path,timestamp,'+inf') > 0 then
+    -- a collection exists as long as it has members not expired yet, like a GET listing it
+    return {"TYPE_COLLECTION"}
+else
+    return "notFound"
+end
@@ -0,0 +1,19 @@
+local leaseKey = KEYS[1]
+local owner = ARGV[1]
+local leaseMs = tonumber(ARGV[2])
+local throughput = ARGV[3]
+local throughputKey = leaseKey..":throughput"
+
+-- the lease is granted when it is free or renewed when it is already held by the owner
+local leader = redis.call('get', leaseKey)
+if leader == false or leader == owner then
+    redis.call('set', leaseKey, owner, 'PX', leaseMs)
+    redis.call('set', throughputKey, throughput, 'PX', leaseMs)
+    return {owner, throughput}
+end
+
+local leaderThroughput = redis.call('get', throughputKey)
+if leaderThroughput == false then
+    leaderThroughput = "0"
+end
+return {leader, leaderThroughput}
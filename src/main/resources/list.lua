@@ -0,0 +1,77 @@
+local sep = ":"
+local path = KEYS[1]
+local collectionsPrefix = ARGV[1]
+local timestamp = tonumber(ARGV[2])
+local afterMember = ARGV[3]
+local afterScore = tonumber(ARGV[4])
+local count = tonumber(ARGV[5])
+local collectionMarkersPrefix = ARGV[6]
+local purgingKey = ARGV[7]
+
+local collectionKey = collectionsPrefix..path
+
+-- The members are ordered by score and name. The page starts after the member of the previous page's cursor.
+-- Finding it with zrank costs O(log(N)), independent of the number of members before it.
+local function membersAfterCursor()
+    if afterMember == nil or afterMember == '' then
+        return redis.call('zrange',collectionKey,0,count - 1,'withscores')
+    end
+    local rank = redis.call('zrank',collectionKey,afterMember)
+    if rank then
+        return redis.call('zrange',collectionKey,rank + 1,rank + count,'withscores')
+    end
+    -- the cursor member was removed in the meantime. Continue behind its position: the members having the cursor
+    -- score form a run of ranks ordered by name, the first one behind the cursor is found by a binary search over
+    -- this run. This costs O(log(N)^2), even when most members share the score of non-expiring resources
+    local low = redis.call('zcount',collectionKey,'-inf','('..ARGV[4])
+    local high = redis.call('zcount',collectionKey,'-inf',ARGV[4])
+    while low < high do
+        local middle = math.floor((low + high) / 2)
+        if redis.call('zrange',collectionKey,middle,middle)[1] < afterMember then
+            low = middle + 1
+        else
+            high = middle
+        end
+    end
+    return redis.call('zrange',collectionKey,low,low + count - 1,'withscores')
+end
+
+--%(common)
+
+if isPurging(path) then
+    return "notFound"
+end
+
+if redis.call('exists',collectionKey) == 0 then
+    return "notFound"
+end
+if count <= 0 then
+    -- no limit, the whole rest of the collection is a single page
+    count = redis.call('zcard',collectionKey) + 1
+end
+
+local members = membersAfterCursor()
+local fetched = #members / 2
+
+-- the cursor of the next page, empty when this is the last page
+local children = {}
+if fetched == count then
+    table.insert(children, members[#members])
+    table.insert(children, members[#members - 1])
+else
+    table.insert(children, '')
+    table.insert(children, '')
+end
+
+local isCollection = collectionMemberResolver(path, fetched)
+for i = 1, #members, 2 do
+    local value = members[i]
+    if tonumber(members[i + 1]) >= timestamp then
+        if isCollection(value) then
+            table.insert(children, value..sep)
+        else
+            table.insert(children, value)
+        end
+    end
+end
+return children
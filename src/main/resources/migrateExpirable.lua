@@ -0,0 +1,22 @@
+local expirableSet = ARGV[1]
+local expirableBuckets = tonumber(ARGV[2])
+local bulksize = tonumber(ARGV[3])
+
+local function expirableBucket(member)
+    return expirableSet..":"..(tonumber(string.sub(redis.sha1hex(member), 1, 8), 16) % expirableBuckets)
+end
+
+-- moves the entries of the former single expirable set to their buckets. An entry already present in its bucket
+-- was written after the migration started and takes precedence
+local entries = redis.call('zrange', expirableSet, 0, bulksize - 1, 'withscores')
+local migrated = 0
+for i = 1, #entries, 2 do
+    local member = entries[i]
+    local bucket = expirableBucket(member)
+    if redis.call('zscore', bucket, member) == false then
+        redis.call('zadd', bucket, entries[i + 1], member)
+        migrated = migrated + 1
+    end
+    redis.call('zrem', expirableSet, member)
+end
+return {migrated, redis.call('zcard', expirableSet)}
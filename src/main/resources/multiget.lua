@@ -0,0 +1,24 @@
+-- Gets several resources in a single script call. The get script is included unchanged (see
+-- RedisStorage.LuaScriptState) as a function, called with the KEYS and ARGV of every resource.
+-- KEYS holds the keys of the resources, ARGV the arguments of the get script shared by all resources followed by the
+-- offset, limit and etag of every resource (the etag is empty when not provided).
+-- Returns the results of the get script in the order of the keys.
+
+local getResource = function(KEYS, ARGV)
+--%(getscript)
+end
+
+local argc = #ARGV - 3 * #KEYS
+local results = {}
+for i, key in ipairs(KEYS) do
+    local args = {}
+    for j = 1, argc do
+        args[j] = ARGV[j]
+    end
+    local k = argc + 3 * (i - 1)
+    args[6] = ARGV[k + 1]
+    args[7] = ARGV[k + 2]
+    args[8] = ARGV[k + 3]
+    results[i] = getResource({key}, args) or ""
+end
+return results
@@ -0,0 +1,69 @@
+local sep = ":"
+local path = KEYS[1]
+local resourcesPrefix = ARGV[1]
+local collectionsPrefix = ARGV[2]
+local deltaResourcesPrefix = ARGV[3]
+local deltaEtagsPrefix = ARGV[4]
+local expirableSet = ARGV[5]
+local expirableBuckets = tonumber(ARGV[6]) or 1
+local collectionMarkersPrefix = ARGV[7]
+local markersEnabled = collectionMarkersPrefix ~= nil and collectionMarkersPrefix ~= ''
+local lockPrefix = ARGV[8]
+local purgingKey = ARGV[9]
+local budget = tonumber(ARGV[10])
+
+-- Removes at most a bulk of the resources below a collection detached by an asynchronous delete. The detached
+-- collection stays registered in the purging hash (with the amount of resources purged so far) until its last
+-- descendant is removed. Returns whether the collection is purged completely and the amount of resources purged.
+
+--%(common)
+
+local purged = 0
+
+local function purgeResource(resPath)
+    redis.call('zrem', expirableBucket(resourcesPrefix..resPath), resourcesPrefix..resPath)
+    if expirableBuckets > 1 then
+        redis.call('zrem', expirableSet, resourcesPrefix..resPath)
+    end
+    redis.call('del', resourcesPrefix..resPath, deltaResourcesPrefix..resPath, deltaEtagsPrefix..resPath, lockPrefix..resPath)
+    purged = purged + 1
+    budget = budget - 1
+end
+
+-- depth first, so a collection is only removed together with its last member
+local function purgeCollection(colPath)
+    if budget <= 0 then
+        return false
+    end
+    local members = redis.call('zrange', collectionsPrefix..colPath, 0, budget - 1)
+    for _, name in ipairs(members) do
+        if budget <= 0 then
+            return false
+        end
+        local childPath = colPath..sep..name
+        local childPurged = true
+        if redis.call('exists', collectionsPrefix..childPath) == 1 then
+            childPurged = purgeCollection(childPath)
+        else
+            purgeResource(childPath)
+        end
+        if not childPurged then
+            return false
+        end
+        redis.call('zrem', collectionsPrefix..colPath, name)
+    end
+    if redis.call('exists', collectionsPrefix..colPath) == 1 then
+        return false
+    end
+    if markersEnabled then
+        redis.call('del', collectionMarkersPrefix..colPath)
+    end
+    return true
+end
+
+if purgeCollection(path) then
+    redis.call('hdel', purgingKey, path)
+    return {1, purged}
+end
+redis.call('hincrby', purgingKey, path, purged)
+return {0, purged}
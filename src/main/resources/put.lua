@@ -13,6 +13,27 @@ local lockOwner = ARGV[10]
 local lockMode = ARGV[11]
 local lockExpire = ARGV[12]
 local compress = tonumber(ARGV[13])
+local collectionMarkersPrefix = ARGV[14]
+local contentLength = ARGV[15]
+local expirableBuckets = tonumber(ARGV[16]) or 1
+local nativeExpiry = ARGV[17] == "true"
+local purgingKey = ARGV[18]
+-- with compareAndSet, the resource is only written when it still has the expected etag (empty when not existing)
+local compareAndSet = ARGV[19] == "true"
+local expectedEtag = ARGV[20]
+
+--%(common)
+
+local function removeExpirable(member)
+    redis.call('zrem', expirableBucket(member), member)
+    if expirableBuckets > 1 then
+        redis.call('zrem', expirableSet, member)
+    end
+end
+
+if isPurging(KEYS[1]) then
+    return "purging"
+end
 
 if redis.call('exists',collectionsPrefix..KEYS[1]) == 1 then
     return "existingCollection"
@@ -25,6 +46,13 @@ if redis.call('exists',lockPrefix..KEYS[1]) == 1 then
     end
 end
 
+if compareAndSet then
+    local etag = redis.call('hget',resourcesPrefix..KEYS[1],'etag') or ''
+    if etag ~= expectedEtag then
+        return "conflict"
+    end
+end
+
 local setLockIfClaimed = function()
     if lockOwner ~= nil and lockOwner ~= '' then
         redis.call('hmset', lockPrefix..KEYS[1], 'owner', lockOwner, 'mode', lockMode)
@@ -39,7 +67,8 @@ end
 
 if redis.call('exists',resourcesPrefix..KEYS[1]) == 1 then
     local etag = redis.call('hget',resourcesPrefix..KEYS[1],'etag')
-    if etag == resourceHash and expiration == maxexpiration and compressionModeNotChanged(compress) then
+    local notExpiring = not nativeExpiry or redis.call('pttl',resourcesPrefix..KEYS[1]) == -1
+    if etag == resourceHash and expiration == maxexpiration and compressionModeNotChanged(compress) and notExpiring then
         setLockIfClaimed()
         return "notModified";
     end
@@ -49,31 +78,67 @@ local not_empty = function(x)
     return (type(x) == "table") and (not x.err) and (#x ~= 0)
 end
 
+-- the parent collections from the direct parent up to the root, each with the name of its member on the path
+local parents = {}
+local names = {}
 local pathState
-local collections = {}
 local nodes = {path:match((path:gsub("[^"..sep.."]*"..sep, "([^"..sep.."]*)"..sep)))}
-
-for key,value in pairs(nodes) do
+for key,value in ipairs(nodes) do
     if pathState == nil then
         pathState = value
     else
-        collections[pathState] = value
+        table.insert(parents, 1, pathState)
+        table.insert(names, 1, value)
         pathState = pathState..sep..value
     end
-    redis.log(redis.LOG_NOTICE, "pathState: "..resourcesPrefix..pathState)
-    redis.log(redis.LOG_NOTICE, "path: "..resourcesPrefix..KEYS[1])
-    if redis.call('exists',resourcesPrefix..pathState) == 1 and resourcesPrefix..pathState ~= resourcesPrefix..KEYS[1] then
-        return "existingResource".." "..resourcesPrefix..pathState
+end
+
+-- The score of a member is the max expiration below it. The score of the resource itself in its direct parent is
+-- always set, it may shrink. Above, climbing up stops at the first parent already recording an equal or greater score,
+-- the parents above are up to date then. No key is written before all visited ancestors are checked not to be
+-- resources.
+local levels = 0
+local scores = {}
+local actualExpiration = expiration
+for i = 1, #parents do
+    local childExists = true
+    if i > 1 then
+        local childPath = parents[i]..sep..names[i]
+        redis.log(redis.LOG_NOTICE, "pathState: "..resourcesPrefix..childPath)
+        if redis.call('exists',resourcesPrefix..childPath) == 1 then
+            return "existingResource".." "..resourcesPrefix..childPath
+        end
+        local contentMax = redis.call('zrange',collectionsPrefix..childPath,-1,-1, "withscores")[2]
+        childExists = contentMax ~= nil and contentMax ~= ''
+        if childExists and tonumber(contentMax) > actualExpiration then
+            actualExpiration = tonumber(contentMax)
+        end
+    end
+    if i > 1 and childExists then
+        local recorded = tonumber(redis.call('zscore',collectionsPrefix..parents[i],names[i]))
+        if recorded ~= nil and recorded >= actualExpiration then
+            break
+        end
     end
+    levels = i
+    scores[i] = actualExpiration
 end
-for key,value in pairs(collections) do
+if levels > 0 and levels == #parents and redis.call('exists',resourcesPrefix..parents[levels]) == 1 then
+    return "existingResource".." "..resourcesPrefix..parents[levels]
+end
+
+for i = 1, levels do
+    local key = parents[i]
+    local value = names[i]
     local collectionKey = collectionsPrefix..key
-    local actualExpiration = expiration
-    local contentMax = redis.call('zrange',collectionKey..sep..value,-1,-1, "withscores")[2]
-    if contentMax ~= nil and contentMax ~= '' then
-        contentMax = tonumber(contentMax)
-        if contentMax > actualExpiration then
-            actualExpiration = contentMax
+    local actualExpiration = scores[i]
+    if collectionMarkersPrefix ~= nil and collectionMarkersPrefix ~= '' then
+        -- a new collection is marked as complete with the empty member, for existing ones see migrate-collection-markers.lua
+        if redis.call('exists',collectionKey) == 0 then
+            redis.call('sadd',collectionMarkersPrefix..key,'')
+        end
+        if key..sep..value ~= KEYS[1] then
+            redis.call('sadd',collectionMarkersPrefix..key,value)
         end
     end
     redis.log(redis.LOG_NOTICE, "zadd: "..collectionKey.." "..actualExpiration.." "..value)
@@ -90,6 +155,9 @@ if merge == "true" then
             if v == cjson.null then s[k] = nil else s[k] = v end
         end
         resourceValue = cjson.encode(s)
+        -- the values are sent as utf-8 encoded latin-1 strings, so every content byte above 127 is stored as two bytes
+        local _, continuationBytes = string.gsub(resourceValue, "[\128-\191]", "")
+        contentLength = tostring(#resourceValue - continuationBytes)
     end
 end
 
@@ -100,13 +168,26 @@ else
     redis.call('hmset',resourcesPrefix..KEYS[1],'resource',resourceValue,'etag',resourceHash)
     redis.call('hdel',resourcesPrefix..KEYS[1],'compressed')
 end
+if contentLength ~= nil and contentLength ~= '' then
+    redis.call('hset',resourcesPrefix..KEYS[1],'length',contentLength)
+else
+    redis.call('hdel',resourcesPrefix..KEYS[1],'length')
+end
 
-if expiration ~= maxexpiration then
-    redis.log(redis.LOG_NOTICE, "zadd: "..expirableSet.." "..expiration.." "..resourcesPrefix..KEYS[1])
-    redis.call('zadd',expirableSet,expiration,resourcesPrefix..KEYS[1])
+if expiration ~= maxexpiration and nativeExpiry then
+    -- redis removes the resource itself, the parent collections are repaired with expired.lua
+    redis.log(redis.LOG_NOTICE, "pexpireat: "..resourcesPrefix..KEYS[1].." "..expiration)
+    removeExpirable(resourcesPrefix..KEYS[1])
+    redis.call('pexpireat',resourcesPrefix..KEYS[1],expiration)
+elseif expiration ~= maxexpiration then
+    local bucket = expirableBucket(resourcesPrefix..KEYS[1])
+    redis.log(redis.LOG_NOTICE, "zadd: "..bucket.." "..expiration.." "..resourcesPrefix..KEYS[1])
+    redis.call('zadd',bucket,expiration,resourcesPrefix..KEYS[1])
+    redis.call('persist',resourcesPrefix..KEYS[1])
 elseif expiration == maxexpiration then
     redis.log(redis.LOG_NOTICE, "zrem: "..expirableSet.." "..resourcesPrefix..KEYS[1])
-    redis.call('zrem', expirableSet, resourcesPrefix..KEYS[1])
+    removeExpirable(resourcesPrefix..KEYS[1])
+    redis.call('persist',resourcesPrefix..KEYS[1])
 end
 
 setLockIfClaimed()
@@ -6,7 +6,6 @@
 
 local sep = ":"
 local path = KEYS[1]
-local parentPathElement
 local resourcesPrefix = ARGV[1]
 local collectionsPrefix = ARGV[2]
 local expirableSet = ARGV[3]
@@ -14,6 +13,15 @@ local timestamp = tonumber(ARGV[4])
 local maxtime = tonumber(ARGV[5])
 local subResources = ARGV[6]
 local subResourcesCount = tonumber(ARGV[7])
+local etag = ARGV[8]
+local depth = tonumber(ARGV[9]) or 1
+local maxMembers = tonumber(ARGV[10]) or math.huge
+local maxSize = tonumber(ARGV[11]) or math.huge
+local expirableBuckets = tonumber(ARGV[12]) or 1
+local nativeExpiry = ARGV[13] == "true"
+local purgingKey = ARGV[14]
+
+--%(common)
 
 local function splitToTable(divider,str)
     if (divider=='') then return false end
@@ -33,52 +41,163 @@ local function isCollection(resName)
     return false
 end
 
-local function isCompressed(resourcePath)
-    if redis.call('hexists',resourcePath,'compressed') == 1 then
-        return true
-    else
-        return false
+local jsonEscapes = { ['"'] = '\\"', ['\\'] = '\\\\', ['\b'] = '\\b', ['\f'] = '\\f', ['\n'] = '\\n', ['\r'] = '\\r', ['\t'] = '\\t' }
+
+local function jsonString(s)
+    return '"'..string.gsub(s, '[%c"\\]', function(c)
+        return jsonEscapes[c] or string.format('\\u%04x', string.byte(c))
+    end)..'"'
+end
+
+-- The members of a collection, the sub collections (sorted by name) first
+local function orderedMembers(members)
+    local collections = {}
+    local resources = {}
+    for _, member in ipairs(members) do
+        if isCollection(member) then
+            table.insert(collections, member)
+        else
+            table.insert(resources, member)
+        end
     end
+    table.sort(collections)
+    for _, resource in ipairs(resources) do
+        table.insert(collections, resource)
+    end
+    return collections
 end
 
-local result = {}
-local subResourcesTable = splitToTable(";", subResources);
+local function membersAsJson(members)
+    local quoted = {}
+    for k, member in ipairs(members) do
+        quoted[k] = jsonString(member)
+    end
+    return '['..table.concat(quoted, ',')..']'
+end
 
-for i=1,subResourcesCount do
-    local subResName = subResourcesTable[i]
-    if(isCollection(subResName)) then
-        subResName = string.sub(subResName, 1, string.len(subResName)-1)
-        local colPath = collectionsPrefix..path..sep..subResName
-        if redis.call('exists',colPath) == 1 then
-            local colMembers = redis.call('zrangebyscore',colPath, timestamp, maxtime)
-            for k, v in ipairs(colMembers) do
-                if redis.call('exists',colPath..sep..v) == 1 then
-                    colMembers[k] = v.."/"
+local memberCount = 0
+local size = 0
+
+local function checkLimits()
+    if memberCount > maxMembers then
+        return "membersLimitExceeded"
+    end
+    if size > maxSize then
+        return "sizeLimitExceeded"
+    end
+    return nil
+end
+
+-- First pass: collect the sub resources of the collection and the etag source without reading the content of the
+-- resources. Sub collections are expanded recursively until the depth is reached, deeper collections are listed by
+-- the names of their members. Returns the number of collected sub resources or an error when a limit is exceeded.
+local entries = {}
+local etagSource = {}
+
+local function collect(colPath, subResNames, remainingDepth)
+    local collected = 0
+    local seen = {}
+    for _, subResName in ipairs(subResNames) do
+        if not seen[subResName] then
+            seen[subResName] = true
+            if(isCollection(subResName)) then
+                local subColPath = colPath..sep..string.sub(subResName, 1, string.len(subResName)-1)
+                local subColKey = collectionsPrefix..subColPath
+                if redis.call('exists',subColKey) == 1 then
+                    local colMembers = redis.call('zrangebyscore',subColKey, timestamp, maxtime)
+                    for k, v in ipairs(colMembers) do
+                        if redis.call('exists',subColKey..sep..v) == 1 then
+                            colMembers[k] = v.."/"
+                        end
+                    end
+                    colMembers = orderedMembers(colMembers)
+                    memberCount = memberCount + 1
+                    collected = collected + 1
+                    if remainingDepth > 1 then
+                        local entry = {subResName, "0"}
+                        table.insert(entries, entry)
+                        table.insert(etagSource, subResName..'{')
+                        local count, err = collect(subColPath, colMembers, remainingDepth - 1)
+                        if err then
+                            return nil, err
+                        end
+                        entry[2] = tostring(count)
+                        table.insert(etagSource, '}')
+                    else
+                        local membersJson = membersAsJson(colMembers)
+                        memberCount = memberCount + #colMembers
+                        size = size + string.len(membersJson)
+                        table.insert(entries, {subResName, membersJson})
+                        table.insert(etagSource, subResName..membersJson)
+                    end
                 end
-            end
-            table.insert(result, {subResName, cjson.encode(colMembers)})
-        end
-    else
-        local resPath = resourcesPrefix..path..sep..subResName
-        if redis.call('exists',resPath) == 1 then
-            if isCompressed(resPath) then
-                return "compressionNotSupported"
-            end
-            local score = tonumber(redis.call('zscore',expirableSet,resPath))
-            if score == nil or score > timestamp then
-                local res = (redis.call('hget',resPath,'resource'))
-                if(res) then
-                    table.insert(result, {subResName, res})
+            else
+                local resPath = resourcesPrefix..colPath..sep..subResName
+                if redis.call('exists',resPath) == 1 then
+                    local score = nil
+                    -- with native expiry, only the resources written with logical expiry before it was enabled have no ttl
+                    if not nativeExpiry or redis.call('pttl',resPath) == -1 then
+                        score = tonumber(expirableScore(resPath))
+                    end
+                    if score == nil or score > timestamp then
+                        local meta = redis.call('hmget',resPath,'etag','compressed')
+                        local resEtag = meta[1]
+                        if not resEtag then
+                            resEtag = redis.sha1hex(redis.call('hget',resPath,'resource'))
+                        end
+                        memberCount = memberCount + 1
+                        size = size + redis.call('hstrlen',resPath,'resource')
+                        collected = collected + 1
+                        table.insert(entries, {subResName, resPath, meta[2] ~= false})
+                        table.insert(etagSource, subResName..'\n'..resEtag)
+                    end
                 end
             end
+            local err = checkLimits()
+            if err then
+                return nil, err
+            end
         end
     end
+    return collected, nil
 end
 
-local resEncoded = cjson.encode(result)
+if isPurging(path) then
+    return "notFound"
+end
 
-if (resEncoded=='{}') then
+local subResourcesTable = splitToTable(";", subResources)
+local requested = {}
+for i=1,subResourcesCount do
+    requested[i] = subResourcesTable[i]
+end
+
+local _, err = collect(path, requested, depth)
+if err then
+    return err
+end
+
+if #entries == 0 then
     return "notFound"
 end
 
-return resEncoded
\ No newline at end of file
+local expandEtag = redis.sha1hex(table.concat(etagSource, '\n'))
+if expandEtag == etag then
+    return "notModified"
+end
+
+-- Second pass: the stored resources are returned as they are, compressed resources wrapped into an array to be
+-- decompressed by the caller. Collections at the depth are returned as json array of their members, expanded
+-- collections by the number of their sub resources, which follow in the result
+local result = {expandEtag}
+for _, entry in ipairs(entries) do
+    table.insert(result, entry[1])
+    if isCollection(entry[1]) then
+        table.insert(result, entry[2])
+    elseif entry[3] then
+        table.insert(result, {redis.call('hget',entry[2],'resource')})
+    else
+        table.insert(result, redis.call('hget',entry[2],'resource'))
+    end
+end
+return result
@@ -0,0 +1,108 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the {@link BufferReadStream} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class BufferReadStreamTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext testContext) {
+        vertx.close(testContext.asyncAssertSuccess());
+    }
+
+    private Buffer content(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) i;
+        }
+        return Buffer.buffer(bytes);
+    }
+
+    @Test
+    public void testSmallContent(TestContext testContext) {
+        testContext.assertTrue(new BufferReadStream(vertx, content(BufferReadStream.SMALL_CONTENT_THRESHOLD)).isSmall());
+        testContext.assertFalse(new BufferReadStream(vertx, content(BufferReadStream.SMALL_CONTENT_THRESHOLD + 1)).isSmall());
+    }
+
+    @Test
+    public void testEmitsAllSlicesInOneGo(TestContext testContext) {
+        Async async = testContext.async();
+        Buffer content = content(BufferReadStream.SLICE_SIZE * 3 + 17);
+        BufferReadStream stream = new BufferReadStream(vertx, content);
+        List<Buffer> slices = new ArrayList<>();
+        stream.endHandler(v -> {
+            testContext.assertEquals(4, slices.size());
+            testContext.assertEquals(17, slices.get(3).length());
+            Buffer received = Buffer.buffer();
+            slices.forEach(received::appendBuffer);
+            testContext.assertEquals(content, received);
+            async.complete();
+        });
+        stream.handler(slices::add);
+    }
+
+    @Test
+    public void testPauseAndResume(TestContext testContext) {
+        Async async = testContext.async();
+        Buffer content = content(BufferReadStream.SLICE_SIZE * 2);
+        BufferReadStream stream = new BufferReadStream(vertx, content);
+        List<Buffer> slices = new ArrayList<>();
+        stream.endHandler(v -> {
+            testContext.assertEquals(2, slices.size());
+            async.complete();
+        });
+        stream.handler(slice -> {
+            slices.add(slice);
+            stream.pause();
+            int emitted = slices.size();
+            vertx.setTimer(10, id -> {
+                // nothing is emitted while paused
+                testContext.assertEquals(emitted, slices.size());
+                stream.resume();
+            });
+        });
+    }
+
+    @Test
+    public void testEmptyContent(TestContext testContext) {
+        Async async = testContext.async();
+        BufferReadStream stream = new BufferReadStream(vertx, Buffer.buffer());
+        stream.endHandler(v -> async.complete());
+        stream.handler(slice -> testContext.fail("no slice expected"));
+    }
+
+    @Test
+    public void testExceptionHandler(TestContext testContext) {
+        Async async = testContext.async();
+        BufferReadStream stream = new BufferReadStream(vertx, content(10));
+        stream.endHandler(v -> testContext.fail("end not expected"));
+        stream.exceptionHandler(ex -> {
+            testContext.assertEquals("Booom", ex.getMessage());
+            async.complete();
+        });
+        stream.handler(slice -> {
+            throw new RuntimeException("Booom");
+        });
+    }
+}
@@ -1,6 +1,9 @@
 package org.swisspush.reststorage;
 
 import com.jayway.restassured.http.ContentType;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
@@ -8,8 +11,10 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import static com.jayway.restassured.RestAssured.*;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.nullValue;
 
 @RunWith(VertxUnitRunner.class)
 public class FilesystemStorageIntegrationTest extends FilesystemStorageTestCase {
@@ -26,6 +31,72 @@ public class FilesystemStorageIntegrationTest extends FilesystemStorageTestCase
         async.complete();
     }
 
+    @Test
+    public void testStreamCollection(TestContext testContext) throws InterruptedException {
+        Async async = testContext.async();
+        String path = TEST_FILES_PATH + "/collection/sub/";
+        with().body("<h1>nemo.html</h1>").put(path + "resources/nemo.html");
+        with().body("<h1>index.html</h1>").put(path + "index.html");
+        with().param("stream", true).get(path).then().assertThat().statusCode(200)
+                .contentType("application/json")
+                .header("Transfer-Encoding", "chunked")
+                .body("sub", hasItems("index.html", "resources/"));
+
+        // resources are not affected by the stream parameter
+        with().param("stream", true).get(path + "index.html").then().assertThat().statusCode(200)
+                .body(equalTo("<h1>index.html</h1>"));
+        async.complete();
+    }
+
+    @Test
+    public void testListCollectionAfterContinuationToken(TestContext testContext) throws InterruptedException {
+        Async async = testContext.async();
+        String path = TEST_FILES_PATH + "/collection/paged/";
+        for (String name : new String[]{"res4", "res1", "res3", "res2"}) {
+            with().body("{\"name\": \"" + name + "\"}").put(path + name);
+        }
+
+        String next = with().param("after", "").param("limit", 3).get(path).then().assertThat().statusCode(200)
+                .body("paged", contains("res1", "res2", "res3"))
+                .extract().path("next");
+        testContext.assertNotNull(next);
+
+        // members added before the position of the token do not shift the next page
+        with().body("{\"name\": \"res0\"}").put(path + "res0");
+        with().param("after", next).param("limit", 3).get(path).then().assertThat().statusCode(200)
+                .body("paged", contains("res4"))
+                .body("next", nullValue());
+
+        with().param("after", "not a token!").get(path).then().assertThat().statusCode(400);
+
+        // resources are not affected by the after parameter
+        with().param("after", "").get(path + "res1").then().assertThat().statusCode(200)
+                .body("name", equalTo("res1"));
+        async.complete();
+    }
+
+    @Test
+    public void testHead(TestContext testContext) throws InterruptedException {
+        Async async = testContext.async();
+        String path = TEST_FILES_PATH + "/collection/head/";
+        with().body("<h1>nemo.html</h1>").put(path + "nemo.html");
+
+        head(path + "nemo.html").then().assertThat().statusCode(200)
+                .header("Content-Length", "18")
+                .contentType("text/html")
+                .body(equalTo(""));
+
+        // the collection is not listed, so the length of the listing is not known
+        head(path).then().assertThat().statusCode(200)
+                .header("Content-Length", nullValue())
+                .contentType("application/json")
+                .body(equalTo(""));
+
+        head(path + "notExisting").then().assertThat().statusCode(404)
+                .body(equalTo(""));
+        async.complete();
+    }
+
     @Test
     public void testDeleteCollectionWithRecursiveParameter(TestContext testContext) throws InterruptedException {
         Async async = testContext.async();
@@ -63,4 +134,75 @@ public class FilesystemStorageIntegrationTest extends FilesystemStorageTestCase
 
         async.complete();
     }
+
+    @Test
+    public void testBatch(TestContext testContext) throws InterruptedException {
+        Async async = testContext.async();
+        String path = TEST_FILES_PATH + "/collection/batch/";
+        with().body("{\"name\": \"old\"}").put(path + "old");
+
+        with().queryParam("batch", "").body(new JsonObject().put("operations", new JsonArray()
+                .add(new JsonObject().put("method", "PUT").put("path", "res1").put("content", new JsonObject().put("name", "res1")))
+                .add(new JsonObject().put("method", "PUT").put("path", "sub/res2").put("base64", "PGgxPnJlczI8L2gxPg=="))
+                .add(new JsonObject().put("method", "DELETE").put("path", "old"))
+                .add(new JsonObject().put("method", "DELETE").put("path", "missing"))).encode())
+                .post(path).then().assertThat().statusCode(200)
+                .body("results.path", contains("res1", "sub/res2", "old", "missing"))
+                .body("results.status", contains(200, 200, 200, 404));
+
+        get(path + "res1").then().assertThat().statusCode(200).body("name", equalTo("res1"));
+        get(path + "sub/res2").then().assertThat().statusCode(200).body(equalTo("<h1>res2</h1>"));
+        get(path + "old").then().assertThat().statusCode(404);
+
+        with().queryParam("batch", "").body("{\"operations\": [{\"method\": \"PATCH\", \"path\": \"res1\"}]}").post(path)
+                .then().assertThat().statusCode(400);
+        async.complete();
+    }
+
+    @Test
+    public void testMultiGet(TestContext testContext) {
+        Async async = testContext.async();
+        String path = TEST_FILES_PATH + "/collection/multiget/";
+        with().body("{\"name\": \"res1\"}").put(path + "res1");
+        with().body("<h1>res2</h1>").put(path + "sub/res2.html");
+
+        with().queryParam("multiGet", "").body(new JsonObject().put("resources", new JsonArray()
+                .add("res1").add("sub/res2.html").add("sub").add("missing")).encode())
+                .post(path).then().assertThat().statusCode(200)
+                .body("resources.path", contains("res1", "sub/res2.html", "sub", "missing"))
+                .body("resources.status", contains(200, 200, 200, 404))
+                .body("resources[0].content.name", equalTo("res1"))
+                .body("resources[1].base64", equalTo("PGgxPnJlczI8L2gxPg=="))
+                .body("resources[2].content.sub", contains("res2.html"));
+
+        with().queryParam("multiGet", "").body("{\"resources\": [{\"etag\": \"missing path\"}]}").post(path)
+                .then().assertThat().statusCode(400);
+        async.complete();
+    }
+
+    @Test
+    public void testBatchOverEventBus(TestContext testContext) {
+        Async async = testContext.async();
+        String uri = "/" + TEST_FILES_PATH + "/collection/eventbus?batch";
+        JsonObject header = new JsonObject().put("method", "POST").put("uri", uri);
+        Buffer body = Buffer.buffer(new JsonObject().put("operations", new JsonArray()
+                .add(new JsonObject().put("method", "PUT").put("path", "res1").put("content", new JsonObject().put("name", "res1"))))
+                .encode());
+        Buffer headerBuffer = Buffer.buffer(header.encode());
+        Buffer request = Buffer.buffer().appendInt(headerBuffer.length()).appendBuffer(headerBuffer).appendBuffer(body);
+
+        vertx.eventBus().<Buffer>send("rest-storage", request, reply -> {
+            testContext.assertTrue(reply.succeeded(), String.valueOf(reply.cause()));
+            Buffer response = reply.result().body();
+            int headerLength = response.getInt(0);
+            testContext.assertEquals(200, new JsonObject(response.getString(4, headerLength + 4)).getInteger("statusCode"));
+            JsonObject result = new JsonObject(response.getString(headerLength + 4, response.length()))
+                    .getJsonArray("results").getJsonObject(0);
+            testContext.assertEquals(200, result.getInteger("status"));
+            async.complete();
+        });
+        async.awaitSuccess();
+
+        get(TEST_FILES_PATH + "/collection/eventbus/res1").then().assertThat().statusCode(200).body("name", equalTo("res1"));
+    }
 }
@@ -20,6 +20,7 @@ import org.swisspush.reststorage.mocks.*;
 import org.swisspush.reststorage.util.LockMode;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -343,6 +344,74 @@ public class FilesystemStorageTest {
         }.run();
     }
 
+    @Test
+    public void batchPutsAndDeletesInParallel(final TestContext testContext) {
+        final Async async = testContext.async();
+        final Vertx vertx = Vertx.vertx();
+        final FileSystem fileSystem = vertx.fileSystem();
+        final String root = createPseudoFileStorageRoot();
+        fileSystem.mkdirsBlocking(root + "/foo/bar");
+        fileSystem.writeFileBlocking(root + "/foo/old", new BufferImpl().appendString("old"));
+        final FileSystemStorage victim = new FileSystemStorage(vertx, root);
+
+        vertx.runOnContext(v -> victim.batch(Arrays.asList(
+                BatchOperation.put("/foo/new1", new BufferImpl().appendString("1")),
+                BatchOperation.put("/foo/sub/new2", new BufferImpl().appendString("2")),
+                BatchOperation.put("/foo/bar", new BufferImpl().appendString("3")),
+                BatchOperation.delete("/foo/old"),
+                BatchOperation.delete("/foo/missing")), results -> {
+            testContext.assertEquals(5, results.size());
+            testContext.assertTrue(results.get(0).exists);
+            testContext.assertEquals("1", fileSystem.readFileBlocking(root + "/foo/new1").toString());
+            testContext.assertEquals("2", fileSystem.readFileBlocking(root + "/foo/sub/new2").toString());
+            testContext.assertTrue(results.get(2) instanceof CollectionResource);
+            testContext.assertTrue(results.get(3).exists);
+            testContext.assertFalse(fileSystem.existsBlocking(root + "/foo/old"));
+            testContext.assertFalse(results.get(4).exists);
+            async.complete();
+        }));
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void asyncDeleteMovesDirectoryToTrash(final TestContext testContext) {
+        final Async async = testContext.async();
+        final Vertx vertx = Vertx.vertx();
+        final FileSystem fileSystem = vertx.fileSystem();
+        final String root = createPseudoFileStorageRoot();
+        fileSystem.mkdirsBlocking(root + "/foo/bar/baz");
+        fileSystem.writeFileBlocking(root + "/foo/bar/baz/file1", new BufferImpl().appendString("1"));
+        fileSystem.writeFileBlocking(root + "/foo/bar/file2", new BufferImpl().appendString("2"));
+        fileSystem.writeFileBlocking(root + "/foo/file3", new BufferImpl().appendString("3"));
+        final FileSystemStorage victim = new FileSystemStorage(vertx, root, true);
+
+        vertx.runOnContext(v -> victim.delete("/foo/bar", null, LockMode.SILENT, 0, true, true, resource -> {
+            testContext.assertTrue(resource.exists);
+            testContext.assertFalse(resource.error);
+            testContext.assertFalse(fileSystem.existsBlocking(root + "/foo/bar"));
+            testContext.assertTrue(fileSystem.existsBlocking(root + "/foo/file3"));
+            awaitEmptyTrash(testContext, vertx, victim, root, async, 50);
+        }));
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    private static void awaitEmptyTrash(TestContext testContext, Vertx vertx, FileSystemStorage victim, String root,
+                                        Async async, int remainingAttempts) {
+        victim.statistics(stats -> {
+            if (stats.getJsonObject("asyncDelete").getInteger("purging") == 0) {
+                testContext.assertEquals(1L, stats.getJsonObject("asyncDelete").getLong("purgedDirectories"));
+                testContext.assertTrue(vertx.fileSystem().readDirBlocking(root + "/.tmp/trash").isEmpty());
+                async.complete();
+            } else if (remainingAttempts > 0) {
+                vertx.setTimer(20, id -> awaitEmptyTrash(testContext, vertx, victim, root, async, remainingAttempts - 1));
+            } else {
+                testContext.fail("Trash did not get purged.");
+            }
+        });
+    }
+
     /**
      * @return
      *      A path denoting a directory inside 'target/' directory for usage as a
@@ -0,0 +1,114 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link NearCache} class.
+ */
+@RunWith(VertxUnitRunner.class)
+public class NearCacheTest {
+
+    private static final long NOW = 1_000_000L;
+
+    private NearCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new NearCache(10, 6, 1000);
+        cache.setActive(true);
+    }
+
+    @Test
+    public void testGetAndPut(TestContext testContext) {
+        testContext.assertNull(cache.get(":a", NOW));
+
+        cache.put(":a", new byte[]{1, 2}, "etag1", Long.MAX_VALUE, cache.version(), NOW);
+
+        NearCache.Entry entry = cache.get(":a", NOW);
+        testContext.assertNotNull(entry);
+        testContext.assertEquals("etag1", entry.etag);
+        testContext.assertEquals(2, entry.content.length);
+
+        JsonObject stats = cache.statistics();
+        testContext.assertEquals(1L, stats.getLong("hits"));
+        testContext.assertEquals(1L, stats.getLong("misses"));
+        testContext.assertEquals(1, stats.getInteger("entries"));
+        testContext.assertEquals(2L, stats.getLong("size"));
+    }
+
+    @Test
+    public void testInactiveCacheIsBypassed(TestContext testContext) {
+        cache.put(":a", new byte[]{1}, "etag1", Long.MAX_VALUE, cache.version(), NOW);
+        cache.setActive(false);
+
+        testContext.assertNull(cache.get(":a", NOW));
+        cache.put(":a", new byte[]{1}, "etag1", Long.MAX_VALUE, cache.version(), NOW);
+
+        cache.setActive(true);
+        testContext.assertNull(cache.get(":a", NOW), "deactivating must empty the cache");
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted(TestContext testContext) {
+        cache.put(":a", new byte[4], "a", Long.MAX_VALUE, cache.version(), NOW);
+        cache.put(":b", new byte[4], "b", Long.MAX_VALUE, cache.version(), NOW);
+        cache.get(":a", NOW);
+        cache.put(":c", new byte[4], "c", Long.MAX_VALUE, cache.version(), NOW);
+
+        testContext.assertNotNull(cache.get(":a", NOW));
+        testContext.assertNull(cache.get(":b", NOW));
+        testContext.assertNotNull(cache.get(":c", NOW));
+        testContext.assertEquals(1L, cache.statistics().getLong("evictions"));
+        testContext.assertEquals(8L, cache.statistics().getLong("size"));
+    }
+
+    @Test
+    public void testLargeResourcesAreNotCached(TestContext testContext) {
+        cache.put(":a", new byte[7], "a", Long.MAX_VALUE, cache.version(), NOW);
+        testContext.assertNull(cache.get(":a", NOW));
+    }
+
+    @Test
+    public void testValueReadBeforeInvalidationIsNotCached(TestContext testContext) {
+        long readVersion = cache.version();
+        cache.invalidate(":a");
+
+        cache.put(":a", new byte[1], "etag1", Long.MAX_VALUE, readVersion, NOW);
+
+        testContext.assertNull(cache.get(":a", NOW));
+    }
+
+    @Test
+    public void testEntriesExpire(TestContext testContext) {
+        cache.put(":a", new byte[1], "a", Long.MAX_VALUE, cache.version(), NOW);
+        cache.put(":b", new byte[1], "b", NOW + 100, cache.version(), NOW);
+
+        testContext.assertNotNull(cache.get(":b", NOW + 99));
+        testContext.assertNull(cache.get(":b", NOW + 100), "resource expiration must be respected");
+        testContext.assertNotNull(cache.get(":a", NOW + 999));
+        testContext.assertNull(cache.get(":a", NOW + 1000), "max age must be respected");
+        testContext.assertEquals(0L, cache.statistics().getLong("size"));
+    }
+
+    @Test
+    public void testInvalidateTree(TestContext testContext) {
+        cache.put(":a:b", new byte[1], "b", Long.MAX_VALUE, cache.version(), NOW);
+        cache.put(":a:c:d", new byte[1], "d", Long.MAX_VALUE, cache.version(), NOW);
+        cache.put(":ab", new byte[1], "ab", Long.MAX_VALUE, cache.version(), NOW);
+
+        cache.invalidate(":a");
+        testContext.assertNotNull(cache.get(":a:b", NOW));
+
+        cache.invalidateTree(":a");
+        testContext.assertNull(cache.get(":a:b", NOW));
+        testContext.assertNull(cache.get(":a:c:d", NOW));
+        testContext.assertNotNull(cache.get(":ab", NOW));
+        testContext.assertEquals(1L, cache.statistics().getLong("size"));
+        testContext.assertEquals(2L, cache.statistics().getLong("invalidations"));
+    }
+}
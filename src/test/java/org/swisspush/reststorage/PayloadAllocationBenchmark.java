@@ -0,0 +1,114 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.RedisClient;
+import org.mockito.Mockito;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures the bytes allocated on the payload path between the http buffers and the strings handed to the redis
+ * client. Compares the former byte array based path with the buffer based path of {@link RedisStorage}.
+ * <p>
+ * Not a unit test, run the main method from the test classpath.
+ */
+public class PayloadAllocationBenchmark {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final int ITERATIONS = 200;
+
+    private static final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        Vertx vertx = Vertx.vertx();
+        RedisStorage storage = new RedisStorage(vertx, new ModuleConfiguration(), Mockito.mock(RedisClient.class));
+
+        System.out.println(String.format("%10s %22s %22s %22s %22s", "size", "write legacy [B/B]",
+                "write buffer [B/B]", "read legacy [B/B]", "read buffer [B/B]"));
+        for (int size : new int[]{1024, 64 * 1024, 1024 * 1024, 5 * 1024 * 1024}) {
+            Buffer[] chunks = chunks(size);
+            String stored = new String(new byte[size], StandardCharsets.ISO_8859_1);
+
+            // warm up
+            for (int i = 0; i < ITERATIONS; i++) {
+                writeLegacy(chunks);
+                writeBuffer(storage, chunks);
+                readLegacy(stored);
+                readBuffer(stored);
+            }
+
+            double writeLegacy = measure(size, () -> writeLegacy(chunks));
+            double writeBuffer = measure(size, () -> writeBuffer(storage, chunks));
+            double readLegacy = measure(size, () -> readLegacy(stored));
+            double readBuffer = measure(size, () -> readBuffer(stored));
+            System.out.println(String.format("%10d %22.2f %22.2f %22.2f %22.2f", size, writeLegacy, writeBuffer,
+                    readLegacy, readBuffer));
+        }
+        vertx.close();
+    }
+
+    private static Buffer[] chunks(int size) {
+        int count = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        Buffer[] chunks = new Buffer[count];
+        for (int i = 0; i < count; i++) {
+            chunks[i] = Buffer.buffer(new byte[Math.min(CHUNK_SIZE, size - i * CHUNK_SIZE)]);
+        }
+        return chunks;
+    }
+
+    /**
+     * @return the allocated bytes per payload byte
+     */
+    private static double measure(int size, Runnable runnable) {
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            runnable.run();
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        return (double) allocated / ITERATIONS / size;
+    }
+
+    private static String writeLegacy(Buffer[] chunks) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        for (Buffer chunk : chunks) {
+            byte[] bytes = chunk.getBytes();
+            bos.write(bytes, 0, bytes.length);
+        }
+        return new String(bos.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    private static String writeBuffer(RedisStorage storage, Buffer[] chunks) {
+        RedisStorage.BufferWriteStream stream = storage.new BufferWriteStream();
+        for (Buffer chunk : chunks) {
+            stream.write(chunk);
+        }
+        stream.end();
+        return RedisStorage.encodeBinary(stream.getBuffer());
+    }
+
+    private static Buffer readLegacy(String stored) {
+        byte[] content = stored.getBytes(StandardCharsets.ISO_8859_1);
+        Buffer result = null;
+        for (int position = 0; position < content.length; position += CHUNK_SIZE) {
+            byte[] bytes = new byte[Math.min(CHUNK_SIZE, content.length - position)];
+            System.arraycopy(content, position, bytes, 0, bytes.length);
+            result = Buffer.buffer(bytes);
+        }
+        return result;
+    }
+
+    private static Buffer readBuffer(String stored) {
+        Buffer content = RedisStorage.wrapBinary(RedisStorage.decodeBinary(stored));
+        Buffer result = null;
+        for (int position = 0; position < content.length(); position += CHUNK_SIZE) {
+            result = content.slice(position, Math.min(position + CHUNK_SIZE, content.length()));
+        }
+        return result;
+    }
+}
@@ -1,9 +1,15 @@
 package org.swisspush.reststorage;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
@@ -12,11 +18,36 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.swisspush.reststorage.util.CompressionExecutor;
+import org.swisspush.reststorage.util.ContinuationToken;
+import org.swisspush.reststorage.util.GZIPUtil;
+import org.swisspush.reststorage.util.LockMode;
 import org.swisspush.reststorage.util.ModuleConfiguration;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -272,6 +303,1601 @@ public class RedisStorageTest {
         async.awaitSuccess();
     }
 
+    @Test
+    public void testGetsOfOneTickAreCoalesced(TestContext testContext) {
+        Async async = testContext.async(3);
+        Vertx vertx = Vertx.vertx();
+        RedisStorage batchingStorage = new RedisStorage(vertx, new ModuleConfiguration().redisBatchingEnabled(true), redisClient);
+        List<List<String>> passedKeys = new ArrayList<>();
+        List<List<String>> passedArguments = new ArrayList<>();
+
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            passedKeys.add((List<String>) invocation.getArguments()[1]);
+            passedArguments.add((List<String>) invocation.getArguments()[2]);
+            JsonArray results = new JsonArray()
+                    .add(new JsonArray().add("TYPE_RESOURCE").add("{\"content\": 1}").add("etag1").addNull())
+                    .add("notFound")
+                    .add("notModified");
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(results));
+            return null;
+        });
+
+        vertx.runOnContext(v -> {
+            batchingStorage.get("/some/resource", null, 0, -1, resource -> {
+                testContext.assertEquals("etag1", ((DocumentResource) resource).etag);
+                async.countDown();
+            });
+            batchingStorage.get("/some/missing", null, 0, -1, resource -> {
+                testContext.assertFalse(resource.exists);
+                async.countDown();
+            });
+            batchingStorage.get("/some/collection", "etag3", 10, 5, resource -> {
+                testContext.assertFalse(resource.modified);
+                async.countDown();
+            });
+            // nothing is sent to redis before the end of the current tick
+            testContext.assertEquals(0, passedKeys.size());
+        });
+
+        async.awaitSuccess();
+        testContext.assertEquals(1, passedKeys.size());
+        testContext.assertEquals(Arrays.asList(":some:resource", ":some:missing", ":some:collection"), passedKeys.get(0));
+        List<String> arguments = passedArguments.get(0);
+        testContext.assertEquals(Arrays.asList("0", "-1", "", "0", "-1", "", "10", "5", "etag3"),
+                arguments.subList(arguments.size() - 9, arguments.size()));
+
+        batchingStorage.statistics(stats -> {
+            JsonObject batching = stats.getJsonObject("batching");
+            testContext.assertEquals(1L, batching.getLong("batches"));
+            testContext.assertEquals(3L, batching.getLong("batchedCommands"));
+            testContext.assertEquals(3, batching.getInteger("maxBatchSize"));
+            testContext.assertEquals(new JsonObject().put("4", 1L), batching.getJsonObject("batchSizes"));
+        });
+        vertx.close();
+    }
+
+    @Test
+    public void testCoalescedGetsAreFlushedWhenMaxSizeReached(TestContext testContext) {
+        Async async = testContext.async(5);
+        Vertx vertx = Vertx.vertx();
+        RedisStorage batchingStorage = new RedisStorage(vertx, new ModuleConfiguration()
+                .redisBatchingEnabled(true)
+                .redisBatchMaxSize(2), redisClient);
+
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            List<String> keys = (List<String>) invocation.getArguments()[1];
+            JsonArray results = new JsonArray();
+            keys.forEach(key -> results.add("notFound"));
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(
+                    keys.size() == 1 ? new JsonArray().add("notFound") : results));
+            return null;
+        });
+
+        vertx.runOnContext(v -> {
+            for (int i = 0; i < 5; i++) {
+                batchingStorage.get("/some/resource" + i, null, 0, -1, resource -> {
+                    testContext.assertFalse(resource.exists);
+                    async.countDown();
+                });
+            }
+        });
+
+        async.awaitSuccess();
+        verify(redisClient, times(3)).evalsha(anyString(), anyList(), anyList(), any(Handler.class));
+
+        batchingStorage.statistics(stats -> {
+            JsonObject batching = stats.getJsonObject("batching");
+            testContext.assertEquals(3L, batching.getLong("batches"));
+            testContext.assertEquals(5L, batching.getLong("batchedCommands"));
+            testContext.assertEquals(2, batching.getInteger("maxBatchSize"));
+            testContext.assertEquals(new JsonObject().put("1", 1L).put("2", 2L), batching.getJsonObject("batchSizes"));
+        });
+        vertx.close();
+    }
+
+    @Test
+    public void testCoalescedGetsAreExecutedOneByOneWhenBatchFails(TestContext testContext) {
+        Async async = testContext.async(2);
+        Vertx vertx = Vertx.vertx();
+        RedisStorage batchingStorage = new RedisStorage(vertx, new ModuleConfiguration().redisBatchingEnabled(true), redisClient);
+
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            List<String> keys = (List<String>) invocation.getArguments()[1];
+            Handler<AsyncResult<JsonArray>> handler = (Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3];
+            if (keys.size() > 1) {
+                handler.handle(Future.failedFuture("ERR error running script"));
+            } else {
+                handler.handle(Future.succeededFuture(new JsonArray().add("notFound")));
+            }
+            return null;
+        });
+
+        vertx.runOnContext(v -> {
+            batchingStorage.get("/some/resource1", null, 0, -1, resource -> {
+                testContext.assertFalse(resource.exists);
+                async.countDown();
+            });
+            batchingStorage.get("/some/resource2", null, 0, -1, resource -> {
+                testContext.assertFalse(resource.exists);
+                async.countDown();
+            });
+        });
+
+        async.awaitSuccess();
+        verify(redisClient, times(3)).evalsha(anyString(), anyList(), anyList(), any(Handler.class));
+        vertx.close();
+    }
+
+    @Test
+    public void testStatisticsWithoutBatching(TestContext testContext) {
+        storage.statistics(stats -> testContext.assertFalse(stats.containsKey("batching")));
+    }
+
+    @Test
+    public void testScriptsAreLoadedOnEveryPooledConnection(TestContext testContext) {
+        RedisClient client1 = Mockito.mock(RedisClient.class);
+        RedisClient client2 = Mockito.mock(RedisClient.class);
+        new RedisStorage(mock(Vertx.class), new ModuleConfiguration().redisPoolSize(2), Arrays.asList(client1, client2));
+
+        verify(client1, times(13)).scriptExists(anyString(), any(Handler.class));
+        verify(client2, times(13)).scriptExists(anyString(), any(Handler.class));
+    }
+
+    @Test
+    public void testRoundRobinPoolStrategy(TestContext testContext) {
+        RedisClient client1 = Mockito.mock(RedisClient.class);
+        RedisClient client2 = Mockito.mock(RedisClient.class);
+        RedisStorage pooledStorage = new RedisStorage(mock(Vertx.class), new ModuleConfiguration()
+                .redisPoolSize(2)
+                .redisPoolStrategy(ModuleConfiguration.RedisPoolStrategy.roundRobin), Arrays.asList(client1, client2));
+
+        for (int i = 0; i < 4; i++) {
+            pooledStorage.get("/some/resource", null, 0, -1, resource -> {});
+        }
+
+        verify(client1, times(2)).evalsha(anyString(), anyList(), anyList(), any(Handler.class));
+        verify(client2, times(2)).evalsha(anyString(), anyList(), anyList(), any(Handler.class));
+    }
+
+    @Test
+    public void testPathHashPoolStrategy(TestContext testContext) {
+        RedisClient client1 = Mockito.mock(RedisClient.class);
+        RedisClient client2 = Mockito.mock(RedisClient.class);
+        RedisStorage pooledStorage = new RedisStorage(mock(Vertx.class), new ModuleConfiguration()
+                .redisPoolSize(2)
+                .redisPoolStrategy(ModuleConfiguration.RedisPoolStrategy.pathHash), Arrays.asList(client1, client2));
+
+        for (int i = 0; i < 4; i++) {
+            pooledStorage.get("/some/resource", null, 0, -1, resource -> {});
+        }
+
+        // all commands on the same path use the same connection
+        int client1Calls = Mockito.mockingDetails(client1).getInvocations().stream()
+                .filter(invocation -> "evalsha".equals(invocation.getMethod().getName())).toArray().length;
+        int client2Calls = Mockito.mockingDetails(client2).getInvocations().stream()
+                .filter(invocation -> "evalsha".equals(invocation.getMethod().getName())).toArray().length;
+        testContext.assertTrue((client1Calls == 4 && client2Calls == 0) || (client1Calls == 0 && client2Calls == 4));
+
+        pooledStorage.statistics(stats -> {
+            testContext.assertEquals(2, stats.getJsonObject("pool").getInteger("size"));
+            testContext.assertEquals("pathHash", stats.getJsonObject("pool").getString("strategy"));
+        });
+    }
+
+    @Test
+    public void testBinaryPayloadRoundTrip(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisStorage binaryStorage = new RedisStorage(vertx, new ModuleConfiguration(), redisClient);
+
+        // all possible byte values, larger than one read chunk of 8KB
+        byte[] payload = new byte[20000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+
+        List<String> storedArguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            List<String> arguments = (List<String>) invocation.getArguments()[2];
+            if (storedArguments.isEmpty()) {
+                storedArguments.addAll(arguments);
+                ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(new JsonArray().add("OK")));
+            } else {
+                ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(new JsonArray()
+                        .add("TYPE_RESOURCE").add(storedArguments.get(6)).add("etag1").addNull()));
+            }
+            return null;
+        });
+
+        vertx.runOnContext(v -> binaryStorage.put("/some/binary", "etag1", false, -1, resource -> {
+            DocumentResource d = (DocumentResource) resource;
+            d.writeStream.write(Buffer.buffer(Arrays.copyOfRange(payload, 0, 7000)));
+            d.writeStream.write(Buffer.buffer(Arrays.copyOfRange(payload, 7000, payload.length)));
+            d.writeStream.end();
+            d.endHandler = end -> {
+                testContext.assertEquals(payload.length, storedArguments.get(6).length());
+
+                binaryStorage.get("/some/binary", null, 0, -1, getResource -> {
+                    DocumentResource r = (DocumentResource) getResource;
+                    testContext.assertEquals((long) payload.length, r.length);
+                    Buffer received = Buffer.buffer();
+                    r.readStream.endHandler(readEnd -> {
+                        testContext.assertTrue(Arrays.equals(payload, received.getBytes()));
+                        async.complete();
+                    });
+                    r.readStream.handler(chunk -> received.appendBuffer((Buffer) chunk));
+                });
+            };
+            d.closeHandler.handle(null);
+        }));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testStreamCollectionInChunks(TestContext testContext) {
+        Async async = testContext.async();
+        RedisStorage streamingStorage = new RedisStorage(mock(Vertx.class), new ModuleConfiguration()
+                .collectionStreamChunkSize(2), redisClient);
+
+        List<String> cursors = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            String afterMember = ((List<String>) invocation.getArguments()[2]).get(2);
+            cursors.add(afterMember);
+            JsonArray result;
+            if ("".equals(afterMember)) {
+                result = new JsonArray().add("5").add("res1").add("sub:").add("res1");
+            } else if ("res1".equals(afterMember)) {
+                // all members of this chunk are expired
+                result = new JsonArray().add("7").add("expired2");
+            } else {
+                result = new JsonArray().add("").add("").add("res2");
+            }
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+
+        streamingStorage.streamCollection("/some/collection", resource -> {
+            testContext.assertTrue(resource instanceof CollectionResource);
+            List<Resource> items = new ArrayList<>();
+            CollectionResource collection = (CollectionResource) resource;
+            collection.itemStream.endHandler(v -> {
+                testContext.assertEquals(Arrays.asList("", "res1", "expired2"), cursors);
+                testContext.assertEquals(3, items.size());
+                testContext.assertTrue(items.get(0) instanceof CollectionResource);
+                testContext.assertEquals("sub", items.get(0).name);
+                testContext.assertEquals("res1", items.get(1).name);
+                testContext.assertEquals("res2", items.get(2).name);
+                async.complete();
+            });
+            collection.itemStream.handler(items::add);
+        });
+    }
+
+    @Test
+    public void testStreamCollectionNotFound(TestContext testContext) {
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(new JsonArray().add("notFound")));
+            return null;
+        });
+
+        storage.streamCollection("/some/resource", resource -> testContext.assertFalse(resource.exists));
+    }
+
+    @Test
+    public void testListAfterContinuationToken(TestContext testContext) {
+        List<List<String>> arguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            arguments.add((List<String>) invocation.getArguments()[2]);
+            JsonArray result = new JsonArray().add("9999999999999").add("res3").add("sub:").add("res3");
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+
+        storage.list("/some/collection", ContinuationToken.encode("9999999999999:res1"), 2, resource -> {
+            testContext.assertTrue(resource instanceof CollectionResource);
+            CollectionResource collection = (CollectionResource) resource;
+            testContext.assertEquals(2, collection.items.size());
+            testContext.assertTrue(collection.items.get(0) instanceof CollectionResource);
+            testContext.assertEquals("res3", collection.items.get(1).name);
+            testContext.assertEquals("9999999999999:res3", ContinuationToken.decode(collection.next));
+        });
+
+        testContext.assertEquals(1, arguments.size());
+        testContext.assertEquals("res1", arguments.get(0).get(2));
+        testContext.assertEquals("9999999999999", arguments.get(0).get(3));
+        testContext.assertEquals("2", arguments.get(0).get(4));
+    }
+
+    @Test
+    public void testListLastPage(TestContext testContext) {
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            JsonArray result = new JsonArray().add("").add("").add("res1");
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+
+        storage.list("/some/collection", "", 10, resource -> {
+            testContext.assertEquals(1, ((CollectionResource) resource).items.size());
+            testContext.assertNull(((CollectionResource) resource).next);
+        });
+    }
+
+    @Test
+    public void testListInvalidContinuationToken(TestContext testContext) {
+        storage.list("/some/collection", ContinuationToken.encode("no-score"), 10, resource -> {
+            testContext.assertTrue(resource.invalid);
+        });
+        storage.list("/some/collection", "not a token!", 10, resource -> {
+            testContext.assertTrue(resource.invalid);
+        });
+        verify(redisClient, never()).evalsha(anyString(), anyList(), anyList(), any(Handler.class));
+    }
+
+    @Test
+    public void testPutProvidesContentLength(TestContext testContext) {
+        List<List<String>> arguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            arguments.add((List<String>) invocation.getArguments()[2]);
+            return null;
+        });
+
+        storage.put("/some/resource", null, false, -1, resource -> {
+            DocumentResource d = (DocumentResource) resource;
+            d.writeStream.write(Buffer.buffer(new byte[]{1, 2, (byte) 200}));
+            d.writeStream.end();
+            d.closeHandler.handle(null);
+        });
+
+        testContext.assertEquals(1, arguments.size());
+        testContext.assertEquals("3", arguments.get(0).get(14));
+    }
+
+    @Test
+    public void testHeadResource(TestContext testContext) {
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            JsonArray result = new JsonArray().add("TYPE_RESOURCE").add("etag1").addNull().add("42");
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+
+        storage.head("/some/resource", null, resource -> {
+            testContext.assertTrue(resource instanceof DocumentResource);
+            testContext.assertEquals(42L, ((DocumentResource) resource).length);
+            testContext.assertEquals("etag1", ((DocumentResource) resource).etag);
+            testContext.assertNull(((DocumentResource) resource).readStream);
+        });
+        verify(redisClient, times(1)).evalsha(anyString(), anyList(), anyList(), any(Handler.class));
+    }
+
+    @Test
+    public void testHeadCompressedResourceAcceptingGzip(TestContext testContext) {
+        List<List<String>> passedArguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            passedArguments.add((List<String>) invocation.getArguments()[2]);
+            JsonArray result = new JsonArray().add("TYPE_RESOURCE").add("etag1").add("1").add("12");
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+
+        storage.head("/some/resource", null, true, resource -> {
+            DocumentResource document = (DocumentResource) resource;
+            testContext.assertEquals(12L, document.length);
+            testContext.assertEquals("etag1", document.etag);
+            testContext.assertEquals("gzip", document.contentEncoding);
+        });
+        testContext.assertEquals("true", passedArguments.get(0).get(8));
+    }
+
+    @Test
+    public void testHeadCollectionAndNotModified(TestContext testContext) {
+        List<JsonArray> results = new ArrayList<>(Arrays.asList(
+                new JsonArray().add("TYPE_COLLECTION"),
+                new JsonArray().add("notModified"),
+                new JsonArray().add("notFound")));
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(results.remove(0)));
+            return null;
+        });
+
+        storage.head("/some/collection", null, resource -> testContext.assertTrue(resource instanceof CollectionResource));
+        storage.head("/some/resource", "etag1", resource -> testContext.assertFalse(resource.modified));
+        storage.head("/some/other", null, resource -> testContext.assertFalse(resource.exists));
+    }
+
+    @Test
+    public void testHeadCompressedResourceWithoutLength(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisStorage headStorage = new RedisStorage(vertx, new ModuleConfiguration(), redisClient);
+        byte[] content = "{\"content\": \"compressed\"}".getBytes();
+
+        GZIPUtil.compressResource(vertx, mock(Logger.class), content, compressed -> {
+            List<JsonArray> results = new ArrayList<>(Arrays.asList(
+                    new JsonArray().add("TYPE_RESOURCE").add("etag1").add("1").addNull(),
+                    new JsonArray().add("TYPE_RESOURCE").add(RedisStorage.encodeBinary(compressed.result())).add("etag1").add("1")));
+            when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+                ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(results.remove(0)));
+                return null;
+            });
+
+            headStorage.head("/some/resource", null, resource -> {
+                testContext.assertEquals((long) content.length, ((DocumentResource) resource).length);
+                testContext.assertEquals("etag1", ((DocumentResource) resource).etag);
+                testContext.assertTrue(results.isEmpty());
+                async.complete();
+            });
+        });
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testStorageExpandAssemblesStoredFragments(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisStorage expandStorage = new RedisStorage(vertx, new ModuleConfiguration(), redisClient);
+        List<String> passedArguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            passedArguments.addAll((List<String>) invocation.getArguments()[2]);
+            JsonArray result = new JsonArray().add("expandEtag")
+                    .add("sub/").add("[\"x/\",\"y\"]")
+                    .add("res1").add(RedisStorage.encodeBinary("{ \"a\": \"\u00fc\" }".getBytes(StandardCharsets.UTF_8)));
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+
+        vertx.runOnContext(v -> expandStorage.storageExpand("/some/collection", "oldEtag", Arrays.asList("sub/", "res1"), 1, resource -> {
+            DocumentResource r = (DocumentResource) resource;
+            testContext.assertEquals("oldEtag", passedArguments.get(7));
+            testContext.assertEquals("expandEtag", r.etag);
+            Buffer received = Buffer.buffer();
+            r.readStream.endHandler(readEnd -> {
+                testContext.assertEquals((long) received.length(), r.length);
+                testContext.assertEquals("{\"sub\":[\"x/\",\"y\"],\"res1\":{ \"a\": \"\u00fc\" }}", received.toString(StandardCharsets.UTF_8));
+                testContext.assertEquals("\u00fc", new JsonObject(received.toString(StandardCharsets.UTF_8)).getJsonObject("res1").getString("a"));
+                async.complete();
+            });
+            r.readStream.handler(chunk -> received.appendBuffer((Buffer) chunk));
+        }));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testStorageExpandNotModifiedAndInvalid(TestContext testContext) {
+        List<JsonArray> results = new ArrayList<>(Arrays.asList(
+                new JsonArray().add("notModified"),
+                new JsonArray().add("expandEtag").add("res1").add("{\"a\": 1}").add("res2").add("{\"a\""),
+                new JsonArray().add("notFound")));
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(results.remove(0)));
+            return null;
+        });
+
+        storage.storageExpand("/some/collection", "expandEtag", Arrays.asList("res1", "res2"), 1, resource -> testContext.assertFalse(resource.modified));
+        storage.storageExpand("/some/collection", null, Arrays.asList("res1", "res2"), 1, resource -> {
+            testContext.assertTrue(resource.invalid);
+            testContext.assertEquals("Error decoding invalid json resource 'res2'", resource.invalidMessage);
+        });
+        storage.storageExpand("/some/collection", null, Arrays.asList("res1", "res2"), 1, resource -> testContext.assertFalse(resource.exists));
+    }
+
+    @Test
+    public void testStorageExpandNestedCollections(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisStorage expandStorage = new RedisStorage(vertx, new ModuleConfiguration()
+                .storageExpandMaxMembers(50).storageExpandMaxSize(1000L), redisClient);
+        List<String> passedArguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            passedArguments.addAll((List<String>) invocation.getArguments()[2]);
+            JsonArray result = new JsonArray().add("expandEtag")
+                    .add("sub/").add("3")
+                    .add("deeper/").add("[\"x/\",\"y\"]")
+                    .add("empty/").add("0")
+                    .add("res2").add("{\"b\":2}")
+                    .add("res1").add("{\"a\":1}");
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+
+        vertx.runOnContext(v -> expandStorage.storageExpand("/some/collection", null, Arrays.asList("sub/", "res1"), 3, resource -> {
+            testContext.assertEquals(Arrays.asList("3", "50", "1000"), passedArguments.subList(8, 11));
+            DocumentResource r = (DocumentResource) resource;
+            Buffer received = Buffer.buffer();
+            r.readStream.endHandler(readEnd -> {
+                testContext.assertEquals("{\"sub\":{\"deeper\":[\"x/\",\"y\"],\"empty\":{},\"res2\":{\"b\":2}},\"res1\":{\"a\":1}}",
+                        received.toString(StandardCharsets.UTF_8));
+                async.complete();
+            });
+            r.readStream.handler(chunk -> received.appendBuffer((Buffer) chunk));
+        }));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testStorageExpandDecompressesCompressedResources(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisStorage expandStorage = new RedisStorage(vertx, new ModuleConfiguration().compressionWorkerPoolSize(2), redisClient);
+        JsonArray result = new JsonArray().add("expandEtag");
+        for (int i = 0; i < 10; i++) {
+            String content = "{\"content\":" + i + "}";
+            if (i % 2 == 0) {
+                // compressed resources are wrapped into an array
+                result.add("res" + i).add(new JsonArray().add(RedisStorage.encodeBinary(compress(content.getBytes()))));
+            } else {
+                result.add("res" + i).add(content);
+            }
+        }
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+
+        vertx.runOnContext(v -> expandStorage.storageExpand("/some/collection", null, Collections.singletonList("res"), 1, resource -> {
+            DocumentResource r = (DocumentResource) resource;
+            Buffer received = Buffer.buffer();
+            r.readStream.endHandler(readEnd -> {
+                JsonObject expanded = new JsonObject(received.toString(StandardCharsets.UTF_8));
+                testContext.assertEquals(10, expanded.size());
+                for (int i = 0; i < 10; i++) {
+                    testContext.assertEquals(i, expanded.getJsonObject("res" + i).getInteger("content"));
+                }
+                testContext.assertEquals("res0", expanded.fieldNames().iterator().next(), "order must be kept");
+                async.complete();
+            });
+            r.readStream.handler(chunk -> received.appendBuffer((Buffer) chunk));
+        }));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testStorageExpandWithCorruptCompressedResource(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisStorage expandStorage = new RedisStorage(vertx, new ModuleConfiguration(), redisClient);
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            JsonArray result = new JsonArray().add("expandEtag")
+                    .add("res1").add(new JsonArray().add("not gzip"))
+                    .add("res2").add(new JsonArray().add("not gzip either"));
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+
+        vertx.runOnContext(v -> expandStorage.storageExpand("/some/collection", null, Arrays.asList("res1", "res2"), 1, resource -> {
+            testContext.assertTrue(resource.error);
+            testContext.assertTrue(resource.errorMessage.startsWith("Error during decompression of resource 'res"));
+            // the handler must be called once only
+            vertx.setTimer(100, timer -> async.complete());
+        }));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    private static byte[] compress(byte[] content) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testStorageExpandLimitsExceeded(TestContext testContext) {
+        RedisStorage expandStorage = new RedisStorage(mock(Vertx.class), new ModuleConfiguration()
+                .storageExpandMaxMembers(50).storageExpandMaxSize(1000L), redisClient);
+        List<JsonArray> results = new ArrayList<>(Arrays.asList(
+                new JsonArray().add("membersLimitExceeded"),
+                new JsonArray().add("sizeLimitExceeded")));
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(results.remove(0)));
+            return null;
+        });
+
+        expandStorage.storageExpand("/some/collection", null, Collections.singletonList("sub/"), 5, resource -> {
+            testContext.assertTrue(resource.error);
+            testContext.assertEquals("Storage expand exceeds the limit of 50 resources and collection members", resource.errorMessage);
+        });
+        expandStorage.storageExpand("/some/collection", null, Collections.singletonList("sub/"), 5, resource -> {
+            testContext.assertTrue(resource.error);
+            testContext.assertEquals("Storage expand exceeds the limit of 1000 bytes", resource.errorMessage);
+        });
+    }
+
+    @Test
+    public void testIsJsonObject(TestContext testContext) {
+        testContext.assertTrue(RedisStorage.isJsonObject("{\"a\": [1, {\"b\": null}]}".getBytes()));
+        testContext.assertTrue(RedisStorage.isJsonObject(" {} ".getBytes()));
+        testContext.assertFalse(RedisStorage.isJsonObject("[1, 2]".getBytes()));
+        testContext.assertFalse(RedisStorage.isJsonObject("{\"a\": 1} {}".getBytes()));
+        testContext.assertFalse(RedisStorage.isJsonObject("{ \"foo\"}".getBytes()));
+        testContext.assertFalse(RedisStorage.isJsonObject("{\"a\": 1".getBytes()));
+        testContext.assertFalse(RedisStorage.isJsonObject(new byte[0]));
+    }
+
+    @Test
+    public void testNextExpiryBulkSize(TestContext testContext) {
+        testContext.assertEquals(400, RedisStorage.nextExpiryBulkSize(200, 200, 1, 5), "fast full batch doubles");
+        testContext.assertEquals(200, RedisStorage.nextExpiryBulkSize(200, 50, 1, 5), "partial batch keeps the size");
+        testContext.assertEquals(200, RedisStorage.nextExpiryBulkSize(200, 200, 4, 5), "batch near the target keeps the size");
+        testContext.assertEquals(50, RedisStorage.nextExpiryBulkSize(200, 200, 20, 5), "slow batch shrinks proportionally");
+        testContext.assertEquals(10, RedisStorage.nextExpiryBulkSize(20, 20, 100, 5), "minimum bulk size");
+        testContext.assertEquals(5000, RedisStorage.nextExpiryBulkSize(4000, 4000, 0, 5), "maximum bulk size");
+    }
+
+    @Test
+    public void testBackgroundExpiry(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        List<Long> cleanupResults = new ArrayList<>(Arrays.asList(200L, 5L));
+        List<String> bulkSizes = new ArrayList<>();
+        when(redisClient.ping(any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<String>>) invocation.getArguments()[0]).handle(Future.succeededFuture("PONG"));
+            return redisClient;
+        });
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            bulkSizes.add(((List<String>) invocation.getArguments()[2]).get(10));
+            long cleaned = cleanupResults.isEmpty() ? 0L : cleanupResults.remove(0);
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(new JsonArray().add(cleaned)));
+            return redisClient;
+        });
+        when(redisClient.zcount(anyString(), anyDouble(), anyDouble(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<Long>>) invocation.getArguments()[3]).handle(Future.succeededFuture(7L));
+            return redisClient;
+        });
+
+        RedisStorage expiryStorage = new RedisStorage(vertx, new ModuleConfiguration()
+                .backgroundExpiryEnabled(true).backgroundExpiryIntervalMs(10L).backgroundExpiryBatchMs(100L)
+                .backgroundExpiryMaxLatencyMs(1000L), redisClient);
+
+        vertx.setTimer(200, timer -> expiryStorage.statistics(stats -> {
+            JsonObject expiry = stats.getJsonObject("backgroundExpiry");
+            testContext.assertTrue(expiry.getLong("ticks") > 1);
+            testContext.assertEquals(205L, expiry.getLong("expired"));
+            testContext.assertEquals(7L, expiry.getLong("backlog"));
+            testContext.assertEquals(0L, expiry.getLong("backoffs"));
+            // the full first batch was fast, so the second one was doubled
+            testContext.assertEquals(Arrays.asList("200", "400"), bulkSizes.subList(0, 2));
+            async.complete();
+        }));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testBackgroundExpiryBacksOffOnHighLatency(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        when(redisClient.ping(any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<String>>) invocation.getArguments()[0]).handle(Future.succeededFuture("PONG"));
+            return redisClient;
+        });
+
+        // every latency exceeds a negative maximum
+        RedisStorage expiryStorage = new RedisStorage(vertx, new ModuleConfiguration()
+                .backgroundExpiryEnabled(true).backgroundExpiryIntervalMs(5L).backgroundExpiryMaxLatencyMs(-1L), redisClient);
+
+        vertx.setTimer(300, timer -> expiryStorage.statistics(stats -> {
+            JsonObject expiry = stats.getJsonObject("backgroundExpiry");
+            testContext.assertTrue(expiry.getLong("backoffs") > 1);
+            testContext.assertEquals(80L, expiry.getLong("intervalMs"), "interval is backed off to the maximum");
+            testContext.assertEquals(0L, expiry.getLong("expired"));
+            verify(redisClient, never()).evalsha(anyString(), anyList(), anyList(), any(Handler.class));
+            async.complete();
+        }));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testCleanupIsSkippedWhenAnotherInstanceLeads(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            testContext.assertEquals(Collections.singletonList("rest-storage:leader"), invocation.getArguments()[1],
+                    "only the lease is renewed, no cleanup is run");
+            JsonArray result = new JsonArray().add("otherInstance").add("12.5");
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return redisClient;
+        });
+        when(redisClient.zcount(anyString(), anyDouble(), anyDouble(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<Long>>) invocation.getArguments()[3]).handle(Future.succeededFuture(3L));
+            return redisClient;
+        });
+        RedisStorage leaseStorage = new RedisStorage(vertx, new ModuleConfiguration().cleanupLeaseEnabled(true), redisClient);
+
+        vertx.runOnContext(v -> leaseStorage.cleanup(resource -> readCleanupResult(resource, result -> {
+            testContext.assertEquals(0L, result.getLong("cleanedResources"));
+            testContext.assertEquals(3L, result.getLong("expiredResourcesLeft"));
+            JsonObject leader = result.getJsonObject("leader");
+            testContext.assertEquals("otherInstance", leader.getString("instance"));
+            testContext.assertFalse(leader.getBoolean("self"));
+            testContext.assertEquals(12.5, leader.getDouble("cleanedPerSecond"));
+            async.complete();
+        }), null));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testCleanupRunsWhenLeading(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        List<Long> cleanupResults = new ArrayList<>(Arrays.asList(200L, 50L));
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            List<String> keys = (List<String>) invocation.getArguments()[1];
+            List<String> arguments = (List<String>) invocation.getArguments()[2];
+            JsonArray result;
+            if (keys.isEmpty()) {
+                result = new JsonArray().add(cleanupResults.isEmpty() ? 0L : cleanupResults.remove(0));
+            } else {
+                // the lease is free, this instance becomes the leader
+                result = new JsonArray().add(arguments.get(0)).add(arguments.get(2));
+            }
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return redisClient;
+        });
+        when(redisClient.zcount(anyString(), anyDouble(), anyDouble(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<Long>>) invocation.getArguments()[3]).handle(Future.succeededFuture(0L));
+            return redisClient;
+        });
+        RedisStorage leaseStorage = new RedisStorage(vertx, new ModuleConfiguration().cleanupLeaseEnabled(true), redisClient);
+
+        vertx.runOnContext(v -> leaseStorage.cleanup(resource -> readCleanupResult(resource, result -> {
+            testContext.assertEquals(250L, result.getLong("cleanedResources"));
+            JsonObject leader = result.getJsonObject("leader");
+            testContext.assertTrue(leader.getBoolean("self"));
+            testContext.assertTrue(leader.getDouble("cleanedPerSecond") > 0.0);
+            leaseStorage.statistics(stats -> {
+                JsonObject lease = stats.getJsonObject("cleanupLease");
+                testContext.assertEquals(lease.getString("ownInstance"), lease.getString("instance"));
+                testContext.assertEquals(1L, lease.getLong("acquisitions"));
+                async.complete();
+            });
+        }), null));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testCleanupCleansBucketsInParallel(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisClient client1 = Mockito.mock(RedisClient.class);
+        RedisClient client2 = Mockito.mock(RedisClient.class);
+        List<String> cleanedBuckets = new ArrayList<>();
+        List<String> countedSets = new ArrayList<>();
+        for (RedisClient client : Arrays.asList(client1, client2)) {
+            when(client.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+                List<String> arguments = (List<String>) invocation.getArguments()[2];
+                testContext.assertEquals("4", arguments.get(12));
+                String bucket = arguments.get(13);
+                // every bucket has 5 expired resources, cleaned with the first run
+                long cleaned = cleanedBuckets.contains(bucket) ? 0L : 5L;
+                cleanedBuckets.add(bucket);
+                ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(new JsonArray().add(cleaned)));
+                return client;
+            });
+            when(client.zcount(anyString(), anyDouble(), anyDouble(), any(Handler.class))).thenAnswer(invocation -> {
+                countedSets.add((String) invocation.getArguments()[0]);
+                ((Handler<AsyncResult<Long>>) invocation.getArguments()[3]).handle(Future.succeededFuture(1L));
+                return client;
+            });
+        }
+        RedisStorage bucketStorage = new RedisStorage(vertx, new ModuleConfiguration().expirableBuckets(4),
+                Arrays.asList(client1, client2));
+
+        vertx.runOnContext(v -> bucketStorage.cleanup(resource -> readCleanupResult(resource, result -> {
+            testContext.assertEquals(20L, result.getLong("cleanedResources"));
+            testContext.assertEquals(5L, result.getLong("expiredResourcesLeft"), "four buckets and the former single set");
+            testContext.assertEquals(Arrays.asList("rest-storage:expirable:0", "rest-storage:expirable:1",
+                    "rest-storage:expirable:2", "rest-storage:expirable:3", "rest-storage:expirable"), countedSets);
+            verify(client1, times(4)).evalsha(anyString(), anyList(), anyList(), any(Handler.class));
+            verify(client2, times(4)).evalsha(anyString(), anyList(), anyList(), any(Handler.class));
+            async.complete();
+        }), null));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testMigrateExpirableIndex(TestContext testContext) {
+        List<JsonArray> results = new ArrayList<>(Arrays.asList(
+                new JsonArray().add(1000L).add(400L),
+                new JsonArray().add(390L).add(0L)));
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            testContext.assertEquals(Arrays.asList("rest-storage:expirable", "8", "1000"), invocation.getArguments()[2]);
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(results.remove(0)));
+            return redisClient;
+        });
+        RedisStorage bucketStorage = new RedisStorage(mock(Vertx.class), new ModuleConfiguration().expirableBuckets(8), redisClient);
+
+        bucketStorage.migrateExpirableIndex(result -> {
+            testContext.assertTrue(result.succeeded());
+            testContext.assertEquals(1390L, result.result());
+        });
+        testContext.assertTrue(results.isEmpty());
+
+        // nothing to migrate with a single bucket
+        storage.migrateExpirableIndex(result -> testContext.assertEquals(0L, result.result()));
+        verify(redisClient, times(2)).evalsha(anyString(), anyList(), anyList(), any(Handler.class));
+    }
+
+    private static void readCleanupResult(DocumentResource resource, Handler<JsonObject> handler) {
+        Buffer received = Buffer.buffer();
+        resource.readStream.endHandler(readEnd -> handler.handle(new JsonObject(received.toString())));
+        resource.readStream.handler(chunk -> received.appendBuffer((Buffer) chunk));
+    }
+
+    @Test
+    public void testNearCacheServesResourcesWithoutRedis(TestContext testContext) {
+        List<Handler<Message<JsonObject>>> invalidationConsumers = new ArrayList<>();
+        RedisStorage cachingStorage = nearCacheStorage("Khg", invalidationConsumers);
+        AtomicInteger evalCount = new AtomicInteger();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            evalCount.incrementAndGet();
+            JsonArray result = new JsonArray().add("TYPE_RESOURCE").add("{}").add("etag1").addNull();
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+
+        cachingStorage.get("/some/resource", null, 0, -1, resource -> testContext.assertEquals("etag1", ((DocumentResource) resource).etag));
+        cachingStorage.get("/some/resource", null, 0, -1, resource -> {
+            testContext.assertEquals("etag1", ((DocumentResource) resource).etag);
+            testContext.assertEquals(2L, ((DocumentResource) resource).length);
+        });
+        cachingStorage.get("/some/resource", "etag1", 0, -1, resource -> testContext.assertFalse(resource.modified));
+        testContext.assertEquals(1, evalCount.get());
+
+        // a change of the resource hash in redis invalidates the cached resource
+        Message<JsonObject> message = mock(Message.class);
+        when(message.body()).thenReturn(new JsonObject().put("status", "ok").put("value", new JsonObject()
+                .put("pattern", "__keyspace@*__:rest-storage:resources*")
+                .put("channel", "__keyspace@0__:rest-storage:resources:some:resource")
+                .put("message", "hset")));
+        testContext.assertEquals(1, invalidationConsumers.size());
+        invalidationConsumers.get(0).handle(message);
+
+        cachingStorage.get("/some/resource", null, 0, -1, resource -> testContext.assertEquals("etag1", ((DocumentResource) resource).etag));
+        testContext.assertEquals(2, evalCount.get());
+
+        cachingStorage.statistics(stats -> {
+            JsonObject nearCache = stats.getJsonObject("nearCache");
+            testContext.assertTrue(nearCache.getBoolean("active"));
+            testContext.assertEquals(2L, nearCache.getLong("hits"));
+            testContext.assertEquals(2L, nearCache.getLong("misses"));
+            testContext.assertEquals(1L, nearCache.getLong("invalidations"));
+        });
+    }
+
+    @Test
+    public void testNearCacheInactiveWithoutKeyspaceNotifications(TestContext testContext) {
+        RedisStorage cachingStorage = nearCacheStorage("", new ArrayList<>());
+        AtomicInteger evalCount = new AtomicInteger();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            evalCount.incrementAndGet();
+            JsonArray result = new JsonArray().add("TYPE_RESOURCE").add("{}").add("etag1").addNull();
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+
+        cachingStorage.get("/some/resource", null, 0, -1, resource -> {});
+        cachingStorage.get("/some/resource", null, 0, -1, resource -> {});
+
+        testContext.assertEquals(2, evalCount.get());
+        cachingStorage.statistics(stats -> testContext.assertFalse(stats.getJsonObject("nearCache").getBoolean("active")));
+    }
+
+    @Test
+    public void testNativeExpiryRepairsCollectionsOfExpiredResources(TestContext testContext) {
+        List<Object> repairedKeys = new ArrayList<>();
+        List<String> addresses = new ArrayList<>();
+        RedisClient subscriber = mock(RedisClient.class);
+        List<Handler<Message<JsonObject>>> consumers = new ArrayList<>();
+        RedisStorage expiringStorage = nativeExpiryStorage(2L, repairedKeys, addresses, subscriber, consumers);
+
+        testContext.assertEquals(Collections.singletonList("notifications.__keyevent@*__:expired"), addresses);
+        verify(subscriber).psubscribe(eq("__keyevent@*__:expired"), any(Handler.class));
+
+        consumers.get(0).handle(expiredMessage("rest-storage:resources:project:test1"));
+        consumers.get(0).handle(expiredMessage("rest-storage:locks:project:test1"));
+
+        testContext.assertEquals(Collections.singletonList(":project:test1"), repairedKeys);
+        expiringStorage.statistics(stats -> {
+            JsonObject nativeExpiry = stats.getJsonObject("nativeExpiry");
+            testContext.assertTrue(nativeExpiry.getBoolean("active"));
+            testContext.assertEquals(1L, nativeExpiry.getLong("repairs"));
+            testContext.assertEquals(2L, nativeExpiry.getLong("removedMembers"));
+        });
+    }
+
+    @Test
+    public void testNativeExpiryOfResourceWrittenAgain(TestContext testContext) {
+        // the expired script of former versions replied "exists" for resources written again, now it replies 0
+        for (Object reply : Arrays.asList(0L, "exists")) {
+            List<Object> repairedKeys = new ArrayList<>();
+            List<Handler<Message<JsonObject>>> consumers = new ArrayList<>();
+            RedisStorage expiringStorage = nativeExpiryStorage(reply, repairedKeys, new ArrayList<>(),
+                    mock(RedisClient.class), consumers);
+
+            consumers.get(0).handle(expiredMessage("rest-storage:resources:project:test1"));
+
+            testContext.assertEquals(Collections.singletonList(":project:test1"), repairedKeys);
+            expiringStorage.statistics(stats -> {
+                JsonObject nativeExpiry = stats.getJsonObject("nativeExpiry");
+                testContext.assertEquals(1L, nativeExpiry.getLong("repairs"));
+                testContext.assertEquals(0L, nativeExpiry.getLong("removedMembers"));
+            });
+        }
+    }
+
+    private RedisStorage nativeExpiryStorage(Object reply, List<Object> repairedKeys, List<String> addresses,
+                                             RedisClient subscriber, List<Handler<Message<JsonObject>>> consumers) {
+        Vertx vertx = mock(Vertx.class);
+        EventBus eventBus = mock(EventBus.class);
+        when(vertx.eventBus()).thenReturn(eventBus);
+        when(eventBus.consumer(anyString(), any(Handler.class))).thenAnswer(invocation -> {
+            addresses.add((String) invocation.getArguments()[0]);
+            consumers.add((Handler<Message<JsonObject>>) invocation.getArguments()[1]);
+            return null;
+        });
+        when(redisClient.configGet(eq("notify-keyspace-events"), any(Handler.class))).thenAnswer(invocation -> {
+            JsonArray result = new JsonArray().add("notify-keyspace-events").add("Ex");
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[1]).handle(Future.succeededFuture(result));
+            return null;
+        });
+        when(subscriber.psubscribe(anyString(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[1]).handle(Future.succeededFuture(new JsonArray()));
+            return null;
+        });
+        Mockito.doAnswer(invocation -> {
+            repairedKeys.addAll((List<String>) invocation.getArguments()[1]);
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(new JsonArray().add(reply)));
+            return null;
+        }).when(redisClient).evalsha(anyString(), anyList(), anyList(), any(Handler.class));
+        return new RedisStorage(vertx, new ModuleConfiguration().nativeExpiryEnabled(true),
+                Collections.singletonList(redisClient), subscriber, "notifications");
+    }
+
+    @Test
+    public void testNativeExpiryIsPassedToTheScripts(TestContext testContext) {
+        List<List<String>> passedArguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            passedArguments.add((List<String>) invocation.getArguments()[2]);
+            return null;
+        });
+        Vertx vertx = mock(Vertx.class);
+        when(vertx.eventBus()).thenReturn(mock(EventBus.class));
+        RedisStorage expiringStorage = new RedisStorage(vertx, new ModuleConfiguration().nativeExpiryEnabled(true),
+                Collections.singletonList(redisClient), mock(RedisClient.class), "notifications");
+
+        expiringStorage.get("/some/resource", null, 0, -1, resource -> {});
+        expiringStorage.head("/some/resource", null, resource -> {});
+        storage.get("/some/resource", null, 0, -1, resource -> {});
+
+        testContext.assertEquals("true", passedArguments.get(0).get(10));
+        testContext.assertEquals("true", passedArguments.get(1).get(6));
+        testContext.assertEquals("false", passedArguments.get(2).get(10));
+    }
+
+    @Test
+    public void testAsyncDeletePurgesDetachedCollections(TestContext testContext) {
+        Vertx vertx = mock(Vertx.class);
+        List<Handler<Long>> timers = new ArrayList<>();
+        List<Long> delays = new ArrayList<>();
+        when(vertx.setTimer(anyLong(), any(Handler.class))).thenAnswer(invocation -> {
+            delays.add((Long) invocation.getArguments()[0]);
+            timers.add((Handler<Long>) invocation.getArguments()[1]);
+            return (long) timers.size();
+        });
+        when(vertx.cancelTimer(anyLong())).thenReturn(true);
+        List<List<String>> deleteArguments = new ArrayList<>();
+        List<JsonArray> purgeResults = new ArrayList<>(Arrays.asList(
+                new JsonArray().add(0L).add(1000L), new JsonArray().add(1L).add(300L)));
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            List<String> arguments = (List<String>) invocation.getArguments()[2];
+            JsonArray result;
+            if (arguments.size() == 17) {
+                deleteArguments.add(arguments);
+                result = new JsonArray().add("purging");
+            } else {
+                testContext.assertEquals(Collections.singletonList(":project:big"), invocation.getArguments()[1]);
+                testContext.assertEquals("500", arguments.get(9));
+                result = purgeResults.remove(0);
+            }
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+        when(redisClient.hkeys(eq("my:purging"), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[1]).handle(Future.succeededFuture(new JsonArray().add(":project:big")));
+            return null;
+        });
+        when(redisClient.hgetall(eq("my:purging"), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<JsonObject>>) invocation.getArguments()[1]).handle(Future.succeededFuture(new JsonObject().put(":project:other", "5")));
+            return null;
+        });
+        RedisStorage asyncDeleteStorage = new RedisStorage(vertx, new ModuleConfiguration().asyncDeleteThreshold(100)
+                .asyncDeleteBatchSize(500).asyncDeleteKey("my:purging"), redisClient);
+        testContext.assertEquals(Collections.singletonList(1000L), delays);
+
+        asyncDeleteStorage.delete("/project/big", null, LockMode.SILENT, 0, true, true, resource -> {
+            testContext.assertTrue(resource.exists);
+            testContext.assertFalse(resource.error);
+        });
+        testContext.assertEquals("my:purging", deleteArguments.get(0).get(15));
+        testContext.assertEquals("100", deleteArguments.get(0).get(16));
+        testContext.assertEquals(1L, delays.get(1), "a detached collection triggers the purger");
+
+        timers.get(1).handle(2L);
+        testContext.assertEquals(10L, delays.get(2), "the next batch follows while the collection is not purged");
+        timers.get(2).handle(3L);
+
+        asyncDeleteStorage.statistics(stats -> {
+            JsonObject asyncDelete = stats.getJsonObject("asyncDelete");
+            testContext.assertEquals(2L, asyncDelete.getLong("batches"));
+            testContext.assertEquals(1300L, asyncDelete.getLong("purged"));
+            testContext.assertEquals(1L, asyncDelete.getLong("purgedCollections"));
+            testContext.assertEquals(5L, asyncDelete.getJsonObject("pending").getLong("/project/other"));
+        });
+    }
+
+    @Test
+    public void testDeleteFailureIsReportedAsError(TestContext testContext) {
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.failedFuture("ERR connection lost"));
+            return null;
+        });
+
+        Async async = testContext.async();
+        storage.delete("/project/resource", null, LockMode.SILENT, 0, false, false, resource -> {
+            testContext.assertTrue(resource.error);
+            testContext.assertTrue(resource.errorMessage.contains("ERR connection lost"));
+            async.complete();
+        });
+    }
+
+    @Test
+    public void testAsyncDeleteIsDisabledByDefault(TestContext testContext) {
+        List<List<String>> passedArguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            passedArguments.add((List<String>) invocation.getArguments()[2]);
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(new JsonArray().add("purging")));
+            return null;
+        });
+
+        storage.delete("/project/big", null, LockMode.SILENT, 0, true, true, resource -> {});
+        storage.put("/project/big/resource", null, false, -1, resource -> {
+            if (resource instanceof DocumentResource) {
+                DocumentResource d = (DocumentResource) resource;
+                d.writeStream.end();
+                d.closeHandler.handle(null);
+            }
+        });
+        storage.statistics(stats -> testContext.assertFalse(stats.containsKey("asyncDelete")));
+
+        testContext.assertEquals("", passedArguments.get(0).get(15));
+        testContext.assertEquals("0", passedArguments.get(0).get(16));
+        testContext.assertEquals("", passedArguments.get(1).get(17));
+    }
+
+    @Test
+    public void testPutIntoPurgingCollectionIsRejected(TestContext testContext) {
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(new JsonArray().add("purging")));
+            return null;
+        });
+        List<Resource> results = new ArrayList<>();
+
+        storage.put("/project/big/resource", null, false, -1, resource -> {
+            results.add(resource);
+            if (resource instanceof DocumentResource) {
+                DocumentResource d = (DocumentResource) resource;
+                d.writeStream.end();
+                d.closeHandler.handle(null);
+            }
+        });
+
+        testContext.assertEquals(2, results.size());
+        testContext.assertTrue(results.get(1).rejected);
+    }
+
+    @Test
+    public void testBatchIsExecutedInChunks(TestContext testContext) {
+        List<List<String>> passedArguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            List<String> arguments = (List<String>) invocation.getArguments()[2];
+            passedArguments.add(arguments);
+            JsonArray result = new JsonArray();
+            for (int i = 0; i < arguments.size(); i += 3 + Integer.parseInt(arguments.get(i + 2))) {
+                result.add(arguments.get(i).equals("PUT") ? "OK" : "deleted");
+            }
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+        RedisStorage batchStorage = new RedisStorage(mock(Vertx.class), new ModuleConfiguration().batchChunkSize(2), redisClient);
+        BatchOperation put = BatchOperation.put("/project/server/test1", Buffer.buffer("{\"content\": \"test1\"}"));
+        put.expire = 60;
+        BatchOperation delete = BatchOperation.delete("/project/server/test2");
+        delete.deleteRecursive = true;
+        List<Resource> results = new ArrayList<>();
+
+        batchStorage.batch(Arrays.asList(put, delete, BatchOperation.put("/project/server/test3", Buffer.buffer("{}"))),
+                results::addAll);
+
+        testContext.assertEquals(2, passedArguments.size());
+        List<String> first = passedArguments.get(0);
+        testContext.assertEquals(Arrays.asList("PUT", ":project:server:test1", "20"), first.subList(0, 3));
+        testContext.assertEquals("{\"content\": \"test1\"}", first.get(3 + 6));
+        testContext.assertEquals(Arrays.asList("DELETE", ":project:server:test2", "17"), first.subList(23, 26));
+        testContext.assertEquals("true", first.get(26 + 8));
+        testContext.assertEquals(Arrays.asList("PUT", ":project:server:test3", "20"), passedArguments.get(1).subList(0, 3));
+        testContext.assertEquals(3, results.size());
+        for (Resource result : results) {
+            testContext.assertTrue(result.exists);
+            testContext.assertTrue(result.modified);
+            testContext.assertFalse(result.error);
+        }
+    }
+
+    @Test
+    public void testBatchResults(TestContext testContext) {
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            JsonArray result = new JsonArray().add("existingCollection").add("existingResource :project").add("notModified")
+                    .add("reject").add("purging").add("notFound").add("notEmpty");
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+        List<BatchOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            operations.add(BatchOperation.put("/project/resource" + i, Buffer.buffer("{}")));
+        }
+        operations.add(BatchOperation.delete("/project/resource5"));
+        operations.add(BatchOperation.delete("/project/resource6"));
+        List<Resource> results = new ArrayList<>();
+
+        storage.batch(operations, results::addAll);
+
+        testContext.assertTrue(results.get(0) instanceof CollectionResource);
+        testContext.assertTrue(results.get(1) instanceof DocumentResource);
+        testContext.assertFalse(results.get(1).exists);
+        testContext.assertFalse(results.get(2).modified);
+        testContext.assertTrue(results.get(3).rejected);
+        testContext.assertTrue(results.get(4).rejected);
+        testContext.assertFalse(results.get(5).exists);
+        testContext.assertTrue(results.get(6).error);
+    }
+
+    @Test
+    public void testBatchFailure(TestContext testContext) {
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.failedFuture("connection lost"));
+            return null;
+        });
+        List<Resource> results = new ArrayList<>();
+
+        storage.batch(Arrays.asList(BatchOperation.put("/project/resource", Buffer.buffer("{}")),
+                BatchOperation.delete("/project/other")), results::addAll);
+
+        testContext.assertEquals(2, results.size());
+        testContext.assertTrue(results.get(0).error);
+        testContext.assertTrue(results.get(1).error);
+    }
+
+    @Test
+    public void testWorkerMergeRetriesOnConflict(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisStorage mergingStorage = new RedisStorage(vertx, new ModuleConfiguration().workerMergeEnabled(true), redisClient);
+        AtomicInteger reads = new AtomicInteger();
+        when(redisClient.hmget(anyString(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            JsonArray result = reads.incrementAndGet() == 1
+                    ? new JsonArray().add("{\"a\":1,\"b\":2}").add("etag1").addNull()
+                    : new JsonArray().add("{\"a\":1,\"b\":3,\"d\":5}").add("etag2").addNull();
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[2]).handle(Future.succeededFuture(result));
+            return null;
+        });
+        List<List<String>> passedArguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            passedArguments.add((List<String>) invocation.getArguments()[2]);
+            String result = passedArguments.size() == 1 ? "conflict" : "OK";
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(new JsonArray().add(result)));
+            return null;
+        });
+
+        vertx.runOnContext(v -> mergingStorage.put("/some/resource", null, true, -1, "", LockMode.SILENT, 0, false, resource -> {
+            DocumentResource d = (DocumentResource) resource;
+            d.writeStream.write(Buffer.buffer("{\"b\":null,\"c\":4}"));
+            d.endHandler = end -> {
+                testContext.assertEquals(2, passedArguments.size());
+                testContext.assertEquals(Arrays.asList("true", "etag1"), passedArguments.get(0).subList(18, 20));
+                List<String> arguments = passedArguments.get(1);
+                testContext.assertEquals("false", arguments.get(3));
+                testContext.assertEquals("{\"a\":1,\"d\":5,\"c\":4}", arguments.get(6));
+                testContext.assertEquals(Arrays.asList("true", "etag2"), arguments.subList(18, 20));
+                async.complete();
+            };
+            d.closeHandler.handle(null);
+        }));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testFailedWorkerMergeWithoutErrorHandler(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisStorage mergingStorage = new RedisStorage(vertx, new ModuleConfiguration().workerMergeEnabled(true), redisClient);
+        when(redisClient.hmget(anyString(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            JsonArray result = new JsonArray().add("not json").add("etag1").addNull();
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[2]).handle(Future.succeededFuture(result));
+            return null;
+        });
+
+        vertx.runOnContext(v -> mergingStorage.put("/some/resource", null, true, -1, "", LockMode.SILENT, 0, false, resource -> {
+            if (resource instanceof DocumentResource) {
+                DocumentResource d = (DocumentResource) resource;
+                d.writeStream.write(Buffer.buffer("{\"c\":4}"));
+                d.closeHandler.handle(null);
+                return;
+            }
+            testContext.assertTrue(resource.error);
+            mergingStorage.statistics(stats ->
+                    testContext.assertEquals(1L, stats.getJsonObject("compression").getLong("executed")));
+            async.complete();
+        }));
+
+        async.awaitSuccess();
+        verify(redisClient, never()).evalsha(anyString(), anyList(), anyList(), any(Handler.class));
+        vertx.close();
+    }
+
+    @Test
+    public void testWorkerMergeRejectedAfterMaxRetries(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisStorage mergingStorage = new RedisStorage(vertx, new ModuleConfiguration().workerMergeEnabled(true)
+                .workerMergeMaxRetries(1), redisClient);
+        when(redisClient.hmget(anyString(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            JsonArray result = new JsonArray().addNull().addNull().addNull();
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[2]).handle(Future.succeededFuture(result));
+            return null;
+        });
+        List<List<String>> passedArguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            passedArguments.add((List<String>) invocation.getArguments()[2]);
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(new JsonArray().add("conflict")));
+            return null;
+        });
+
+        vertx.runOnContext(v -> mergingStorage.put("/some/resource", null, true, -1, "", LockMode.SILENT, 0, false, resource -> {
+            if (resource.rejected) {
+                testContext.assertEquals(2, passedArguments.size());
+                // a not existing resource is written unchanged, expecting it still not to exist
+                testContext.assertEquals("{\"c\":4}", passedArguments.get(0).get(6));
+                testContext.assertEquals(Arrays.asList("true", ""), passedArguments.get(0).subList(18, 20));
+                async.complete();
+                return;
+            }
+            DocumentResource d = (DocumentResource) resource;
+            d.writeStream.write(Buffer.buffer("{\"c\":4}"));
+            d.closeHandler.handle(null);
+        }));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testMergeJson(TestContext testContext) {
+        Buffer merged = RedisStorage.mergeJson("{\"a\":{\"x\":1},\"b\":\"\u00e4\",\"c\":true}".getBytes(StandardCharsets.UTF_8),
+                Buffer.buffer("{\"a\":{\"y\":2},\"c\":null}"));
+
+        testContext.assertEquals(new JsonObject().put("a", new JsonObject().put("y", 2)).put("b", "\u00e4"),
+                new JsonObject(merged.toString(StandardCharsets.UTF_8.name())));
+    }
+
+    @Test
+    public void testGetCompressedResourceAsStored(TestContext testContext) throws IOException {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisStorage compressingStorage = new RedisStorage(vertx, new ModuleConfiguration(), redisClient);
+        byte[] content = "{\"content\":\"compressed\"}".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(content);
+        }
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            JsonArray result = new JsonArray().add("TYPE_RESOURCE")
+                    .add(new String(compressed.toByteArray(), StandardCharsets.ISO_8859_1)).add("etag1").add("1");
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+
+        vertx.runOnContext(v -> compressingStorage.get("/some/resource", null, 0, -1, true, resource -> {
+            DocumentResource stored = (DocumentResource) resource;
+            testContext.assertEquals("gzip", stored.contentEncoding);
+            testContext.assertEquals((long) compressed.size(), stored.length);
+            testContext.assertTrue(Arrays.equals(compressed.toByteArray(), ((BufferReadStream) stored.readStream).getBuffer().getBytes()));
+
+            compressingStorage.get("/some/resource", null, 0, -1, false, decompressedResource -> {
+                DocumentResource decompressed = (DocumentResource) decompressedResource;
+                testContext.assertNull(decompressed.contentEncoding);
+                testContext.assertTrue(Arrays.equals(content, ((BufferReadStream) decompressed.readStream).getBuffer().getBytes()));
+                async.complete();
+            });
+        }));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testAdaptiveCompressionPolicy(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisStorage adaptiveStorage = new RedisStorage(vertx, new ModuleConfiguration()
+                .compressionPolicy(ModuleConfiguration.CompressionPolicy.adaptive).compressionMinSize(1024), redisClient);
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < 500; i++) {
+            json.append("{\"id\":").append(i).append(",\"name\":\"item\"},");
+        }
+        json.append("{}]}");
+        byte[] image = new byte[8192];
+        new Random(42).nextBytes(image);
+        List<String> compressFlags = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            compressFlags.add(((List<String>) invocation.getArguments()[2]).get(12));
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(new JsonArray().add("OK")));
+            return null;
+        });
+
+        vertx.runOnContext(v -> putContent(adaptiveStorage, "/project/small", "{\"a\":1}".getBytes(), () ->
+                putContent(adaptiveStorage, "/project/image.png", image, () ->
+                        putContent(adaptiveStorage, "/project/random", image, () ->
+                                putContent(adaptiveStorage, "/project/large", json.toString().getBytes(), () -> {
+                                    testContext.assertEquals(Arrays.asList("0", "0", "0", "1"), compressFlags);
+                                    adaptiveStorage.statistics(stats -> {
+                                        JsonObject compression = stats.getJsonObject("compression");
+                                        testContext.assertEquals(1L, compression.getLong("skippedBySample"));
+                                        JsonObject project = compression.getJsonObject("prefixes").getJsonObject("/project");
+                                        testContext.assertEquals(4L, project.getLong("resources"));
+                                        testContext.assertEquals(1L, project.getLong("compressed"));
+                                        testContext.assertTrue(project.getLong("storedBytes") < project.getLong("originalBytes"));
+                                        async.complete();
+                                    });
+                                })))));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testAdaptiveCompressionFailureStoresUncompressed(TestContext testContext) throws ReflectiveOperationException {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisStorage adaptiveStorage = new RedisStorage(vertx, new ModuleConfiguration()
+                .compressionPolicy(ModuleConfiguration.CompressionPolicy.adaptive).compressionMinSize(1024), redisClient);
+        CompressionExecutor fullExecutor = mock(CompressionExecutor.class);
+        Mockito.doAnswer(invocation -> {
+            ((Handler<AsyncResult<Object>>) invocation.getArguments()[1]).handle(
+                    Future.failedFuture(new RejectedExecutionException("Compression queue is full (0 waiting tasks)")));
+            return null;
+        }).when(fullExecutor).execute(any(Handler.class), any(Handler.class));
+        when(fullExecutor.statistics()).thenReturn(new JsonObject());
+        Field executorField = RedisStorage.class.getDeclaredField("compressionExecutor");
+        executorField.setAccessible(true);
+        executorField.set(adaptiveStorage, fullExecutor);
+        String json = largeJson();
+        List<List<String>> passedArguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            passedArguments.add((List<String>) invocation.getArguments()[2]);
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(new JsonArray().add("OK")));
+            return null;
+        });
+
+        vertx.runOnContext(v -> adaptiveStorage.put("/project/large", null, false, -1, "", LockMode.SILENT, 0, false, resource -> {
+            testContext.assertFalse(resource.error);
+            DocumentResource d = (DocumentResource) resource;
+            d.writeStream.write(Buffer.buffer(json));
+            d.endHandler = end -> {
+                testContext.assertEquals(1, passedArguments.size());
+                testContext.assertEquals("0", passedArguments.get(0).get(12));
+                adaptiveStorage.statistics(stats -> {
+                    JsonObject project = stats.getJsonObject("compression").getJsonObject("prefixes").getJsonObject("/project");
+                    testContext.assertEquals(1L, project.getLong("resources"));
+                    testContext.assertEquals(0L, project.getLong("compressed"));
+                    async.complete();
+                });
+            };
+            d.closeHandler.handle(null);
+        }));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    @Test
+    public void testAdaptiveCompressionOfWorkerMerge(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        RedisStorage adaptiveStorage = new RedisStorage(vertx, new ModuleConfiguration()
+                .compressionPolicy(ModuleConfiguration.CompressionPolicy.adaptive).compressionMinSize(1024), redisClient);
+        when(redisClient.hmget(anyString(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            JsonArray result = new JsonArray().addNull().addNull().addNull();
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[2]).handle(Future.succeededFuture(result));
+            return null;
+        });
+        String json = largeJson();
+        List<List<String>> passedArguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            passedArguments.add((List<String>) invocation.getArguments()[2]);
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(new JsonArray().add("OK")));
+            return null;
+        });
+
+        vertx.runOnContext(v -> adaptiveStorage.put("/project/merged", null, true, -1, "", LockMode.SILENT, 0, false, resource -> {
+            DocumentResource d = (DocumentResource) resource;
+            d.writeStream.write(Buffer.buffer(json));
+            d.endHandler = end -> {
+                testContext.assertEquals(1, passedArguments.size());
+                List<String> arguments = passedArguments.get(0);
+                testContext.assertEquals("false", arguments.get(3));
+                testContext.assertEquals("1", arguments.get(12));
+                adaptiveStorage.statistics(stats -> {
+                    JsonObject project = stats.getJsonObject("compression").getJsonObject("prefixes").getJsonObject("/project");
+                    testContext.assertEquals(1L, project.getLong("resources"));
+                    testContext.assertEquals(1L, project.getLong("compressed"));
+                    testContext.assertTrue(project.getLong("storedBytes") < project.getLong("originalBytes"));
+                    async.complete();
+                });
+            };
+            d.closeHandler.handle(null);
+        }));
+
+        async.awaitSuccess();
+        vertx.close();
+    }
+
+    private static String largeJson() {
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < 500; i++) {
+            json.append("{\"id\":").append(i).append(",\"name\":\"item\"},");
+        }
+        return json.append("{}]}").toString();
+    }
+
+    private static void putContent(RedisStorage storage, String path, byte[] content, Runnable next) {
+        storage.put(path, null, false, -1, "", LockMode.SILENT, 0, false, resource -> {
+            DocumentResource d = (DocumentResource) resource;
+            d.writeStream.write(Buffer.buffer(content));
+            d.endHandler = end -> next.run();
+            d.closeHandler.handle(null);
+        });
+    }
+
+    @Test
+    public void testMultiGetResults(TestContext testContext) {
+        List<List<String>> passedKeys = new ArrayList<>();
+        List<List<String>> passedArguments = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            passedKeys.add((List<String>) invocation.getArguments()[1]);
+            passedArguments.add((List<String>) invocation.getArguments()[2]);
+            JsonArray result = new JsonArray()
+                    .add(new JsonArray().add("TYPE_RESOURCE").add("{}").add("etag1").addNull())
+                    .add(new JsonArray().add("TYPE_COLLECTION").add("child").add("sub:"))
+                    .add("notModified")
+                    .add("notFound");
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+        List<Resource> results = new ArrayList<>();
+
+        storage.multiGet(Arrays.asList("/project/a", "/other/collection", "/project/b", "/project/c"),
+                Arrays.asList(null, null, "etag2", null), results::addAll);
+
+        testContext.assertEquals(1, passedKeys.size());
+        testContext.assertEquals(Arrays.asList(":project:a", ":other:collection", ":project:b", ":project:c"), passedKeys.get(0));
+        List<String> arguments = passedArguments.get(0);
+        testContext.assertEquals(24, arguments.size());
+        testContext.assertEquals(Arrays.asList("-1", "-1", "", "-1", "-1", "", "-1", "-1", "etag2", "-1", "-1", ""),
+                arguments.subList(12, 24));
+        DocumentResource document = (DocumentResource) results.get(0);
+        testContext.assertEquals("etag1", document.etag);
+        testContext.assertEquals("{}", ((BufferReadStream) document.readStream).getBuffer().toString());
+        testContext.assertEquals(2, ((CollectionResource) results.get(1)).items.size());
+        testContext.assertFalse(results.get(2).modified);
+        testContext.assertFalse(results.get(3).exists);
+    }
+
+    @Test
+    public void testMultiGetFailure(TestContext testContext) {
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.failedFuture("connection lost"));
+            return null;
+        });
+        List<Resource> results = new ArrayList<>();
+
+        storage.multiGet(Arrays.asList("/project/a", "/project/b"), Arrays.asList(null, null), results::addAll);
+
+        testContext.assertEquals(2, results.size());
+        testContext.assertTrue(results.get(0).error);
+        testContext.assertTrue(results.get(1).error);
+    }
+
+    @Test
+    public void testMultiGetServesCachedResources(TestContext testContext) {
+        RedisStorage cachingStorage = nearCacheStorage("Khg", new ArrayList<>());
+        List<List<String>> passedKeys = new ArrayList<>();
+        when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+            List<String> keys = (List<String>) invocation.getArguments()[1];
+            passedKeys.add(keys);
+            JsonArray result = new JsonArray();
+            keys.forEach(key -> result.add(new JsonArray().add("TYPE_RESOURCE").add("{}").add("etag1").addNull()));
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(result));
+            return null;
+        });
+        cachingStorage.multiGet(Collections.singletonList("/project/a"), Collections.singletonList(null), results -> {});
+        List<Resource> results = new ArrayList<>();
+
+        cachingStorage.multiGet(Arrays.asList("/project/a", "/project/b", "/project/a"), Arrays.asList(null, null, "etag1"),
+                results::addAll);
+
+        testContext.assertEquals(2, passedKeys.size());
+        testContext.assertEquals(Collections.singletonList(":project:b"), passedKeys.get(1));
+        testContext.assertEquals("etag1", ((DocumentResource) results.get(0)).etag);
+        testContext.assertEquals("etag1", ((DocumentResource) results.get(1)).etag);
+        testContext.assertFalse(results.get(2).modified);
+    }
+
+    private static Message<JsonObject> expiredMessage(String redisKey) {
+        Message<JsonObject> message = mock(Message.class);
+        when(message.body()).thenReturn(new JsonObject().put("value", new JsonObject()
+                .put("pattern", "__keyevent@*__:expired")
+                .put("channel", "__keyevent@0__:expired")
+                .put("message", redisKey)));
+        return message;
+    }
+
+    private RedisStorage nearCacheStorage(String keyspaceEvents, List<Handler<Message<JsonObject>>> invalidationConsumers) {
+        Vertx vertx = mock(Vertx.class);
+        EventBus eventBus = mock(EventBus.class);
+        when(vertx.eventBus()).thenReturn(eventBus);
+        when(eventBus.consumer(anyString(), any(Handler.class))).thenAnswer(invocation -> {
+            invalidationConsumers.add((Handler<Message<JsonObject>>) invocation.getArguments()[1]);
+            return null;
+        });
+        when(redisClient.configGet(eq("notify-keyspace-events"), any(Handler.class))).thenAnswer(invocation -> {
+            JsonArray result = new JsonArray().add("notify-keyspace-events").add(keyspaceEvents);
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[1]).handle(Future.succeededFuture(result));
+            return null;
+        });
+        RedisClient subscriber = mock(RedisClient.class);
+        when(subscriber.psubscribe(anyString(), any(Handler.class))).thenAnswer(invocation -> {
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[1]).handle(Future.succeededFuture(new JsonArray()));
+            return null;
+        });
+        return new RedisStorage(vertx, new ModuleConfiguration().nearCacheEnabled(true),
+                Collections.singletonList(redisClient), subscriber, "near-cache");
+    }
+
     private class SuccessAsyncResult implements AsyncResult<JsonObject> {
 
         @Override
@@ -1,5 +1,7 @@
 package org.swisspush.reststorage;
 
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
@@ -9,6 +11,8 @@ import io.vertx.core.http.CaseInsensitiveHeaders;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.streams.WriteStream;
 import io.vertx.ext.unit.Async;
@@ -20,14 +24,24 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.swisspush.reststorage.mocks.*;
+import org.swisspush.reststorage.util.CompressionExecutor;
 import org.swisspush.reststorage.util.HttpRequestHeader;
 import org.swisspush.reststorage.util.LockMode;
 import org.swisspush.reststorage.util.ModuleConfiguration;
 import org.swisspush.reststorage.util.StatusCode;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
@@ -155,6 +169,531 @@ public class RestStorageHandlerTest {
                 eq("Rejecting PUT request to /some/resource because current memory usage of 75% is higher than provided importance level of 50%"));
     }
 
+    @Test
+    public void testRejectBatchRequestWhenMemoryUsageHigherThanImportanceLevel(TestContext testContext) {
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/").rejectStorageWriteOnLowMemory(true);
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        arrangeBatchRequest(new JsonObject().put("operations", new JsonArray()
+                .add(new JsonObject().put("method", "PUT").put("path", "a").put("content", new JsonObject()))));
+        when(request.headers()).thenReturn(new CaseInsensitiveHeaders().add(HttpRequestHeader.IMPORTANCE_LEVEL_HEADER.getName(), "50"));
+        when(storage.getCurrentMemoryUsage()).thenReturn(Optional.of(75f));
+
+        // ACT
+        restStorageHandler.handle(request);
+
+        // ASSERT
+        verify(response, times(1)).setStatusCode(eq(StatusCode.INSUFFICIENT_STORAGE.getStatusCode()));
+        verify(response, times(1)).end(eq(StatusCode.INSUFFICIENT_STORAGE.getStatusMessage()));
+        verify(storage, never()).batch(anyList(), any());
+        verify(log, times(1)).info(
+                eq("Rejecting batch request to /some/collection?batch because current memory usage of 75% is higher than provided importance level of 50%"));
+    }
+
+    @Test
+    public void testStorageExpandWithInvalidDepth(TestContext testContext) {
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/");
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        when(request.method()).thenReturn(HttpMethod.POST);
+        when(request.uri()).thenReturn("/some/collection?storageExpand=true&depth=0");
+        when(request.path()).thenReturn("/some/collection");
+        when(request.query()).thenReturn("storageExpand=true&depth=0");
+        when(request.params()).thenReturn(new CaseInsensitiveHeaders().add("storageExpand", "true").add("depth", "0"));
+
+        // ACT
+        restStorageHandler.handle(request);
+
+        // ASSERT
+        verify(response, times(1)).setStatusCode(eq(StatusCode.BAD_REQUEST.getStatusCode()));
+        verify(response, times(1)).end(eq("Bad Request: Parameter 'depth' must be a positive number"));
+        verify(storage, never()).storageExpand(anyString(), anyString(), anyList(), anyInt(), any());
+    }
+
+    @Test
+    public void testBatch(TestContext testContext) {
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/");
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        JsonObject body = new JsonObject().put("operations", new JsonArray()
+                .add(new JsonObject().put("method", "PUT").put("path", "a")
+                        .put("headers", new JsonObject().put("x-expire-after", 60).put("x-lock", "owner"))
+                        .put("content", new JsonObject().put("content", "a")))
+                .add(new JsonObject().put("method", "DELETE").put("path", "sub/b")));
+        arrangeBatchRequest(body);
+        List<List<BatchOperation>> passedOperations = new ArrayList<>();
+        doAnswer(invocation -> {
+            passedOperations.add((List<BatchOperation>) invocation.getArguments()[0]);
+            Resource notFound = new Resource();
+            notFound.exists = false;
+            ((Handler<List<Resource>>) invocation.getArguments()[1]).handle(Arrays.asList(new Resource(), notFound));
+            return null;
+        }).when(storage).batch(anyList(), any());
+
+        // ACT
+        restStorageHandler.handle(request);
+
+        // ASSERT
+        List<BatchOperation> operations = passedOperations.get(0);
+        testContext.assertEquals("/some/collection/a", operations.get(0).path);
+        testContext.assertEquals("{\"content\":\"a\"}", operations.get(0).content.toString());
+        testContext.assertEquals(60L, operations.get(0).expire);
+        testContext.assertEquals("owner", operations.get(0).lockOwner);
+        testContext.assertEquals(BatchOperation.Method.DELETE, operations.get(1).method);
+        testContext.assertEquals("/some/collection/sub/b", operations.get(1).path);
+        verify(response, times(1)).end(eq(new JsonObject().put("results", new JsonArray()
+                .add(new JsonObject().put("method", "PUT").put("path", "a").put("status", 200))
+                .add(new JsonObject().put("method", "DELETE").put("path", "sub/b").put("status", 404))).encode()));
+    }
+
+    @Test
+    public void testBatchWithInvalidOperation(TestContext testContext) {
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/");
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        arrangeBatchRequest(new JsonObject().put("operations", new JsonArray()
+                .add(new JsonObject().put("method", "PUT").put("path", "a").put("content", new JsonObject()))
+                .add(new JsonObject().put("method", "PUT").put("path", "b").put("content", new JsonObject())
+                        .put("headers", new JsonObject().put("x-expire-after", "soon")))));
+
+        // ACT
+        restStorageHandler.handle(request);
+
+        // ASSERT
+        verify(response, times(1)).setStatusCode(eq(StatusCode.BAD_REQUEST.getStatusCode()));
+        verify(response, times(1)).end(eq("Bad Request: Invalid x-expire-after header: soon"));
+        verify(storage, never()).batch(anyList(), any());
+    }
+
+    @Test
+    public void testBatchNotSupportedByStorage(TestContext testContext) {
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/");
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        arrangeBatchRequest(new JsonObject().put("operations", new JsonArray()
+                .add(new JsonObject().put("method", "DELETE").put("path", "a"))));
+        doAnswer(invocation -> {
+            ((Handler<List<Resource>>) invocation.getArguments()[1]).handle(Storage.notSupported("batch", 1));
+            return null;
+        }).when(storage).batch(anyList(), any());
+
+        // ACT
+        restStorageHandler.handle(request);
+
+        // ASSERT
+        verify(response, times(1)).setStatusCode(eq(StatusCode.NOT_IMPLEMENTED.getStatusCode()));
+        verify(response, times(1)).end(eq("The operation 'batch' is not supported by this storage"));
+    }
+
+    @Test
+    public void testMultiGet(TestContext testContext) {
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/");
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        arrangeMultiGetRequest(new JsonObject().put("resources", new JsonArray().add("a.json")
+                .add(new JsonObject().put("path", "other/b.bin").put("etag", "etag-b")).add("c").add("d").add("e")), null);
+        List<List<String>> passedPaths = new ArrayList<>();
+        List<List<String>> passedEtags = new ArrayList<>();
+        doAnswer(invocation -> {
+            passedPaths.add((List<String>) invocation.getArguments()[0]);
+            passedEtags.add((List<String>) invocation.getArguments()[1]);
+            Resource notModified = new Resource();
+            notModified.modified = false;
+            Resource notFound = new Resource();
+            notFound.exists = false;
+            Resource error = new Resource();
+            error.error = true;
+            error.errorMessage = "Multi-get failed";
+            ((Handler<List<Resource>>) invocation.getArguments()[2]).handle(Arrays.asList(
+                    document("{\"content\":\"a\"}", "etag-a"), notModified, document("binary", "etag-c"), notFound, error));
+            return null;
+        }).when(storage).multiGet(anyList(), anyList(), any());
+
+        // ACT
+        restStorageHandler.handle(request);
+
+        // ASSERT
+        testContext.assertEquals(Arrays.asList("/some/collection/a.json", "/some/collection/other/b.bin",
+                "/some/collection/c", "/some/collection/d", "/some/collection/e"), passedPaths.get(0));
+        testContext.assertEquals(Arrays.asList(null, "etag-b", null, null, null), passedEtags.get(0));
+        verify(response, times(1)).end(eq(new JsonObject().put("resources", new JsonArray()
+                .add(new JsonObject().put("path", "a.json").put("status", 200).put("etag", "etag-a")
+                        .put("content", new JsonObject().put("content", "a")))
+                .add(new JsonObject().put("path", "other/b.bin").put("status", 304).put("etag", "etag-b"))
+                .add(new JsonObject().put("path", "c").put("status", 200).put("etag", "etag-c")
+                        .put("base64", "binary".getBytes()))
+                .add(new JsonObject().put("path", "d").put("status", 404))
+                .add(new JsonObject().put("path", "e").put("status", 500).put("message", "Multi-get failed"))).encode()));
+    }
+
+    @Test
+    public void testMultiGetMultipart(TestContext testContext) {
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/");
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        arrangeMultiGetRequest(new JsonObject().put("resources", new JsonArray().add("a.bin").add("b")), "multipart/mixed");
+        byte[] payload = new byte[]{0, (byte) 0xff, 13, 10};
+        doAnswer(invocation -> {
+            Resource notFound = new Resource();
+            notFound.exists = false;
+            DocumentResource document = new DocumentResource();
+            document.etag = "etag-a";
+            document.readStream = new BufferReadStream(vertx, Buffer.buffer(payload));
+            ((Handler<List<Resource>>) invocation.getArguments()[2]).handle(Arrays.asList(document, notFound));
+            return null;
+        }).when(storage).multiGet(anyList(), anyList(), any());
+        List<Buffer> bodies = new ArrayList<>();
+        doAnswer(invocation -> {
+            bodies.add((Buffer) invocation.getArguments()[0]);
+            return null;
+        }).when(response).end(any(Buffer.class));
+
+        // ACT
+        restStorageHandler.handle(request);
+
+        // ASSERT
+        String contentType = response.headers().get("Content-Type");
+        testContext.assertTrue(contentType.startsWith("multipart/mixed; boundary="));
+        String boundary = contentType.substring("multipart/mixed; boundary=".length());
+        Buffer expected = Buffer.buffer("--" + boundary + "\r\nContent-Location: a.bin\r\nX-Status: 200\r\n"
+                + "Etag: etag-a\r\nContent-Type: application/octet-stream\r\nContent-Length: 4\r\n\r\n")
+                .appendBytes(payload)
+                .appendString("\r\n--" + boundary + "\r\nContent-Location: b\r\nX-Status: 404\r\n"
+                        + "Content-Length: 0\r\n\r\n\r\n--" + boundary + "--\r\n");
+        testContext.assertEquals(1, bodies.size());
+        testContext.assertEquals(expected, bodies.get(0));
+    }
+
+    @Test
+    public void testGetServesStoredGzip(TestContext testContext) {
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/");
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        when(request.method()).thenReturn(HttpMethod.GET);
+        when(request.uri()).thenReturn("/some/resource");
+        when(request.params()).thenReturn(new CaseInsensitiveHeaders());
+        when(request.headers()).thenReturn(new CaseInsensitiveHeaders().add("Accept-Encoding", "deflate, gzip;q=0.8"));
+        MultiMap responseHeaders = new CaseInsensitiveHeaders();
+        when(response.headers()).thenReturn(responseHeaders);
+        Buffer compressed = Buffer.buffer(new byte[]{0x1f, (byte) 0x8b, 8, 0});
+        List<Boolean> passedAcceptGzip = new ArrayList<>();
+        doAnswer(invocation -> {
+            passedAcceptGzip.add((Boolean) invocation.getArguments()[4]);
+            DocumentResource document = new DocumentResource();
+            document.etag = "etag1";
+            document.length = compressed.length();
+            document.contentEncoding = "gzip";
+            document.readStream = new BufferReadStream(vertx, compressed);
+            document.closeHandler = v -> {};
+            ((Handler<Resource>) invocation.getArguments()[5]).handle(document);
+            return null;
+        }).when(storage).get(anyString(), any(), anyInt(), anyInt(), anyBoolean(), any());
+
+        // ACT
+        restStorageHandler.handle(request);
+
+        // ASSERT
+        testContext.assertEquals(Collections.singletonList(true), passedAcceptGzip);
+        testContext.assertEquals("gzip", responseHeaders.get("Content-Encoding"));
+        testContext.assertEquals("Accept-Encoding", responseHeaders.get("Vary"));
+        testContext.assertEquals("4", responseHeaders.get("Content-Length"));
+        verify(response, times(1)).end(eq(compressed));
+    }
+
+    @Test
+    public void testHeadCollectionDoesNotListIt(TestContext testContext) {
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/");
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        when(request.method()).thenReturn(HttpMethod.HEAD);
+        when(request.uri()).thenReturn("/some/collection/");
+        when(request.path()).thenReturn("/some/collection/");
+        when(request.params()).thenReturn(new CaseInsensitiveHeaders());
+        MultiMap responseHeaders = new CaseInsensitiveHeaders();
+        when(response.headers()).thenReturn(responseHeaders);
+        doAnswer(invocation -> {
+            ((Handler<Resource>) invocation.getArguments()[3]).handle(new CollectionResource());
+            return null;
+        }).when(storage).head(anyString(), any(), anyBoolean(), any());
+
+        // ACT
+        restStorageHandler.handle(request);
+
+        // ASSERT
+        verify(storage, never()).get(anyString(), any(), anyInt(), anyInt(), any());
+        verify(storage, never()).get(anyString(), any(), anyInt(), anyInt(), anyBoolean(), any());
+        testContext.assertEquals("application/json; charset=utf-8", responseHeaders.get("Content-Type"));
+        testContext.assertFalse(responseHeaders.contains("Content-Length"));
+        verify(response, times(1)).end();
+    }
+
+    @Test
+    public void testHeadDescribesStoredGzip(TestContext testContext) {
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/");
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        when(request.method()).thenReturn(HttpMethod.HEAD);
+        when(request.uri()).thenReturn("/some/resource");
+        when(request.params()).thenReturn(new CaseInsensitiveHeaders());
+        when(request.headers()).thenReturn(new CaseInsensitiveHeaders().add("Accept-Encoding", "gzip"));
+        MultiMap responseHeaders = new CaseInsensitiveHeaders();
+        when(response.headers()).thenReturn(responseHeaders);
+        List<Boolean> passedAcceptGzip = new ArrayList<>();
+        doAnswer(invocation -> {
+            passedAcceptGzip.add((Boolean) invocation.getArguments()[2]);
+            DocumentResource document = new DocumentResource();
+            document.etag = "etag1";
+            document.length = 4;
+            document.contentEncoding = "gzip";
+            ((Handler<Resource>) invocation.getArguments()[3]).handle(document);
+            return null;
+        }).when(storage).head(anyString(), any(), anyBoolean(), any());
+
+        // ACT
+        restStorageHandler.handle(request);
+
+        // ASSERT
+        testContext.assertEquals(Collections.singletonList(true), passedAcceptGzip);
+        testContext.assertEquals("gzip", responseHeaders.get("Content-Encoding"));
+        testContext.assertEquals("Accept-Encoding", responseHeaders.get("Vary"));
+        testContext.assertEquals("4", responseHeaders.get("Content-Length"));
+        testContext.assertEquals("etag1", responseHeaders.get("Etag"));
+        verify(response, times(1)).end();
+    }
+
+    @Test
+    public void testAcceptsGzip(TestContext testContext) {
+        testContext.assertTrue(RestStorageHandler.acceptsGzip("gzip"));
+        testContext.assertTrue(RestStorageHandler.acceptsGzip("deflate, GZIP;q=0.5"));
+        testContext.assertTrue(RestStorageHandler.acceptsGzip("*"));
+        testContext.assertFalse(RestStorageHandler.acceptsGzip(null));
+        testContext.assertFalse(RestStorageHandler.acceptsGzip("identity"));
+        testContext.assertFalse(RestStorageHandler.acceptsGzip("gzip;q=0, deflate"));
+        testContext.assertFalse(RestStorageHandler.acceptsGzip("x-gzip2"));
+    }
+
+    @Test
+    public void testLargeListingIsCompressed(TestContext testContext) {
+        Async async = testContext.async();
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/")
+                .responseCompressionEnabled(true).responseCompressionThreshold(1024);
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        arrangeListingRequest("gzip", 200);
+        MultiMap responseHeaders = new CaseInsensitiveHeaders();
+        when(response.headers()).thenReturn(responseHeaders);
+        doAnswer(invocation -> {
+            Buffer body = (Buffer) invocation.getArguments()[0];
+
+            // ASSERT
+            testContext.assertEquals("gzip", responseHeaders.get("Content-Encoding"));
+            testContext.assertEquals("Accept-Encoding", responseHeaders.get("Vary"));
+            testContext.assertEquals(String.valueOf(body.length()), responseHeaders.get("Content-Length"));
+            JsonObject listing = new JsonObject(gunzip(body));
+            testContext.assertEquals(200, listing.getJsonArray("collection").size());
+            async.complete();
+            return null;
+        }).when(response).end(any(Buffer.class));
+
+        // ACT
+        restStorageHandler.handle(request);
+    }
+
+    @Test
+    public void testListingIsCompressedOnSharedExecutor(TestContext testContext) {
+        Async async = testContext.async();
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/")
+                .responseCompressionEnabled(true).responseCompressionThreshold(1024);
+        CompressionExecutor compressionExecutor = new CompressionExecutor(vertx, CompressionExecutor.POOL_NAME, 1, 0);
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config, compressionExecutor);
+
+        // ARRANGE
+        arrangeListingRequest("gzip", 200);
+        MultiMap responseHeaders = new CaseInsensitiveHeaders();
+        when(response.headers()).thenReturn(responseHeaders);
+        doAnswer(invocation -> {
+
+            // ASSERT
+            testContext.assertEquals("gzip", responseHeaders.get("Content-Encoding"));
+            testContext.assertEquals(1L, compressionExecutor.statistics().getLong("executed"));
+            async.complete();
+            return null;
+        }).when(response).end(any(Buffer.class));
+
+        // ACT
+        restStorageHandler.handle(request);
+    }
+
+    @Test
+    public void testListingIsNotCompressed(TestContext testContext) {
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/")
+                .responseCompressionEnabled(true).responseCompressionThreshold(1024);
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        arrangeListingRequest(null, 200);
+        MultiMap responseHeaders = new CaseInsensitiveHeaders();
+        when(response.headers()).thenReturn(responseHeaders);
+
+        // ACT
+        restStorageHandler.handle(request);
+
+        // ASSERT without Accept-Encoding
+        testContext.assertNull(responseHeaders.get("Content-Encoding"));
+        testContext.assertEquals("Accept-Encoding", responseHeaders.get("Vary"));
+        verify(response, times(1)).end(any(Buffer.class));
+
+        // ASSERT below the threshold
+        arrangeListingRequest("gzip", 2);
+        responseHeaders.clear();
+        restStorageHandler.handle(request);
+        testContext.assertNull(responseHeaders.get("Content-Encoding"));
+        testContext.assertNull(responseHeaders.get("Vary"));
+        verify(response, times(2)).end(any(Buffer.class));
+    }
+
+    @Test
+    public void testStreamWithOffsetOrLimitIsRejected(TestContext testContext) {
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/");
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        when(request.method()).thenReturn(HttpMethod.GET);
+        when(request.uri()).thenReturn("/collection/?stream=true&limit=10");
+        when(request.path()).thenReturn("/collection/");
+        when(request.params()).thenReturn(new CaseInsensitiveHeaders().add("stream", "true").add("limit", "10"));
+
+        // ACT
+        restStorageHandler.handle(request);
+
+        // ASSERT
+        verify(response, times(1)).setStatusCode(eq(StatusCode.BAD_REQUEST.getStatusCode()));
+        verify(response, times(1)).end(eq("Bad Request: The offset and limit parameters are not supported with stream=true"));
+        verify(storage, never()).streamCollection(anyString(), any());
+    }
+
+    @Test
+    public void testStreamStopsWhenClientCloses(TestContext testContext) {
+        ModuleConfiguration config = new ModuleConfiguration().prefix("/");
+        restStorageHandler = new RestStorageHandler(vertx, log, storage, config);
+
+        // ARRANGE
+        when(request.method()).thenReturn(HttpMethod.GET);
+        when(request.uri()).thenReturn("/collection/?stream=true");
+        when(request.path()).thenReturn("/collection/");
+        when(request.params()).thenReturn(new CaseInsensitiveHeaders().add("stream", "true"));
+        when(response.headers()).thenReturn(new CaseInsensitiveHeaders());
+        List<Handler<Void>> closeHandlers = new ArrayList<>();
+        doAnswer(invocation -> {
+            closeHandlers.add((Handler<Void>) invocation.getArguments()[0]);
+            return response;
+        }).when(response).closeHandler(any());
+        List<Handler<AsyncResult<List<Resource>>>> fetches = new ArrayList<>();
+        doAnswer(invocation -> {
+            CollectionResource collection = new CollectionResource();
+            collection.itemStream = new CollectionItemStream(fetches::add);
+            ((Handler<Resource>) invocation.getArguments()[1]).handle(collection);
+            return null;
+        }).when(storage).streamCollection(anyString(), any());
+
+        // ACT
+        restStorageHandler.handle(request);
+        testContext.assertEquals(1, closeHandlers.size());
+        testContext.assertEquals(1, fetches.size());
+        closeHandlers.get(0).handle(null);
+        DocumentResource item = new DocumentResource();
+        item.name = "resource";
+        fetches.get(0).handle(Future.succeededFuture(Collections.singletonList(item)));
+
+        // ASSERT
+        testContext.assertEquals(1, fetches.size());
+        verify(response, never()).write(any(Buffer.class));
+        verify(response, never()).end(any(Buffer.class));
+    }
+
+    private void arrangeListingRequest(String acceptEncoding, int size) {
+        when(request.method()).thenReturn(HttpMethod.GET);
+        when(request.uri()).thenReturn("/collection/");
+        when(request.path()).thenReturn("/collection/");
+        when(request.params()).thenReturn(new CaseInsensitiveHeaders());
+        CaseInsensitiveHeaders headers = new CaseInsensitiveHeaders();
+        if (acceptEncoding != null) {
+            headers.add("Accept-Encoding", acceptEncoding);
+        }
+        when(request.headers()).thenReturn(headers);
+        doAnswer(invocation -> {
+            CollectionResource collection = new CollectionResource();
+            collection.items = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                DocumentResource item = new DocumentResource();
+                item.name = "resource-" + i;
+                collection.items.add(item);
+            }
+            ((Handler<Resource>) invocation.getArguments()[5]).handle(collection);
+            return null;
+        }).when(storage).get(anyString(), any(), anyInt(), anyInt(), anyBoolean(), any());
+    }
+
+    private static String gunzip(Buffer compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.getBytes()))) {
+            byte[] chunk = new byte[1024];
+            for (int read; (read = in.read(chunk)) > 0; ) {
+                out.write(chunk, 0, read);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private DocumentResource document(String content, String etag) {
+        DocumentResource document = new DocumentResource();
+        document.etag = etag;
+        document.readStream = new BufferReadStream(vertx, Buffer.buffer(content));
+        return document;
+    }
+
+    private void arrangeMultiGetRequest(JsonObject body, String accept) {
+        when(request.method()).thenReturn(HttpMethod.POST);
+        when(request.uri()).thenReturn("/some/collection?multiGet");
+        when(request.path()).thenReturn("/some/collection");
+        when(request.query()).thenReturn("multiGet");
+        when(request.params()).thenReturn(new CaseInsensitiveHeaders().add("multiGet", ""));
+        MultiMap headers = new CaseInsensitiveHeaders();
+        if (accept != null) {
+            headers.add("Accept", accept);
+        }
+        when(request.headers()).thenReturn(headers);
+        when(request.bodyHandler(any())).thenAnswer(invocation -> {
+            ((Handler<Buffer>) invocation.getArguments()[0]).handle(Buffer.buffer(body.encode()));
+            return request;
+        });
+        when(response.headers()).thenReturn(new CaseInsensitiveHeaders());
+    }
+
+    private void arrangeBatchRequest(JsonObject body) {
+        when(request.method()).thenReturn(HttpMethod.POST);
+        when(request.uri()).thenReturn("/some/collection?batch");
+        when(request.path()).thenReturn("/some/collection");
+        when(request.query()).thenReturn("batch");
+        when(request.params()).thenReturn(new CaseInsensitiveHeaders().add("batch", ""));
+        when(request.bodyHandler(any())).thenAnswer(invocation -> {
+            ((Handler<Buffer>) invocation.getArguments()[0]).handle(Buffer.buffer(body.encode()));
+            return request;
+        });
+        when(response.headers()).thenReturn(new CaseInsensitiveHeaders());
+    }
+
     @Test
     public void notifiesResourceAboutExceptionsOnRequest(TestContext testContext) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
 
@@ -0,0 +1,113 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.redis.RedisClient;
+import org.mockito.Mockito;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures the time to expand a collection of compressed resources, from the reply of redis to the last byte of the
+ * expanded json, depending on the size of the compression worker pool.
+ * <p>
+ * Not a unit test, run the main method from the test classpath.
+ */
+public class StorageExpandDecompressionBenchmark {
+
+    private static final int RESOURCE_SIZE = 4096;
+    private static final int ITERATIONS = 50;
+    private static final int[] POOL_SIZES = {1, 2, 4, 8};
+
+    public static void main(String[] args) throws Exception {
+        StringBuilder header = new StringBuilder(String.format("%10s", "members"));
+        for (int poolSize : POOL_SIZES) {
+            header.append(String.format("%18s", "pool " + poolSize + " [ms]"));
+        }
+        System.out.println(header);
+
+        for (int members : new int[]{100, 250, 500, 1000}) {
+            JsonArray reply = reply(members);
+            StringBuilder line = new StringBuilder(String.format("%10d", members));
+            for (int poolSize : POOL_SIZES) {
+                // the worker pool is shared per vertx instance, every pool size needs its own instance
+                Vertx vertx = Vertx.vertx();
+                RedisClient redisClient = Mockito.mock(RedisClient.class);
+                when(redisClient.evalsha(anyString(), anyList(), anyList(), any(Handler.class))).thenAnswer(invocation -> {
+                    ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.succeededFuture(reply));
+                    return null;
+                });
+                RedisStorage storage = new RedisStorage(vertx,
+                        new ModuleConfiguration().compressionWorkerPoolSize(poolSize), redisClient);
+
+                // warm up
+                for (int i = 0; i < ITERATIONS; i++) {
+                    expand(vertx, storage);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    expand(vertx, storage);
+                }
+                line.append(String.format("%18.2f", (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS));
+                vertx.close();
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * @return the reply of the storageExpand script for the amount of compressed resources
+     */
+    private static JsonArray reply(int members) throws IOException {
+        JsonArray reply = new JsonArray().add("expandEtag");
+        for (int i = 0; i < members; i++) {
+            StringBuilder content = new StringBuilder("{\"id\":" + i + ",\"items\":[");
+            for (int item = 0; content.length() < RESOURCE_SIZE; item++) {
+                content.append(item == 0 ? "" : ",").append("{\"name\":\"item ").append(item)
+                        .append("\",\"value\":").append((i * 31 + item) % 1000).append('}');
+            }
+            content.append("]}");
+            reply.add("res" + i).add(new JsonArray().add(RedisStorage.encodeBinary(compress(content.toString().getBytes()))));
+        }
+        return reply;
+    }
+
+    private static byte[] compress(byte[] content) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
+            gzip.write(content);
+        }
+        return bos.toByteArray();
+    }
+
+    private static void expand(Vertx vertx, RedisStorage storage) throws Exception {
+        CompletableFuture<Long> done = new CompletableFuture<>();
+        List<String> subResources = Collections.singletonList("res");
+        vertx.runOnContext(v -> storage.storageExpand("/collection", null, subResources, 1, resource -> {
+            if (!(resource instanceof DocumentResource)) {
+                done.completeExceptionally(new IllegalStateException("expand failed: " + resource.errorMessage));
+                return;
+            }
+            DocumentResource r = (DocumentResource) resource;
+            long[] received = {0};
+            r.readStream.handler(chunk -> received[0] += ((Buffer) chunk).length());
+            r.readStream.endHandler(end -> done.complete(received[0]));
+        }));
+        done.get();
+    }
+}
@@ -410,9 +410,10 @@ public class StorageExpandIntegrationTest extends RedisStorageIntegrationTestCas
                 .when()
                 .post(POST_STORAGE_EXP)
                 .then()
-                .assertThat()
-                .statusCode(409)
-                .body(containsString("Collections having compressed resources are not supported in storage expand"));
+                .assertThat().statusCode(200).contentType(ContentType.JSON).header(ETAG_HEADER, not(empty()))
+                .body("res1.foo", equalTo("bar1"))
+                .body("res2.foo", equalTo("bar2"))
+                .body("res3.foo", equalTo("bar3"));
 
 
         // make storage expand again without the compressed resource
@@ -458,9 +459,49 @@ public class StorageExpandIntegrationTest extends RedisStorageIntegrationTestCas
                 .when()
                 .post("/server/resources/sub?storageExpand=true")
                 .then()
-                .assertThat()
-                .statusCode(409)
-                .body(containsString("Collections having compressed resources are not supported in storage expand"));;
+                .assertThat().statusCode(200).contentType(ContentType.JSON).header(ETAG_HEADER, not(empty()))
+                .body("sub1.foo", equalTo("sub1"))
+                .body("sub2.foo", equalTo("sub2"));
+
+        given()
+                .body("{ \"subResources\": [\"res1\", \"sub/\"] }")
+                .when()
+                .post(POST_STORAGE_EXP + "&depth=2")
+                .then()
+                .assertThat().statusCode(200).contentType(ContentType.JSON)
+                .body("res1.foo", equalTo("bar1"))
+                .body("sub.sub2.foo", equalTo("sub2"));
+
+        async.complete();
+    }
+
+    @Test
+    public void testExpandWithDepth(TestContext context) {
+        Async async = context.async();
+        delete("/server/resources");
+
+        with().body("{ \"foo\": \"bar1\" }").put("/server/resources/res1");
+        with().body("{ \"foo\": \"sub1\" }").put("/server/resources/sub/sub1");
+        with().body("{ \"foo\": \"subsub1\" }").put("/server/resources/sub/subsub/subsub1");
+        with().body("{ \"foo\": \"deeper1\" }").put("/server/resources/sub/subsub/deeper/deeper1");
+
+        given()
+                .body("{ \"subResources\": [\"res1\", \"sub/\"] }")
+                .when()
+                .post(POST_STORAGE_EXP + "&depth=3")
+                .then()
+                .assertThat().statusCode(200).contentType(ContentType.JSON).header(ETAG_HEADER, not(empty()))
+                .body("res1.foo", equalTo("bar1"))
+                .body("sub.sub1.foo", equalTo("sub1"))
+                .body("sub.subsub.subsub1.foo", equalTo("subsub1"))
+                .body("sub.subsub.deeper", hasItems("deeper1"));
+
+        given()
+                .body("{ \"subResources\": [\"res1\", \"sub/\"] }")
+                .when()
+                .post(POST_STORAGE_EXP + "&depth=0")
+                .then()
+                .assertThat().statusCode(400);
 
         async.complete();
     }
@@ -0,0 +1,124 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.LockMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Tests for the default methods of the {@link Storage} interface, as used by a storage implementing the basic
+ * methods only.
+ */
+@RunWith(VertxUnitRunner.class)
+public class StorageTest {
+
+    @Test
+    public void testGetAndHeadDelegateToGet(TestContext testContext) {
+        BasicStorage storage = new BasicStorage();
+
+        storage.get("/some/resource", "etag", 0, -1, true, resource -> testContext.assertTrue(resource.exists));
+        storage.head("/some/resource", "etag", true, resource -> {
+            testContext.assertTrue(resource instanceof DocumentResource);
+            testContext.assertNull(((DocumentResource) resource).readStream);
+        });
+
+        testContext.assertEquals(Arrays.asList("/some/resource", "/some/resource"), storage.gets);
+        testContext.assertEquals(1, storage.closed);
+    }
+
+    @Test
+    public void testStorageExpandDelegatesWithDepthOne(TestContext testContext) {
+        BasicStorage storage = new BasicStorage();
+
+        storage.storageExpand("/some/collection", null, Collections.singletonList("res"), 1,
+                resource -> testContext.assertFalse(resource.error));
+        storage.storageExpand("/some/collection", null, Collections.singletonList("res"), 2, resource -> {
+            testContext.assertTrue(resource.error);
+            testContext.assertTrue(resource.notSupported);
+        });
+
+        testContext.assertEquals(1, storage.expands);
+    }
+
+    @Test
+    public void testNewOperationsAreNotSupported(TestContext testContext) {
+        BasicStorage storage = new BasicStorage();
+
+        storage.multiGet(Arrays.asList("/a", "/b"), Arrays.asList(null, null), resources -> {
+            testContext.assertEquals(2, resources.size());
+            testContext.assertTrue(resources.get(1).notSupported);
+        });
+        storage.batch(Collections.singletonList(BatchOperation.delete("/a")),
+                resources -> testContext.assertTrue(resources.get(0).notSupported));
+        storage.list("/some/collection", null, 10, resource -> testContext.assertTrue(resource.notSupported));
+        storage.streamCollection("/some/collection", resource -> testContext.assertTrue(resource.notSupported));
+        storage.statistics(statistics -> testContext.assertTrue(statistics.isEmpty()));
+    }
+
+    /**
+     * Implements only the methods a storage had to implement before the default methods were added.
+     */
+    private static class BasicStorage implements Storage {
+
+        private final List<String> gets = new ArrayList<>();
+        private int closed = 0;
+        private int expands = 0;
+
+        @Override
+        public Optional<Float> getCurrentMemoryUsage() {
+            return Optional.empty();
+        }
+
+        @Override
+        public void get(String path, String etag, int offset, int count, Handler<Resource> handler) {
+            gets.add(path);
+            DocumentResource resource = new DocumentResource();
+            resource.readStream = new BufferReadStream(null, Buffer.buffer("content"));
+            resource.closeHandler = nothing -> closed++;
+            handler.handle(resource);
+        }
+
+        @Override
+        public void storageExpand(String path, String etag, List<String> subResources, Handler<Resource> handler) {
+            expands++;
+            handler.handle(new Resource());
+        }
+
+        @Override
+        public void put(String path, String etag, boolean merge, long expire, Handler<Resource> handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void put(String path, String etag, boolean merge, long expire, String lockOwner, LockMode lockMode,
+                        long lockExpire, Handler<Resource> handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void put(String path, String etag, boolean merge, long expire, String lockOwner, LockMode lockMode,
+                        long lockExpire, boolean storeCompressed, Handler<Resource> handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(String path, String lockOwner, LockMode lockMode, long lockExpire,
+                           boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cleanup(Handler<DocumentResource> handler, String cleanupResourcesAmount) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -9,6 +9,7 @@
 package org.swisspush.reststorage.lua;
 
 import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.apache.commons.lang.text.StrSubstitutor;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.runner.RunWith;
@@ -20,6 +21,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -30,6 +33,7 @@ public abstract class AbstractLuaScriptTest {
 
     final static String prefixResources = "rest-storage:resources";
     final static String prefixCollections = "rest-storage:collections";
+    final static String prefixCollectionMarkers = "rest-storage:collection-markers";
     final static String expirableSet = "rest-storage:expirable";
     final static String prefixDeltaResources = "delta:resources";
     final static String prefixDeltaEtags = "delta:etags";
@@ -62,7 +66,20 @@ public abstract class AbstractLuaScriptTest {
         return readScript(scriptFileName, false);
     }
 
+    /**
+     * Reads the script with the functions shared by the scripts included, like RedisStorage does.
+     */
     protected String readScript(String scriptFileName, boolean stripLogNotice) {
+        return includeCommon(readScriptFile(scriptFileName, stripLogNotice), stripLogNotice);
+    }
+
+    protected String includeCommon(String script, boolean stripLogNotice) {
+        Map<String, String> values = new HashMap<>();
+        values.put("common", readScriptFile("common.lua", stripLogNotice));
+        return new StrSubstitutor(values, "--%(", ")").replace(script);
+    }
+
+    protected String readScriptFile(String scriptFileName, boolean stripLogNotice) {
         BufferedReader in = new BufferedReader(new InputStreamReader(this.getClass().getClassLoader().getResourceAsStream(scriptFileName)));
         StringBuilder sb;
         try {
@@ -139,6 +156,7 @@ public abstract class AbstractLuaScriptTest {
                         add(lockMode.text());
                         add(lockExpireInMillis);
                         add(storeCompressed ? "1" : "0");
+                        add(prefixCollectionMarkers);
                     }
                 }
         );
@@ -172,6 +190,8 @@ public abstract class AbstractLuaScriptTest {
                         add("9999999999999");
                         add(offset);
                         add(count);
+                        add("");
+                        add(prefixCollectionMarkers);
                     }
                 }
         );
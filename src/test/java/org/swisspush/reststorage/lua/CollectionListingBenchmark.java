@@ -0,0 +1,123 @@
+package org.swisspush.reststorage.lua;
+
+import org.swisspush.reststorage.JedisFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures the listing of large collections with get.lua. Compares collections stored without collection markers
+ * (type lookup per member) with the same collections after migrating them with redis/migrate-collection-markers.lua.
+ * <p>
+ * Not a unit test, run the main method from the test classpath against a local redis. The database is flushed.
+ */
+public class CollectionListingBenchmark {
+
+    private static final String COLLECTION = ":bench:collection";
+    private static final int ITERATIONS = 20;
+    private static final int SUB_COLLECTION_RATIO = 10;
+    private static final int PAGE_SIZE = 1000;
+
+    public static void main(String[] args) throws IOException {
+        String getScript = readResource("get.lua");
+        String migrateScript = new String(Files.readAllBytes(Paths.get("redis", "migrate-collection-markers.lua")), StandardCharsets.UTF_8);
+
+        try (Jedis jedis = JedisFactory.createJedis()) {
+            String getSha = jedis.scriptLoad(getScript);
+            System.out.println(String.format("%10s %14s %22s %22s %22s %22s", "children", "page", "type lookups [ms]",
+                    "markers [ms]", "type lookups [calls]", "markers [calls]"));
+            for (int children : new int[]{10_000, 100_000}) {
+                jedis.flushAll();
+                fillCollection(jedis, children);
+
+                for (String count : new String[]{"", String.valueOf(PAGE_SIZE)}) {
+                    String offset = count.isEmpty() ? "" : "0";
+                    jedis.del(AbstractLuaScriptTest.prefixCollectionMarkers + COLLECTION);
+                    double withoutMarkers = measure(jedis, getSha, offset, count);
+                    long callsWithoutMarkers = countCalls(jedis, getSha, offset, count);
+
+                    jedis.eval(migrateScript, Collections.singletonList(AbstractLuaScriptTest.prefixCollections + COLLECTION),
+                            Arrays.asList(AbstractLuaScriptTest.prefixCollections, AbstractLuaScriptTest.prefixCollectionMarkers));
+                    double withMarkers = measure(jedis, getSha, offset, count);
+                    long callsWithMarkers = countCalls(jedis, getSha, offset, count);
+
+                    System.out.println(String.format("%10d %14s %22.2f %22.2f %22d %22d", children,
+                            count.isEmpty() ? "all" : count, withoutMarkers, withMarkers, callsWithoutMarkers, callsWithMarkers));
+                }
+            }
+            jedis.flushAll();
+        }
+    }
+
+    /**
+     * Every {@link #SUB_COLLECTION_RATIO}th child is a collection, all others are resources.
+     */
+    private static void fillCollection(Jedis jedis, int children) {
+        Pipeline pipeline = jedis.pipelined();
+        for (int i = 0; i < children; i++) {
+            String name = "child" + i;
+            pipeline.zadd(AbstractLuaScriptTest.prefixCollections + COLLECTION, 9999999999999d, name);
+            if (i % SUB_COLLECTION_RATIO == 0) {
+                pipeline.zadd(AbstractLuaScriptTest.prefixCollections + COLLECTION + ":" + name, 9999999999999d, "resource");
+            } else {
+                pipeline.hset(AbstractLuaScriptTest.prefixResources + COLLECTION + ":" + name, "resource", "{}");
+            }
+        }
+        pipeline.sync();
+    }
+
+    /**
+     * @return the average duration of a listing in milliseconds
+     */
+    private static double measure(Jedis jedis, String getSha, String offset, String count) {
+        evalGet(jedis, getSha, offset, count);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            evalGet(jedis, getSha, offset, count);
+        }
+        return (System.nanoTime() - start) / 1_000_000d / ITERATIONS;
+    }
+
+    /**
+     * @return the number of redis calls made by the script during one listing
+     */
+    private static long countCalls(Jedis jedis, String getSha, String offset, String count) {
+        jedis.configResetStat();
+        evalGet(jedis, getSha, offset, count);
+        long calls = 0;
+        for (String line : jedis.info("commandstats").split("\r\n")) {
+            if (line.startsWith("cmdstat_") && !line.startsWith("cmdstat_evalsha") && !line.startsWith("cmdstat_config")
+                    && !line.startsWith("cmdstat_info")) {
+                calls += Long.parseLong(line.replaceAll(".*calls=(\\d+),.*", "$1"));
+            }
+        }
+        return calls;
+    }
+
+    private static Object evalGet(Jedis jedis, String getSha, String offset, String count) {
+        List<String> args = Arrays.asList(
+                AbstractLuaScriptTest.prefixResources,
+                AbstractLuaScriptTest.prefixCollections,
+                AbstractLuaScriptTest.expirableSet,
+                String.valueOf(System.currentTimeMillis()),
+                "9999999999999",
+                offset,
+                count,
+                "",
+                AbstractLuaScriptTest.prefixCollectionMarkers
+        );
+        return jedis.evalsha(getSha, Collections.singletonList(COLLECTION), args);
+    }
+
+    private static String readResource(String name) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(CollectionListingBenchmark.class.getClassLoader()
+                .getResource(name).getPath())), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,134 @@
+package org.swisspush.reststorage.lua;
+
+import org.swisspush.reststorage.JedisFactory;
+import org.swisspush.reststorage.util.LockMode;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures put.lua depending on the depth of the resource path and the fan-out of its parent collections. Every
+ * resource is written twice: the first put creates its name in the direct parent, the second one leaves the hierarchy
+ * unchanged.
+ * <p>
+ * Not a unit test, run the main method from the test classpath against a local redis. The database is flushed.
+ * To compare with another version of the script, pass its file as argument, e.g. extracted with
+ * <code>git show &lt;commit&gt;:src/main/resources/put.lua &gt; put-before.lua</code>
+ */
+public class PutAncestorsBenchmark {
+
+    private static final int ITERATIONS = 500;
+
+    public static void main(String[] args) throws IOException {
+        String currentScript = readResource("put.lua");
+        String otherScript = args.length > 0 ? new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8) : null;
+
+        try (Jedis jedis = JedisFactory.createJedis()) {
+            System.out.println(String.format("%8s %8s %10s %18s %18s %18s %18s", "depth", "fan-out", "script",
+                    "new member [ms]", "unchanged [ms]", "new [calls]", "unchanged [calls]"));
+            for (int depth : new int[]{2, 4, 8}) {
+                for (int fanOut : new int[]{10, 1000}) {
+                    if (otherScript != null) {
+                        run(jedis, jedis.scriptLoad(otherScript), args[0], depth, fanOut);
+                    }
+                    run(jedis, jedis.scriptLoad(currentScript), "current", depth, fanOut);
+                }
+            }
+            jedis.flushAll();
+        }
+    }
+
+    private static void run(Jedis jedis, String sha, String name, int depth, int fanOut) {
+        jedis.flushAll();
+        String parent = fillHierarchy(jedis, depth, fanOut);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            evalPut(jedis, sha, parent + ":res" + i);
+        }
+        double newMember = (System.nanoTime() - start) / 1_000_000d / ITERATIONS;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            evalPut(jedis, sha, parent + ":res" + i);
+        }
+        double unchanged = (System.nanoTime() - start) / 1_000_000d / ITERATIONS;
+
+        long newCalls = countCalls(jedis, sha, parent + ":other");
+        long unchangedCalls = countCalls(jedis, sha, parent + ":other");
+        System.out.println(String.format("%8d %8d %10s %18.3f %18.3f %18d %18d", depth, fanOut, name, newMember,
+                unchanged, newCalls, unchangedCalls));
+    }
+
+    /**
+     * Creates the ancestors of a resource path with the given depth, every ancestor holding fan-out sibling resources.
+     *
+     * @return the encoded path of the direct parent
+     */
+    private static String fillHierarchy(Jedis jedis, int depth, int fanOut) {
+        Pipeline pipeline = jedis.pipelined();
+        String parent = "";
+        for (int level = 1; level < depth; level++) {
+            String collection = parent + ":level" + level;
+            pipeline.zadd(AbstractLuaScriptTest.prefixCollections + parent, 9999999999999d, "level" + level);
+            for (int i = 0; i < fanOut; i++) {
+                pipeline.zadd(AbstractLuaScriptTest.prefixCollections + parent, 9999999999999d, "sibling" + i);
+                pipeline.hset(AbstractLuaScriptTest.prefixResources + parent + ":sibling" + i, "resource", "{}");
+            }
+            parent = collection;
+        }
+        pipeline.sync();
+        return parent;
+    }
+
+    /**
+     * @return the number of redis calls made by the script during one put
+     */
+    private static long countCalls(Jedis jedis, String sha, String path) {
+        jedis.configResetStat();
+        evalPut(jedis, sha, path);
+        long calls = 0;
+        for (String line : jedis.info("commandstats").split("\r\n")) {
+            if (line.startsWith("cmdstat_") && !line.startsWith("cmdstat_evalsha") && !line.startsWith("cmdstat_config")
+                    && !line.startsWith("cmdstat_info")) {
+                calls += Long.parseLong(line.replaceAll(".*calls=(\\d+),.*", "$1"));
+            }
+        }
+        return calls;
+    }
+
+    private static Object evalPut(Jedis jedis, String sha, String path) {
+        List<String> args = Arrays.asList(
+                AbstractLuaScriptTest.prefixResources,
+                AbstractLuaScriptTest.prefixCollections,
+                AbstractLuaScriptTest.expirableSet,
+                "false",
+                "9999999999999",
+                "9999999999999",
+                "{\"content\": \"benchmark\"}",
+                "etag-" + System.nanoTime(),
+                AbstractLuaScriptTest.prefixLock,
+                "",
+                LockMode.SILENT.text(),
+                "0",
+                "0",
+                AbstractLuaScriptTest.prefixCollectionMarkers,
+                "24",
+                "1",
+                "false",
+                ""
+        );
+        return jedis.evalsha(sha, Collections.singletonList(path), args);
+    }
+
+    private static String readResource(String name) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(PutAncestorsBenchmark.class.getClassLoader()
+                .getResource(name).getPath())), StandardCharsets.UTF_8);
+    }
+}
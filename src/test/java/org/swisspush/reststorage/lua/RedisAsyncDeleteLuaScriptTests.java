@@ -0,0 +1,109 @@
+package org.swisspush.reststorage.lua;
+
+import org.junit.Test;
+import org.swisspush.reststorage.util.LockMode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class RedisAsyncDeleteLuaScriptTests extends AbstractLuaScriptTest {
+
+    private static final String PURGING_KEY = "rest-storage:purging";
+
+    @Test
+    public void smallCollectionIsDeletedAtOnce() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}");
+        evalScriptPut(":project:server:test:test2", "{\"content\": \"test2\"}");
+
+        // ACT
+        Object result = evalScriptDelAsync(":project:server:test", "5");
+
+        // ASSERT
+        assertThat(result, equalTo("deleted"));
+        assertThat(jedis.exists(prefixResources + ":project:server:test:test1"), equalTo(false));
+        assertThat(jedis.exists(PURGING_KEY), equalTo(false));
+    }
+
+    @Test
+    public void largeCollectionIsDetached() {
+
+        // ARRANGE
+        putResources(":project:server:test", 5);
+        evalScriptPut(":project:server:other", "{\"content\": \"other\"}");
+
+        // ACT
+        Object result = evalScriptDelAsync(":project:server:test", "3");
+
+        // ASSERT
+        assertThat(result, equalTo("purging"));
+        assertThat(jedis.hget(PURGING_KEY, ":project:server:test"), equalTo("0"));
+        assertThat(jedis.zrange(prefixCollections + ":project:server", 0, -1), equalTo(Collections.singleton("other")));
+        assertThat(jedis.exists(prefixResources + ":project:server:test:sub:res0"), equalTo(true));
+        assertThat(evalScriptGetAsync(":project:server:test:sub:res0"), equalTo("notFound"));
+        assertThat(evalScriptGetAsync(":project:server:test"), equalTo("notFound"));
+        assertThat(evalScriptPutAsync(":project:server:test:sub:res9"), equalTo("purging"));
+        assertThat(evalScriptDelAsync(":project:server:test:sub:res0", "3"), equalTo("notFound"));
+    }
+
+    @Test
+    public void detachedCollectionIsPurgedInBatches() {
+
+        // ARRANGE
+        putResources(":project:server:test", 5);
+        evalScriptDelAsync(":project:server:test", "3");
+
+        // ACT
+        List<Long> first = evalScriptPurge(":project:server:test", "3");
+        List<Long> second = evalScriptPurge(":project:server:test", "3");
+
+        // ASSERT
+        assertThat(first, equalTo(Arrays.asList(0L, 3L)));
+        assertThat(jedis.hget(PURGING_KEY, ":project:server:test"), equalTo("3"));
+        assertThat(second, equalTo(Arrays.asList(1L, 2L)));
+        assertThat(jedis.exists(PURGING_KEY), equalTo(false));
+        assertThat(jedis.keys(prefixResources + ":project:server:test*").isEmpty(), equalTo(true));
+        assertThat(jedis.keys(prefixCollections + ":project:server:test*").isEmpty(), equalTo(true));
+        assertThat(jedis.exists(expirableSet), equalTo(false));
+        assertThat(evalScriptPutAsync(":project:server:test:sub:res9"), equalTo("OK"));
+    }
+
+    private void putResources(String collection, int count) {
+        for (int i = 0; i < count; i++) {
+            evalScriptPut(collection + ":sub:res" + i, "{\"content\": \"res" + i + "\"}",
+                    String.valueOf(System.currentTimeMillis() + 100000));
+        }
+    }
+
+    private Object evalScriptDelAsync(String resourceName, String threshold) {
+        return jedis.eval(readScript("del.lua"), Collections.singletonList(resourceName), Arrays.asList(
+                prefixResources, prefixCollections, prefixDeltaResources, prefixDeltaEtags, expirableSet,
+                String.valueOf(System.currentTimeMillis()), MAX_EXPIRE, "true", "true", prefixLock, "",
+                LockMode.SILENT.text(), "0", prefixCollectionMarkers, "1", PURGING_KEY, threshold));
+    }
+
+    private Object evalScriptGetAsync(String resourceName) {
+        return jedis.eval(readScript("get.lua"), Collections.singletonList(resourceName), Arrays.asList(
+                prefixResources, prefixCollections, expirableSet, String.valueOf(System.currentTimeMillis()),
+                MAX_EXPIRE, "0", "-1", "", prefixCollectionMarkers, "1", "false", PURGING_KEY));
+    }
+
+    private Object evalScriptPutAsync(String resourceName) {
+        return jedis.eval(readScript("put.lua"), Collections.singletonList(resourceName), Arrays.asList(
+                prefixResources, prefixCollections, expirableSet, "false", MAX_EXPIRE, MAX_EXPIRE, "{}", "etag1",
+                prefixLock, "", LockMode.SILENT.text(), "0", "0", prefixCollectionMarkers, "2", "1", "false",
+                PURGING_KEY));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> evalScriptPurge(String collection, String batchSize) {
+        return (List<Long>) jedis.eval(readScript("purge.lua"), Collections.singletonList(collection), Arrays.asList(
+                prefixResources, prefixCollections, prefixDeltaResources, prefixDeltaEtags, expirableSet, "1",
+                prefixCollectionMarkers, prefixLock, PURGING_KEY, batchSize));
+    }
+}
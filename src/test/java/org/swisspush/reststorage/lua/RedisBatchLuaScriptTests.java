@@ -0,0 +1,90 @@
+package org.swisspush.reststorage.lua;
+
+import org.apache.commons.lang.text.StrSubstitutor;
+import org.junit.Test;
+import org.swisspush.reststorage.util.LockMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class RedisBatchLuaScriptTests extends AbstractLuaScriptTest {
+
+    @Test
+    public void batchExecutesOperationsInOrder() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:old", "{\"content\": \"old\"}");
+        List<String> arguments = new ArrayList<>();
+        addPut(arguments, ":project:server:test:test1", "{\"content\": \"test1\"}");
+        addPut(arguments, ":project:server:test:test2", "{\"content\": \"test2\"}");
+        addDelete(arguments, ":project:server:test:old");
+        addDelete(arguments, ":project:server:test:missing");
+
+        // ACT
+        Object results = evalScriptBatch(arguments);
+
+        // ASSERT
+        assertThat(results, equalTo(Arrays.asList("OK", "OK", "deleted", "notFound")));
+        assertThat(jedis.hget(prefixResources + ":project:server:test:test1", "resource"), equalTo("{\"content\": \"test1\"}"));
+        assertThat(jedis.hget(prefixResources + ":project:server:test:test2", "resource"), equalTo("{\"content\": \"test2\"}"));
+        assertThat(jedis.exists(prefixResources + ":project:server:test:old"), equalTo(false));
+        assertThat(jedis.zrange(prefixCollections + ":project:server:test", 0, -1),
+                equalTo(new LinkedHashSet<>(Arrays.asList("test1", "test2"))));
+    }
+
+    @Test
+    public void batchReportsTheResultOfEveryOperation() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}");
+        List<String> arguments = new ArrayList<>();
+        addPut(arguments, ":project:server:test", "{\"content\": \"collection\"}");
+        addPut(arguments, ":project:server:test:test1:sub", "{\"content\": \"sub\"}");
+        addPut(arguments, ":project:server:other", "{\"content\": \"other\"}");
+
+        // ACT
+        Object results = evalScriptBatch(arguments);
+
+        // ASSERT
+        assertThat(results, equalTo(Arrays.asList("existingCollection",
+                "existingResource " + prefixResources + ":project:server:test:test1", "OK")));
+        assertThat(jedis.exists(prefixResources + ":project:server:other"), equalTo(true));
+    }
+
+    private void addPut(List<String> arguments, String resourceName, String resourceValue) {
+        List<String> putArguments = Arrays.asList(prefixResources, prefixCollections, expirableSet, "false", MAX_EXPIRE,
+                MAX_EXPIRE, resourceValue, "etag1", prefixLock, "", LockMode.SILENT.text(), "0", "0",
+                prefixCollectionMarkers, String.valueOf(resourceValue.length()), "1", "false", "");
+        addOperation(arguments, "PUT", resourceName, putArguments);
+    }
+
+    private void addDelete(List<String> arguments, String resourceName) {
+        List<String> deleteArguments = Arrays.asList(prefixResources, prefixCollections, prefixDeltaResources,
+                prefixDeltaEtags, expirableSet, String.valueOf(System.currentTimeMillis()), MAX_EXPIRE, "false", "false",
+                prefixLock, "", LockMode.SILENT.text(), "0", prefixCollectionMarkers, "1", "", "0");
+        addOperation(arguments, "DELETE", resourceName, deleteArguments);
+    }
+
+    private void addOperation(List<String> arguments, String method, String resourceName, List<String> operationArguments) {
+        arguments.add(method);
+        arguments.add(resourceName);
+        arguments.add(String.valueOf(operationArguments.size()));
+        arguments.addAll(operationArguments);
+    }
+
+    private Object evalScriptBatch(List<String> arguments) {
+        Map<String, String> values = new HashMap<>();
+        values.put("putscript", readScript("put.lua"));
+        values.put("delscript", readScript("del.lua"));
+        StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
+        return jedis.eval(sub.replace(readScript("batch.lua")), Collections.emptyList(), arguments);
+    }
+}
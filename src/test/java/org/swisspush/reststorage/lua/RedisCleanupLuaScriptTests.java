@@ -66,6 +66,28 @@ public class RedisCleanupLuaScriptTests extends AbstractLuaScriptTest {
         assertThat(jedis.exists("rest-storage:resources:project:server:test:test11:test22"), equalTo(true));
     }
 
+    @Test
+    public void cleanupAfterDeleteOfExistingResource() throws InterruptedException {
+
+        // ARRANGE
+        String now = String.valueOf(System.currentTimeMillis());
+        String maxExpire = String.valueOf(MAX_EXPIRE_IN_MILLIS);
+        evalScriptPutNoReturn(":project:server:test:test1:test2", "{\"content\": \"test/test1/test2\"}", now);
+        evalScriptPutNoReturn(":project:server:test:test11:test22", "{\"content\": \"test/test1/test2\"}", maxExpire);
+        Thread.sleep(10);
+
+        // ACT
+        String deleted = evalScriptDel(":project:server:test:test11:test22");
+        Long count = (Long) evalScriptCleanup(0, System.currentTimeMillis());
+
+        // ASSERT
+        assertThat(deleted, equalTo("deleted"));
+        assertThat(count, equalTo(1l));
+        assertThat(jedis.exists("rest-storage:resources:project:server:test:test1:test2"), equalTo(false));
+        assertThat(jedis.exists("rest-storage:resources:project:server:test:test11:test22"), equalTo(false));
+        assertThat(jedis.zcard(expirableSet), equalTo(0l));
+    }
+
     @Test
     public void cleanup15ExpiredAmount30Bulksize10() throws InterruptedException {
 
@@ -188,7 +210,8 @@ public class RedisCleanupLuaScriptTests extends AbstractLuaScriptTest {
     private Object evalScriptCleanup(final long minscore, final long now, final int bulkSize, final boolean stripLogNotice) {
 
         Map<String, String> values = new HashMap<String, String>();
-        values.put("delscript", readScript("del.lua", stripLogNotice).replaceAll("return", "--return"));
+        values.put("delscript", includeCommon(readScriptFile("del.lua", stripLogNotice).replaceAll("return", "--return"),
+                stripLogNotice));
 
         StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
         String cleanupScript = sub.replace(readScript("cleanup.lua", stripLogNotice));
@@ -205,12 +228,41 @@ public class RedisCleanupLuaScriptTests extends AbstractLuaScriptTest {
                         add("true");
                         add(String.valueOf(now));
                         add(String.valueOf(bulkSize));
+                        add(prefixCollectionMarkers);
 
                     }
                 }
         );
     }
 
+    @SuppressWarnings({ "rawtypes", "unchecked", "serial" })
+    private String evalScriptDel(final String resourceName) {
+        String delScript = readScript("del.lua");
+        return (String) jedis.eval(delScript, new ArrayList() {
+                    {
+                        add(resourceName);
+                    }
+                }, new ArrayList() {
+                    {
+                        add(prefixResources);
+                        add(prefixCollections);
+                        add(prefixDeltaResources);
+                        add(prefixDeltaEtags);
+                        add(expirableSet);
+                        add("0");
+                        add(String.valueOf(MAX_EXPIRE_IN_MILLIS));
+                        add("false");
+                        add("false");
+                        add(prefixLock);
+                        add("");
+                        add("");
+                        add("");
+                        add(prefixCollectionMarkers);
+                    }
+                }
+        );
+    }
+
     @SuppressWarnings({ "rawtypes", "unchecked", "serial" })
     private void evalScriptPutNoReturn(final String resourceName, final String resourceValue, final String expire) {
         String putScript = readScript("put.lua", true);
@@ -117,6 +117,30 @@ public class RedisDelLuaScriptTests extends AbstractLuaScriptTest {
         assertThat(jedis.exists("rest-storage:resources:project:server:test:test11:test22"), equalTo(false));
     }
 
+    @Test
+    public void deleteCollectionRemovesCollectionMarkers() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1:test2", "{\"content\": \"test/test1/test2\"}");
+        evalScriptPut(":project:server:test:test11:test22", "{\"content\": \"test/test11/test22\"}");
+
+        // ACT
+        evalScriptDel(":project:server:test:test1", false, false);
+
+        // ASSERT
+        assertThat(jedis.exists("rest-storage:collection-markers:project:server:test:test1"), equalTo(false));
+        assertThat(jedis.sismember("rest-storage:collection-markers:project:server:test", "test1"), equalTo(false));
+        assertThat(jedis.sismember("rest-storage:collection-markers:project:server:test", "test11"), equalTo(true));
+
+        // ACT
+        evalScriptDel(":project:server:test:test11", false, false);
+
+        // ASSERT
+        assertThat(jedis.exists("rest-storage:collection-markers:project:server:test:test11"), equalTo(false));
+        assertThat(jedis.exists("rest-storage:collection-markers:project:server:test"), equalTo(false));
+        assertThat(jedis.exists("rest-storage:collection-markers:project"), equalTo(false));
+    }
+
     @Test
     public void deleteExpiredResourceWithMaxScoreAtMax() throws InterruptedException {
 
@@ -539,6 +563,7 @@ public class RedisDelLuaScriptTests extends AbstractLuaScriptTest {
                         add(lockOwner);
                         add(lockMode.text());
                         add(lockExpireInMillis);
+                        add(prefixCollectionMarkers);
                     }
                 }
         );
@@ -590,6 +615,10 @@ public class RedisDelLuaScriptTests extends AbstractLuaScriptTest {
                         add(confirmCollectionDelete ? "true" : "false");
                         add(deleteRecursive ? "true" : "false");
                         add(prefixLock);
+                        add("");
+                        add("");
+                        add("");
+                        add(prefixCollectionMarkers);
                     }
                 }
         );
@@ -0,0 +1,87 @@
+package org.swisspush.reststorage.lua;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+import org.swisspush.reststorage.util.LockMode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class RedisExpirableBucketsLuaScriptTests extends AbstractLuaScriptTest {
+
+    private static final int BUCKETS = 4;
+
+    @Test
+    public void migrateMovesEntriesToTheirBuckets() {
+
+        // ARRANGE
+        jedis.zadd(expirableSet, 10, prefixResources + ":a");
+        jedis.zadd(expirableSet, 20, prefixResources + ":b");
+        jedis.zadd(expirableSet, 30, prefixResources + ":c");
+
+        // ACT
+        List<Long> firstRun = evalScriptMigrate(2);
+        List<Long> secondRun = evalScriptMigrate(2);
+
+        // ASSERT
+        assertThat(firstRun, equalTo(Arrays.asList(2L, 1L)));
+        assertThat(secondRun, equalTo(Arrays.asList(1L, 0L)));
+        assertThat(jedis.exists(expirableSet), equalTo(false));
+        assertThat(jedis.zscore(bucket(prefixResources + ":a"), prefixResources + ":a"), equalTo(10.0));
+        assertThat(jedis.zscore(bucket(prefixResources + ":b"), prefixResources + ":b"), equalTo(20.0));
+        assertThat(jedis.zscore(bucket(prefixResources + ":c"), prefixResources + ":c"), equalTo(30.0));
+    }
+
+    @Test
+    public void migrateKeepsEntriesWrittenToTheBuckets() {
+
+        // ARRANGE
+        jedis.zadd(expirableSet, 10, prefixResources + ":a");
+        jedis.zadd(bucket(prefixResources + ":a"), 20, prefixResources + ":a");
+
+        // ACT
+        List<Long> result = evalScriptMigrate(100);
+
+        // ASSERT
+        assertThat(result, equalTo(Arrays.asList(0L, 0L)));
+        assertThat(jedis.zscore(bucket(prefixResources + ":a"), prefixResources + ":a"), equalTo(20.0));
+    }
+
+    @Test
+    public void putWritesToTheBucketOfTheResource() {
+
+        // ACT
+        evalScriptPutWithBuckets(":project:server:test:test1", "1000");
+        jedis.zadd(expirableSet, 10, prefixResources + ":project:server:test:test2");
+        evalScriptPutWithBuckets(":project:server:test:test2", MAX_EXPIRE);
+
+        // ASSERT
+        String member = prefixResources + ":project:server:test:test1";
+        assertThat(jedis.zscore(bucket(member), member), equalTo(1000.0));
+        assertThat(jedis.zscore(expirableSet, member), nullValue());
+        assertThat("a not expiring resource is removed from the former single set",
+                jedis.zscore(expirableSet, prefixResources + ":project:server:test:test2"), nullValue());
+    }
+
+    private static String bucket(String member) {
+        return expirableSet + ":" + Long.parseLong(DigestUtils.sha1Hex(member).substring(0, 8), 16) % BUCKETS;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> evalScriptMigrate(int bulkSize) {
+        return (List<Long>) jedis.eval(readScript("migrateExpirable.lua"), Collections.emptyList(),
+                Arrays.asList(expirableSet, String.valueOf(BUCKETS), String.valueOf(bulkSize)));
+    }
+
+    private void evalScriptPutWithBuckets(String resourceName, String expire) {
+        jedis.eval(readScript("put.lua"), Collections.singletonList(resourceName), Arrays.asList(
+                prefixResources, prefixCollections, expirableSet, "false", expire, MAX_EXPIRE, "{}", "etag1",
+                prefixLock, "", LockMode.SILENT.text(), "0", "0", prefixCollectionMarkers, "2",
+                String.valueOf(BUCKETS)));
+    }
+}
@@ -115,8 +115,67 @@ public class RedisGetLuaScriptTests extends AbstractLuaScriptTest {
         assertThat(values.get(1), equalTo("test1:"));
     }
 
+    @Test
+    public void getCollectionWithoutCollectionMarkers() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1:test2", "{\"content\": \"test/test1/test2\"}");
+        evalScriptPut(":project:server:test:test11", "{\"content\": \"test/test11\"}");
+        // collections stored before the collection markers were introduced
+        jedis.del("rest-storage:collection-markers:project:server:test");
+
+        // ACT
+        @SuppressWarnings("unchecked")
+        List<String> values = (List<String>) evalScriptGet(":project:server:test");
+
+        // ASSERT
+        assertThat(values.get(0), equalTo(TYPE_COLLECTION));
+        assertThat(values.get(1), equalTo("test1:"));
+        assertThat(values.get(2), equalTo("test11"));
+    }
+
+    @Test
+    public void getCollectionWithMoreCollectionMarkersThanMembers() {
+
+        // ARRANGE
+        for (int i = 1; i <= 5; i++) {
+            evalScriptPut(":project:server:test:test" + i + ":test", "{\"content\": \"test/test" + i + "/test\"}");
+        }
+        evalScriptPut(":project:server:test:test6", "{\"content\": \"test/test6\"}");
+
+        // ACT
+        @SuppressWarnings("unchecked")
+        List<String> values = (List<String>) evalScriptGetOffsetCount(":project:server:test", "4", "2");
+
+        // ASSERT
+        assertThat(values.size(), equalTo(3));
+        assertThat(values.get(0), equalTo(TYPE_COLLECTION));
+        assertThat(values.get(1), equalTo("test5:"));
+        assertThat(values.get(2), equalTo("test6"));
+    }
+
     // EXPIRATION
 
+    @Test
+    public void getResourceReturnsExpiration() {
+
+        // ARRANGE
+        String expiration = String.valueOf(System.currentTimeMillis() + 60000);
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test/test1\"}", expiration);
+        evalScriptPut(":project:server:test:test2", "{\"content\": \"test/test2\"}");
+
+        // ACT
+        @SuppressWarnings("unchecked")
+        List<String> valuesTest1 = (List<String>) evalScriptGet(":project:server:test:test1");
+        @SuppressWarnings("unchecked")
+        List<String> valuesTest2 = (List<String>) evalScriptGet(":project:server:test:test2");
+
+        // ASSERT
+        assertThat(valuesTest1.size(), equalTo(5));
+        assertThat(valuesTest1.get(4), equalTo(expiration));
+        assertThat(valuesTest2.size(), equalTo(4));
+    }
+
     @Test
     public void getResourcePathDepthIs3ParentOfResourceIsExpired() throws InterruptedException {
 
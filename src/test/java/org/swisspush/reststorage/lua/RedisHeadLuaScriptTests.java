@@ -0,0 +1,186 @@
+package org.swisspush.reststorage.lua;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class RedisHeadLuaScriptTests extends AbstractLuaScriptTest {
+
+    @Test
+    public void headResource() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}", MAX_EXPIRE, "etag1");
+        jedis.hset(prefixResources + ":project:server:test:test1", "length", "42");
+
+        // ACT
+        @SuppressWarnings("unchecked")
+        List<String> values = (List<String>) evalScriptHead(":project:server:test:test1", "");
+
+        // ASSERT
+        assertThat(values.size(), equalTo(4));
+        assertThat(values.get(0), equalTo("TYPE_RESOURCE"));
+        assertThat(values.get(1), equalTo("etag1"));
+        assertThat(values.get(2), nullValue());
+        assertThat(values.get(3), equalTo("42"));
+    }
+
+    @Test
+    public void headResourceWithoutStoredLength() {
+
+        // ARRANGE -> two content bytes above 127, sent as utf-8 encoded latin-1 chars
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"\u00c3\u00bc\"}");
+
+        // ACT
+        @SuppressWarnings("unchecked")
+        List<String> values = (List<String>) evalScriptHead(":project:server:test:test1", "");
+
+        // ASSERT
+        assertThat(values.get(3), equalTo("17"));
+    }
+
+    @Test
+    public void headCompressedResourceWithoutStoredLength() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "compressed", MAX_EXPIRE, "etag1", true);
+
+        // ACT
+        @SuppressWarnings("unchecked")
+        List<String> values = (List<String>) evalScriptHead(":project:server:test:test1", "");
+
+        // ASSERT
+        assertThat(values.get(0), equalTo("TYPE_RESOURCE"));
+        assertThat(values.get(2), equalTo("1"));
+        assertThat(values.get(3), nullValue());
+    }
+
+    @Test
+    public void headCompressedResourceAcceptingGzip() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "compressed", MAX_EXPIRE, "etag1", true);
+
+        // ACT
+        @SuppressWarnings("unchecked")
+        List<String> values = (List<String>) evalScriptHead(":project:server:test:test1", "", true);
+
+        // ASSERT
+        assertThat(values.get(0), equalTo("TYPE_RESOURCE"));
+        assertThat(values.get(2), equalTo("1"));
+        assertThat(values.get(3), equalTo("10"));
+    }
+
+    @Test
+    public void headUncompressedResourceAcceptingGzip() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}", MAX_EXPIRE, "etag1");
+
+        // ACT
+        @SuppressWarnings("unchecked")
+        List<String> values = (List<String>) evalScriptHead(":project:server:test:test1", "", true);
+
+        // ASSERT
+        assertThat(values.get(2), nullValue());
+        assertThat(values.get(3), equalTo("20"));
+    }
+
+    @Test
+    public void headResourceNotModified() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}", MAX_EXPIRE, "etag1");
+
+        // ACT
+        Object value = evalScriptHead(":project:server:test:test1", "etag1");
+
+        // ASSERT
+        assertThat(value, equalTo("notModified"));
+    }
+
+    @Test
+    public void headExpiredResource() throws InterruptedException {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}", getNowAsString());
+        Thread.sleep(10);
+
+        // ACT
+        Object value = evalScriptHead(":project:server:test:test1", "");
+
+        // ASSERT
+        assertThat(value, equalTo("notFound"));
+    }
+
+    @Test
+    public void headCollection() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}");
+
+        // ACT
+        @SuppressWarnings("unchecked")
+        List<String> values = (List<String>) evalScriptHead(":project:server:test", "");
+
+        // ASSERT
+        assertThat(values.size(), equalTo(1));
+        assertThat(values.get(0), equalTo("TYPE_COLLECTION"));
+    }
+
+    @Test
+    public void headCollectionWithExpiredMembersOnly() throws InterruptedException {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}", String.valueOf(System.currentTimeMillis()));
+        Thread.sleep(10);
+
+        // ACT
+        Object value = evalScriptHead(":project:server:test", "");
+
+        // ASSERT
+        assertThat(value, equalTo("notFound"));
+    }
+
+    @Test
+    public void headNotExisting() {
+
+        // ACT
+        Object value = evalScriptHead(":project:server:test", "");
+
+        // ASSERT
+        assertThat(value, equalTo("notFound"));
+    }
+
+    private Object evalScriptHead(final String resourceName, final String etag) {
+        return evalScriptHead(resourceName, etag, false);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked", "serial"})
+    private Object evalScriptHead(final String resourceName, final String etag, final boolean acceptGzip) {
+        String headScript = readScript("head.lua");
+        return jedis.eval(headScript, new ArrayList() {
+                    {
+                        add(resourceName);
+                    }
+                }, new ArrayList() {
+                    {
+                        add(prefixResources);
+                        add(prefixCollections);
+                        add(expirableSet);
+                        add(String.valueOf(System.currentTimeMillis()));
+                        add(etag);
+                        add("1");
+                        add("false");
+                        add("");
+                        add(String.valueOf(acceptGzip));
+                    }
+                }
+        );
+    }
+}
@@ -0,0 +1,78 @@
+package org.swisspush.reststorage.lua;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RedisLeaseLuaScriptTests extends AbstractLuaScriptTest {
+
+    private static final String LEASE_KEY = "rest-storage:leader";
+
+    @Test
+    public void acquireFreeLease() {
+
+        // ACT
+        List<String> values = evalScriptLease("instance1", 10000, "0.0");
+
+        // ASSERT
+        assertThat(values, equalTo(Arrays.asList("instance1", "0.0")));
+        assertThat(jedis.get(LEASE_KEY), equalTo("instance1"));
+        assertTrue(jedis.pttl(LEASE_KEY) > 9000);
+    }
+
+    @Test
+    public void renewOwnLease() {
+
+        // ARRANGE
+        evalScriptLease("instance1", 1000, "0.0");
+
+        // ACT
+        List<String> values = evalScriptLease("instance1", 10000, "42.5");
+
+        // ASSERT
+        assertThat(values, equalTo(Arrays.asList("instance1", "42.5")));
+        assertTrue(jedis.pttl(LEASE_KEY) > 9000);
+    }
+
+    @Test
+    public void leaseHeldByOtherInstance() {
+
+        // ARRANGE
+        evalScriptLease("instance1", 10000, "42.5");
+
+        // ACT
+        List<String> values = evalScriptLease("instance2", 10000, "0.0");
+
+        // ASSERT
+        assertThat(values, equalTo(Arrays.asList("instance1", "42.5")));
+        assertThat(jedis.get(LEASE_KEY), equalTo("instance1"));
+    }
+
+    @Test
+    public void takeOverExpiredLease() throws InterruptedException {
+
+        // ARRANGE
+        evalScriptLease("instance1", 5, "42.5");
+        Thread.sleep(10);
+
+        // ACT
+        List<String> values = evalScriptLease("instance2", 10000, "0.0");
+
+        // ASSERT
+        assertThat(values, equalTo(Arrays.asList("instance2", "0.0")));
+        assertThat(jedis.get(LEASE_KEY), equalTo("instance2"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> evalScriptLease(String instance, long leaseMs, String throughput) {
+        String leaseScript = readScript("lease.lua");
+        return (List<String>) jedis.eval(leaseScript, Collections.singletonList(LEASE_KEY),
+                Arrays.asList(instance, String.valueOf(leaseMs), throughput));
+    }
+}
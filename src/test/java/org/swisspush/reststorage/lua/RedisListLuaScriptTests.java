@@ -0,0 +1,181 @@
+package org.swisspush.reststorage.lua;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.junit.Assert.assertThat;
+
+public class RedisListLuaScriptTests extends AbstractLuaScriptTest {
+
+    @Test
+    public void listNotExistingCollection() {
+
+        // ACT
+        Object value = evalScriptList(":project:server:test", "", "", "10");
+
+        // ASSERT
+        assertThat(value, equalTo("notFound"));
+    }
+
+    @Test
+    public void listResourceIsNotFound() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}");
+
+        // ACT
+        Object value = evalScriptList(":project:server:test:test1", "", "", "10");
+
+        // ASSERT
+        assertThat(value, equalTo("notFound"));
+    }
+
+    @Test
+    public void listCollectionInChunks() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1:test2", "{\"content\": \"test/test1/test2\"}");
+        evalScriptPut(":project:server:test:test3", "{\"content\": \"test/test3\"}");
+        evalScriptPut(":project:server:test:test4", "{\"content\": \"test/test4\"}");
+
+        // ACT
+        List<String> chunk1 = (List<String>) evalScriptList(":project:server:test", "", "", "2");
+        List<String> chunk2 = (List<String>) evalScriptList(":project:server:test", chunk1.get(1), chunk1.get(0), "2");
+
+        // ASSERT
+        assertThat(chunk1.size(), equalTo(4));
+        assertThat(chunk1.get(0), equalTo(MAX_EXPIRE));
+        assertThat(chunk1.get(1), equalTo("test3"));
+        assertThat(chunk2.size(), equalTo(3));
+        assertThat(chunk2.get(0), equalTo(""));
+        assertThat(chunk2.get(1), equalTo(""));
+
+        List<String> members = new ArrayList<>(chunk1.subList(2, chunk1.size()));
+        members.addAll(chunk2.subList(2, chunk2.size()));
+        assertThat(members, equalTo(Arrays.asList("test1:", "test3", "test4")));
+    }
+
+    @Test
+    public void listCollectionWithoutLimit() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test/test1\"}");
+        evalScriptPut(":project:server:test:test2", "{\"content\": \"test/test2\"}");
+
+        // ACT
+        List<String> chunk = (List<String>) evalScriptList(":project:server:test", "", "", "-1");
+
+        // ASSERT
+        assertThat(chunk, equalTo(Arrays.asList("", "", "test1", "test2")));
+    }
+
+    @Test
+    public void listCollectionIsStableWhileMembersAreAdded() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test2", "{\"content\": \"test/test2\"}");
+        evalScriptPut(":project:server:test:test4", "{\"content\": \"test/test4\"}");
+        evalScriptPut(":project:server:test:test6", "{\"content\": \"test/test6\"}");
+        List<String> chunk1 = (List<String>) evalScriptList(":project:server:test", "", "", "2");
+
+        // ACT -> a member is added before the cursor
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test/test1\"}");
+        List<String> chunk2 = (List<String>) evalScriptList(":project:server:test", chunk1.get(1), chunk1.get(0), "2");
+
+        // ASSERT -> no member is listed twice
+        assertThat(chunk1.subList(2, chunk1.size()), equalTo(Arrays.asList("test2", "test4")));
+        assertThat(chunk2.subList(2, chunk2.size()), equalTo(Arrays.asList("test6")));
+    }
+
+    @Test
+    public void listCollectionAfterRemovedCursorMember() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test/test1\"}");
+        evalScriptPut(":project:server:test:test2", "{\"content\": \"test/test2\"}");
+        evalScriptPut(":project:server:test:test3", "{\"content\": \"test/test3\"}");
+        List<String> chunk1 = (List<String>) evalScriptList(":project:server:test", "", "", "2");
+
+        // ACT -> the cursor member is removed
+        jedis.zrem(prefixCollections + ":project:server:test", "test2");
+        List<String> chunk2 = (List<String>) evalScriptList(":project:server:test", chunk1.get(1), chunk1.get(0), "2");
+
+        // ASSERT
+        assertThat(chunk1.get(1), equalTo("test2"));
+        assertThat(chunk2, equalTo(Arrays.asList("", "", "test3")));
+    }
+
+    @Test
+    public void listCollectionAfterRemovedCursorMemberWithinEqualScores() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test0", "{\"content\": \"test/test0\"}", String.valueOf(System.currentTimeMillis() + 100000));
+        for (int i = 1; i <= 6; i++) {
+            evalScriptPut(":project:server:test:test" + i, "{\"content\": \"test/test" + i + "\"}");
+        }
+        List<String> chunk1 = (List<String>) evalScriptList(":project:server:test", "", "", "4");
+
+        // ACT -> the cursor member is removed
+        jedis.zrem(prefixCollections + ":project:server:test", "test3");
+        List<String> chunk2 = (List<String>) evalScriptList(":project:server:test", chunk1.get(1), chunk1.get(0), "2");
+
+        // ASSERT
+        assertThat(chunk1.get(1), equalTo("test3"));
+        assertThat(chunk2.subList(2, chunk2.size()), equalTo(Arrays.asList("test4", "test5")));
+    }
+
+    @Test
+    public void listCollectionMarksSubCollections() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1:test2", "{\"content\": \"test/test1/test2\"}");
+        evalScriptPut(":project:server:test:test3", "{\"content\": \"test/test3\"}");
+
+        // ACT
+        List<String> chunk = (List<String>) evalScriptList(":project:server:test", "", "", "10");
+
+        // ASSERT
+        assertThat(chunk.subList(2, chunk.size()), hasItems("test1:", "test3"));
+    }
+
+    @Test
+    public void listCollectionSkipsExpiredMembers() throws InterruptedException {
+
+        // ARRANGE
+        String now = String.valueOf(System.currentTimeMillis());
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test/test1\"}", now);
+        evalScriptPut(":project:server:test:test2", "{\"content\": \"test/test2\"}");
+        Thread.sleep(10);
+
+        // ACT
+        List<String> chunk = (List<String>) evalScriptList(":project:server:test", "", "", "10");
+
+        // ASSERT
+        assertThat(chunk, equalTo(Arrays.asList("", "", "test2")));
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked", "serial"})
+    private Object evalScriptList(final String collectionName, final String afterMember, final String afterScore, final String count) {
+        String listScript = readScript("list.lua");
+        return jedis.eval(listScript, new ArrayList() {
+                    {
+                        add(collectionName);
+                    }
+                }, new ArrayList() {
+                    {
+                        add(prefixCollections);
+                        add(String.valueOf(System.currentTimeMillis()));
+                        add(afterMember);
+                        add(afterScore);
+                        add(count);
+                        add(prefixCollectionMarkers);
+                    }
+                }
+        );
+    }
+}
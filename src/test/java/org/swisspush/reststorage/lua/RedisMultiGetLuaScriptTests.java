@@ -0,0 +1,91 @@
+package org.swisspush.reststorage.lua;
+
+import org.apache.commons.lang.text.StrSubstitutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class RedisMultiGetLuaScriptTests extends AbstractLuaScriptTest {
+
+    @Test
+    public void multiGetReturnsResourcesOfDifferentCollections() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}");
+        evalScriptPut(":project:other:sub:test2", "{\"content\": \"test2\"}");
+
+        // ACT
+        List<Object> results = evalScriptMultiGet(Arrays.asList(":project:server:test:test1",
+                ":project:other:sub:test2", ":project:other", ":project:missing"), Arrays.asList("", "", "", ""));
+
+        // ASSERT
+        assertThat(((List) results.get(0)).get(1), equalTo("{\"content\": \"test1\"}"));
+        assertThat(((List) results.get(1)).get(1), equalTo("{\"content\": \"test2\"}"));
+        assertThat(results.get(2), equalTo(Arrays.asList("TYPE_COLLECTION", "sub:")));
+        assertThat(results.get(3), equalTo("notFound"));
+    }
+
+    @Test
+    public void multiGetSkipsUnchangedResources() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}");
+        evalScriptPut(":project:server:test:test2", "{\"content\": \"test2\"}");
+        String etag1 = jedis.hget(prefixResources + ":project:server:test:test1", "etag");
+
+        // ACT
+        List<Object> results = evalScriptMultiGet(Arrays.asList(":project:server:test:test1",
+                ":project:server:test:test2"), Arrays.asList(etag1, "outdated"));
+
+        // ASSERT
+        assertThat(results.get(0), equalTo("notModified"));
+        assertThat(((List) results.get(1)).get(1), equalTo("{\"content\": \"test2\"}"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void multiGetPagesCollectionsByOwnOffsetAndLimit() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}");
+        evalScriptPut(":project:server:test:test2", "{\"content\": \"test2\"}");
+        evalScriptPut(":project:server:test:test3", "{\"content\": \"test3\"}");
+
+        // ACT
+        Map<String, String> values = new HashMap<>();
+        values.put("getscript", readScript("get.lua"));
+        StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
+        List<String> arguments = new ArrayList<>(Arrays.asList(prefixResources, prefixCollections, expirableSet,
+                String.valueOf(System.currentTimeMillis()), MAX_EXPIRE, "-1", "-1", "", prefixCollectionMarkers, "1",
+                "false", "", "1", "1", "", "-1", "-1", ""));
+        List<Object> results = (List<Object>) jedis.eval(sub.replace(readScript("multiget.lua")),
+                Arrays.asList(":project:server:test", ":project:server:test"), arguments);
+
+        // ASSERT
+        assertThat(results.get(0), equalTo(Arrays.asList("TYPE_COLLECTION", "test2")));
+        assertThat(results.get(1), equalTo(Arrays.asList("TYPE_COLLECTION", "test1", "test2", "test3")));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> evalScriptMultiGet(List<String> keys, List<String> etags) {
+        Map<String, String> values = new HashMap<>();
+        values.put("getscript", readScript("get.lua"));
+        StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
+        List<String> arguments = new ArrayList<>(Arrays.asList(prefixResources, prefixCollections, expirableSet,
+                String.valueOf(System.currentTimeMillis()), MAX_EXPIRE, "-1", "-1", "", prefixCollectionMarkers, "1",
+                "false", ""));
+        for (String etag : etags) {
+            arguments.add("-1");
+            arguments.add("-1");
+            arguments.add(etag);
+        }
+        return (List<Object>) jedis.eval(sub.replace(readScript("multiget.lua")), keys, arguments);
+    }
+}
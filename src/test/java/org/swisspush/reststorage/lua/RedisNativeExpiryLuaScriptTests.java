@@ -0,0 +1,105 @@
+package org.swisspush.reststorage.lua;
+
+import org.junit.Test;
+import org.swisspush.reststorage.util.LockMode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RedisNativeExpiryLuaScriptTests extends AbstractLuaScriptTest {
+
+    @Test
+    public void putSetsTheTtlOfTheResource() {
+
+        // ACT
+        evalScriptPutNative(":project:server:test:test1", String.valueOf(System.currentTimeMillis() + 10000));
+
+        // ASSERT
+        assertTrue(jedis.pttl(prefixResources + ":project:server:test:test1") > 9000);
+        assertThat(jedis.exists(expirableSet), equalTo(false));
+    }
+
+    @Test
+    public void putWithoutExpirationRemovesTheTtl() {
+
+        // ARRANGE
+        evalScriptPutNative(":project:server:test:test1", String.valueOf(System.currentTimeMillis() + 10000));
+
+        // ACT
+        evalScriptPutNative(":project:server:test:test1", MAX_EXPIRE);
+
+        // ASSERT
+        assertThat(jedis.pttl(prefixResources + ":project:server:test:test1"), equalTo(-1L));
+    }
+
+    @Test
+    public void expiredResourceIsRemovedFromItsCollections() throws InterruptedException {
+
+        // ARRANGE
+        evalScriptPutNative(":project:server:test:test1", String.valueOf(System.currentTimeMillis() + 5));
+        evalScriptPutNative(":project:server:other", MAX_EXPIRE);
+        Thread.sleep(20);
+
+        // ACT
+        Object removed = evalScriptExpired(":project:server:test:test1");
+
+        // ASSERT
+        assertThat(removed, equalTo(2L));
+        assertThat(jedis.exists(prefixCollections + ":project:server:test"), equalTo(false));
+        assertThat(jedis.zrange(prefixCollections + ":project:server", 0, -1), equalTo(Collections.singleton("other")));
+    }
+
+    @Test
+    public void resourceWrittenAgainIsNotRemoved() {
+
+        // ARRANGE
+        evalScriptPutNative(":project:server:test:test1", MAX_EXPIRE);
+
+        // ACT
+        Object result = evalScriptExpired(":project:server:test:test1");
+
+        // ASSERT
+        assertThat(result, equalTo(0L));
+        assertThat(jedis.zrange(prefixCollections + ":project:server:test", 0, -1), equalTo(Collections.singleton("test1")));
+    }
+
+    @Test
+    public void resourceExpiredBeforeNativeExpiryWasEnabledIsNotFound() throws InterruptedException {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{}", String.valueOf(System.currentTimeMillis() + 5));
+        evalScriptPut(":project:server:test:test2", "{}", String.valueOf(System.currentTimeMillis() + 10000));
+        Thread.sleep(20);
+
+        // ACT
+        Object expired = evalScriptGetNative(":project:server:test:test1");
+        Object valid = evalScriptGetNative(":project:server:test:test2");
+
+        // ASSERT
+        assertThat(expired, equalTo("notFound"));
+        assertThat(((List) valid).get(0), equalTo("TYPE_RESOURCE"));
+    }
+
+    private Object evalScriptGetNative(String resourceName) {
+        return jedis.eval(readScript("get.lua"), Collections.singletonList(resourceName), Arrays.asList(
+                prefixResources, prefixCollections, expirableSet, String.valueOf(System.currentTimeMillis()), MAX_EXPIRE,
+                "", "", "", prefixCollectionMarkers, "1", "true"));
+    }
+
+    private void evalScriptPutNative(String resourceName, String expire) {
+        jedis.eval(readScript("put.lua"), Collections.singletonList(resourceName), Arrays.asList(
+                prefixResources, prefixCollections, expirableSet, "false", expire, MAX_EXPIRE, "{}", "etag1",
+                prefixLock, "", LockMode.SILENT.text(), "0", "0", prefixCollectionMarkers, "2", "1", "true"));
+    }
+
+    private Object evalScriptExpired(String resourceName) {
+        return jedis.eval(readScript("expired.lua"), Collections.singletonList(resourceName), Arrays.asList(
+                prefixResources, prefixCollections, prefixDeltaResources, prefixDeltaEtags, expirableSet, "1",
+                prefixCollectionMarkers));
+    }
+}
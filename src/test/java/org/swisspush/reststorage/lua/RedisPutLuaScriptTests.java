@@ -5,6 +5,9 @@ import org.junit.Test;
 import org.swisspush.reststorage.util.LockMode;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
 
@@ -50,6 +53,65 @@ public class RedisPutLuaScriptTests extends AbstractLuaScriptTest {
         assertThat(jedis.hget("rest-storage:resources:project:server:test:test1:test2", RESOURCE), equalTo("{\"content\": \"test/test1/test2\"}"));
     }
 
+    @Test
+    public void putStopsClimbingAtUpToDateAncestor() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}");
+        jedis.zadd("rest-storage:collections", 1d, "project");
+
+        // ACT
+        evalScriptPut(":project:server:test:test2", "{\"content\": \"test2\"}");
+
+        // ASSERT -> the parent of test2 records the same expiration for test, the ancestors above are not touched
+        assertThat(jedis.zscore("rest-storage:collections:project:server:test", "test2"), equalTo(9999999999999d));
+        assertThat(jedis.zscore("rest-storage:collections", "project"), equalTo(1d));
+    }
+
+    @Test
+    public void putRaisesExpirationOfAncestors() {
+
+        // ARRANGE
+        String expire = String.valueOf(System.currentTimeMillis() + 100000);
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}", expire);
+
+        // ACT
+        evalScriptPut(":project:server:test:test2", "{\"content\": \"test2\"}");
+
+        // ASSERT
+        assertThat(jedis.zscore("rest-storage:collections:project:server:test", "test1"), equalTo(Double.valueOf(expire)));
+        assertThat(jedis.zscore("rest-storage:collections:project:server", "test"), equalTo(9999999999999d));
+        assertThat(jedis.zscore("rest-storage:collections:project", "server"), equalTo(9999999999999d));
+        assertThat(jedis.zscore("rest-storage:collections", "project"), equalTo(9999999999999d));
+    }
+
+    @Test
+    public void putLowersTheExpirationOfTheResource() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}");
+        String expire = String.valueOf(System.currentTimeMillis() + 100000);
+
+        // ACT
+        evalScriptPut(":project:server:test:test1", "{\"content\": \"test1\"}", expire);
+
+        // ASSERT
+        assertThat(jedis.zscore("rest-storage:collections:project:server:test", "test1"), equalTo(Double.valueOf(expire)));
+    }
+
+    @Test
+    public void putResourceWritesCollectionMarkers() {
+
+        // ACT
+        evalScriptPut(":project:server:test:test1:test2", "{\"content\": \"test/test1/test2\"}");
+        evalScriptPut(":project:server:test:test11", "{\"content\": \"test/test11\"}");
+
+        // ASSERT
+        assertThat(jedis.smembers("rest-storage:collection-markers:project:server"), equalTo(new HashSet<>(Arrays.asList("", "test"))));
+        assertThat(jedis.smembers("rest-storage:collection-markers:project:server:test"), equalTo(new HashSet<>(Arrays.asList("", "test1"))));
+        assertThat(jedis.smembers("rest-storage:collection-markers:project:server:test:test1"), equalTo(new HashSet<>(Collections.singletonList(""))));
+    }
+
     @Test
     public void putResourcePathDepthIs3WithSiblingsFolderAndDocument() {
 
@@ -89,6 +151,37 @@ public class RedisPutLuaScriptTests extends AbstractLuaScriptTest {
         assertThat(obj.getString("content"), equalTo("test_test1_test3"));
     }
 
+    @Test
+    public void putResourceMergeOnExistingUpdatesLength() {
+
+        // ACT
+        evalScriptPut(":project:server:test:test1:test2", "{\"content\": \"test\"}");
+        evalScriptPutMerge(":project:server:test:test1:test2", "{\"other\": \"\u00c3\u00bc\"}");
+
+        // ASSERT -> the two chars of the merged value are stored as four bytes, but count as two content bytes
+        String result = jedis.hget("rest-storage:resources:project:server:test:test1:test2", RESOURCE);
+        String length = jedis.hget("rest-storage:resources:project:server:test:test1:test2", "length");
+        assertThat(length, equalTo(String.valueOf(result.length())));
+    }
+
+    @Test
+    public void putResourceCompareAndSet() {
+
+        // ACT
+        Object createdValue = evalScriptPutCompareAndSet(":project:server:test:cas", "{\"content\": \"v1\"}", "etag1", "");
+        Object conflictValue = evalScriptPutCompareAndSet(":project:server:test:cas", "{\"content\": \"v2\"}", "etag2", "");
+        Object outdatedValue = evalScriptPutCompareAndSet(":project:server:test:cas", "{\"content\": \"v2\"}", "etag2", "etag0");
+        Object updatedValue = evalScriptPutCompareAndSet(":project:server:test:cas", "{\"content\": \"v2\"}", "etag2", "etag1");
+
+        // ASSERT
+        assertThat(createdValue, equalTo("OK"));
+        assertThat(conflictValue, equalTo("conflict"));
+        assertThat(outdatedValue, equalTo("conflict"));
+        assertThat(updatedValue, equalTo("OK"));
+        assertThat(jedis.hget("rest-storage:resources:project:server:test:cas", RESOURCE), equalTo("{\"content\": \"v2\"}"));
+        assertThat(jedis.hget("rest-storage:resources:project:server:test:cas", "etag"), equalTo("etag2"));
+    }
+
     @Test
     public void testStoreCompressedAndUnCompressedWithSameEtagValue() {
 
@@ -350,6 +443,13 @@ public class RedisPutLuaScriptTests extends AbstractLuaScriptTest {
         );
     }
 
+    private Object evalScriptPutCompareAndSet(String resourceName, String resourceValue, String etag, String expectedEtag) {
+        return jedis.eval(readScript("put.lua"), Collections.singletonList(resourceName), Arrays.asList(prefixResources,
+                prefixCollections, expirableSet, "false", MAX_EXPIRE, MAX_EXPIRE, resourceValue, etag, prefixLock, "",
+                LockMode.SILENT.text(), "0", "0", prefixCollectionMarkers, String.valueOf(resourceValue.length()), "1",
+                "false", "", "true", expectedEtag));
+    }
+
     @Test
     public void putResourceWithSilentLockDifferentEtag() {
         // ARRANGE
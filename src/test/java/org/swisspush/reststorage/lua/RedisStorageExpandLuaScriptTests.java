@@ -10,13 +10,13 @@ package org.swisspush.reststorage.lua;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
-import io.vertx.core.json.JsonArray;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 
@@ -123,7 +123,7 @@ public class RedisStorageExpandLuaScriptTests extends AbstractLuaScriptTest {
         // ASSERT
         assertThat(value.size(), equalTo(1));
         assertThat(value.get(0).get(0), equalTo("sub"));
-        assertThat(value.get(0).get(1), equalTo("[\"othersubsub\\/\",\"subsub\\/\"]"));
+        assertThat(value.get(0).get(1), equalTo("[\"othersubsub/\",\"subsub/\"]"));
 
         // ACT
         subResources = Arrays.asList("subsub/");
@@ -276,14 +276,16 @@ public class RedisStorageExpandLuaScriptTests extends AbstractLuaScriptTest {
     public void testStorageExpandCompressedDataInCollection() {
 
         // ARRANGE
-        evalScriptPut(":project:server:test:item1", "{\"content\": \"content_1\"}", AbstractLuaScriptTest.MAX_EXPIRE, "etag1", true);
+        evalScriptPut(":project:server:test:item1", "compressed_1", AbstractLuaScriptTest.MAX_EXPIRE, "etag1", true);
 
         // ACT
         List<String> subResources = Arrays.asList("item1");
-        String value = (String) evalScriptStorageExpand(":project:server:test", subResources);
+        List<Object> values = evalScriptStorageExpandRawValues(":project:server:test", subResources);
 
-        // ASSERT
-        assertThat(value, equalTo("compressionNotSupported"));
+        // ASSERT -> compressed content is wrapped into an array
+        assertThat(values.size(), equalTo(3));
+        assertThat(values.get(1), equalTo("item1"));
+        assertThat(values.get(2), equalTo(Arrays.asList("compressed_1")));
     }
 
     @Test
@@ -296,30 +298,154 @@ public class RedisStorageExpandLuaScriptTests extends AbstractLuaScriptTest {
 
         // ACT
         List<String> subResources = Arrays.asList("item2", "item1", "item3");
-        String value = (String) evalScriptStorageExpand(":project:server:test", subResources);
+        List<Object> values = evalScriptStorageExpandRawValues(":project:server:test", subResources);
+
+        // ASSERT
+        assertThat(values.subList(1, values.size()), equalTo(Arrays.<Object>asList(
+                "item2", Arrays.asList("{\"content\": \"content_2\"}"),
+                "item1", "{\"content\": \"content_1\"}",
+                "item3", "{\"content\": \"content_3\"}")));
+    }
+
+    @Test
+    public void testStorageExpandEtag() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:item1", "{\"content\": \"content_1\"}", MAX_EXPIRE, "etag1");
+        evalScriptPut(":project:server:test:item2", "{\"content\": \"content_2\"}", MAX_EXPIRE, "etag2");
+        evalScriptPut(":project:server:test:sub:sub1", "{\"content\": \"content_sub_1\"}");
+        List<String> subResources = Arrays.asList("sub/", "item1", "item2");
+
+        // ACT
+        List<String> values = evalScriptStorageExpandValues(":project:server:test", subResources, "");
+        List<String> valuesAgain = evalScriptStorageExpandValues(":project:server:test", subResources, "");
 
         // ASSERT
-        assertThat(value, equalTo("compressionNotSupported"));
+        assertThat(valuesAgain.get(0), equalTo(values.get(0)));
 
         // ACT
-        List<String> subResources2 = Arrays.asList("item1", "item3");
-        List<List<String>> value2 = evalScriptStorageExpandAndExtract(":project:server:test", subResources2);
+        Object notModified = evalScriptStorageExpand(":project:server:test", subResources, getNowAsString(), values.get(0));
 
         // ASSERT
-        assertThat(value2.size(), equalTo(2));
-        assertThat(value2.get(0).get(0), equalTo("item1"));
-        assertThat(value2.get(0).get(1), equalTo("{\"content\": \"content_1\"}"));
-        assertThat(value2.get(1).get(0), equalTo("item3"));
-        assertThat(value2.get(1).get(1), equalTo("{\"content\": \"content_3\"}"));
+        assertThat(notModified, equalTo("notModified"));
+
+        // ACT
+        evalScriptPut(":project:server:test:item2", "{\"content\": \"content_2\"}", MAX_EXPIRE, "etag2b");
+        List<String> changedValues = evalScriptStorageExpandValues(":project:server:test", subResources, values.get(0));
+
+        // ASSERT
+        assertThat(changedValues.get(0), not(equalTo(values.get(0))));
+    }
+
+    @Test
+    public void testStorageExpandEtagChangesWithCollectionMembers() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:sub:sub1", "{\"content\": \"content_sub_1\"}");
+        List<String> subResources = Arrays.asList("sub/");
+        List<String> values = evalScriptStorageExpandValues(":project:server:test", subResources, "");
+
+        // ACT
+        evalScriptPut(":project:server:test:sub:sub2", "{\"content\": \"content_sub_2\"}");
+        List<String> changedValues = evalScriptStorageExpandValues(":project:server:test", subResources, values.get(0));
+
+        // ASSERT
+        assertThat(changedValues.get(0), not(equalTo(values.get(0))));
+        assertThat(changedValues.get(2), equalTo("[\"sub1\",\"sub2\"]"));
+    }
+
+    @Test
+    public void testStorageExpandDuplicateSubresources() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:item1", "{\"content\": \"content_1\"}");
+
+        // ACT
+        List<List<String>> value = evalScriptStorageExpandAndExtract(":project:server:test", Arrays.asList("item1", "item1"));
+
+        // ASSERT
+        assertThat(value.size(), equalTo(1));
+    }
+
+    @Test
+    public void testStorageExpandDepth() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:item1", "{\"content\": \"content_1\"}");
+        evalScriptPut(":project:server:test:sub:sub1", "{\"content\": \"content_sub_1\"}");
+        evalScriptPut(":project:server:test:sub:subsub:item2", "{\"content\": \"content_sub_2\"}");
+        evalScriptPut(":project:server:test:sub:subsub:deeper:item3", "{\"content\": \"content_sub_3\"}");
+
+        // ACT
+        Object value = evalScriptStorageExpand(":project:server:test", Arrays.asList("sub/", "item1"), getNowAsString(), "", 3, 100, 10_000L);
+
+        // ASSERT -> expanded collections are followed by their sub resources, the collections at the depth by their members
+        @SuppressWarnings("unchecked")
+        List<String> values = (List<String>) value;
+        assertThat(values.subList(1, values.size()), equalTo(Arrays.asList(
+                "sub/", "2",
+                "subsub/", "2",
+                "deeper/", "[\"item3\"]",
+                "item2", "{\"content\": \"content_sub_2\"}",
+                "sub1", "{\"content\": \"content_sub_1\"}",
+                "item1", "{\"content\": \"content_1\"}")));
+
+        // ACT
+        List<String> depthOneValues = evalScriptStorageExpandValues(":project:server:test", Arrays.asList("sub/", "item1"), "");
+
+        // ASSERT
+        assertThat(depthOneValues.get(2), equalTo("[\"subsub/\",\"sub1\"]"));
+        assertThat(depthOneValues.get(0), not(equalTo(values.get(0))));
+    }
+
+    @Test
+    public void testStorageExpandMembersLimit() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:sub:sub1", "{\"content\": \"content_sub_1\"}");
+        evalScriptPut(":project:server:test:sub:sub2", "{\"content\": \"content_sub_2\"}");
+        evalScriptPut(":project:server:test:item1", "{\"content\": \"content_1\"}");
+        List<String> subResources = Arrays.asList("sub/", "item1");
+
+        // ACT -> depth 1 counts the collection, its two members and the resource
+        Object withinLimit = evalScriptStorageExpand(":project:server:test", subResources, getNowAsString(), "", 1, 4, 10_000L);
+        Object exceeded = evalScriptStorageExpand(":project:server:test", subResources, getNowAsString(), "", 1, 3, 10_000L);
+        Object exceededNested = evalScriptStorageExpand(":project:server:test", subResources, getNowAsString(), "", 2, 3, 10_000L);
+
+        // ASSERT
+        assertThat(withinLimit instanceof List, equalTo(true));
+        assertThat(exceeded, equalTo("membersLimitExceeded"));
+        assertThat(exceededNested, equalTo("membersLimitExceeded"));
+    }
+
+    @Test
+    public void testStorageExpandSizeLimit() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:item1", "{\"content\": \"content_1\"}");
+        evalScriptPut(":project:server:test:item2", "{\"content\": \"content_2\"}");
+        List<String> subResources = Arrays.asList("item1", "item2");
+
+        // ACT
+        Object withinLimit = evalScriptStorageExpand(":project:server:test", subResources, getNowAsString(), "", 1, 100, 48L);
+        Object exceeded = evalScriptStorageExpand(":project:server:test", subResources, getNowAsString(), "", 1, 100, 47L);
+
+        // ASSERT
+        assertThat(withinLimit instanceof List, equalTo(true));
+        assertThat(exceeded, equalTo("sizeLimitExceeded"));
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked", "serial"})
     private Object evalScriptStorageExpand(final String resourceName1, final List<String> subResources) {
-        return evalScriptStorageExpand(resourceName1, subResources, String.valueOf(System.currentTimeMillis()));
+        return evalScriptStorageExpand(resourceName1, subResources, getNowAsString(), "");
+    }
+
+    private Object evalScriptStorageExpand(final String resourceName1, final List<String> subResources, final String timestamp, final String etag) {
+        return evalScriptStorageExpand(resourceName1, subResources, timestamp, etag, 1, 100_000, 52_428_800L);
     }
 
     @SuppressWarnings({"rawtypes", "unchecked", "serial"})
-    private Object evalScriptStorageExpand(final String resourceName1, final List<String> subResources, final String timestamp) {
+    private Object evalScriptStorageExpand(final String resourceName1, final List<String> subResources, final String timestamp,
+                                           final String etag, final int depth, final int maxMembers, final long maxSize) {
         String getScript = readScript("storageExpand.lua");
         return jedis.eval(getScript, new ArrayList() {
                     {
@@ -334,32 +460,44 @@ public class RedisStorageExpandLuaScriptTests extends AbstractLuaScriptTest {
                         add("9999999999999");
                         add(StringUtils.join(subResources, ";"));
                         add(String.valueOf(subResources.size()));
+                        add(etag);
+                        add(String.valueOf(depth));
+                        add(String.valueOf(maxMembers));
+                        add(String.valueOf(maxSize));
                     }
                 }
         );
     }
 
+    @SuppressWarnings("unchecked")
+    private List<Object> evalScriptStorageExpandRawValues(String resourceName, List<String> subResources){
+        return (List<Object>) evalScriptStorageExpand(resourceName, subResources);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> evalScriptStorageExpandValues(String resourceName, List<String> subResources, String etag){
+        return (List<String>) evalScriptStorageExpand(resourceName, subResources, getNowAsString(), etag);
+    }
+
     private List<List<String>> evalScriptStorageExpandAndExtract(String resourceName, List<String> subResources){
-        return evalScriptStorageExpandAndExtract(resourceName, subResources, null);
+        return evalScriptStorageExpandAndExtract(resourceName, subResources, getNowAsString());
     }
 
+    /**
+     * The script returns the etag followed by pairs of name and content, collection names end with a slash.
+     */
+    @SuppressWarnings("unchecked")
     private List<List<String>> evalScriptStorageExpandAndExtract(String resourceName, List<String> subResources, String timestamp){
         List<List<String>> result = new ArrayList<>();
-        String valueStr;
-        if(timestamp != null){
-            valueStr = (String) evalScriptStorageExpand(resourceName, subResources, timestamp);
-        } else {
-            valueStr = (String) evalScriptStorageExpand(resourceName, subResources);
-        }
+        Object value = evalScriptStorageExpand(resourceName, subResources, timestamp, "");
 
-        if(valueStr.equals("notFound")){
+        if("notFound".equals(value)){
             return result;
         }
 
-        JsonArray jsonArray = new JsonArray(valueStr);
-        for (Object arr : jsonArray) {
-            JsonArray subArr = (JsonArray) arr;
-            result.add(Arrays.asList(subArr.getString(0), subArr.getString(1)));
+        List<String> values = (List<String>) value;
+        for (int i = 1; i + 1 < values.size(); i += 2) {
+            result.add(Arrays.asList(StringUtils.removeEnd(values.get(i), "/"), values.get(i + 1)));
         }
         return result;
     }
@@ -1,6 +1,8 @@
 package org.swisspush.reststorage.mocks;
 
 import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import org.swisspush.reststorage.BatchOperation;
 import org.swisspush.reststorage.DocumentResource;
 import org.swisspush.reststorage.Resource;
 import org.swisspush.reststorage.Storage;
@@ -31,11 +33,21 @@ public class FailFastRestStorage implements Storage {
         throw new UnsupportedOperationException(msg);
     }
 
+    @Override
+    public void get(String path, String etag, int offset, int count, boolean acceptGzip, Handler<Resource> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
     @Override
     public void storageExpand(String path, String etag, List<String> subResources, Handler<Resource> handler) {
         throw new UnsupportedOperationException(msg);
     }
 
+    @Override
+    public void storageExpand(String path, String etag, List<String> subResources, int depth, Handler<Resource> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
     @Override
     public void put(String path, String etag, boolean merge, long expire, Handler<Resource> handler) {
         throw new UnsupportedOperationException(msg);
@@ -56,8 +68,43 @@ public class FailFastRestStorage implements Storage {
         throw new UnsupportedOperationException(msg);
     }
 
+    @Override
+    public void batch(List<BatchOperation> operations, Handler<List<Resource>> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
     @Override
     public void cleanup(Handler<DocumentResource> handler, String cleanupResourcesAmount) {
         throw new UnsupportedOperationException(msg);
     }
+
+    @Override
+    public void streamCollection(String path, Handler<Resource> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
+    @Override
+    public void list(String path, String after, int count, Handler<Resource> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
+    @Override
+    public void head(String path, String etag, Handler<Resource> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
+    @Override
+    public void head(String path, String etag, boolean acceptGzip, Handler<Resource> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
+    @Override
+    public void multiGet(List<String> paths, List<String> etags, Handler<List<Resource>> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
+    @Override
+    public void statistics(Handler<JsonObject> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
 }
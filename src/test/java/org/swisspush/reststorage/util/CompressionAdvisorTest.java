@@ -0,0 +1,104 @@
+package org.swisspush.reststorage.util;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests for the {@link CompressionAdvisor} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class CompressionAdvisorTest {
+
+    @Test
+    public void testCandidates(TestContext testContext) {
+        CompressionAdvisor advisor = new CompressionAdvisor(1024, 4096, 1.25, 2);
+        testContext.assertTrue(advisor.isCandidate(1024, "application/json; charset=utf-8"));
+        testContext.assertTrue(advisor.isCandidate(2048, "text/plain"));
+        testContext.assertTrue(advisor.isCandidate(2048, "image/svg+xml"));
+        testContext.assertTrue(advisor.isCandidate(2048, "application/octet-stream"));
+        testContext.assertFalse(advisor.isCandidate(1023, "application/json"));
+        testContext.assertFalse(advisor.isCandidate(2048, "image/png"));
+        testContext.assertFalse(advisor.isCandidate(2048, "video/mp4"));
+        testContext.assertFalse(advisor.isCandidate(2048, "application/zip"));
+        testContext.assertFalse(advisor.isCandidate(2048, "application/x-7z-compressed"));
+    }
+
+    @Test
+    public void testCompressibleContentIsCompressed(TestContext testContext) throws IOException {
+        CompressionAdvisor advisor = new CompressionAdvisor(1024, 4096, 1.25, 2);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            json.append("{\"id\":").append(i).append(",\"name\":\"item\"},");
+        }
+        byte[] content = json.append("{}]").toString().getBytes(StandardCharsets.UTF_8);
+
+        byte[] compressed = advisor.compressIfWorthwhile(content);
+
+        testContext.assertNotNull(compressed);
+        testContext.assertTrue(Arrays.equals(content, GZIPUtil.decompress(compressed)));
+        testContext.assertEquals(1L, advisor.statistics().getLong("sampled"));
+        testContext.assertEquals(0L, advisor.statistics().getLong("skippedBySample"));
+    }
+
+    @Test
+    public void testIncompressibleContentIsNotCompressed(TestContext testContext) {
+        CompressionAdvisor advisor = new CompressionAdvisor(1024, 4096, 1.25, 2);
+        byte[] large = new byte[100_000];
+        byte[] small = new byte[2000];
+        Random random = new Random(42);
+        random.nextBytes(large);
+        random.nextBytes(small);
+
+        testContext.assertNull(advisor.compressIfWorthwhile(large));
+        testContext.assertNull(advisor.compressIfWorthwhile(small));
+        testContext.assertEquals(1L, advisor.statistics().getLong("sampled"));
+        testContext.assertEquals(1L, advisor.statistics().getLong("skippedBySample"));
+    }
+
+    @Test
+    public void testPrefix(TestContext testContext) {
+        CompressionAdvisor advisor = new CompressionAdvisor(1024, 4096, 1.25, 2);
+        testContext.assertEquals("/a/b", advisor.prefix("/a/b/c/d"));
+        testContext.assertEquals("/a/b", advisor.prefix("/a/b/c"));
+        testContext.assertEquals("/a", advisor.prefix("/a/b"));
+        testContext.assertEquals("/", advisor.prefix("/a"));
+        testContext.assertEquals("/", new CompressionAdvisor(1024, 4096, 1.25, 0).prefix("/a/b/c"));
+    }
+
+    @Test
+    public void testStatisticsPerPrefix(TestContext testContext) {
+        CompressionAdvisor advisor = new CompressionAdvisor(1024, 4096, 1.25, 1);
+        advisor.record("/a/one", 3000, 1000, true);
+        advisor.record("/a/two", 1000, 1000, false);
+        advisor.record("/b/one", 500, 500, false);
+
+        JsonObject prefixes = advisor.statistics().getJsonObject("prefixes");
+        JsonObject a = prefixes.getJsonObject("/a");
+        testContext.assertEquals(2L, a.getLong("resources"));
+        testContext.assertEquals(1L, a.getLong("compressed"));
+        testContext.assertEquals(4000L, a.getLong("originalBytes"));
+        testContext.assertEquals(2000L, a.getLong("storedBytes"));
+        testContext.assertEquals(2.0, a.getDouble("ratio"));
+        testContext.assertEquals(1.0, prefixes.getJsonObject("/b").getDouble("ratio"));
+    }
+
+    @Test
+    public void testStatisticsOfTooManyPrefixesAreAggregated(TestContext testContext) {
+        CompressionAdvisor advisor = new CompressionAdvisor(1024, 4096, 1.25, 1);
+        for (int i = 0; i < 1010; i++) {
+            advisor.record("/collection" + i + "/resource", 100, 100, false);
+        }
+
+        JsonObject prefixes = advisor.statistics().getJsonObject("prefixes");
+        testContext.assertEquals(1001, prefixes.size());
+        testContext.assertEquals(10L, prefixes.getJsonObject(CompressionAdvisor.OTHER_PREFIXES).getLong("resources"));
+    }
+}
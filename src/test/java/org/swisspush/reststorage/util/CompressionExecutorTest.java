@@ -0,0 +1,71 @@
+package org.swisspush.reststorage.util;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the {@link CompressionExecutor} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class CompressionExecutorTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext testContext) {
+        vertx.close(testContext.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testTasksAreRejectedWhenQueueIsFull(TestContext testContext) {
+        Async async = testContext.async(3);
+        CompressionExecutor executor = new CompressionExecutor(vertx, "compression-executor-test", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        vertx.runOnContext(v -> {
+            // the first task occupies the only worker, the second one waits in the queue
+            for (int i = 0; i < 2; i++) {
+                int task = i;
+                executor.<Integer>execute(future -> {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    future.complete(task);
+                }, result -> {
+                    testContext.assertEquals(task, result.result());
+                    async.countDown();
+                });
+            }
+            executor.<Integer>execute(future -> future.complete(2), result -> {
+                testContext.assertTrue(result.failed());
+                testContext.assertTrue(result.cause() instanceof RejectedExecutionException);
+                testContext.assertEquals(1L, executor.statistics().getLong("rejected"));
+                testContext.assertEquals(2, executor.getPending());
+                release.countDown();
+                async.countDown();
+            });
+        });
+
+        async.awaitSuccess();
+        testContext.assertEquals(0, executor.getPending());
+        testContext.assertEquals(2L, executor.statistics().getLong("executed"));
+        executor.close();
+    }
+}
@@ -0,0 +1,36 @@
+package org.swisspush.reststorage.util;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link ContinuationToken} class.
+ */
+@RunWith(VertxUnitRunner.class)
+public class ContinuationTokenTest {
+
+    @Test
+    public void testEncodeDecode(TestContext testContext) {
+        testContext.assertNull(ContinuationToken.encode(null));
+        testContext.assertEquals("Ym9i", ContinuationToken.encode("bob"));
+        testContext.assertEquals("bob", ContinuationToken.decode("Ym9i"));
+
+        String position = "9999999999999:res_§_?/+ü";
+        String token = ContinuationToken.encode(position);
+        testContext.assertTrue(token.matches("[A-Za-z0-9_-]+"), "token must be url safe");
+        testContext.assertEquals(position, ContinuationToken.decode(token));
+    }
+
+    @Test
+    public void testDecodeEmpty(TestContext testContext) {
+        testContext.assertNull(ContinuationToken.decode(null));
+        testContext.assertNull(ContinuationToken.decode(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeInvalid() {
+        ContinuationToken.decode("not a token!");
+    }
+}
@@ -0,0 +1,90 @@
+package org.swisspush.reststorage.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the compression and decompression of {@link GZIPUtil}, reusing the Deflater and Inflater of the thread and
+ * pre-sized buffers, with the former implementation creating a GZIPOutputStream and GZIPInputStream for every
+ * resource. The payloads are json documents of 1KB to 5MB.
+ * <p>
+ * Not a unit test, run the main method from the test classpath. Every measurement is preceded by a warm up of the
+ * same length.
+ */
+public class GZIPUtilBenchmark {
+
+    private static final long MEASUREMENT_NANOS = 2_000_000_000L;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println(String.format("%10s %16s %16s %18s %18s %8s", "payload", "compress [us]", "pooled [us]",
+                "decompress [us]", "pooled [us]", "ratio"));
+        for (int size : new int[]{1024, 10 * 1024, 100 * 1024, 1024 * 1024, 5 * 1024 * 1024}) {
+            byte[] payload = jsonPayload(size);
+            byte[] compressed = GZIPUtil.compress(payload);
+
+            double streamCompress = measure(() -> streamCompress(payload));
+            double pooledCompress = measure(() -> GZIPUtil.compress(payload));
+            double streamDecompress = measure(() -> streamDecompress(compressed));
+            double pooledDecompress = measure(() -> GZIPUtil.decompress(compressed));
+            System.out.println(String.format("%10s %16.1f %16.1f %18.1f %18.1f %8.2f", size / 1024 + "KB",
+                    streamCompress, pooledCompress, streamDecompress, pooledDecompress,
+                    (double) payload.length / compressed.length));
+        }
+    }
+
+    /**
+     * @return the average duration of a call in microseconds
+     */
+    private static double measure(Task task) throws IOException {
+        for (long start = System.nanoTime(); System.nanoTime() - start < MEASUREMENT_NANOS; ) {
+            task.run();
+        }
+        long calls = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            task.run();
+            calls++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASUREMENT_NANOS);
+        return elapsed / 1000d / calls;
+    }
+
+    private static byte[] jsonPayload(int size) {
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = 0; json.length() < size - 100; i++) {
+            json.append("{\"id\":").append(i).append(",\"name\":\"item-").append(Integer.toHexString(i * 7919))
+                    .append("\",\"active\":").append(i % 3 == 0).append(",\"value\":").append(i * 0.37).append("},");
+        }
+        json.append("{}]}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] streamCompress(byte[] data) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (GZIPOutputStream os = new GZIPOutputStream(baos)) {
+            os.write(data);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] streamDecompress(byte[] data) throws IOException {
+        byte[] buffer = new byte[1024];
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            int bytes_read;
+            while ((bytes_read = gzipInputStream.read(buffer)) > 0) {
+                baos.write(buffer, 0, bytes_read);
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    private interface Task {
+        Object run() throws IOException;
+    }
+}
@@ -11,8 +11,11 @@ import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Random;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Tests for {@link GZIPUtil} class.
@@ -69,4 +72,74 @@ public class GZIPUtilTest {
             async.complete();
         });
     }
+
+    @Test
+    public void testCompressedDataIsReadableByGZIPInputStream(TestContext testContext) throws Exception {
+        Random random = new Random(42);
+        for (int size : new int[]{0, 1, 1024, 70_000, 1_000_000}) {
+            byte[] repetitive = new byte[size];
+            byte[] randomBytes = new byte[size];
+            for (int i = 0; i < size; i++) {
+                repetitive[i] = (byte) ('a' + i % 7);
+            }
+            random.nextBytes(randomBytes);
+            for (byte[] uncompressed : Arrays.asList(repetitive, randomBytes)) {
+                byte[] compressed = GZIPUtil.compress(uncompressed);
+                testContext.assertTrue(Arrays.equals(uncompressed, IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed)))),
+                        "Round trip of " + size + " bytes");
+                testContext.assertTrue(Arrays.equals(uncompressed, GZIPUtil.decompress(compressed)));
+            }
+        }
+    }
+
+    @Test
+    public void testDecompressMultipleMembers(TestContext testContext) throws Exception {
+        byte[] uncompressed = "a resource compressed by another gzip implementation".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(uncompressed);
+        }
+        // a second gzip member is appended to the first one
+        out.write(GZIPUtil.compress(uncompressed));
+
+        byte[] first = Arrays.copyOf(out.toByteArray(), out.size() - GZIPUtil.compress(uncompressed).length);
+        testContext.assertTrue(Arrays.equals(uncompressed, GZIPUtil.decompress(first)));
+        byte[] both = GZIPUtil.decompress(out.toByteArray());
+        testContext.assertEquals(new String(uncompressed, StandardCharsets.UTF_8) + new String(uncompressed, StandardCharsets.UTF_8),
+                new String(both, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDecompressCorruptData(TestContext testContext) {
+        byte[] compressed = GZIPUtil.compress("some content".getBytes(StandardCharsets.UTF_8));
+        byte[] wrongCrc = Arrays.copyOf(compressed, compressed.length);
+        wrongCrc[wrongCrc.length - 8]++;
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length - 3);
+
+        for (byte[] corrupt : Arrays.asList(wrongCrc, truncated, "not gzip".getBytes(StandardCharsets.UTF_8))) {
+            try {
+                GZIPUtil.decompress(corrupt);
+                testContext.fail("Corrupt data should not be decompressed");
+            } catch (IOException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testCompressResourceOnCompressionExecutor(TestContext testContext) {
+        Async async = testContext.async();
+        Vertx vertx = Vertx.vertx();
+        CompressionExecutor executor = new CompressionExecutor(vertx, "gzip-util-test", 1, 0);
+        byte[] uncompressed = "My uncompressed Resource".getBytes(StandardCharsets.UTF_8);
+        vertx.runOnContext(v -> GZIPUtil.compressResource(executor, Mockito.mock(Logger.class), uncompressed, compressed -> {
+            testContext.assertTrue(compressed.succeeded());
+            GZIPUtil.decompressResource(executor, Mockito.mock(Logger.class), compressed.result(), decompressed -> {
+                testContext.assertTrue(Arrays.equals(uncompressed, decompressed.result()));
+                executor.close();
+                vertx.close();
+                async.complete();
+            });
+        }));
+    }
 }
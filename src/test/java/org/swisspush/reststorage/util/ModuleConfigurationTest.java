@@ -46,6 +46,44 @@ public class ModuleConfigurationTest {
         testContext.assertFalse(config.isRejectStorageWriteOnLowMemory());
         testContext.assertEquals(config.getFreeMemoryCheckIntervalMs(), 60000L);
         testContext.assertFalse(config.isReturn200onDeleteNonExisting());
+        testContext.assertFalse(config.isRedisBatchingEnabled());
+        testContext.assertEquals(config.getRedisBatchWindowMs(), 0L);
+        testContext.assertEquals(config.getRedisBatchMaxSize(), 128);
+        testContext.assertEquals(config.getRedisPoolSize(), 1);
+        testContext.assertEquals(config.getRedisPoolStrategy(), ModuleConfiguration.RedisPoolStrategy.roundRobin);
+        testContext.assertEquals(config.getCollectionStreamChunkSize(), 1000);
+        testContext.assertEquals(config.getCollectionMarkersPrefix(), "rest-storage:collection-markers");
+        testContext.assertFalse(config.isNearCacheEnabled());
+        testContext.assertEquals(config.getNearCacheMaxSize(), 10485760L);
+        testContext.assertEquals(config.getNearCacheMaxResourceSize(), 65536);
+        testContext.assertEquals(config.getNearCacheMaxAgeMs(), 10000L);
+        testContext.assertEquals(config.getStorageExpandMaxMembers(), 100_000);
+        testContext.assertEquals(config.getStorageExpandMaxSize(), 52_428_800L);
+        testContext.assertEquals(config.getCompressionWorkerPoolSize(), 4);
+        testContext.assertFalse(config.isBackgroundExpiryEnabled());
+        testContext.assertEquals(config.getBackgroundExpiryIntervalMs(), 1_000L);
+        testContext.assertEquals(config.getBackgroundExpiryTimeBudgetMs(), 50L);
+        testContext.assertEquals(config.getBackgroundExpiryBatchMs(), 5L);
+        testContext.assertEquals(config.getBackgroundExpiryMaxLatencyMs(), 20L);
+        testContext.assertFalse(config.isCleanupLeaseEnabled());
+        testContext.assertEquals(config.getCleanupLeaseKey(), "rest-storage:leader");
+        testContext.assertEquals(config.getCleanupLeaseMs(), 10_000L);
+        testContext.assertEquals(config.getExpirableBuckets(), 1);
+        testContext.assertFalse(config.isNativeExpiryEnabled());
+        testContext.assertEquals(config.getAsyncDeleteThreshold(), 0);
+        testContext.assertEquals(config.getAsyncDeleteBatchSize(), 1000);
+        testContext.assertEquals(config.getAsyncDeleteKey(), "rest-storage:purging");
+        testContext.assertEquals(config.getBatchChunkSize(), 100);
+        testContext.assertFalse(config.isWorkerMergeEnabled());
+        testContext.assertEquals(config.getWorkerMergeMaxRetries(), 5);
+        testContext.assertEquals(config.getCompressionQueueSize(), 1000);
+        testContext.assertFalse(config.isResponseCompressionEnabled());
+        testContext.assertEquals(config.getResponseCompressionThreshold(), 65536);
+        testContext.assertEquals(config.getCompressionPolicy(), ModuleConfiguration.CompressionPolicy.header);
+        testContext.assertEquals(config.getCompressionMinSize(), 1024);
+        testContext.assertEquals(config.getCompressionSampleSize(), 4096);
+        testContext.assertEquals(config.getCompressionMinRatio(), 1.25);
+        testContext.assertEquals(config.getCompressionStatisticsDepth(), 2);
     }
 
     @Test
@@ -59,7 +97,45 @@ public class ModuleConfigurationTest {
                 .confirmCollectionDelete(true)
                 .rejectStorageWriteOnLowMemory(true)
                 .freeMemoryCheckIntervalMs(10000)
-                .return200onDeleteNonExisting(true);
+                .return200onDeleteNonExisting(true)
+                .redisBatchingEnabled(true)
+                .redisBatchWindowMs(2)
+                .redisBatchMaxSize(50)
+                .redisPoolSize(4)
+                .redisPoolStrategy(ModuleConfiguration.RedisPoolStrategy.pathHash)
+                .collectionStreamChunkSize(500)
+                .collectionMarkersPrefix("my:markers")
+                .nearCacheEnabled(true)
+                .nearCacheMaxSize(1024L)
+                .nearCacheMaxResourceSize(512)
+                .nearCacheMaxAgeMs(500L)
+                .storageExpandMaxMembers(500)
+                .storageExpandMaxSize(1024L)
+                .compressionWorkerPoolSize(8)
+                .backgroundExpiryEnabled(true)
+                .backgroundExpiryIntervalMs(500L)
+                .backgroundExpiryTimeBudgetMs(20L)
+                .backgroundExpiryBatchMs(2L)
+                .backgroundExpiryMaxLatencyMs(10L)
+                .cleanupLeaseEnabled(true)
+                .cleanupLeaseKey("my:leader")
+                .cleanupLeaseMs(3_000L)
+                .expirableBuckets(16)
+                .nativeExpiryEnabled(true)
+                .asyncDeleteThreshold(5000)
+                .asyncDeleteBatchSize(200)
+                .asyncDeleteKey("my:purging")
+                .batchChunkSize(20)
+                .workerMergeEnabled(true)
+                .workerMergeMaxRetries(2)
+                .compressionQueueSize(10)
+                .responseCompressionEnabled(true)
+                .responseCompressionThreshold(1024)
+                .compressionPolicy(ModuleConfiguration.CompressionPolicy.adaptive)
+                .compressionMinSize(512)
+                .compressionSampleSize(8192)
+                .compressionMinRatio(2.0)
+                .compressionStatisticsDepth(3);
 
         // go through JSON encode/decode
         String json = config.asJsonObject().encodePrettily();
@@ -89,6 +165,44 @@ public class ModuleConfigurationTest {
         testContext.assertTrue(config.isRejectStorageWriteOnLowMemory());
         testContext.assertEquals(config.getFreeMemoryCheckIntervalMs(), 10000L);
         testContext.assertTrue(config.isReturn200onDeleteNonExisting());
+        testContext.assertTrue(config.isRedisBatchingEnabled());
+        testContext.assertEquals(config.getRedisBatchWindowMs(), 2L);
+        testContext.assertEquals(config.getRedisBatchMaxSize(), 50);
+        testContext.assertEquals(config.getRedisPoolSize(), 4);
+        testContext.assertEquals(config.getRedisPoolStrategy(), ModuleConfiguration.RedisPoolStrategy.pathHash);
+        testContext.assertEquals(config.getCollectionStreamChunkSize(), 500);
+        testContext.assertEquals(config.getCollectionMarkersPrefix(), "my:markers");
+        testContext.assertTrue(config.isNearCacheEnabled());
+        testContext.assertEquals(config.getNearCacheMaxSize(), 1024L);
+        testContext.assertEquals(config.getNearCacheMaxResourceSize(), 512);
+        testContext.assertEquals(config.getNearCacheMaxAgeMs(), 500L);
+        testContext.assertEquals(config.getStorageExpandMaxMembers(), 500);
+        testContext.assertEquals(config.getStorageExpandMaxSize(), 1024L);
+        testContext.assertEquals(config.getCompressionWorkerPoolSize(), 8);
+        testContext.assertTrue(config.isBackgroundExpiryEnabled());
+        testContext.assertEquals(config.getBackgroundExpiryIntervalMs(), 500L);
+        testContext.assertEquals(config.getBackgroundExpiryTimeBudgetMs(), 20L);
+        testContext.assertEquals(config.getBackgroundExpiryBatchMs(), 2L);
+        testContext.assertEquals(config.getBackgroundExpiryMaxLatencyMs(), 10L);
+        testContext.assertTrue(config.isCleanupLeaseEnabled());
+        testContext.assertEquals(config.getCleanupLeaseKey(), "my:leader");
+        testContext.assertEquals(config.getCleanupLeaseMs(), 3_000L);
+        testContext.assertEquals(config.getExpirableBuckets(), 16);
+        testContext.assertTrue(config.isNativeExpiryEnabled());
+        testContext.assertEquals(config.getAsyncDeleteThreshold(), 5000);
+        testContext.assertEquals(config.getAsyncDeleteBatchSize(), 200);
+        testContext.assertEquals(config.getAsyncDeleteKey(), "my:purging");
+        testContext.assertEquals(config.getBatchChunkSize(), 20);
+        testContext.assertTrue(config.isWorkerMergeEnabled());
+        testContext.assertEquals(config.getWorkerMergeMaxRetries(), 2);
+        testContext.assertEquals(config.getCompressionQueueSize(), 10);
+        testContext.assertTrue(config.isResponseCompressionEnabled());
+        testContext.assertEquals(config.getResponseCompressionThreshold(), 1024);
+        testContext.assertEquals(config.getCompressionPolicy(), ModuleConfiguration.CompressionPolicy.adaptive);
+        testContext.assertEquals(config.getCompressionMinSize(), 512);
+        testContext.assertEquals(config.getCompressionSampleSize(), 8192);
+        testContext.assertEquals(config.getCompressionMinRatio(), 2.0);
+        testContext.assertEquals(config.getCompressionStatisticsDepth(), 3);
     }
 
     @Test
@@ -115,6 +229,44 @@ public class ModuleConfigurationTest {
         testContext.assertFalse(json.getBoolean("confirmCollectionDelete"));
         testContext.assertFalse(json.getBoolean("rejectStorageWriteOnLowMemory"));
         testContext.assertEquals(json.getLong("freeMemoryCheckIntervalMs"), 60000L);
+        testContext.assertFalse(json.getBoolean("redisBatchingEnabled"));
+        testContext.assertEquals(json.getLong("redisBatchWindowMs"), 0L);
+        testContext.assertEquals(json.getInteger("redisBatchMaxSize"), 128);
+        testContext.assertEquals(json.getInteger("redisPoolSize"), 1);
+        testContext.assertEquals(json.getString("redisPoolStrategy"), "roundRobin");
+        testContext.assertEquals(json.getInteger("collectionStreamChunkSize"), 1000);
+        testContext.assertEquals(json.getString("collectionMarkersPrefix"), "rest-storage:collection-markers");
+        testContext.assertFalse(json.getBoolean("nearCacheEnabled"));
+        testContext.assertEquals(json.getLong("nearCacheMaxSize"), 10485760L);
+        testContext.assertEquals(json.getInteger("nearCacheMaxResourceSize"), 65536);
+        testContext.assertEquals(json.getLong("nearCacheMaxAgeMs"), 10000L);
+        testContext.assertEquals(json.getInteger("storageExpandMaxMembers"), 100_000);
+        testContext.assertEquals(json.getLong("storageExpandMaxSize"), 52_428_800L);
+        testContext.assertEquals(json.getInteger("compressionWorkerPoolSize"), 4);
+        testContext.assertFalse(json.getBoolean("backgroundExpiryEnabled"));
+        testContext.assertEquals(json.getLong("backgroundExpiryIntervalMs"), 1_000L);
+        testContext.assertEquals(json.getLong("backgroundExpiryTimeBudgetMs"), 50L);
+        testContext.assertEquals(json.getLong("backgroundExpiryBatchMs"), 5L);
+        testContext.assertEquals(json.getLong("backgroundExpiryMaxLatencyMs"), 20L);
+        testContext.assertFalse(json.getBoolean("cleanupLeaseEnabled"));
+        testContext.assertEquals(json.getString("cleanupLeaseKey"), "rest-storage:leader");
+        testContext.assertEquals(json.getLong("cleanupLeaseMs"), 10_000L);
+        testContext.assertEquals(json.getInteger("expirableBuckets"), 1);
+        testContext.assertFalse(json.getBoolean("nativeExpiryEnabled"));
+        testContext.assertEquals(json.getInteger("asyncDeleteThreshold"), 0);
+        testContext.assertEquals(json.getInteger("asyncDeleteBatchSize"), 1000);
+        testContext.assertEquals(json.getString("asyncDeleteKey"), "rest-storage:purging");
+        testContext.assertEquals(json.getInteger("batchChunkSize"), 100);
+        testContext.assertFalse(json.getBoolean("workerMergeEnabled"));
+        testContext.assertEquals(json.getInteger("workerMergeMaxRetries"), 5);
+        testContext.assertEquals(json.getInteger("compressionQueueSize"), 1000);
+        testContext.assertFalse(json.getBoolean("responseCompressionEnabled"));
+        testContext.assertEquals(json.getInteger("responseCompressionThreshold"), 65536);
+        testContext.assertEquals(json.getString("compressionPolicy"), ModuleConfiguration.CompressionPolicy.header.name());
+        testContext.assertEquals(json.getInteger("compressionMinSize"), 1024);
+        testContext.assertEquals(json.getInteger("compressionSampleSize"), 4096);
+        testContext.assertEquals(json.getDouble("compressionMinRatio"), 1.25);
+        testContext.assertEquals(json.getInteger("compressionStatisticsDepth"), 2);
     }
 
     @Test